@@ -3,8 +3,10 @@ package org.perscholas.investmentapp;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.actuate.autoconfigure.wavefront.WavefrontProperties;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class InvestmentappApplication {
 
 	public static void main(String[] args) {
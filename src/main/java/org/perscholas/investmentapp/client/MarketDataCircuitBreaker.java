@@ -0,0 +1,158 @@
+package org.perscholas.investmentapp.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker for upstream market calls.
+ * CLOSED records the outcome of the last {@code windowSize} calls and opens once the failure
+ * rate reaches the threshold; OPEN rejects every call for {@code openDuration}; HALF_OPEN lets
+ * {@code halfOpenCalls} trial calls through and closes only if all of them succeed.
+ */
+@Component
+@Slf4j
+public class MarketDataCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    // guarded by this
+    private final boolean[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsInFlight;
+    private int trialSuccesses;
+
+    private final Counter openedCounter;
+
+    @Autowired
+    public MarketDataCircuitBreaker(MeterRegistry meterRegistry,
+                                    @Value("${market.client.circuit.window-size:20}") int windowSize,
+                                    @Value("${market.client.circuit.minimum-calls:10}") int minimumCalls,
+                                    @Value("${market.client.circuit.failure-rate:0.5}") double failureRateThreshold,
+                                    @Value("${market.client.circuit.open-duration:30s}") Duration openDuration,
+                                    @Value("${market.client.circuit.half-open-calls:2}") int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openDuration.toMillis();
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new boolean[windowSize];
+
+        this.openedCounter = Counter.builder("market.client.circuit.opened")
+                .description("Times the upstream circuit breaker tripped open")
+                .register(meterRegistry);
+        // 0 = closed, 1 = open, 2 = half-open
+        Gauge.builder("market.client.circuit.state", this, b -> b.getState().ordinal())
+                .description("Upstream circuit breaker state (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns true when a call may go upstream. Every permitted call must be followed
+     * by exactly one of {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+            trialsInFlight = 0;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight >= halfOpenCalls) {
+                return false;
+            }
+            trialsInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            trialsInFlight--;
+            if (++trialSuccesses >= halfOpenCalls) {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            trip();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+                trip();
+            }
+        }
+    }
+
+    // the call never reached the upstream (e.g. bulkhead full); give back a half-open trial slot
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && trialsInFlight > 0) {
+            trialsInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == windowSize) {
+            if (window[next]) failures--;
+        } else {
+            recorded++;
+        }
+        window[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % windowSize;
+    }
+
+    private void trip() {
+        openedAt = System.currentTimeMillis();
+        openedCounter.increment();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        Arrays.fill(window, false);
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            log.warn("MarketDataCircuitBreaker: {} -> {}", state, to);
+            state = to;
+        }
+    }
+}
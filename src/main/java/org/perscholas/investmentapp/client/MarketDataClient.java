@@ -0,0 +1,266 @@
+package org.perscholas.investmentapp.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single shared, non-blocking client for the RapidAPI market data endpoints.
+ * Connections are pooled and kept alive by the JDK HttpClient and every call has
+ * connect/read timeouts. Around each call sit, outermost first:
+ * <ul>
+ *     <li>a circuit breaker that fails fast while the upstream is unhealthy,</li>
+ *     <li>jittered, budgeted retries of transient failures,</li>
+ *     <li>a hedged second attempt when the first is slower than {@code hedgeDelay},</li>
+ *     <li>a bulkhead of {@code maxConcurrent} in-flight calls; extras are rejected, not queued.</li>
+ * </ul>
+ */
+@Component
+@Profile("!sim")
+@Slf4j
+public class MarketDataClient implements MarketDataSource {
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final MarketDataCircuitBreaker circuitBreaker;
+    private final MarketDataRetryPolicy retryPolicy;
+
+    private final String baseUrl;
+    private final String apiKey;
+    private final String apiHost;
+    private final Duration readTimeout;
+    private final long hedgeDelayMs;
+    private final Semaphore permits;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+    private final Counter bulkheadRejectedCounter;
+    private final Counter circuitRejectedCounter;
+    private final Counter retryCounter;
+    private final Counter hedgeCounter;
+
+    @Autowired
+    public MarketDataClient(MeterRegistry meterRegistry,
+                            MarketDataCircuitBreaker circuitBreaker,
+                            MarketDataRetryPolicy retryPolicy,
+                            @Value("${market.api.base-url:https://apidojo-yahoo-finance-v1.p.rapidapi.com}") String baseUrl,
+                            @Value("${market.api.key}") String apiKey,
+                            @Value("${market.api.host:apidojo-yahoo-finance-v1.p.rapidapi.com}") String apiHost,
+                            @Value("${market.client.connect-timeout:2s}") Duration connectTimeout,
+                            @Value("${market.client.read-timeout:5s}") Duration readTimeout,
+                            @Value("${market.client.max-concurrent:16}") int maxConcurrent,
+                            @Value("${market.client.threads:4}") int threads,
+                            @Value("${market.client.hedge-delay:800ms}") Duration hedgeDelay) {
+        this.meterRegistry = meterRegistry;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+        this.apiHost = apiHost;
+        this.readTimeout = readTimeout;
+        this.hedgeDelayMs = hedgeDelay.toMillis();
+        this.permits = new Semaphore(maxConcurrent);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "market-client-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+
+        this.bulkheadRejectedCounter = Counter.builder("market.client.rejected")
+                .description("Upstream calls refused before being sent")
+                .tag("reason", "bulkhead-full")
+                .register(meterRegistry);
+        this.circuitRejectedCounter = Counter.builder("market.client.rejected")
+                .description("Upstream calls refused before being sent")
+                .tag("reason", "circuit-open")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("market.client.retries").register(meterRegistry);
+        this.hedgeCounter = Counter.builder("market.client.hedges").register(meterRegistry);
+        meterRegistry.gauge("market.client.in-flight", inFlight);
+    }
+
+    /**
+     * Sends a GET to {@code baseUrl + path} and completes with the response body.
+     * Fails with {@link MarketDataException} on a non-2xx status or when the call is refused
+     * (see {@link MarketDataException#isRejected()}), and with
+     * {@link java.net.http.HttpTimeoutException} when the upstream is too slow.
+     */
+    @Override
+    public CompletableFuture<String> get(String path, Map<String, String> params) {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitRejectedCounter.increment();
+            return CompletableFuture.failedFuture(
+                    MarketDataException.rejected("MarketDataClient: circuit open, not calling " + path));
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(baseUrl + path + query(params)))
+                    .timeout(readTimeout)
+                    .header("X-RapidAPI-Key", apiKey)
+                    .header("X-RapidAPI-Host", apiHost)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+        } catch (RuntimeException e) {
+            circuitBreaker.onIgnored();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        retryPolicy.onFirstAttempt();
+        return withRetries(request, path, 0)
+                .whenComplete((body, error) -> {
+                    Throwable cause = unwrap(error);
+                    if (cause == null) {
+                        circuitBreaker.onSuccess();
+                    } else if (cause instanceof MarketDataException e && e.isRejected()) {
+                        circuitBreaker.onIgnored();
+                    } else if (MarketDataRetryPolicy.isRetryable(cause)) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        // a 4xx is the caller's problem, not a sign of an unhealthy upstream
+                        circuitBreaker.onSuccess();
+                    }
+                });
+    }
+
+    private CompletableFuture<String> withRetries(HttpRequest request, String path, int attempt) {
+        return hedged(request, path).exceptionallyCompose(error -> {
+            Throwable cause = unwrap(error);
+            if (!retryPolicy.shouldRetry(attempt, cause)) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            long delay = retryPolicy.backoffMillis(attempt);
+            retryCounter.increment();
+            log.debug("MarketDataClient: retrying {} in {}ms after {}", path, delay, describe(cause));
+            Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor);
+            return CompletableFuture.supplyAsync(() -> null, delayed)
+                    .thenCompose(ignored -> withRetries(request, path, attempt + 1));
+        });
+    }
+
+    // first success wins; fails only once every launched attempt has failed
+    private CompletableFuture<String> hedged(HttpRequest request, String path) {
+        CompletableFuture<String> primary = send(request, path);
+        if (hedgeDelayMs <= 0) {
+            return primary;
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+
+        primary.whenComplete((body, error) -> settle(result, pending, body, error));
+
+        CompletableFuture.delayedExecutor(hedgeDelayMs, TimeUnit.MILLISECONDS, executor).execute(() -> {
+            // hedge only into spare capacity and only while the upstream looks healthy
+            if (result.isDone() || permits.availablePermits() < 2
+                    || circuitBreaker.getState() != MarketDataCircuitBreaker.State.CLOSED) {
+                return;
+            }
+            pending.incrementAndGet();
+            hedgeCounter.increment();
+            send(request, path).whenComplete((body, error) -> settle(result, pending, body, error));
+        });
+        return result;
+    }
+
+    private static void settle(CompletableFuture<String> result, AtomicInteger pending, String body, Throwable error) {
+        if (error == null) {
+            result.complete(body);
+        } else if (pending.decrementAndGet() == 0) {
+            result.completeExceptionally(unwrap(error));
+        }
+    }
+
+    // one physical upstream call, guarded by the bulkhead
+    private CompletableFuture<String> send(HttpRequest request, String path) {
+        if (!permits.tryAcquire()) {
+            bulkheadRejectedCounter.increment();
+            return CompletableFuture.failedFuture(
+                    MarketDataException.rejected("MarketDataClient: too many upstream calls in flight for " + path));
+        }
+
+        inFlight.incrementAndGet();
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                    String outcome = error != null ? unwrap(error).getClass().getSimpleName()
+                            : String.valueOf(response.statusCode());
+                    sample.stop(Timer.builder("market.client.requests")
+                            .description("Upstream call latency")
+                            .tag("path", path)
+                            .tag("outcome", outcome)
+                            .publishPercentileHistogram()
+                            .register(meterRegistry));
+                })
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new MarketDataException("MarketDataClient: " + path + " returned "
+                                + response.statusCode(), response.statusCode());
+                    }
+                    return response.body();
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One-line description of an upstream failure, for logs that should not carry a stack trace.
+     */
+    public static String describe(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause == null) {
+            return "none";
+        }
+        return cause.getClass().getSimpleName() + (cause.getMessage() != null ? ": " + cause.getMessage() : "");
+    }
+
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String query(Map<String, String> params) {
+        if (params == null || params.isEmpty()) {
+            return "";
+        }
+        StringJoiner joiner = new StringJoiner("&", "?", "");
+        params.forEach((k, v) -> joiner.add(URLEncoder.encode(k, StandardCharsets.UTF_8)
+                + "=" + URLEncoder.encode(v, StandardCharsets.UTF_8)));
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package org.perscholas.investmentapp.client;
+
+import lombok.Getter;
+
+/**
+ * Raised by {@link MarketDataClient} when the upstream answers with a non-2xx status
+ * or the client refuses to send the call (circuit open, too many calls in flight).
+ * A status of 0 means no HTTP response was received.
+ */
+@Getter
+public class MarketDataException extends RuntimeException {
+
+    private final int status;
+    // true when the call was never sent upstream
+    private final boolean rejected;
+
+    public MarketDataException(String message, int status) {
+        this(message, status, false);
+    }
+
+    public MarketDataException(String message, int status, boolean rejected) {
+        // no stack trace: these are expected upstream conditions, logged as one line
+        super(message, null, false, false);
+        this.status = status;
+        this.rejected = rejected;
+    }
+
+    public static MarketDataException rejected(String message) {
+        return new MarketDataException(message, 0, true);
+    }
+}
@@ -0,0 +1,77 @@
+package org.perscholas.investmentapp.client;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retry rules for upstream GETs (all market calls are idempotent GETs).
+ * Only transient failures are retried, with full-jitter exponential backoff, and a
+ * retry budget keeps retries to a fraction of normal traffic so they cannot
+ * multiply load while the upstream is already struggling.
+ */
+@Component
+public class MarketDataRetryPolicy {
+
+    private final int maxRetries;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final double budgetRatio;
+    private final double budgetCap;
+
+    // retry tokens: every first attempt deposits budgetRatio, every retry spends one
+    private double tokens;
+
+    @Autowired
+    public MarketDataRetryPolicy(@Value("${market.client.retry.max-retries:2}") int maxRetries,
+                                 @Value("${market.client.retry.base-delay:100ms}") Duration baseDelay,
+                                 @Value("${market.client.retry.max-delay:1s}") Duration maxDelay,
+                                 @Value("${market.client.retry.budget-ratio:0.1}") double budgetRatio) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMs = baseDelay.toMillis();
+        this.maxDelayMs = maxDelay.toMillis();
+        this.budgetRatio = budgetRatio;
+        this.budgetCap = Math.max(1, maxRetries * 5);
+        this.tokens = budgetCap;
+    }
+
+    public synchronized void onFirstAttempt() {
+        tokens = Math.min(budgetCap, tokens + budgetRatio);
+    }
+
+    /**
+     * Decides whether attempt number {@code attempt} (0 = first) may be followed by a retry
+     * after {@code error}; consumes a budget token when it says yes.
+     */
+    public synchronized boolean shouldRetry(int attempt, Throwable error) {
+        if (attempt >= maxRetries || !isRetryable(error) || tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Timeouts, I/O errors, 429 and 5xx are transient. Calls the client refused to send
+     * (breaker open, bulkhead full) and other 4xx are not.
+     */
+    public static boolean isRetryable(Throwable error) {
+        if (error instanceof MarketDataException e) {
+            return !e.isRejected() && (e.getStatus() == 429 || e.getStatus() >= 500);
+        }
+        return error instanceof HttpTimeoutException
+                || error instanceof TimeoutException
+                || error instanceof IOException;
+    }
+}
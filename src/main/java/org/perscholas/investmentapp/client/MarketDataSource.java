@@ -0,0 +1,16 @@
+package org.perscholas.investmentapp.client;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where the market services get RapidAPI-shaped JSON from. {@link MarketDataClient} talks to
+ * the real upstream; {@link SimulatedMarketDataSource} generates it in-process under the sim profile.
+ */
+public interface MarketDataSource {
+
+    /**
+     * Completes with the JSON body the upstream would return for a GET of {@code path} with {@code params}.
+     */
+    CompletableFuture<String> get(String path, Map<String, String> params);
+}
@@ -0,0 +1,287 @@
+package org.perscholas.investmentapp.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dao.StockRepoI;
+import org.perscholas.investmentapp.models.Stock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process stand-in for RapidAPI, active under the {@code sim} profile, for load and soak
+ * tests without network access or rate limits. Each ticker follows a geometric Brownian motion
+ * starting from its price in the stocks table (seeded by Flyway V2); unknown tickers get a
+ * deterministic start price. Responses have the same JSON shape as the real endpoints.
+ * Prices advance lazily on read, so cost is per quote served, not per tick.
+ */
+@Component
+@Profile("sim")
+@Slf4j
+public class SimulatedMarketDataSource implements MarketDataSource {
+
+    // NYSE trading seconds per year (252 days * 6.5h); GBM parameters are annualised
+    private static final double TRADING_SECONDS_PER_YEAR = 252 * 6.5 * 3600;
+
+    private static final String[] HEADLINES = {
+            "%s shares move as traders weigh latest guidance",
+            "Analysts revisit %s price targets after session swing",
+            "%s volume spikes in afternoon trading",
+            "What %s's recent run means for long-term investors",
+            "%s leads sector as markets digest economic data"
+    };
+
+    private final StockRepoI stockRepoI;
+    private final ObjectMapper objectMapper;
+
+    private final double drift;
+    private final double volatility;
+    private final double timeScale;
+    private final long seed;
+    private final long latencyMs;
+    private final double failureRate;
+    // System.nanoTime outside tests
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentHashMap<String, SimTicker> tickers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SimulatedMarketDataSource(StockRepoI stockRepoI,
+                                     ObjectMapper objectMapper,
+                                     @Value("${market.sim.drift:0.05}") double drift,
+                                     @Value("${market.sim.volatility:0.30}") double volatility,
+                                     @Value("${market.sim.time-scale:60}") double timeScale,
+                                     @Value("${market.sim.seed:42}") long seed,
+                                     @Value("${market.sim.latency:0ms}") Duration latency,
+                                     @Value("${market.sim.failure-rate:0}") double failureRate) {
+        this(stockRepoI, objectMapper, drift, volatility, timeScale, seed, latency, failureRate, System::nanoTime);
+    }
+
+    SimulatedMarketDataSource(StockRepoI stockRepoI, ObjectMapper objectMapper, double drift, double volatility,
+                              double timeScale, long seed, Duration latency, double failureRate, LongSupplier nanoClock) {
+        this.stockRepoI = stockRepoI;
+        this.objectMapper = objectMapper;
+        this.drift = drift;
+        this.volatility = volatility;
+        this.timeScale = timeScale;
+        this.seed = seed;
+        this.latencyMs = latency.toMillis();
+        this.failureRate = failureRate;
+        this.nanoClock = nanoClock;
+    }
+
+    @PostConstruct
+    void seedFromCatalog() {
+        try {
+            for (Stock stock : stockRepoI.findAll()) {
+                String ticker = stock.getTicker().toUpperCase(Locale.ROOT);
+                tickers.put(ticker, newTicker(ticker, stock.getStockName(), stock.getPrice().doubleValue()));
+            }
+            log.warn("SimulatedMarketDataSource: sim profile active, {} tickers seeded from stocks table", tickers.size());
+        } catch (Exception e) {
+            log.warn("SimulatedMarketDataSource: could not read stocks table, tickers start from synthetic prices: {}",
+                    e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> get(String path, Map<String, String> params) {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            return delayed(CompletableFuture.failedFuture(
+                    new MarketDataException("SimulatedMarketDataSource: injected failure for " + path, 503)));
+        }
+
+        try {
+            String body;
+            if (path.endsWith("/get-quotes")) {
+                body = quotes(params.getOrDefault("symbols", ""));
+            } else if (path.endsWith("/news/list")) {
+                body = news();
+            } else {
+                return CompletableFuture.failedFuture(
+                        new MarketDataException("SimulatedMarketDataSource: no simulation for " + path, 404));
+            }
+            return delayed(CompletableFuture.completedFuture(body));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Current simulated price for a ticker, advancing its path to now. Exposed so benchmarks
+     * can read prices without going through JSON.
+     */
+    public double price(String ticker) {
+        return ticker(ticker.toUpperCase(Locale.ROOT)).advance(nanoClock.getAsLong());
+    }
+
+    private String quotes(String symbols) throws IOException {
+        long nowNanos = nanoClock.getAsLong();
+        long epochSeconds = System.currentTimeMillis() / 1000;
+
+        StringWriter out = new StringWriter(256);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("quoteResponse");
+            json.writeArrayFieldStart("result");
+            for (String symbol : symbols.split(",")) {
+                String ticker = symbol.trim().toUpperCase(Locale.ROOT);
+                if (ticker.isEmpty()) continue;
+                writeQuote(json, ticker(ticker), nowNanos, epochSeconds);
+            }
+            json.writeEndArray();
+            json.writeNullField("error");
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        return out.toString();
+    }
+
+    private void writeQuote(JsonGenerator json, SimTicker t, long nowNanos, long epochSeconds) throws IOException {
+        double price;
+        double open;
+        double high;
+        double low;
+        long volume;
+        synchronized (t) {
+            price = t.advance(nowNanos);
+            open = t.open;
+            high = t.high;
+            low = t.low;
+            volume = t.volume;
+        }
+        double change = price - t.previousClose;
+        double spread = Math.max(0.01, price * 0.0005);
+
+        json.writeStartObject();
+        json.writeStringField("symbol", t.symbol);
+        json.writeStringField("shortName", t.name);
+        json.writeStringField("quoteType", "EQUITY");
+        json.writeStringField("currency", "USD");
+        json.writeStringField("marketState", "REGULAR");
+        json.writeNumberField("regularMarketPrice", round(price));
+        json.writeNumberField("ask", round(price + spread / 2));
+        json.writeNumberField("bid", round(price - spread / 2));
+        json.writeNumberField("regularMarketChange", round(change));
+        json.writeNumberField("regularMarketChangePercent", round(change / t.previousClose * 100));
+        json.writeNumberField("regularMarketPreviousClose", round(t.previousClose));
+        json.writeNumberField("regularMarketOpen", round(open));
+        json.writeNumberField("regularMarketDayHigh", round(high));
+        json.writeNumberField("regularMarketDayLow", round(low));
+        json.writeNumberField("regularMarketVolume", volume);
+        json.writeNumberField("regularMarketTime", epochSeconds);
+        json.writeEndObject();
+    }
+
+    private String news() throws IOException {
+        List<SimTicker> universe = new ArrayList<>(tickers.values());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long nowNanos = nanoClock.getAsLong();
+
+        StringWriter out = new StringWriter(4096);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("items");
+            json.writeArrayFieldStart("result");
+            for (int i = 0; i < 20 && !universe.isEmpty(); i++) {
+                SimTicker t = universe.get(random.nextInt(universe.size()));
+                double price = t.advance(nowNanos);
+                double changePercent = (price - t.previousClose) / t.previousClose * 100;
+
+                json.writeStartObject();
+                json.writeStringField("uuid", UUID.randomUUID().toString());
+                json.writeStringField("title", String.format(HEADLINES[random.nextInt(HEADLINES.length)], t.name));
+                json.writeStringField("link", "https://example.com/sim/news/" + t.symbol.toLowerCase(Locale.ROOT) + "/" + i);
+                json.writeStringField("summary", String.format("%s (%s) is trading at %.2f, %+.2f%% on the session.",
+                        t.name, t.symbol, price, changePercent));
+                json.writeObjectFieldStart("main_image");
+                json.writeStringField("original_url", "/imgs/agrowth-graph.png");
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        return out.toString();
+    }
+
+    private SimTicker ticker(String ticker) {
+        return tickers.computeIfAbsent(ticker, t -> {
+            // deterministic 10..500 start price so repeated runs see the same universe
+            double start = 10 + Math.floorMod((long) t.hashCode() * 31 + seed, 49_000) / 100.0;
+            return newTicker(t, t + " (simulated)", start);
+        });
+    }
+
+    private SimTicker newTicker(String ticker, String name, double startPrice) {
+        return new SimTicker(ticker, name, startPrice, new SplittableRandom(seed ^ ticker.hashCode()), nanoClock.getAsLong());
+    }
+
+    private <T> CompletableFuture<T> delayed(CompletableFuture<T> result) {
+        if (latencyMs <= 0) {
+            return result;
+        }
+        return result.handleAsync((value, error) -> result,
+                        CompletableFuture.delayedExecutor(latencyMs, TimeUnit.MILLISECONDS))
+                .thenCompose(f -> f);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private final class SimTicker {
+        final String symbol;
+        final String name;
+        final double previousClose;
+        final SplittableRandom random;
+        double price;
+        double open;
+        double high;
+        double low;
+        long volume;
+        long lastNanos;
+
+        SimTicker(String symbol, String name, double startPrice, SplittableRandom random, long nowNanos) {
+            this.symbol = symbol;
+            this.name = name;
+            this.previousClose = startPrice;
+            this.random = random;
+            this.price = startPrice;
+            this.open = startPrice;
+            this.high = startPrice;
+            this.low = startPrice;
+            this.lastNanos = nowNanos;
+        }
+
+        // one exact GBM step over the elapsed (scaled) time: S *= exp((mu - sigma^2/2)dt + sigma*sqrt(dt)*Z)
+        synchronized double advance(long nowNanos) {
+            long elapsed = nowNanos - lastNanos;
+            if (elapsed <= 0) {
+                return price;
+            }
+            double dt = elapsed / 1e9 * timeScale / TRADING_SECONDS_PER_YEAR;
+            double z = random.nextGaussian();
+            price *= Math.exp((drift - volatility * volatility / 2) * dt + volatility * Math.sqrt(dt) * z);
+            high = Math.max(high, price);
+            low = Math.min(low, price);
+            volume += 1 + random.nextInt(1_000);
+            lastNanos = nowNanos;
+            return price;
+        }
+    }
+}
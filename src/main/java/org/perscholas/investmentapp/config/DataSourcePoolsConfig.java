@@ -0,0 +1,114 @@
+package org.perscholas.investmentapp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.perscholas.investmentapp.services.ReadRoutingServices;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One Hikari pool per {@link Workload} on the primary database, so a long admin delete or a
+ * background job can exhaust its own pool but never the one logins and trades draw from; plus
+ * an optional read replica pool, active when app.datasource.replica.url is set
+ * (APP_DATASOURCE_REPLICA_URL in the environment).
+ * Each workload pool takes the connection settings from spring.datasource.*, the common pool
+ * settings from spring.datasource.hikari.*, and its own sizing and timeouts from
+ * app.datasource.pools.&lt;workload&gt;.*. The replica pool takes its url and credentials from
+ * app.datasource.replica.* (credentials default to the primary's) and its pool settings from
+ * app.datasource.replica.hikari.*. Every pool is a bean, so Boot publishes hikaricp.* metrics
+ * (active, pending, acquire time, timeouts) tagged with the pool name.
+ * Everything that injects a DataSource (JPA, JdbcTemplate, Flyway) gets the routing one.
+ */
+@Configuration
+public class DataSourcePoolsConfig {
+
+    @Bean
+    public HikariDataSource interactiveDataSource(DataSourceProperties properties, Environment environment) {
+        return pool(properties, environment, Workload.INTERACTIVE);
+    }
+
+    @Bean
+    public HikariDataSource tradesDataSource(DataSourceProperties properties, Environment environment) {
+        return pool(properties, environment, Workload.TRADES);
+    }
+
+    @Bean
+    public HikariDataSource batchDataSource(DataSourceProperties properties, Environment environment) {
+        return pool(properties, environment, Workload.BATCH);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.datasource.replica", name = "url")
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${app.datasource.replica.url}") String url,
+                                              @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("interactiveDataSource") DataSource interactive,
+                                 @Qualifier("tradesDataSource") DataSource trades,
+                                 @Qualifier("batchDataSource") DataSource batch,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replica,
+                                 ReadRoutingServices readRoutingServices) {
+        Map<Workload, DataSource> pools = new EnumMap<>(Workload.class);
+        pools.put(Workload.INTERACTIVE, interactive);
+        pools.put(Workload.TRADES, trades);
+        pools.put(Workload.BATCH, batch);
+        return routing(pools, replica.getIfAvailable(), readRoutingServices);
+    }
+
+    // replica may be null
+    public static DataSource routing(Map<Workload, DataSource> pools, DataSource replica,
+                                     ReadRoutingServices readRoutingServices) {
+        if (replica != null) {
+            readRoutingServices.replicaConfigured();
+        }
+        // the target is only chosen at the first statement, after the workload is set and the
+        // transaction is marked read-only or not; the defaults are Hikari's and MySQL's, given
+        // up front so the proxy does not open a connection just to look them up
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        proxy.setTargetDataSource(new WorkloadRoutingDataSource(pools, replica, readRoutingServices));
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, Workload workload) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder binder = Binder.get(environment);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(workload.key());
+        binder.bind("app.datasource.pools." + workload.key(), Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+}
@@ -0,0 +1,84 @@
+package org.perscholas.investmentapp.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.services.ReadRoutingServices;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+
+/**
+ * Measures replica lag without needing replication-client privileges on RDS: each beat writes
+ * the current time to replica_heartbeat (Flyway V6) on the primary, and reads the row back from
+ * the replica first.
+ * The replica is as far behind as the oldest beat it has not seen yet. The lag reported is the
+ * age of that beat, or 0 when it has seen the last one written. Comparing against the previous
+ * beat, and not the one just written, keeps a replica that is only a beat interval behind from
+ * looking heartbeat-interval-ms late.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "url")
+public class ReplicaHeartbeat {
+
+    private static final String WRITE = "UPDATE replica_heartbeat SET ts = ? WHERE id = 1";
+    private static final String READ = "SELECT ts FROM replica_heartbeat WHERE id = 1";
+    // beats awaiting replication; at one a second, hours of stalled replication
+    private static final int MAX_UNSEEN = 10_000;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final ReadRoutingServices readRoutingServices;
+
+    // times written to the primary that the replica has not shown yet, oldest first
+    private final ArrayDeque<Long> unseen = new ArrayDeque<>();
+    private boolean written;
+
+    @Autowired
+    public ReplicaHeartbeat(@Qualifier("batchDataSource") DataSource primary,
+                            @Qualifier("replicaDataSource") DataSource replica,
+                            ReadRoutingServices readRoutingServices) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.readRoutingServices = readRoutingServices;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.heartbeat-interval-ms:1000}")
+    public synchronized void beat() {
+        // nothing to compare against until a beat has been written
+        if (written) {
+            try {
+                Long replicated = replica.queryForObject(READ, Long.class);
+                long seen = replicated == null ? 0 : replicated;
+                while (!unseen.isEmpty() && unseen.peekFirst() <= seen) {
+                    unseen.pollFirst();
+                }
+                // instances with skewed clocks can see a heartbeat from "the future"
+                readRoutingServices.replicaLag(unseen.isEmpty() ? 0
+                        : Math.max(0, System.currentTimeMillis() - unseen.peekFirst()));
+            } catch (DataAccessException e) {
+                readRoutingServices.replicaUnreachable(e);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            primary.update(WRITE, now);
+            written = true;
+            if (unseen.size() == MAX_UNSEEN) {
+                // keep the oldest, which is what the lag is measured from
+                unseen.pollLast();
+            }
+            unseen.addLast(now);
+        } catch (DataAccessException e) {
+            // the replica's answer is still worth having; lag just grows until the primary is back
+            log.warn("ReplicaHeartbeat: heartbeat write failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.perscholas.investmentapp.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.List;
+
+/**
+ * Hit ratio and entry count per second-level cache region, under /actuator/metrics as
+ * hibernate.cache.region.hit-ratio and hibernate.cache.region.size (tag "region").
+ */
+@Component
+@Slf4j
+public class SecondLevelCacheMetrics {
+
+    private static final List<String> ENTITY_REGIONS = List.of("stocks", "auth-groups");
+    private static final List<String> QUERY_REGIONS = List.of("stock-lookups", "auth-group-lookups");
+
+    private final Statistics statistics;
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.statistics = sessionFactory.getStatistics();
+        RegionFactory regionFactory = sessionFactory.getCache().getRegionFactory();
+        this.cacheManager = regionFactory instanceof JCacheRegionFactory jcache ? jcache.getCacheManager() : null;
+        if (cacheManager == null) {
+            log.warn("SecondLevelCacheMetrics: no JCache region factory, region sizes will not be reported");
+        }
+
+        ENTITY_REGIONS.forEach(region -> register(meterRegistry, region, false));
+        QUERY_REGIONS.forEach(region -> register(meterRegistry, region, true));
+    }
+
+    private void register(MeterRegistry meterRegistry, String region, boolean query) {
+        Gauge.builder("hibernate.cache.region.hit-ratio", this, m -> m.hitRatio(region, query))
+                .description("Share of second-level cache reads served from the region")
+                .tag("region", region)
+                .register(meterRegistry);
+        Gauge.builder("hibernate.cache.region.size", this, m -> m.size(region))
+                .description("Entries held in the second-level cache region")
+                .tag("region", region)
+                .register(meterRegistry);
+    }
+
+    private double hitRatio(String region, boolean query) {
+        CacheRegionStatistics stats = query
+                ? statistics.getQueryRegionStatistics(region)
+                : statistics.getDomainDataRegionStatistics(region);
+        if (stats == null) {
+            return Double.NaN;
+        }
+        long hits = stats.getHitCount();
+        long reads = hits + stats.getMissCount();
+        return reads == 0 ? Double.NaN : (double) hits / reads;
+    }
+
+    // JCache has no size call; the regions are small, so count on scrape
+    private double size(String region) {
+        Cache<Object, Object> cache = cacheManager == null ? null : cacheManager.getCache(region);
+        if (cache == null) {
+            return Double.NaN;
+        }
+        long entries = 0;
+        for (Cache.Entry<Object, Object> ignored : cache) {
+            entries++;
+        }
+        return entries;
+    }
+}
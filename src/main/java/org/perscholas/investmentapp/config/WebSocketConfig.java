@@ -0,0 +1,36 @@
+package org.perscholas.investmentapp.config;
+
+import org.perscholas.investmentapp.controllers.PortfolioSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.task.TaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final PortfolioSocketHandler portfolioSocketHandler;
+
+    @Autowired
+    public WebSocketConfig(PortfolioSocketHandler portfolioSocketHandler) {
+        this.portfolioSocketHandler = portfolioSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // same-origin only (the default), and under /user/** so the login session authorizes the handshake
+        registry.addHandler(portfolioSocketHandler, "/user/portfolio/live");
+    }
+
+    // @EnableWebSocket declares a TaskScheduler bean of its own (empty without SockJS), which makes
+    // Boot's scheduler back off; declaring it here keeps @Scheduled on spring.task.scheduling.*
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(TaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+}
@@ -0,0 +1,55 @@
+package org.perscholas.investmentapp.config;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The connection pool bulkhead a piece of work draws from (DataSourcePoolsConfig). Chosen with
+ * {@link WorkloadPool} on a service class or method; anything unannotated is INTERACTIVE.
+ * Only the pool of the connection a transaction opens with counts: work joining a transaction
+ * that already holds a connection keeps using it.
+ */
+public enum Workload {
+    // page rendering, logins, admin listings: short queries that a user is waiting on
+    INTERACTIVE,
+    // position writes
+    TRADES,
+    // admin bulk operations and scheduled jobs
+    BATCH;
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        return workload == null ? INTERACTIVE : workload;
+    }
+
+    // pool name and property key: app.datasource.pools.<key>.*
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    // runs work with this workload's pool, for code that is not a Spring bean method
+    public <T> T call(Supplier<T> work) {
+        Workload previous = enter();
+        try {
+            return work.get();
+        } finally {
+            exit(previous);
+        }
+    }
+
+    Workload enter() {
+        Workload previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    static void exit(Workload previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
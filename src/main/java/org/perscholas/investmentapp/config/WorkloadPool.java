@@ -0,0 +1,13 @@
+package org.perscholas.investmentapp.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// connection pool for every method of the class, or for one method (which wins over its class)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WorkloadPool {
+    Workload value();
+}
@@ -0,0 +1,41 @@
+package org.perscholas.investmentapp.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+
+/**
+ * Applies {@link WorkloadPool}. Runs outside the transaction interceptor, so a transaction
+ * started by the annotated method already opens its connection in the right pool.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class WorkloadPoolAspect {
+
+    @Around("@within(org.perscholas.investmentapp.config.WorkloadPool) "
+            + "|| @annotation(org.perscholas.investmentapp.config.WorkloadPool)")
+    public Object inPool(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        WorkloadPool pool = AnnotatedElementUtils.findMergedAnnotation(method, WorkloadPool.class);
+        if (pool == null) {
+            pool = AnnotatedElementUtils.findMergedAnnotation(joinPoint.getTarget().getClass(), WorkloadPool.class);
+        }
+        if (pool == null) {
+            return joinPoint.proceed();
+        }
+        Workload previous = pool.value().enter();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            Workload.exit(previous);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.perscholas.investmentapp.config;
+
+import org.perscholas.investmentapp.services.ReadRoutingServices;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out connections from the pool of the current {@link Workload}. Interactive read-only
+ * transactions go to the read replica instead, when one is configured and the routing services
+ * allow it. Must sit behind a LazyConnectionDataSourceProxy: transaction managers open the
+ * connection before the transaction is marked read-only.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String REPLICA = "replica";
+
+    private final boolean hasReplica;
+    private final ReadRoutingServices readRoutingServices;
+
+    // replica may be null
+    public WorkloadRoutingDataSource(Map<Workload, DataSource> pools, DataSource replica,
+                                     ReadRoutingServices readRoutingServices) {
+        this.hasReplica = replica != null;
+        this.readRoutingServices = readRoutingServices;
+        Map<Object, Object> targets = new HashMap<>(pools);
+        if (hasReplica) {
+            targets.put(REPLICA, replica);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(pools.get(Workload.INTERACTIVE));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Workload workload = Workload.current();
+        if (workload == Workload.INTERACTIVE && hasReplica
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && readRoutingServices.routeToReplica()) {
+            return REPLICA;
+        }
+        return workload;
+    }
+}
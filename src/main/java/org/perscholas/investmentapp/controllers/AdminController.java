@@ -2,25 +2,26 @@ package org.perscholas.investmentapp.controllers;
 
 import lombok.extern.slf4j.Slf4j;
 import org.perscholas.investmentapp.dao.*;
-import org.perscholas.investmentapp.models.AuthGroup;
-import org.perscholas.investmentapp.models.Possession;
+import org.perscholas.investmentapp.dto.*;
 import org.perscholas.investmentapp.models.Stock;
 import org.perscholas.investmentapp.models.User;
+import org.perscholas.investmentapp.services.AdminListingServices;
+import org.perscholas.investmentapp.services.CascadeDeleteServices;
+import org.perscholas.investmentapp.services.EntityCacheServices;
 import org.perscholas.investmentapp.services.PossessionServices;
 import org.perscholas.investmentapp.services.StockServices;
 import org.perscholas.investmentapp.services.UserServices;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
-import java.util.List;
 import java.util.Optional;
 
 @Controller
 @Slf4j
-@SessionAttributes(value = {"currentUser"})
 @RequestMapping("/admin")
 public class AdminController {
     private final static String REDIRECT_STOCKS_PAGE = "redirect:/admin/stocks";
@@ -33,12 +34,18 @@ public class AdminController {
     private final UserServices userServices;
     private final StockServices stockServices;
     private final PossessionServices possessionServices;
+    private final CascadeDeleteServices cascadeDeleteServices;
+    private final EntityCacheServices entityCacheServices;
+    private final AdminListingServices adminListingServices;
 
     @Autowired
     public AdminController(AuthGroupRepoI authGroupRepoI, AddressRepoI addressRepoI,
                            UserRepoI userRepoI, StockRepoI stockRepoI,
                            PossessionRepoI possessionRepoI, UserServices userServices,
-                           StockServices stockServices, PossessionServices possessionServices) {
+                           StockServices stockServices, PossessionServices possessionServices,
+                           CascadeDeleteServices cascadeDeleteServices,
+                           EntityCacheServices entityCacheServices,
+                           AdminListingServices adminListingServices) {
         this.authGroupRepoI = authGroupRepoI;
         this.addressRepoI = addressRepoI;
         this.userRepoI = userRepoI;
@@ -47,20 +54,45 @@ public class AdminController {
         this.userServices = userServices;
         this.stockServices = stockServices;
         this.possessionServices = possessionServices;
+        this.cascadeDeleteServices = cascadeDeleteServices;
+        this.entityCacheServices = entityCacheServices;
+        this.adminListingServices = adminListingServices;
     }
 
+    // one keyset page at a time; sort, filters and the "after" cursor come from the query string
     @GetMapping("/users")
-    public String getUsers(@ModelAttribute("currentUser")User user,
+    public String getUsers(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
+                           @ModelAttribute("filter") UserListingFilterDTO filter,
                            Model model) {
-        List<User> usersList =
-                userRepoI.findAll();
+        KeysetPageDTO<AdminUserRowDTO> usersPage;
+        try {
+            usersPage = adminListingServices.users(filter);
+        } catch (IllegalArgumentException e) {
+            log.warn("/admin/users: {}, showing the first page", e.getMessage());
+            filter = new UserListingFilterDTO();
+            model.addAttribute("filter", filter);
+            usersPage = adminListingServices.users(filter);
+        }
 
-        model.addAttribute("allUsers", usersList);
+        model.addAttribute("allUsers", usersPage.getItems());
+        model.addAttribute("usersPage", usersPage);
         model.addAttribute("editUser", new User());
 
         return "adminusers";
     }
 
+    // the same pages as JSON, for the admin table to load more rows in place
+    @GetMapping("/users/page")
+    @ResponseBody
+    public ResponseEntity<KeysetPageDTO<AdminUserRowDTO>> getUsersPage(UserListingFilterDTO filter) {
+        try {
+            return ResponseEntity.ok(adminListingServices.users(filter));
+        } catch (IllegalArgumentException e) {
+            log.warn("/admin/users/page rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PostMapping("/users/edit")
     public String modifyUser(@ModelAttribute("editUser") User userEdit,
                              @RequestParam("user-email") String email,
@@ -88,31 +120,12 @@ public class AdminController {
                              @PathVariable(name="email") String email) throws Exception {
         if (email != null) {
             log.warn("/admin/users/delete: delete user has initialized");
-            log.warn("/admin/users/delete: user with email " + email +
-                    "deleted");
-            User user = userRepoI.findByEmail(email)
-                    .orElseThrow(() -> new Exception("AdminController: user not found: " + email));
-            
 
-            // deletes all possessions, to get rid of foreign keys
-            Optional<List<Possession>> userPossessions =
-                    possessionRepoI.findByUser(user);
-            if (userPossessions.isPresent()) {
-                List<Possession> possessions = userPossessions.get();
-                
-                for (Possession p : possessions) {
-                    userServices.deletePossesionToUser(user.getEmail(), p.getId());
-                }
-            }
-
-            List<AuthGroup> groups = authGroupRepoI.findByEmail(user.getEmail());
-            if (groups == null || groups.isEmpty()) {
-                throw new Exception("AdminController: no AuthGroup found for email: " + user.getEmail());
-            }
-            AuthGroup userAuth = groups.get(0);
-
-            authGroupRepoI.delete(userAuth);
-            userRepoI.delete(user);
+            // positions, roles, address and user as a few bulk deletes
+            DeletionResultDTO result = cascadeDeleteServices.deleteUser(email);
+
+            log.warn("/admin/users/delete: user with email " + email +
+                    " deleted with " + result.getPossessions() + " possessions");
         } else {
             throw new Exception("/admin/users/delete: email " + email +
                     " was not valid");
@@ -121,20 +134,42 @@ public class AdminController {
     }
 
     @GetMapping("/stocks")
-    public String getStocks(@ModelAttribute("currentUser")User user,
-                           Model model) {
-        List<Stock> allStocks =
-                stockRepoI.findAll();
+    public String getStocks(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
+                            @ModelAttribute("filter") StockListingFilterDTO filter,
+                            Model model) {
+        KeysetPageDTO<AdminStockRowDTO> stocksPage;
+        try {
+            stocksPage = adminListingServices.stocks(filter);
+        } catch (IllegalArgumentException e) {
+            log.warn("/admin/stocks: {}, showing the first page", e.getMessage());
+            filter = new StockListingFilterDTO();
+            model.addAttribute("filter", filter);
+            stocksPage = adminListingServices.stocks(filter);
+        }
 
-        model.addAttribute("allStocks", allStocks);
+        model.addAttribute("allStocks", stocksPage.getItems());
+        model.addAttribute("stocksPage", stocksPage);
         model.addAttribute("newStock", new Stock());
 
         return "adminstocks";
     }
 
+    @GetMapping("/stocks/page")
+    @ResponseBody
+    public ResponseEntity<KeysetPageDTO<AdminStockRowDTO>> getStocksPage(StockListingFilterDTO filter) {
+        try {
+            return ResponseEntity.ok(adminListingServices.stocks(filter));
+        } catch (IllegalArgumentException e) {
+            log.warn("/admin/stocks/page rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PostMapping("/stocks/add")
     public String addStocks(@ModelAttribute("newStock") Stock stock) {
         stockRepoI.save(stock);
+        // a cached "no such ticker" lookup must not outlive the new stock
+        entityCacheServices.evictStockLookups();
         return REDIRECT_STOCKS_PAGE;
     }
 
@@ -155,6 +190,7 @@ public class AdminController {
             originalStock.setDescription(description);
 
             stockRepoI.save(originalStock);
+            entityCacheServices.evictStock(originalStock.getId());
 
             return REDIRECT_STOCKS_PAGE;
         } else {
@@ -167,33 +203,13 @@ public class AdminController {
     @PostMapping("/stocks/delete/{ticker}")
     public String deleteStock(
             @PathVariable(name="ticker") String ticker) throws Exception {
-        Optional<Stock> stockOptional = stockRepoI.findByTicker(ticker);
-        if (stockOptional.isPresent()) {
-            log.warn("/admin/stock/delete: delete stock has initialized");
-            Stock stock = stockOptional.get();            
-
-            // deletes all possessions, to get rid of foreign keys
-            Optional<List<Possession>> stockUsage =
-                    possessionRepoI.findByStock(stock);
-
-            if (stockUsage.isPresent()) {
-                if (stockUsage.isEmpty()) {
-                    throw new Exception("AdminController: stock usage lookup failed / empty");
-                }
-                List<Possession> possessions = stockUsage.get();
-                
-                for (Possession p : possessions) {
-                    userServices.deletePossesionToUser(p.getUser().getEmail(), p.getId());
-                }
-            }
-
-            stockRepoI.delete(stock);
-            log.warn("/admin/stock/delete: stock with ticker " + ticker + " " +
-                    "was deleted");
-        } else {
-            throw new Exception("/admin/stock/delete: stock with ticker " + ticker +
-                    " was not deleted");
-        }
+        log.warn("/admin/stock/delete: delete stock has initialized");
+
+        // every holder's position goes in chunked bulk deletes, then the stock
+        DeletionResultDTO result = cascadeDeleteServices.deleteStock(ticker);
+
+        log.warn("/admin/stock/delete: stock with ticker " + ticker + " " +
+                "was deleted with " + result.getPossessions() + " possessions");
         return REDIRECT_STOCKS_PAGE;
     }
 
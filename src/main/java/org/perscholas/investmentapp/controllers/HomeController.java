@@ -21,7 +21,6 @@ import java.util.List;
 
 @Controller
 @Slf4j
-@SessionAttributes("currentUser")
 public class HomeController {
     private final AddressRepoI addressRepoI;
     private final UserRepoI userRepoI;
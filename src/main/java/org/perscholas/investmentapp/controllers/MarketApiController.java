@@ -1,71 +1,94 @@
 package org.perscholas.investmentapp.controllers;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.perscholas.investmentapp.client.MarketDataClient;
+import org.perscholas.investmentapp.services.MarketNewsServices;
+import org.perscholas.investmentapp.services.MarketQuoteServices;
+import org.perscholas.investmentapp.services.MarketStreamServices;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/market")
 public class MarketApiController {
 
-    @Value("${market.api.key}")
-    private String apiKey;
+    private final MarketQuoteServices marketQuoteServices;
+    private final MarketNewsServices marketNewsServices;
+    private final MarketStreamServices marketStreamServices;
 
-    @Value("${market.api.host:apidojo-yahoo-finance-v1.p.rapidapi.com}")
-    private String apiHost;
-
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    public MarketApiController(MarketQuoteServices marketQuoteServices,
+                               MarketNewsServices marketNewsServices,
+                               MarketStreamServices marketStreamServices) {
+        this.marketQuoteServices = marketQuoteServices;
+        this.marketNewsServices = marketNewsServices;
+        this.marketStreamServices = marketStreamServices;
+    }
 
-    // existing: quotes proxy
+    // quotes proxy, served per ticker from MarketQuoteServices' cache
+    // returns a future so the Tomcat thread is released while the upstream answers
     @GetMapping("/quotes")
-    public ResponseEntity<String> getQuotes(
+    public CompletableFuture<ResponseEntity<String>> getQuotes(
             @RequestParam(defaultValue = "US") String region,
             @RequestParam String symbols
     ) {
-        String url = "https://apidojo-yahoo-finance-v1.p.rapidapi.com/market/v2/get-quotes"
-                + "?region=" + region
-                + "&symbols=" + symbols;
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("X-RapidAPI-Key", apiKey);
-        headers.set("X-RapidAPI-Host", apiHost);
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-
+        CompletableFuture<String> quotes;
         try {
-            return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
-        } catch (Exception e) {
-            log.error("MarketApiController.getQuotes failed: region={}, symbols={}", region, symbols, e);
-            return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
-                    .body("{\"error\":\"quotes request failed\"}");
+            quotes = marketQuoteServices.getQuotes(region, symbols);
+        } catch (IllegalArgumentException e) {
+            log.warn("MarketApiController.getQuotes rejected: {}", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body("{\"error\":\"unsupported region\"}"));
         }
+        return quotes
+                .thenApply(body -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(body))
+                .exceptionally(e -> {
+                    log.warn("MarketApiController.getQuotes failed: region={}, symbols={}: {}",
+                            region, symbols, MarketDataClient.describe(e));
+                    return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                            .body("{\"error\":\"quotes request failed\"}");
+                });
     }
 
-    // add: news proxy (this fixes your 404)
+    // news proxy, answered from MarketNewsServices' in-memory copy (trimmed to what index.js renders)
     @GetMapping("/news")
-    public ResponseEntity<String> getNews(
+    public CompletableFuture<ResponseEntity<String>> getNews(
             @RequestParam(defaultValue = "generalnews") String category,
             @RequestParam(defaultValue = "US") String region
     ) {
-        String url = "https://apidojo-yahoo-finance-v1.p.rapidapi.com/news/list"
-                + "?category=" + category
-                + "&region=" + region;
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("X-RapidAPI-Key", apiKey);
-        headers.set("X-RapidAPI-Host", apiHost);
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        return marketNewsServices.getNews(category, region)
+                .thenApply(body -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(body))
+                .exceptionally(e -> {
+                    log.warn("MarketApiController.getNews failed: category={}, region={}: {}",
+                            category, region, MarketDataClient.describe(e));
+                    return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                            .body("{\"error\":\"news request failed\"}");
+                });
+    }
 
+    // SSE quote stream: pushes "quotes" events for the subscribed symbols as the shared poller sees changes
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamQuotes(
+            @RequestParam(defaultValue = "US") String region,
+            @RequestParam String symbols
+    ) {
         try {
-            return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
-        } catch (Exception e) {
-            log.error("MarketApiController.getNews failed: category={}, region={}", category, region, e);
-            return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
-                    .body("{\"error\":\"news request failed\"}");
+            return ResponseEntity.ok(marketStreamServices.subscribe(region, symbols));
+        } catch (IllegalArgumentException e) {
+            log.warn("MarketApiController.streamQuotes rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("MarketApiController.streamQuotes rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
     }
 }
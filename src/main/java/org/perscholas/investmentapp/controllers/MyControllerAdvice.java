@@ -2,7 +2,7 @@ package org.perscholas.investmentapp.controllers;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.services.CurrentUserServices;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -10,16 +10,14 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.servlet.ModelAndView;
 
-import java.security.Principal;
-
 @ControllerAdvice
 @Slf4j
 public class MyControllerAdvice {
 
-    private final UserRepoI userRepoI;
+    private final CurrentUserServices currentUserServices;
 
-    public MyControllerAdvice(UserRepoI userRepoI) {
-        this.userRepoI = userRepoI;
+    public MyControllerAdvice(CurrentUserServices currentUserServices) {
+        this.currentUserServices = currentUserServices;
     }
 
     // Only handle access denied here (permission issues)
@@ -29,16 +27,13 @@ public class MyControllerAdvice {
         return new ModelAndView("redirect:/403");
     }
 
-    // Put authenticated user into the MODEL each request
-    // (works fine with your current approach; avoids stale session user)
+    // Put the authenticated user's cached view into the MODEL each request
+    // (no query unless the user changed since it was cached)
     @ModelAttribute
     public void loggedInUser(Model model, HttpServletRequest request) {
-        Principal p = request.getUserPrincipal();
-        if (p == null) return;
-
-        userRepoI.findByEmail(p.getName()).ifPresent(user -> {
+        currentUserServices.resolve(request).ifPresent(user -> {
             model.addAttribute("currentUser", user);
-            log.warn("MyControllerAdvice: currentUser model attr = {}", user.getEmail());
+            log.debug("MyControllerAdvice: currentUser model attr = {}", user.getEmail());
         });
     }
 }
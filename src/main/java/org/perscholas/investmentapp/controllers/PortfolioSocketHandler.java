@@ -0,0 +1,55 @@
+package org.perscholas.investmentapp.controllers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.security.AppUserPrincipal;
+import org.perscholas.investmentapp.services.PortfolioPushServices;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.security.Principal;
+
+/**
+ * /user/portfolio/live: push-only, the client never has to send anything.
+ * The handshake is an ordinary request under /user/**, so MySecurityConfig has already checked
+ * the login session; the session's principal says whose portfolio to push.
+ */
+@Component
+@Slf4j
+public class PortfolioSocketHandler extends TextWebSocketHandler {
+
+    private final PortfolioPushServices portfolioPushServices;
+
+    @Autowired
+    public PortfolioSocketHandler(PortfolioPushServices portfolioPushServices) {
+        this.portfolioPushServices = portfolioPushServices;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Integer userId = userId(session.getPrincipal());
+        if (userId == null) {
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        if (!portfolioPushServices.open(session, userId)) {
+            log.warn("PortfolioSocketHandler: session limit reached, refusing user {}", userId);
+            session.close(CloseStatus.SERVICE_OVERLOAD);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        portfolioPushServices.close(session);
+    }
+
+    private static Integer userId(Principal principal) {
+        if (principal instanceof Authentication auth && auth.getPrincipal() instanceof AppUserPrincipal user) {
+            return user.getCurrentUser().getId();
+        }
+        return null;
+    }
+}
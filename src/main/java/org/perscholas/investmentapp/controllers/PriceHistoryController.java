@@ -0,0 +1,64 @@
+package org.perscholas.investmentapp.controllers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dto.PriceHistoryDTO;
+import org.perscholas.investmentapp.services.PriceHistoryServices;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/prices")
+public class PriceHistoryController {
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private final PriceHistoryServices priceHistoryServices;
+
+    @Autowired
+    public PriceHistoryController(PriceHistoryServices priceHistoryServices) {
+        this.priceHistoryServices = priceHistoryServices;
+    }
+
+    // OHLCV bars for [from, to); from/to are epoch millis, ISO instants or ISO dates (UTC), default the last day
+    // interval is e.g. 1m, 5m, 1h, 1d, 1w or tick; omitted picks one from the range
+    @GetMapping("/{ticker}")
+    public ResponseEntity<PriceHistoryDTO> getHistory(
+            @PathVariable String ticker,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String interval
+    ) {
+        try {
+            long end = to == null ? System.currentTimeMillis() : parseTime(to);
+            long start = from == null ? end - DAY_MS : parseTime(from);
+            return priceHistoryServices.history(ticker, start, end, interval)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            log.warn("PriceHistoryController.getHistory rejected: ticker={}: {}", ticker, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static long parseTime(String value) {
+        String v = value.trim();
+        try {
+            if (v.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(v);
+            }
+            if (v.length() == 10) {
+                return LocalDate.parse(v).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            }
+            return Instant.parse(v).toEpochMilli();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("bad time: " + value);
+        }
+    }
+}
@@ -1,27 +1,43 @@
 package org.perscholas.investmentapp.controllers;
 
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.perscholas.investmentapp.dao.*;
+import org.perscholas.investmentapp.dto.BacktestResultDTO;
+import org.perscholas.investmentapp.dto.CurrentUserDTO;
+import org.perscholas.investmentapp.dto.LeaderboardDTO;
+import org.perscholas.investmentapp.dto.LeaderboardOrder;
+import org.perscholas.investmentapp.dto.PortfolioRiskDTO;
+import org.perscholas.investmentapp.dto.PortfolioValuationDTO;
 import org.perscholas.investmentapp.dto.StockDTO;
+import org.perscholas.investmentapp.dto.TradeMode;
+import org.perscholas.investmentapp.dto.TradeRequestDTO;
+import org.perscholas.investmentapp.dto.TradeResultDTO;
 import org.perscholas.investmentapp.models.*;
+import org.perscholas.investmentapp.services.BacktestServices;
+import org.perscholas.investmentapp.services.EntityCacheServices;
+import org.perscholas.investmentapp.services.LeaderboardServices;
+import org.perscholas.investmentapp.services.PortfolioRiskServices;
+import org.perscholas.investmentapp.services.PortfolioValuationServices;
 import org.perscholas.investmentapp.services.PossessionServices;
 import org.perscholas.investmentapp.services.StockServices;
 import org.perscholas.investmentapp.services.UserServices;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
 
 @Controller
 @Slf4j
-@SessionAttributes(value = {"currentUser"})   // NOTE: keeping this since your flow relies on it
 @RequestMapping("/user")
 class UserController {
 
@@ -34,13 +50,23 @@ class UserController {
     private final UserServices userServices;
     private final StockServices stockServices;
     private final PossessionServices possessionServices;
+    private final EntityCacheServices entityCacheServices;
+    private final PortfolioValuationServices portfolioValuationServices;
+    private final LeaderboardServices leaderboardServices;
+    private final PortfolioRiskServices portfolioRiskServices;
+    private final BacktestServices backtestServices;
 
     @Autowired
     public UserController(AddressRepoI addressRepoI, UserRepoI userRepoI,
                           StockRepoI stockRepoI, PossessionRepoI possessionRepoI,
                           UserServices userServices, StockServices stockServices,
                           PossessionServices possessionServices,
-                          AuthGroupRepoI authGroupRepoI) {
+                          AuthGroupRepoI authGroupRepoI,
+                          EntityCacheServices entityCacheServices,
+                          PortfolioValuationServices portfolioValuationServices,
+                          LeaderboardServices leaderboardServices,
+                          PortfolioRiskServices portfolioRiskServices,
+                          BacktestServices backtestServices) {
         this.addressRepoI = addressRepoI;
         this.userRepoI = userRepoI;
         this.stockRepoI = stockRepoI;
@@ -49,6 +75,11 @@ class UserController {
         this.stockServices = stockServices;
         this.possessionServices = possessionServices;
         this.authGroupRepoI = authGroupRepoI;
+        this.entityCacheServices = entityCacheServices;
+        this.portfolioValuationServices = portfolioValuationServices;
+        this.leaderboardServices = leaderboardServices;
+        this.portfolioRiskServices = portfolioRiskServices;
+        this.backtestServices = backtestServices;
     }
 
     // Helper: always prefer principal email for DB writes (prevents session/currentUser drift)
@@ -59,12 +90,10 @@ class UserController {
     }
 
     @GetMapping("/dashboard")
-    public String getUserWithID(@ModelAttribute("currentUser") User user,
-                                Model model,
-                                HttpSession http) throws Exception {
+    public String getUserWithID(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
+                                Model model) throws Exception {
 
         log.warn("dashboard(): currentUser model attr = {}", user);
-        log.warn("dashboard(): session currentUser attr = {}", http.getAttribute("currentUser"));
 
         if (user != null) {
             List<StockDTO> allStocks = stockServices.allStocks();
@@ -72,6 +101,8 @@ class UserController {
 
             List<Possession> userPortfolio = userServices.retrievePortfolio(user.getEmail());
             model.addAttribute("userPortfolio", userPortfolio);
+
+            model.addAttribute("leaderboard", leaderboardServices.leaderboard(user.getId(), LeaderboardOrder.VALUE, 10));
         } else {
             throw new Exception("/user/dashboard: currentUser was null");
         }
@@ -80,35 +111,37 @@ class UserController {
     }
 
     @PostMapping("/dashboard/addstock")
-    public String addStock(@ModelAttribute("currentUser") User user,
+    public String addStock(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
                            @RequestParam("ticker") String ticker,
                            @RequestParam("shares") double shares,
-                           HttpServletRequest request) throws Exception {
+                           @RequestParam(name = "mode", defaultValue = "SET") TradeMode mode) throws Exception {
 
         log.warn("/user/dashboard/addstock: add stock has initialized");
         log.warn("/user/dashboard/addstock: currentUser={}", user);
         log.warn("/user/dashboard/addstock: currentUserEmail={}", (user != null ? user.getEmail() : "null"));
 
-        // ✅ FIX: Don't do stockRepoI.findByTicker(ticker).get()
-        // ✅ FIX: Don't build Possession with detached session entities
-        String userEmail = requireUserEmail(request);
-        possessionServices.addOrUpdatePosition(userEmail, ticker, shares);
+        if (user == null) {
+            throw new Exception("/user/dashboard/addstock: currentUser was null");
+        }
+        // one upsert keyed on the session user's id; concurrent submits cannot collide
+        if (!possessionServices.trade(user.getId(), ticker, mode, shares)) {
+            log.warn("/user/dashboard/addstock: sell of {} {} rejected, position too small", shares, ticker);
+        }
 
-        log.warn("/user/dashboard/addstock: stock added/updated for user {}", userEmail);
+        log.warn("/user/dashboard/addstock: stock added/updated for user {}", user.getEmail());
         return "redirect:/user/dashboard";
     }
 
     @GetMapping("/portfolio")
-    public String portfolio(@ModelAttribute("currentUser") User user,
-                            Model model,
-                            HttpSession http) throws Exception {
+    public String portfolio(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
+                            Model model) throws Exception {
 
-        log.warn("/user/portfolio: session currentUser attr = {}", http.getAttribute("currentUser"));
         log.warn("/user/portfolio: currentUser model attr email = {}", (user != null ? user.getEmail() : "null"));
 
         if (user != null) {
             List<Possession> userPortfolio = userServices.retrievePortfolio(user.getEmail());
             model.addAttribute("userPortfolio", userPortfolio);
+            model.addAttribute("valuation", portfolioValuationServices.valuation(user.getId()));
         } else {
             throw new Exception("/user/portfolio: currentUser was null");
         }
@@ -116,31 +149,108 @@ class UserController {
         return "userportfolio";
     }
 
+    // value, daily P&L and weights from the in-memory valuation engine; no database read
+    @GetMapping("/portfolio/valuation")
+    @ResponseBody
+    public PortfolioValuationDTO valuation(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user) throws Exception {
+        if (user == null) {
+            throw new Exception("/user/portfolio/valuation: currentUser was null");
+        }
+        return portfolioValuationServices.valuation(user.getId());
+    }
+
+    // volatility, correlation and Monte Carlo VaR over the closed daily bars; cached until positions or bars change
+    @GetMapping("/portfolio/risk")
+    @ResponseBody
+    public PortfolioRiskDTO risk(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user) throws Exception {
+        if (user == null) {
+            throw new Exception("/user/portfolio/risk: currentUser was null");
+        }
+        return portfolioRiskServices.risk(user.getId());
+    }
+
+    // the current mix replayed over daily closes (UTC days, both inclusive; default all history)
+    @GetMapping("/portfolio/backtest")
+    @ResponseBody
+    public ResponseEntity<BacktestResultDTO> backtest(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
+                                                      @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                      @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                      @RequestParam(name = "rebalanceDays", defaultValue = "21") int rebalanceDays,
+                                                      @RequestParam(name = "initial", required = false) Double initial) throws Exception {
+        if (user == null) {
+            throw new Exception("/user/portfolio/backtest: currentUser was null");
+        }
+        long start = from == null ? 0 : from.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long end = to == null ? System.currentTimeMillis()
+                : to.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        try {
+            return ResponseEntity.ok(backtestServices.backtest(user.getId(), start, end, rebalanceDays, initial));
+        } catch (IllegalArgumentException e) {
+            log.warn("/user/portfolio/backtest rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // top portfolios by value or daily return, and where the user stands; from memory, no ORDER BY
+    @GetMapping("/leaderboard")
+    @ResponseBody
+    public LeaderboardDTO leaderboard(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
+                                      @RequestParam(name = "by", defaultValue = "VALUE") LeaderboardOrder order,
+                                      @RequestParam(name = "limit", defaultValue = "10") int limit) throws Exception {
+        if (user == null) {
+            throw new Exception("/user/leaderboard: currentUser was null");
+        }
+        return leaderboardServices.leaderboard(user.getId(), order, limit);
+    }
+
     // form is done on modal
     @PostMapping("/portfolio/edit")
-    public String editPossession(@ModelAttribute("currentUser") User user,
+    public String editPossession(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
                                  @RequestParam("ticker") String ticker,
                                  @RequestParam("shares") double shares,
-                                 HttpServletRequest request) throws Exception {
+                                 @RequestParam(name = "mode", defaultValue = "SET") TradeMode mode) throws Exception {
 
         log.warn("/user/portfolio/edit: edit possession has initialized");
         log.warn("/user/portfolio/edit: currentUser={}", user);
         log.warn("/user/portfolio/edit: currentUserEmail={}", (user != null ? user.getEmail() : "null"));
 
-        // ✅ FIX: same safe flow as addStock
-        String userEmail = requireUserEmail(request);
-        possessionServices.addOrUpdatePosition(userEmail, ticker, shares);
+        if (user == null) {
+            throw new Exception("/user/portfolio/edit: currentUser was null");
+        }
+        // same single-statement path as addStock
+        if (!possessionServices.trade(user.getId(), ticker, mode, shares)) {
+            log.warn("/user/portfolio/edit: sell of {} {} rejected, position too small", shares, ticker);
+        }
 
-        log.warn("/user/portfolio/edit: possession updated for {}", userEmail);
+        log.warn("/user/portfolio/edit: possession updated for {}", user.getEmail());
         return "redirect:/user/portfolio";
     }
 
+    // rebalance: a JSON list of {ticker, shares, mode} applied in one transaction; results in request order
+    @PostMapping("/portfolio/batch")
+    @ResponseBody
+    public ResponseEntity<List<TradeResultDTO>> batchTrade(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
+                                                           @RequestBody List<TradeRequestDTO> trades) throws Exception {
+        if (user == null) {
+            throw new Exception("/user/portfolio/batch: currentUser was null");
+        }
+        if (trades.size() > PossessionServices.MAX_BATCH) {
+            log.warn("/user/portfolio/batch: {} trades rejected, limit is {}", trades.size(), PossessionServices.MAX_BATCH);
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<TradeResultDTO> results = possessionServices.tradeBatch(user.getId(), trades);
+
+        log.warn("/user/portfolio/batch: {} trades for {}", trades.size(), user.getEmail());
+        return ResponseEntity.ok(results);
+    }
+
     /**
      * ✅ KEEP: your existing endpoint so the website still works:
      * POST /user/portfolio/delete/{ticker}
      */
     @PostMapping("/portfolio/delete/{ticker}")
-    public String deletePossession(@ModelAttribute("currentUser") User user,
+    public String deletePossession(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
                                    @PathVariable(name = "ticker") String ticker,
                                    HttpServletRequest request) throws Exception {
 
@@ -163,7 +273,7 @@ class UserController {
     }
 
     @GetMapping("/account")
-    public String account(@ModelAttribute("currentUser") User user,
+    public String account(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
                           Model model) throws Exception {
 
         if (user != null) {
@@ -192,7 +302,7 @@ class UserController {
     }
 
     @PostMapping("/account/edit")
-    public String editAccount(@ModelAttribute("currentUser") User user,
+    public String editAccount(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
                               @Valid @ModelAttribute("editUser") User editUser,
                               BindingResult bindingResult,
                               HttpServletRequest request) throws Exception {
@@ -220,16 +330,12 @@ class UserController {
             AuthGroup userAuth = authGroupList.get(0);
             userAuth.setEmail(editUser.getEmail());
             authGroupRepoI.saveAndFlush(userAuth);
+            entityCacheServices.evictAuthGroups(principalUser.getEmail());
 
+            // also refreshes the cached current user
             editUser = userServices.createOrUpdate(principalUser, editUser);
 
-            // ✅ FIX: keep session user in sync (you had editUser.getLastName() before)
-            user.setFirstName(editUser.getFirstName());
-            user.setLastName(editUser.getLastName());
-            user.setEmail(editUser.getEmail());
-
             log.warn("/user/account/edit: User {} was updated", editUser.getEmail());
-            log.warn("/user/account/edit: Session user now {}", user.getEmail());
 
         } else {
             throw new Exception("/user/account/edit: currentUser is not logged in");
@@ -239,9 +345,10 @@ class UserController {
     }
 
     @PostMapping("/account/edit_address")
-    public String editAddress(@ModelAttribute("currentUser") User user,
+    public String editAddress(@ModelAttribute(name = "currentUser", binding = false) CurrentUserDTO user,
                               @Valid @ModelAttribute("editAddress") Address editAddress,
-                              BindingResult bindingResult) throws Exception {
+                              BindingResult bindingResult,
+                              HttpServletRequest request) throws Exception {
 
         if (bindingResult.hasErrors()) {
             log.debug(bindingResult.getAllErrors().toString());
@@ -250,7 +357,10 @@ class UserController {
 
         if (editAddress != null && user != null) {
             log.warn("/user/account/edit_address: editAddress is not null, info is {} id: {}", editAddress, editAddress.getId());
-            userServices.addOrUpdateAddress(editAddress, user);
+            String userEmail = requireUserEmail(request);
+            User principalUser = userRepoI.findByEmail(userEmail)
+                    .orElseThrow(() -> new Exception("/user/account/edit_address: principal user not found: " + userEmail));
+            userServices.addOrUpdateAddress(editAddress, principalUser);
         } else {
             throw new Exception("/user/account/edit_address: editAddress was null");
         }
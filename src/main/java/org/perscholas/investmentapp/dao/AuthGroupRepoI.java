@@ -1,10 +1,16 @@
 package org.perscholas.investmentapp.dao;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.perscholas.investmentapp.models.AuthGroup;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 
 public interface AuthGroupRepoI extends JpaRepository<AuthGroup,Integer> {
+    // login and account pages; rows come from the "auth-groups" region
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "auth-group-lookups")})
     List<AuthGroup> findByEmail(String email);
 }
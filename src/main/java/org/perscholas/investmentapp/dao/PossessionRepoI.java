@@ -1,23 +1,40 @@
 package org.perscholas.investmentapp.dao;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.perscholas.investmentapp.dto.PositionRowDTO;
 import org.perscholas.investmentapp.models.Possession;
 import org.perscholas.investmentapp.models.Stock;
 import org.perscholas.investmentapp.models.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 public interface PossessionRepoI extends JpaRepository<Possession,Integer> {
     Optional<Possession> findByUserAndStock(User user, Stock stock);
+    // deleting a user only needs the possession ids
     Optional<List<Possession>> findByUser(User user);
 
+    // deleting a stock reads each holder's email
+    @EntityGraph("Possession.user")
     Optional<List<Possession>> findByStock(Stock stock);
 
-    @Query("select p from Possession p join fetch p.stock where p.user.email = :email")
+    // portfolio page: positions with their stock in one select
+    @EntityGraph("Possession.stock")
+    @Query("select p from Possession p where p.user.email = :email")
     List<Possession> findByUserEmailWithStock(@Param("email") String email);
 
+    // valuation engine rebuild: every position as a flat row; MIN_VALUE makes MySQL stream instead of buffering
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("select new org.perscholas.investmentapp.dto.PositionRowDTO(p.user.id, s.ticker, p.shares, s.price) "
+            + "from Possession p join p.stock s")
+    Stream<PositionRowDTO> streamAllPositionRows();
+
 }
@@ -1,10 +1,24 @@
 package org.perscholas.investmentapp.dao;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.perscholas.investmentapp.dto.StockDTO;
 import org.perscholas.investmentapp.models.Stock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface StockRepoI extends JpaRepository<Stock, Integer> {
+    // query cache keeps ticker -> id, the row itself comes from the "stocks" region
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "stock-lookups")})
     Optional<Stock> findByTicker(String ticker);
+
+    // dashboard and admin listings: only the four displayed columns, no entities in the persistence context
+    @Query("select new org.perscholas.investmentapp.dto.StockDTO(s.stockName, s.ticker, s.price, s.description) " +
+            "from Stock s order by s.id")
+    List<StockDTO> findAllStockDTOs();
 }
@@ -1,15 +1,38 @@
 package org.perscholas.investmentapp.dao;
 
+import org.perscholas.investmentapp.dto.LeaderboardEntryDTO;
+import org.perscholas.investmentapp.dto.UserDTO;
 import org.perscholas.investmentapp.models.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepoI extends JpaRepository<User,Integer> {
 
     Optional<User> findByEmailAndPassword(String email, String password);
 
+    // principal lookup: the address is shown on the account and dashboard pages
+    @EntityGraph("User.address")
     Optional<User> findByEmail(String email);
 
     Optional<User> findByEmailAllIgnoreCase(String email);
+
+    // current user reload after a change, by id since the email may be the one that changed
+    @EntityGraph("User.address")
+    Optional<User> findWithAddressById(Integer id);
+
+    // admin listing: one select, no possessions
+    @Query("select new org.perscholas.investmentapp.dto.UserDTO(u.firstName, u.lastName, u.email, a) " +
+            "from User u left join u.address a order by u.id")
+    List<UserDTO> findAllUserDTOs();
+
+    // leaderboard rows: the display name only, by primary key
+    @Query("select new org.perscholas.investmentapp.dto.LeaderboardEntryDTO(u.id, " +
+            "concat(u.firstName, ' ', substring(u.lastName, 1, 1), '.')) from User u where u.id in :ids")
+    List<LeaderboardEntryDTO> findLeaderboardNames(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,24 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.Value;
+import org.perscholas.investmentapp.models.Address;
+
+import java.io.Serializable;
+
+@Value
+public class AddressDTO implements Serializable {
+    int id;
+    String street;
+    String state;
+    int zipcode;
+
+    public static AddressDTO of(Address address) {
+        return address == null ? null
+                : new AddressDTO(address.getId(), address.getStreet(), address.getState(), address.getZipcode());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %s, %s", street, state, zipcode);
+    }
+}
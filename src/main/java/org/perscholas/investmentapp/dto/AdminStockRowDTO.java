@@ -0,0 +1,21 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminStockRowDTO {
+    int id;
+    String ticker;
+    String stockName;
+    BigDecimal price;
+    String description;
+}
@@ -0,0 +1,19 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminUserRowDTO {
+    int id;
+    String firstName;
+    String lastName;
+    String email;
+    AddressDTO address;
+}
@@ -0,0 +1,44 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+import java.util.Map;
+
+// a fixed-weight replay of a portfolio's current mix over its tickers' daily closes
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class BacktestResultDTO {
+    int userId;
+    // target weight by ticker, 0..1, from the holdings' current values
+    Map<String, Double> weights;
+    // held tickers without exported history, left out of the weights
+    List<String> missing;
+    // first and last day replayed, epoch millis (UTC); 0 when nothing was replayed
+    long from;
+    long to;
+    // trading days replayed
+    int bars;
+    // days between rebalances to the target weights; 0 = buy and hold
+    int rebalanceDays;
+    int rebalances;
+    double initialValue;
+    double finalValue;
+    double totalReturn;
+    // compound annual growth rate
+    double cagr;
+    // annualized, from daily returns
+    double volatility;
+    // largest fall from a running peak, 0..1, and the days it ran between
+    double maxDrawdown;
+    long drawdownPeak;
+    long drawdownTrough;
+    // sampled evenly, first and last day included
+    List<EquityPointDTO> equity;
+}
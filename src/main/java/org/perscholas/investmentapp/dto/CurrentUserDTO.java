@@ -0,0 +1,23 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.Value;
+import org.perscholas.investmentapp.models.User;
+
+import java.io.Serializable;
+import java.util.List;
+
+// what the pages need to know about the signed-in user; cached in the session instead of the User entity
+@Value
+public class CurrentUserDTO implements Serializable {
+    Integer id;
+    String email;
+    String firstName;
+    String lastName;
+    List<String> roles;
+    AddressDTO address;
+
+    public static CurrentUserDTO of(User user, List<String> roles) {
+        return new CurrentUserDTO(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                List.copyOf(roles), AddressDTO.of(user.getAddress()));
+    }
+}
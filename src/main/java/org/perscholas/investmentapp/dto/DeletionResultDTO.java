@@ -0,0 +1,22 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// rows removed by one cascading delete
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeletionResultDTO {
+    String target;
+    int possessions;
+    int authGroups;
+    int users;
+    int addresses;
+    int stocks;
+    long millis;
+}
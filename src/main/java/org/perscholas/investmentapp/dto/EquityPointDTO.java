@@ -0,0 +1,17 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class EquityPointDTO {
+    // epoch millis (UTC) of the daily close
+    long time;
+    double value;
+}
@@ -0,0 +1,22 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingRiskDTO {
+    String ticker;
+    double shares;
+    // last daily close
+    double price;
+    double value;
+    double weight;
+    // annualized, from daily log returns
+    double volatility;
+}
@@ -0,0 +1,23 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingValuationDTO {
+    String ticker;
+    double shares;
+    double price;
+    // shares * price
+    double value;
+    // shares * (price - previous close)
+    double dayPnl;
+    // share of the portfolio's value, 0..1
+    double weight;
+}
@@ -0,0 +1,22 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+// one page of an admin listing; pass next back as "after" for the following page (null on the last one)
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPageDTO<T> {
+    List<T> items;
+    String sort;
+    String dir;
+    int size;
+    String next;
+}
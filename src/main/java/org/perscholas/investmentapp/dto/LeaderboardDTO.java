@@ -0,0 +1,21 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardDTO {
+    LeaderboardOrder order;
+    int ranked;
+    List<LeaderboardEntryDTO> top;
+    // the requesting user
+    LeaderboardStandingDTO standing;
+}
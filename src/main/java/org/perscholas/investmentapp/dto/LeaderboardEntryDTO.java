@@ -0,0 +1,26 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntryDTO {
+    int rank;
+    int userId;
+    // first name and last initial only
+    String name;
+    double value;
+    double dayReturn;
+
+    // UserRepoI.findLeaderboardNames; the rest is filled in from the leaderboard
+    public LeaderboardEntryDTO(Integer userId, String name) {
+        this.userId = userId;
+        this.name = name;
+    }
+}
@@ -0,0 +1,9 @@
+package org.perscholas.investmentapp.dto;
+
+// what the leaderboard ranks portfolios by
+public enum LeaderboardOrder {
+    // market value now
+    VALUE,
+    // move since the previous close, relative to the value then
+    DAY_RETURN
+}
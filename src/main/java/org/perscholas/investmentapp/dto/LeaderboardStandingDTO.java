@@ -0,0 +1,25 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// one user's place on the leaderboard; ranks are 0 for a user without positions
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardStandingDTO {
+    int userId;
+    // portfolios on the leaderboard
+    int ranked;
+    int valueRank;
+    // share of portfolios ranked at or below this one, 0..100
+    double valuePercentile;
+    int dayReturnRank;
+    double dayReturnPercentile;
+    double value;
+    double dayReturn;
+}
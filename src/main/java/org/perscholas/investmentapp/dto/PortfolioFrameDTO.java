@@ -0,0 +1,28 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+import java.util.Map;
+
+// one WebSocket frame of /user/portfolio/live
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioFrameDTO {
+    public static final String SNAPSHOT = "snapshot";
+    public static final String DELTA = "delta";
+
+    // snapshot: every holding; delta: only holdings whose shares, price or day P&L moved
+    String type;
+    double value;
+    double dayPnl;
+    Map<String, HoldingValuationDTO> holdings;
+    // tickers no longer held (delta only)
+    List<String> removed;
+}
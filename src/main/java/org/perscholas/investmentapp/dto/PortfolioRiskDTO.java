@@ -0,0 +1,37 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+// risk of a portfolio valued at the last daily closes; amounts in the portfolio's currency
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioRiskDTO {
+    int userId;
+    // day of the last close used, epoch millis (UTC)
+    long asOf;
+    // daily returns behind the figures; 0 when there is too little history for any
+    int observations;
+    double value;
+    // annualized
+    double volatility;
+    int horizonDays;
+    int paths;
+    // loss over the horizon not exceeded with 95% / 99% confidence
+    double valueAtRisk95;
+    double valueAtRisk99;
+    // mean loss beyond the 99% VaR
+    double expectedShortfall99;
+    List<HoldingRiskDTO> holdings;
+    // correlation[i][j] of holdings[i] and holdings[j]
+    double[][] correlation;
+    // held tickers without daily bars, left out of everything above
+    List<String> unpriced;
+}
@@ -0,0 +1,21 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioValuationDTO {
+    int userId;
+    double value;
+    double dayPnl;
+    // by ticker, in ticker order
+    Map<String, HoldingValuationDTO> holdings;
+}
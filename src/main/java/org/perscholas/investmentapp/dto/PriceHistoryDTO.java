@@ -0,0 +1,24 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceHistoryDTO {
+    String ticker;
+    // bar width, e.g. "5m", or "tick" for raw ticks
+    String interval;
+    // resolution the bars were read from ("tick", "1m", "1h" or "1d")
+    String source;
+    long from;
+    long to;
+    List<PriceBarDTO> bars;
+}
@@ -0,0 +1,29 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+// query parameters of the admin stock listing; blank values are ignored
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockListingFilterDTO {
+    // id, ticker, stockName or price
+    String sort = "id";
+    // asc or desc
+    String dir = "asc";
+    // prefix filters
+    String ticker;
+    String stockName;
+    BigDecimal minPrice;
+    BigDecimal maxPrice;
+    // cursor from the previous page
+    String after;
+    Integer size;
+}
@@ -0,0 +1,11 @@
+package org.perscholas.investmentapp.dto;
+
+// how the shares of a trade combine with the existing position
+public enum TradeMode {
+    // the position becomes exactly this many shares
+    SET,
+    // adds the shares, opening the position if there is none
+    BUY,
+    // removes the shares; rejected when the position holds fewer
+    SELL
+}
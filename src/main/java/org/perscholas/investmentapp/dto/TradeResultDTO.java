@@ -0,0 +1,25 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeResultDTO {
+    public static final String APPLIED = "applied";
+    // a SELL for more shares than the position holds
+    public static final String REJECTED = "rejected";
+    public static final String UNKNOWN_TICKER = "unknown-ticker";
+    public static final String DUPLICATE_TICKER = "duplicate-ticker";
+    public static final String INVALID = "invalid";
+
+    String ticker;
+    TradeMode mode;
+    double shares;
+    String result;
+}
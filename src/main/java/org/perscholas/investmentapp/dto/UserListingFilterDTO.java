@@ -0,0 +1,25 @@
+package org.perscholas.investmentapp.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// query parameters of the admin user listing; blank values are ignored
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserListingFilterDTO {
+    // id, email or lastName
+    String sort = "id";
+    // asc or desc
+    String dir = "asc";
+    // prefix filters
+    String email;
+    String lastName;
+    // cursor from the previous page
+    String after;
+    Integer size;
+}
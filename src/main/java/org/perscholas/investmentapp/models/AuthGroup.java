@@ -1,14 +1,20 @@
 package org.perscholas.investmentapp.models;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Data
 @Entity
+// read on every login, written only on sign-up and account edits
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "auth-groups")
 @NoArgsConstructor
 @AllArgsConstructor
 @RequiredArgsConstructor
@@ -12,6 +12,8 @@ import java.util.Objects;
 @RequiredArgsConstructor
 @Entity
 @Table(name = "possessions")
+@NamedEntityGraph(name = "Possession.stock", attributeNodes = @NamedAttributeNode("stock"))
+@NamedEntityGraph(name = "Possession.user", attributeNodes = @NamedAttributeNode("user"))
 @Slf4j
 @Setter
 @Getter
@@ -37,6 +39,10 @@ public class Possession {
     @JoinColumn(name = "investment_id")
     Stock stock;
 
+    // latest market price for display, filled in by UserServices.retrievePortfolio; not persisted
+    @Transient
+    double marketPrice;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
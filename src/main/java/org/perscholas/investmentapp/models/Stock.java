@@ -6,6 +6,8 @@ import jakarta.validation.constraints.Digits;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -17,6 +19,9 @@ import java.util.Objects;
 @RequiredArgsConstructor
 @Entity
 @Table(name = "stocks")
+// the catalog changes rarely; JDBC writers (price sync, cascade delete) evict what they touch
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "stocks")
 @Slf4j
 @Setter
 @Getter
@@ -46,10 +51,8 @@ public class Stock {
     @Column(name = "description", length = 100)
     String description;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade =  {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REFRESH, CascadeType.DETACH})
-    @JoinTable(name = "stocks_and_possessions",
-            joinColumns = @JoinColumn(name = "stock_id", referencedColumnName = "id"),
-            inverseJoinColumns = @JoinColumn(name = "possession_id", referencedColumnName = "id"))
+    // owned by Possession.stock (possessions.investment_id); add/remove only keep this side in sync in memory
+    @OneToMany(mappedBy = "stock", fetch = FetchType.LAZY)
     @ToString.Exclude
     List<Possession> userStocks = new ArrayList<>();
 
@@ -17,6 +17,8 @@ import java.util.Objects;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+// the signed-in user is rendered with its address on every page, so lookups by email fetch it in the same select
+@NamedEntityGraph(name = "User.address", attributeNodes = @NamedAttributeNode("address"))
 // Forces the table to only accept unique emails
 @Table(
     name = "myusers",
@@ -57,14 +59,12 @@ public class User {
     @Column(name = "password", length = 100)
     String password;
 
-    @OneToOne(fetch = FetchType.EAGER, cascade =  {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REFRESH, CascadeType.DETACH})
+    @OneToOne(fetch = FetchType.LAZY, cascade =  {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REFRESH, CascadeType.DETACH})
     @JoinColumn(name = "address", referencedColumnName = "id")
     Address address;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade =  {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REFRESH, CascadeType.DETACH})
-    @JoinTable(name = "myuser_portfolio",
-            joinColumns = @JoinColumn(name = "myuser_id", referencedColumnName = "id"),
-            inverseJoinColumns = @JoinColumn(name = "possession_id", referencedColumnName = "id"))
+    // owned by Possession.user (possessions.myuser_id); add/remove only keep this side in sync in memory
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
     @ToString.Exclude
     List<Possession> userPossessions = new ArrayList<>();
 
@@ -3,6 +3,7 @@ package org.perscholas.investmentapp.security;
 
 import org.perscholas.investmentapp.dao.AuthGroupRepoI;
 import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.services.ReadRoutingServices;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -15,20 +16,24 @@ import java.util.List;
 public class AppUserDetailService implements UserDetailsService {
     UserRepoI userRepoI;
     AuthGroupRepoI authGroupRepoI;
+    ReadRoutingServices readRoutingServices;
 
     @Autowired
-    public AppUserDetailService(UserRepoI userRepoI, AuthGroupRepoI authGroupRepoI) {
+    public AppUserDetailService(UserRepoI userRepoI, AuthGroupRepoI authGroupRepoI,
+                                ReadRoutingServices readRoutingServices) {
         //this.userRepoI = userRepoI;
         this.authGroupRepoI = authGroupRepoI;
         this.userRepoI = userRepoI;
+        this.readRoutingServices = readRoutingServices;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
-        return new AppUserPrincipal(
+        // logins read the primary: an account created a moment ago may not be on the replica yet
+        return readRoutingServices.onPrimary(() -> new AppUserPrincipal(
                 userRepoI.findByEmail(username)
                         .orElseThrow(() -> new UsernameNotFoundException("Email Not Found"))
-                , authGroupRepoI.findByEmail(username));
+                , authGroupRepoI.findByEmail(username)));
     }
 }
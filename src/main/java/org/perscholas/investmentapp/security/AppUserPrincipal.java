@@ -1,5 +1,6 @@
 package org.perscholas.investmentapp.security;
 
+import org.perscholas.investmentapp.dto.CurrentUserDTO;
 import org.perscholas.investmentapp.models.AuthGroup;
 import org.perscholas.investmentapp.models.User;
 import org.springframework.security.core.GrantedAuthority;
@@ -12,33 +13,34 @@ import java.util.stream.Collectors;
 
 public class AppUserPrincipal implements UserDetails {
 
-    private User user;
-    private List<AuthGroup> authGroup;
+    // kept for the whole login in the security context, so no entity graph is held here
+    private final CurrentUserDTO currentUser;
+    private final String password;
 
     public AppUserPrincipal(User user, List<AuthGroup> authGroup) {
-        this.user = user;
-        this.authGroup = authGroup;
+        this.currentUser = CurrentUserDTO.of(user,
+                authGroup.stream().map(AuthGroup::getRole).collect(Collectors.toList()));
+        this.password = user.getPassword();
+    }
+
+    // the signed-in user as it was at login
+    public CurrentUserDTO getCurrentUser() {
+        return currentUser;
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-
-//        List<SimpleGrantedAuthority> theList = new ArrayList<>();
-//        for(AuthGroup auth: authGroup){
-//            theList.add(new SimpleGrantedAuthority(auth.getRole()));
-//        }
-
-        return authGroup.stream().map(auth -> new SimpleGrantedAuthority(auth.getRole())).collect(Collectors.toList());
+        return currentUser.getRoles().stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList());
     }
 
     @Override
     public String getPassword() {
-        return user.getPassword();
+        return password;
     }
 
     @Override
     public String getUsername() {
-        return user.getEmail();
+        return currentUser.getEmail();
     }
 
     @Override
@@ -60,4 +62,4 @@ public class AppUserPrincipal implements UserDetails {
     public boolean isEnabled() {
         return true;
     }
-}
\ No newline at end of file
+}
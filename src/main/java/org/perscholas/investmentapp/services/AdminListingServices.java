@@ -0,0 +1,214 @@
+package org.perscholas.investmentapp.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dto.AddressDTO;
+import org.perscholas.investmentapp.dto.AdminStockRowDTO;
+import org.perscholas.investmentapp.dto.AdminUserRowDTO;
+import org.perscholas.investmentapp.dto.KeysetPageDTO;
+import org.perscholas.investmentapp.dto.StockListingFilterDTO;
+import org.perscholas.investmentapp.dto.UserListingFilterDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Admin user and stock listings, one page at a time.
+ * Pages are keyset (seek) pages: each one starts strictly after the sort value and id of the
+ * previous page's last row, so a page is an index range read of size + 1 rows no matter how deep
+ * into the table it is, where OFFSET would read and discard every row before it. Sorts are a fixed
+ * set of indexed columns (Flyway V5) with id as the tiebreak, filters are prefix or range
+ * predicates on those columns, and rows are read as plain projections, never as entities.
+ * There is deliberately no total count: counting a filtered million-row table is the one thing
+ * that cannot stay flat. Pages are read-only transactions, so they go to the read replica when one
+ * is configured.
+ */
+@Service
+@Slf4j
+public class AdminListingServices {
+
+    private static final String USER_SELECT = "SELECT u.id, u.first_name, u.last_name, u.email, "
+            + "a.id AS address_id, a.street, a.state, a.zipcode "
+            + "FROM myusers u LEFT JOIN address a ON a.id = u.address";
+    private static final String STOCK_SELECT = "SELECT s.id, s.ticker, s.stock_name, s.price, s.description FROM stocks s";
+
+    private static final Map<String, SortKey<AdminUserRowDTO>> USER_SORTS = Map.of(
+            "id", new SortKey<>("id", "u.id", v -> v, AdminUserRowDTO::getId),
+            "email", new SortKey<>("email", "u.email", v -> v, AdminUserRowDTO::getEmail),
+            "lastName", new SortKey<>("lastName", "u.last_name", v -> v, AdminUserRowDTO::getLastName));
+
+    private static final Map<String, SortKey<AdminStockRowDTO>> STOCK_SORTS = Map.of(
+            "id", new SortKey<>("id", "s.id", v -> v, AdminStockRowDTO::getId),
+            "ticker", new SortKey<>("ticker", "s.ticker", v -> v, AdminStockRowDTO::getTicker),
+            "stockName", new SortKey<>("stockName", "s.stock_name", v -> v, AdminStockRowDTO::getStockName),
+            "price", new SortKey<>("price", "s.price", BigDecimal::new, AdminStockRowDTO::getPrice));
+
+    private static final RowMapper<AdminUserRowDTO> USER_ROW = (rs, i) -> {
+        int addressId = rs.getInt("address_id");
+        AddressDTO address = rs.wasNull() ? null
+                : new AddressDTO(addressId, rs.getString("street"), rs.getString("state"), rs.getInt("zipcode"));
+        return new AdminUserRowDTO(rs.getInt("id"), rs.getString("first_name"), rs.getString("last_name"),
+                rs.getString("email"), address);
+    };
+
+    private static final RowMapper<AdminStockRowDTO> STOCK_ROW = (rs, i) -> new AdminStockRowDTO(
+            rs.getInt("id"), rs.getString("ticker"), rs.getString("stock_name"),
+            rs.getBigDecimal("price"), rs.getString("description"));
+
+    // sort parameter -> indexed column; parse turns a cursor value back into a bind value
+    private record SortKey<T>(String name, String column, Function<String, Object> parse, Function<T, Object> value) {
+    }
+
+    private record Cursor(int id, Object value) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    @Autowired
+    public AdminListingServices(JdbcTemplate jdbcTemplate,
+                                @Value("${admin.listing.page-size:50}") int defaultPageSize,
+                                @Value("${admin.listing.max-page-size:200}") int maxPageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // throws IllegalArgumentException for an unknown sort or direction, or a cursor from another sort
+    @Transactional(readOnly = true)
+    public KeysetPageDTO<AdminUserRowDTO> users(UserListingFilterDTO filter) {
+        SortKey<AdminUserRowDTO> sort = sortKey(USER_SORTS, filter.getSort());
+        List<String> where = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        prefix(where, args, "u.email", filter.getEmail());
+        prefix(where, args, "u.last_name", filter.getLastName());
+        return page(USER_SELECT, "u.id", sort, filter.getDir(), where, args,
+                filter.getAfter(), filter.getSize(), USER_ROW, AdminUserRowDTO::getId);
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetPageDTO<AdminStockRowDTO> stocks(StockListingFilterDTO filter) {
+        SortKey<AdminStockRowDTO> sort = sortKey(STOCK_SORTS, filter.getSort());
+        List<String> where = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        prefix(where, args, "s.ticker", filter.getTicker());
+        prefix(where, args, "s.stock_name", filter.getStockName());
+        if (filter.getMinPrice() != null) {
+            where.add("s.price >= ?");
+            args.add(filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            where.add("s.price <= ?");
+            args.add(filter.getMaxPrice());
+        }
+        return page(STOCK_SELECT, "s.id", sort, filter.getDir(), where, args,
+                filter.getAfter(), filter.getSize(), STOCK_ROW, AdminStockRowDTO::getId);
+    }
+
+    private <T> KeysetPageDTO<T> page(String select, String idColumn, SortKey<T> sort, String dir,
+                                      List<String> where, List<Object> args, String after, Integer size,
+                                      RowMapper<T> rowMapper, ToIntFunction<T> id) {
+        boolean desc = descending(dir);
+        int limit = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        boolean byId = sort.column().equals(idColumn);
+        String op = desc ? " < ?" : " > ?";
+
+        // seek past the previous page: (column, id) > (value, id) spelled out so MySQL reads it as an index range
+        if (after != null && !after.isBlank()) {
+            Cursor cursor = decode(after, sort);
+            if (byId) {
+                where.add(idColumn + op);
+                args.add(cursor.id());
+            } else {
+                where.add("(" + sort.column() + op + " OR (" + sort.column() + " = ? AND " + idColumn + op + "))");
+                args.add(cursor.value());
+                args.add(cursor.value());
+                args.add(cursor.id());
+            }
+        }
+
+        String direction = desc ? " DESC" : " ASC";
+        StringBuilder sql = new StringBuilder(select);
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        sql.append(" ORDER BY ").append(sort.column()).append(direction);
+        if (!byId) {
+            sql.append(", ").append(idColumn).append(direction);
+        }
+        sql.append(" LIMIT ?");
+        // one extra row tells whether there is a next page
+        args.add(limit + 1);
+
+        List<T> rows = jdbcTemplate.query(sql.toString(), rowMapper, args.toArray());
+        String next = null;
+        if (rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, limit));
+            T last = rows.get(limit - 1);
+            next = encode(sort, sort.value().apply(last), id.applyAsInt(last));
+        }
+        return new KeysetPageDTO<>(rows, sort.name(), desc ? "desc" : "asc", limit, next);
+    }
+
+    private static <T> SortKey<T> sortKey(Map<String, SortKey<T>> sorts, String sort) {
+        SortKey<T> key = sorts.get(sort == null || sort.isBlank() ? "id" : sort);
+        if (key == null) {
+            throw new IllegalArgumentException("unknown sort: " + sort);
+        }
+        return key;
+    }
+
+    private static boolean descending(String dir) {
+        if (dir == null || dir.isBlank() || dir.equalsIgnoreCase("asc")) {
+            return false;
+        }
+        if (dir.equalsIgnoreCase("desc")) {
+            return true;
+        }
+        throw new IllegalArgumentException("unknown direction: " + dir);
+    }
+
+    // LIKE 'value%' keeps the predicate an index range; wildcards in the input are matched literally
+    private static void prefix(List<String> where, List<Object> args, String column, String value) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        String escaped = value.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        where.add(column + " LIKE ?");
+        args.add(escaped + "%");
+    }
+
+    // opaque to clients: sort name, id and sort value of the last row, base64url encoded
+    private static String encode(SortKey<?> sort, Object value, int id) {
+        String plain = value instanceof BigDecimal decimal ? decimal.toPlainString() : String.valueOf(value);
+        String raw = sort.name() + "\n" + id + "\n" + plain;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decode(String after, SortKey<?> sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 3);
+            if (parts.length != 3 || !parts[0].equals(sort.name())) {
+                throw new IllegalArgumentException("cursor does not belong to sort " + sort.name());
+            }
+            return new Cursor(Integer.parseInt(parts[1]), sort.parse().apply(parts[2]));
+        } catch (IllegalArgumentException e) {
+            // also covers bad base64 and NumberFormatException
+            log.warn("AdminListingServices: rejected cursor {}: {}", after, e.getMessage());
+            throw new IllegalArgumentException("bad cursor", e);
+        }
+    }
+}
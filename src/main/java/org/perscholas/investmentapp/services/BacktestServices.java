@@ -0,0 +1,117 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dto.BacktestResultDTO;
+import org.perscholas.investmentapp.dto.EquityPointDTO;
+import org.perscholas.investmentapp.dto.HoldingValuationDTO;
+import org.perscholas.investmentapp.dto.PortfolioValuationDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a user's current allocation over the exported daily closes of its tickers.
+ * Target weights are the holdings' shares of the portfolio's current value, from the
+ * valuation engine; the run itself reads the mapped {@link PriceColumnStore} files through
+ * {@link Backtester} and never touches MySQL or JPA.
+ * Held tickers without exported history are reported as missing and the remaining weights
+ * scaled back up to 1.
+ */
+@Service
+@Slf4j
+public class BacktestServices {
+
+    private final PortfolioValuationServices portfolioValuationServices;
+    private final PriceColumnStore priceColumnStore;
+
+    private final int maxPoints;
+    private final double defaultInitialValue;
+
+    private final Timer runTimer;
+
+    @Autowired
+    public BacktestServices(PortfolioValuationServices portfolioValuationServices,
+                            PriceColumnStore priceColumnStore,
+                            MeterRegistry meterRegistry,
+                            @Value("${backtest.max-points:500}") int maxPoints,
+                            @Value("${backtest.default-initial-value:10000}") double defaultInitialValue) {
+        this.portfolioValuationServices = portfolioValuationServices;
+        this.priceColumnStore = priceColumnStore;
+        this.maxPoints = maxPoints;
+        this.defaultInitialValue = defaultInitialValue;
+
+        this.runTimer = Timer.builder("backtest.run")
+                .description("Time to replay one portfolio over its daily closes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param from          first day, epoch millis
+     * @param to            last day, epoch millis
+     * @param rebalanceDays trading days between rebalances; 0 buys and holds
+     * @param initialValue  amount invested on the first day; null uses the portfolio's current
+     *                      value, or backtest.default-initial-value for an empty portfolio
+     */
+    public BacktestResultDTO backtest(int userId, long from, long to, int rebalanceDays, Double initialValue) {
+        if (from > to) {
+            throw new IllegalArgumentException("from is after to");
+        }
+        if (rebalanceDays < 0) {
+            throw new IllegalArgumentException("rebalanceDays must not be negative");
+        }
+        if (initialValue != null && !(initialValue > 0)) {
+            throw new IllegalArgumentException("initial must be positive");
+        }
+
+        PortfolioValuationDTO valuation = portfolioValuationServices.valuation(userId);
+        List<PriceColumnFile> series = new ArrayList<>();
+        List<String> tickers = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        double total = 0;
+        for (HoldingValuationDTO holding : valuation.getHoldings().values()) {
+            PriceColumnFile file = priceColumnStore.columns(holding.getTicker());
+            if (file == null || file.size() == 0) {
+                missing.add(holding.getTicker());
+                continue;
+            }
+            series.add(file);
+            tickers.add(holding.getTicker());
+            values.add(holding.getValue());
+            total += holding.getValue();
+        }
+
+        int n = series.size();
+        double[] weights = new double[n];
+        Map<String, Double> byTicker = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            // positions valued at 0 (no live price yet) split the portfolio evenly
+            weights[i] = total > 0 ? values.get(i) / total : 1.0 / n;
+            byTicker.put(tickers.get(i), weights[i]);
+        }
+        double initial = initialValue != null ? initialValue
+                : valuation.getValue() > 0 ? valuation.getValue() : defaultInitialValue;
+
+        Backtester.Result result = n == 0 ? null : runTimer.record(() -> Backtester.run(
+                series.toArray(new PriceColumnFile[0]), weights, from, to, rebalanceDays, initial, maxPoints));
+        if (result == null) {
+            return new BacktestResultDTO(userId, byTicker, missing, 0, 0, 0, rebalanceDays, 0,
+                    initial, initial, 0, 0, 0, 0, 0, 0, List.of());
+        }
+        List<EquityPointDTO> equity = new ArrayList<>(result.points());
+        for (int k = 0; k < result.points(); k++) {
+            equity.add(new EquityPointDTO(result.equityTimes()[k], result.equityValues()[k]));
+        }
+        return new BacktestResultDTO(userId, byTicker, missing, result.from(), result.to(), result.bars(),
+                rebalanceDays, result.rebalances(), result.initialValue(), result.finalValue(),
+                result.totalReturn(), result.cagr(), result.volatility(), result.maxDrawdown(),
+                result.drawdownPeak(), result.drawdownTrough(), equity);
+    }
+}
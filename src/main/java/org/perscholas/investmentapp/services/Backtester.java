@@ -0,0 +1,199 @@
+package org.perscholas.investmentapp.services;
+
+/**
+ * Replays a fixed-weight allocation over daily close series, in one streaming pass.
+ * The series are merged by time like sorted runs: each step advances every series whose next
+ * bar is the earliest pending one, carrying the last close forward for series that did not
+ * trade that day. The portfolio starts fully invested at the first day all series have a
+ * close, and is reset to the target weights every rebalanceBars steps (0 = buy and hold).
+ * <p>
+ * State is a handful of primitive arrays sized by the series count, allocated once per run,
+ * including each series' next bar time, so finding the next day scans a long[] and only the
+ * series that traded read their mapping. The loop itself allocates nothing.
+ * The equity curve is sampled into a fixed buffer: when it fills, every other point is
+ * dropped and the sampling stride doubles, which keeps the curve evenly spaced.
+ */
+final class Backtester {
+
+    static final int TRADING_DAYS = 252;
+    private static final double YEAR_MILLIS = 365.25 * 86_400_000L;
+
+    private Backtester() {
+    }
+
+    /**
+     * @param series        one column file per asset
+     * @param weights       target weights, same order as series, summing to 1
+     * @param from          first day to consider, epoch millis
+     * @param to            last day to consider, epoch millis
+     * @param rebalanceBars days between rebalances; 0 never rebalances
+     * @param initial       value invested on the first day
+     * @param maxPoints     most equity points to keep (at least 2)
+     * @return null when the series share no day in the range
+     */
+    static Result run(PriceColumnFile[] series, double[] weights, long from, long to,
+                      int rebalanceBars, double initial, int maxPoints) {
+        int n = series.length;
+        // the first day every series has a close
+        long start = from;
+        for (PriceColumnFile s : series) {
+            if (s.size() == 0) {
+                return null;
+            }
+            start = Math.max(start, s.time(0));
+        }
+        if (start > to) {
+            return null;
+        }
+
+        int[] cursor = new int[n];
+        // time of each series' next bar, Long.MAX_VALUE once it has none
+        long[] pending = new long[n];
+        double[] last = new double[n];
+        double[] units = new double[n];
+        long time = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            int k = series[i].after(start) - 1;
+            last[i] = series[i].price(k);
+            cursor[i] = k + 1;
+            pending[i] = k + 1 < series[i].size() ? series[i].time(k + 1) : Long.MAX_VALUE;
+            time = Math.max(time, series[i].time(k));
+        }
+        allocate(initial, weights, last, units);
+
+        Curve curve = new Curve(Math.max(2, maxPoints));
+        curve.add(time, initial);
+        long firstTime = time;
+        double equity = initial;
+        double peak = initial;
+        long peakTime = time;
+        double maxDrawdown = 0;
+        long drawdownPeak = time;
+        long drawdownTrough = time;
+        double sumReturns = 0;
+        double sumSquares = 0;
+        int bars = 1;
+        int rebalances = 0;
+        int sinceRebalance = 0;
+
+        while (true) {
+            long next = Long.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                next = Math.min(next, pending[i]);
+            }
+            if (next == Long.MAX_VALUE || next > to) {
+                break;
+            }
+            double value = 0;
+            for (int i = 0; i < n; i++) {
+                if (pending[i] == next) {
+                    PriceColumnFile s = series[i];
+                    int k = cursor[i]++;
+                    last[i] = s.price(k);
+                    pending[i] = k + 1 < s.size() ? s.time(k + 1) : Long.MAX_VALUE;
+                }
+                value += units[i] * last[i];
+            }
+            double r = equity == 0 ? 0 : value / equity - 1;
+            sumReturns += r;
+            sumSquares += r * r;
+            equity = value;
+            time = next;
+            bars++;
+
+            if (equity > peak) {
+                peak = equity;
+                peakTime = time;
+            } else if (peak > 0 && 1 - equity / peak > maxDrawdown) {
+                maxDrawdown = 1 - equity / peak;
+                drawdownPeak = peakTime;
+                drawdownTrough = time;
+            }
+            if (rebalanceBars > 0 && ++sinceRebalance == rebalanceBars) {
+                allocate(equity, weights, last, units);
+                sinceRebalance = 0;
+                rebalances++;
+            }
+            curve.offer(bars - 1, time, equity);
+        }
+        curve.close(time, equity);
+
+        int returns = bars - 1;
+        double mean = returns == 0 ? 0 : sumReturns / returns;
+        double variance = returns < 2 ? 0 : (sumSquares - returns * mean * mean) / (returns - 1);
+        double years = (time - firstTime) / YEAR_MILLIS;
+        double totalReturn = initial == 0 ? 0 : equity / initial - 1;
+        double cagr = years <= 0 || initial == 0 ? 0 : Math.pow(equity / initial, 1 / years) - 1;
+        return new Result(firstTime, time, bars, rebalances, initial, equity, totalReturn, cagr,
+                Math.sqrt(Math.max(0, variance) * TRADING_DAYS), maxDrawdown, drawdownPeak, drawdownTrough,
+                curve.times, curve.values, curve.size);
+    }
+
+    private static void allocate(double equity, double[] weights, double[] prices, double[] units) {
+        for (int i = 0; i < units.length; i++) {
+            units[i] = prices[i] > 0 ? equity * weights[i] / prices[i] : 0;
+        }
+    }
+
+    /**
+     * Outcome of a run. Volatility is annualized from daily returns; drawdowns are fractions of
+     * the running peak. The equity curve is the first points of equityTimes / equityValues.
+     */
+    record Result(long from, long to, int bars, int rebalances, double initialValue, double finalValue,
+                  double totalReturn, double cagr, double volatility, double maxDrawdown,
+                  long drawdownPeak, long drawdownTrough,
+                  long[] equityTimes, double[] equityValues, int points) {
+    }
+
+    // evenly strided samples of the equity curve in a fixed buffer
+    private static final class Curve {
+        final long[] times;
+        final double[] values;
+        int size;
+        int stride = 1;
+
+        Curve(int capacity) {
+            times = new long[capacity];
+            values = new double[capacity];
+        }
+
+        void add(long time, double value) {
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+
+        // bar counts from 0, the first day
+        void offer(int bar, long time, double value) {
+            if (bar % stride != 0) {
+                return;
+            }
+            if (size == times.length) {
+                // points sit on multiples of stride; keep those on multiples of twice that
+                int kept = 0;
+                for (int k = 0; k < size; k += 2) {
+                    times[kept] = times[k];
+                    values[kept] = values[k];
+                    kept++;
+                }
+                size = kept;
+                stride *= 2;
+                if (bar % stride != 0) {
+                    return;
+                }
+            }
+            add(time, value);
+        }
+
+        // the last day is always on the curve
+        void close(long time, double value) {
+            if (times[size - 1] == time) {
+                return;
+            }
+            if (size == times.length) {
+                size--;
+            }
+            add(time, value);
+        }
+    }
+}
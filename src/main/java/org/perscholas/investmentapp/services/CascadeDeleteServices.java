@@ -0,0 +1,123 @@
+package org.perscholas.investmentapp.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.config.Workload;
+import org.perscholas.investmentapp.config.WorkloadPool;
+import org.perscholas.investmentapp.dto.DeletionResultDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes a user or a stock together with every row that references it, set-based.
+ * Possessions go in chunks of bulk DELETEs that each commit on their own, so row locks are only
+ * held for one chunk at a time; the referenced row itself is deleted in a final short transaction
+ * that also sweeps up any position opened while the chunks ran.
+ */
+@Service
+@Slf4j
+@WorkloadPool(Workload.BATCH)
+public class CascadeDeleteServices {
+
+    private static final String DELETE_USER_POSSESSIONS = "DELETE FROM possessions WHERE myuser_id = ? LIMIT ?";
+    private static final String DELETE_STOCK_POSSESSIONS = "DELETE FROM possessions WHERE investment_id = ? LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CurrentUserServices currentUserServices;
+    private final EntityCacheServices entityCacheServices;
+    private final PortfolioValuationServices portfolioValuationServices;
+    private final int chunkSize;
+
+    @Autowired
+    public CascadeDeleteServices(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 CurrentUserServices currentUserServices,
+                                 EntityCacheServices entityCacheServices,
+                                 PortfolioValuationServices portfolioValuationServices,
+                                 @Value("${admin.delete.chunk-size:5000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.currentUserServices = currentUserServices;
+        this.entityCacheServices = entityCacheServices;
+        this.portfolioValuationServices = portfolioValuationServices;
+        this.chunkSize = chunkSize;
+    }
+
+    // the user, its positions, roles and address
+    public DeletionResultDTO deleteUser(String email) throws Exception {
+        long start = System.nanoTime();
+        List<Integer[]> users = jdbcTemplate.query("SELECT id, address FROM myusers WHERE email = ?",
+                (rs, i) -> new Integer[]{rs.getInt("id"), rs.getObject("address", Integer.class)}, email);
+        if (users.isEmpty()) {
+            throw new Exception("CascadeDeleteServices: user not found: " + email);
+        }
+        int userId = users.get(0)[0];
+        Integer addressId = users.get(0)[1];
+
+        DeletionResultDTO result = new DeletionResultDTO();
+        result.setTarget(email);
+        result.setPossessions(deleteInChunks(DELETE_USER_POSSESSIONS, userId));
+        transactionTemplate.executeWithoutResult(status -> {
+            result.setPossessions(result.getPossessions()
+                    + jdbcTemplate.update("DELETE FROM possessions WHERE myuser_id = ?", userId));
+            result.setAuthGroups(jdbcTemplate.update("DELETE FROM auth_group WHERE email = ?", email));
+            result.setUsers(jdbcTemplate.update("DELETE FROM myusers WHERE id = ?", userId));
+            if (addressId != null) {
+                result.setAddresses(jdbcTemplate.update("DELETE FROM address WHERE id = ?", addressId));
+            }
+        });
+        currentUserServices.invalidate(userId);
+        entityCacheServices.evictAuthGroups(email);
+        portfolioValuationServices.userRemoved(userId);
+        return finish(result, start);
+    }
+
+    // the stock and every position in it
+    public DeletionResultDTO deleteStock(String ticker) throws Exception {
+        long start = System.nanoTime();
+        List<Integer> stocks = jdbcTemplate.queryForList("SELECT id FROM stocks WHERE ticker = ?", Integer.class, ticker);
+        if (stocks.isEmpty()) {
+            throw new Exception("CascadeDeleteServices: stock not found: " + ticker);
+        }
+        int stockId = stocks.get(0);
+
+        DeletionResultDTO result = new DeletionResultDTO();
+        result.setTarget(ticker);
+        result.setPossessions(deleteInChunks(DELETE_STOCK_POSSESSIONS, stockId));
+        transactionTemplate.executeWithoutResult(status -> {
+            result.setPossessions(result.getPossessions()
+                    + jdbcTemplate.update("DELETE FROM possessions WHERE investment_id = ?", stockId));
+            result.setStocks(jdbcTemplate.update("DELETE FROM stocks WHERE id = ?", stockId));
+        });
+        entityCacheServices.evictStock(stockId);
+        entityCacheServices.evictStockLookups();
+        portfolioValuationServices.stockRemoved(ticker);
+        return finish(result, start);
+    }
+
+    // each chunk is its own statement and commit; stops at the first short chunk
+    private int deleteInChunks(String sql, int id) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, id, chunkSize);
+            total += deleted;
+        } while (deleted == chunkSize);
+        return total;
+    }
+
+    private static DeletionResultDTO finish(DeletionResultDTO result, long start) {
+        result.setMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.warn("CascadeDeleteServices: deleted {}: {} possessions, {} auth groups, {} users, {} addresses, {} stocks in {} ms",
+                result.getTarget(), result.getPossessions(), result.getAuthGroups(), result.getUsers(),
+                result.getAddresses(), result.getStocks(), result.getMillis());
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+package org.perscholas.investmentapp.services;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.CurrentUserDTO;
+import org.perscholas.investmentapp.security.AppUserPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the signed-in user for the pages. The view built at login by {@link AppUserPrincipal}
+ * is cached in the HTTP session and reused on every request; it is reloaded (one select) only
+ * after {@link #invalidate(Integer)} reports that the user changed. Views are keyed on the user id,
+ * so a changed email (the principal keeps the one from login) still finds its user.
+ * Changes are tracked per JVM, so another instance keeps its cached view until its next change or login.
+ */
+@Service
+@Slf4j
+public class CurrentUserServices {
+
+    static final String SESSION_ATTRIBUTE = CurrentUserServices.class.getName() + ".currentUser";
+
+    private final UserRepoI userRepoI;
+    private final ReadRoutingServices readRoutingServices;
+
+    private final AtomicLong generation = new AtomicLong();
+    // user id -> generation of its last change; views cached before it are reloaded
+    private final ConcurrentHashMap<Integer, Long> changes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CurrentUserServices(UserRepoI userRepoI, ReadRoutingServices readRoutingServices) {
+        this.userRepoI = userRepoI;
+        this.readRoutingServices = readRoutingServices;
+    }
+
+    public Optional<CurrentUserDTO> resolve(HttpServletRequest request) {
+        Principal p = request.getUserPrincipal();
+        if (p == null) {
+            return Optional.empty();
+        }
+        Optional<CurrentUserDTO> atLogin = fromPrincipal(p);
+        if (atLogin.isEmpty()) {
+            // not a login of ours: nothing to key a cached view on
+            return readRoutingServices.onPrimary(() -> userRepoI.findByEmail(p.getName()))
+                    .map(user -> CurrentUserDTO.of(user, roles(p)));
+        }
+        // keyed on the id, which an email change leaves alone while the principal keeps the old email
+        Integer userId = atLogin.get().getId();
+        long changedAt = changes.getOrDefault(userId, 0L);
+
+        HttpSession session = request.getSession();
+        if (session.getAttribute(SESSION_ATTRIBUTE) instanceof Cached cached
+                && cached.getGeneration() >= changedAt
+                && cached.getUser().getId().equals(userId)) {
+            return Optional.of(cached.getUser());
+        }
+
+        // read before loading, so a change racing with the load forces another reload
+        long loadedAt = generation.get();
+        Optional<CurrentUserDTO> user = changedAt == 0 ? atLogin : load(userId, p);
+        user.ifPresentOrElse(
+                u -> session.setAttribute(SESSION_ATTRIBUTE, new Cached(u, loadedAt)),
+                () -> session.removeAttribute(SESSION_ATTRIBUTE));
+        return user;
+    }
+
+    // called once a write to the user's names, email or address has committed
+    public void invalidate(Integer userId) {
+        if (userId != null) {
+            changes.put(userId, generation.incrementAndGet());
+        }
+    }
+
+    private static Optional<CurrentUserDTO> fromPrincipal(Principal p) {
+        if (p instanceof Authentication auth && auth.getPrincipal() instanceof AppUserPrincipal principal) {
+            return Optional.of(principal.getCurrentUser());
+        }
+        return Optional.empty();
+    }
+
+    private Optional<CurrentUserDTO> load(Integer userId, Principal p) {
+        log.debug("CurrentUserServices: reloading current user {}", userId);
+        // a lagging replica would hand back the view from before the change, cached for the rest of the session
+        return readRoutingServices.onPrimary(() -> userRepoI.findWithAddressById(userId))
+                .map(user -> CurrentUserDTO.of(user, roles(p)));
+    }
+
+    private static List<String> roles(Principal p) {
+        if (p instanceof Authentication auth) {
+            return auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
+        }
+        return List.of();
+    }
+
+    @Value
+    private static class Cached implements Serializable {
+        CurrentUserDTO user;
+        long generation;
+    }
+}
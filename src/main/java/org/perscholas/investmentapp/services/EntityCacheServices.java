@@ -0,0 +1,54 @@
+package org.perscholas.investmentapp.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.perscholas.investmentapp.models.AuthGroup;
+import org.perscholas.investmentapp.models.Stock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+/**
+ * Explicit invalidation of the second-level cache. Writes through Hibernate keep the regions current
+ * on their own; JDBC writes bypass them, so those call in here, and the admin and account edits call
+ * in too so a change is visible on the very next read.
+ */
+@Service
+@Slf4j
+public class EntityCacheServices {
+
+    // must match the region hints on StockRepoI.findByTicker and AuthGroupRepoI.findByEmail
+    static final String STOCK_LOOKUPS = "stock-lookups";
+    static final String AUTH_GROUP_LOOKUPS = "auth-group-lookups";
+
+    private final Cache cache;
+
+    @Autowired
+    public EntityCacheServices(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    // a stock's row changed (price, name, description)
+    public void evictStock(int stockId) {
+        cache.evictEntityData(Stock.class, stockId);
+    }
+
+    public void evictStocks(Collection<Integer> stockIds) {
+        stockIds.forEach(this::evictStock);
+    }
+
+    // a ticker was added, removed or re-pointed
+    public void evictStockLookups() {
+        cache.evictQueryRegion(STOCK_LOOKUPS);
+    }
+
+    // a user's roles changed; role rows are few, so both regions go
+    public void evictAuthGroups(String email) {
+        log.debug("EntityCacheServices: evicting roles after a change for {}", email);
+        cache.evictEntityData(AuthGroup.class);
+        cache.evictQueryRegion(AUTH_GROUP_LOOKUPS);
+    }
+}
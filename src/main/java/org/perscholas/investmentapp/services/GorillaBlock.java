@@ -0,0 +1,233 @@
+package org.perscholas.investmentapp.services;
+
+/**
+ * Fixed-size block of compressed (timestamp, price, volume) points, Gorilla style:
+ * timestamps as delta-of-delta in variable-width buckets, prices as the XOR with the
+ * previous value (only the meaningful bits are stored) and volumes in bucketed widths.
+ * A regular per-second series costs a handful of bits per point.
+ * <p>
+ * One thread appends; any number of threads may decode concurrently. Bits are only ever
+ * set, and {@code count} is published last, so a reader that decodes {@code count} points
+ * never sees a half-written one.
+ */
+final class GorillaBlock {
+
+    static final int WORDS = 512;
+    // words plus object headers and fields, for memory accounting
+    static final int BYTES = WORDS * Long.BYTES + 80;
+
+    private static final int CAPACITY_BITS = WORDS * Long.BYTES * 8;
+    // largest possible encoding of one point: 36 (timestamp) + 77 (value) + 68 (volume)
+    private static final int MAX_POINT_BITS = 181;
+
+    private final long[] words = new long[WORDS];
+    final long startTs;
+
+    // writer state
+    private int bitPos;
+    private long lastTs;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeading = -1;
+    private int lastTrailing;
+
+    volatile long endTs;
+    volatile int count;
+
+    GorillaBlock(long ts, double value, long volume) {
+        this.startTs = ts;
+        writeBits(ts, 64);
+        long bits = Double.doubleToRawLongBits(value);
+        writeBits(bits, 64);
+        writeVolume(volume);
+        lastTs = ts;
+        lastValueBits = bits;
+        endTs = ts;
+        count = 1;
+    }
+
+    /**
+     * Appends a point later than the last one; returns false when the block is full or the
+     * gap is too large to encode, in which case the caller starts a new block.
+     */
+    boolean append(long ts, double value, long volume) {
+        long delta = ts - lastTs;
+        long dod = delta - lastDelta;
+        if (delta <= 0 || dod < Integer.MIN_VALUE || dod > Integer.MAX_VALUE
+                || bitPos + MAX_POINT_BITS > CAPACITY_BITS) {
+            return false;
+        }
+
+        writeTimestamp(dod);
+        writeValue(Double.doubleToRawLongBits(value));
+        writeVolume(volume);
+
+        lastDelta = delta;
+        lastTs = ts;
+        endTs = ts;
+        count = count + 1;
+        return true;
+    }
+
+    int usedBytes() {
+        return (bitPos + 7) >>> 3;
+    }
+
+    /**
+     * Feeds the points with from <= ts < to to the consumer; returns true when a point at
+     * or after {@code to} was reached, so later blocks need not be scanned.
+     */
+    boolean scan(long from, long to, TimeSeriesStore.PointConsumer consumer) {
+        int n = count;
+        Reader r = new Reader();
+
+        long ts = r.read(64);
+        long valueBits = r.read(64);
+        long volume = r.readVolume();
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+
+        for (int i = 0; ; ) {
+            if (ts >= to) {
+                return true;
+            }
+            if (ts >= from) {
+                consumer.accept(ts, Double.longBitsToDouble(valueBits), volume);
+            }
+            if (++i == n) {
+                return false;
+            }
+
+            delta += r.readTimestamp();
+            ts += delta;
+
+            if (r.read(1) != 0) {
+                if (r.read(1) != 0) {
+                    leading = (int) r.read(5);
+                    int length = (int) r.read(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                valueBits ^= r.read(64 - leading - trailing) << trailing;
+            }
+            volume = r.readVolume();
+        }
+    }
+
+    // '0' | '10'+7 | '110'+9 | '1110'+12 | '1111'+32
+    private void writeTimestamp(long dod) {
+        if (dod == 0) {
+            writeBits(0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            writeBits(0b10, 2);
+            writeBits(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            writeBits(0b110, 3);
+            writeBits(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(dod + 2047, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(dod, 32);
+        }
+    }
+
+    // '0' same value | '10' + bits inside the previous window | '11' + 5 leading + 6 length + bits
+    private void writeValue(long bits) {
+        long xor = bits ^ lastValueBits;
+        lastValueBits = bits;
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+        } else {
+            int length = 64 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(length - 1, 6);
+            writeBits(xor >>> trailing, length);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+    }
+
+    // '0' zero | '10'+8 | '110'+16 | '1110'+32 | '1111'+64
+    private void writeVolume(long volume) {
+        if (volume == 0) {
+            writeBits(0, 1);
+        } else if (volume > 0 && volume < 1L << 8) {
+            writeBits(0b10, 2);
+            writeBits(volume, 8);
+        } else if (volume > 0 && volume < 1L << 16) {
+            writeBits(0b110, 3);
+            writeBits(volume, 16);
+        } else if (volume > 0 && volume < 1L << 32) {
+            writeBits(0b1110, 4);
+            writeBits(volume, 32);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(volume, 64);
+        }
+    }
+
+    // most significant bit first
+    private void writeBits(long value, int n) {
+        if (n == 0) {
+            return;
+        }
+        if (n < 64) {
+            value &= (1L << n) - 1;
+        }
+        int word = bitPos >>> 6;
+        int free = 64 - (bitPos & 63);
+        if (n <= free) {
+            words[word] |= value << (free - n);
+        } else {
+            words[word] |= value >>> (n - free);
+            words[word + 1] |= value << (64 - (n - free));
+        }
+        bitPos += n;
+    }
+
+    private final class Reader {
+        private int pos;
+
+        long read(int n) {
+            if (n == 0) {
+                return 0;
+            }
+            int word = pos >>> 6;
+            int free = 64 - (pos & 63);
+            long value;
+            if (n <= free) {
+                value = words[word] >>> (free - n);
+            } else {
+                value = (words[word] << (n - free)) | (words[word + 1] >>> (64 - (n - free)));
+            }
+            pos += n;
+            return n == 64 ? value : value & ((1L << n) - 1);
+        }
+
+        long readTimestamp() {
+            if (read(1) == 0) return 0;
+            if (read(1) == 0) return read(7) - 63;
+            if (read(1) == 0) return read(9) - 255;
+            if (read(1) == 0) return read(12) - 2047;
+            return (int) read(32);
+        }
+
+        long readVolume() {
+            if (read(1) == 0) return 0;
+            if (read(1) == 0) return read(8);
+            if (read(1) == 0) return read(16);
+            if (read(1) == 0) return read(32);
+            return read(64);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest quote per ticker, for hot price reads that should not touch the database.
+ * Tickers get a dense id on first write; fields live in primitive arrays indexed by that id.
+ * Each slot is guarded by a sequence number (seqlock): the writer makes it odd, writes the
+ * fields and makes it even again, and readers retry if the sequence moved under them.
+ * Reads take no lock and allocate nothing. Writes are serialized on the table monitor, so
+ * there is only ever one writer at a time.
+ */
+@Component
+@Slf4j
+public class LatestQuoteTable {
+
+    private static final VarHandle SEQ = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int capacity;
+    // upper-case ticker -> slot id
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private final long[] seq;
+    private final double[] price;
+    private final double[] bid;
+    private final double[] ask;
+    private final double[] change;
+    // epoch millis of the quote, 0 for a price seeded from the stocks table
+    private final long[] time;
+
+    // guarded by this
+    private int size;
+    private boolean fullLogged;
+
+    @Autowired
+    public LatestQuoteTable(MeterRegistry meterRegistry,
+                            @Value("${market.latest-quotes.capacity:8192}") int capacity) {
+        this.capacity = capacity;
+        this.seq = new long[capacity];
+        this.price = new double[capacity];
+        this.bid = new double[capacity];
+        this.ask = new double[capacity];
+        this.change = new double[capacity];
+        this.time = new long[capacity];
+        Arrays.fill(price, Double.NaN);
+        Arrays.fill(bid, Double.NaN);
+        Arrays.fill(ask, Double.NaN);
+        Arrays.fill(change, Double.NaN);
+
+        Gauge.builder("market.latest-quotes.size", ids, ConcurrentHashMap::size)
+                .description("Tickers held in the latest-quote table")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Slot id for an upper-case ticker, or -1 if the table has never seen it.
+     * Callers on a hot path should resolve the id once and reuse it.
+     */
+    public int idOf(String ticker) {
+        Integer id = ids.get(ticker);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Latest price in the slot, or NaN when there is none.
+     */
+    public double price(int id) {
+        if (id < 0 || id >= capacity) {
+            return Double.NaN;
+        }
+        while (true) {
+            long before = (long) SEQ.getAcquire(seq, id);
+            if ((before & 1) == 0) {
+                double p = price[id];
+                VarHandle.loadLoadFence();
+                if ((long) SEQ.getAcquire(seq, id) == before) {
+                    return p;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Latest price for an upper-case ticker, or {@code fallback} when the table has none.
+     */
+    public double priceOr(String ticker, double fallback) {
+        double p = price(idOf(ticker));
+        return Double.isNaN(p) ? fallback : p;
+    }
+
+    /**
+     * Copies a consistent snapshot of the slot into {@code into}; returns false when the slot is empty.
+     */
+    public boolean read(int id, QuoteView into) {
+        if (id < 0 || id >= capacity) {
+            return false;
+        }
+        while (true) {
+            long before = (long) SEQ.getAcquire(seq, id);
+            if ((before & 1) == 0) {
+                into.price = price[id];
+                into.bid = bid[id];
+                into.ask = ask[id];
+                into.change = change[id];
+                into.time = time[id];
+                VarHandle.loadLoadFence();
+                if ((long) SEQ.getAcquire(seq, id) == before) {
+                    return before != 0;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Stores an upstream quote (RapidAPI quoteResponse.result[] element). Quotes without a
+     * numeric regularMarketPrice, or older than the one already held, are ignored.
+     */
+    public void update(String ticker, JsonNode quote) {
+        JsonNode p = quote.path("regularMarketPrice");
+        if (!p.isNumber()) {
+            return;
+        }
+        long seconds = quote.path("regularMarketTime").asLong(0);
+        update(ticker,
+                p.asDouble(),
+                quote.path("bid").asDouble(Double.NaN),
+                quote.path("ask").asDouble(Double.NaN),
+                quote.path("regularMarketChange").asDouble(Double.NaN),
+                seconds > 0 ? seconds * 1000 : System.currentTimeMillis());
+    }
+
+    public synchronized void update(String ticker, double price, double bid, double ask, double change, long time) {
+        int id = register(ticker);
+        if (id < 0 || time < this.time[id]) {
+            return;
+        }
+        write(id, price, bid, ask, change, time);
+    }
+
+    /**
+     * Fills an empty slot with a stored price (e.g. stocks.price) so reads have something
+     * before the first quote arrives; never overwrites a real quote.
+     */
+    public synchronized void seed(String ticker, double price) {
+        int id = register(ticker);
+        if (id < 0 || seq[id] != 0) {
+            return;
+        }
+        write(id, price, Double.NaN, Double.NaN, Double.NaN, 0);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    // writer only, under the table monitor
+    private void write(int id, double price, double bid, double ask, double change, long time) {
+        long s = seq[id];
+        SEQ.setOpaque(seq, id, s + 1);
+        VarHandle.storeStoreFence();
+        this.price[id] = price;
+        this.bid[id] = bid;
+        this.ask[id] = ask;
+        this.change[id] = change;
+        this.time[id] = time;
+        SEQ.setRelease(seq, id, s + 2);
+    }
+
+    // writer only, under the table monitor
+    private int register(String ticker) {
+        Integer id = ids.get(ticker);
+        if (id != null) {
+            return id;
+        }
+        if (size == capacity) {
+            if (!fullLogged) {
+                fullLogged = true;
+                log.warn("LatestQuoteTable: capacity {} reached, new tickers are not tracked", capacity);
+            }
+            return -1;
+        }
+        ids.put(ticker, size);
+        return size++;
+    }
+
+    /**
+     * Caller-owned holder for {@link #read(int, QuoteView)}, reusable across reads.
+     */
+    public static final class QuoteView {
+        double price;
+        double bid;
+        double ask;
+        double change;
+        long time;
+
+        public double getPrice() {
+            return price;
+        }
+
+        public double getBid() {
+            return bid;
+        }
+
+        public double getAsk() {
+            return ask;
+        }
+
+        public double getChange() {
+            return change;
+        }
+
+        public long getTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.LeaderboardDTO;
+import org.perscholas.investmentapp.dto.LeaderboardEntryDTO;
+import org.perscholas.investmentapp.dto.LeaderboardOrder;
+import org.perscholas.investmentapp.dto.LeaderboardStandingDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Every portfolio in the valuation engine ranked by value and by daily return, so a top-N or
+ * a user's rank and percentile is an O(log n) lookup rather than an ORDER BY over computed
+ * values. Each refresh takes only the users whose totals moved since the last one
+ * (PortfolioValuationServices.drainMovedTotals) and moves them in both {@link RankIndex}es;
+ * a user whose holdings ticked ten times in between is re-ranked once.
+ * Ranks trail the live totals by up to one refresh interval.
+ */
+@Service
+@Slf4j
+public class LeaderboardServices {
+
+    // updates applied per write-lock hold, so a rank query waits for one chunk at most
+    private static final int CHUNK = 1024;
+
+    private final PortfolioValuationServices portfolioValuationServices;
+    private final UserRepoI userRepoI;
+    private final int maxLimit;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock
+    private final RankIndex byValue = new RankIndex();
+    private final RankIndex byDayReturn = new RankIndex();
+
+    private final Timer refreshTimer;
+
+    @Autowired
+    public LeaderboardServices(PortfolioValuationServices portfolioValuationServices,
+                               UserRepoI userRepoI,
+                               MeterRegistry meterRegistry,
+                               @Value("${portfolio.leaderboard.max-limit:100}") int maxLimit) {
+        this.portfolioValuationServices = portfolioValuationServices;
+        this.userRepoI = userRepoI;
+        this.maxLimit = maxLimit;
+
+        this.refreshTimer = Timer.builder("portfolio.leaderboard.refresh")
+                .description("Time to re-rank the portfolios whose totals moved")
+                .register(meterRegistry);
+        Gauge.builder("portfolio.leaderboard.ranked", this, LeaderboardServices::ranked)
+                .description("Portfolios on the leaderboard")
+                .register(meterRegistry);
+    }
+
+    // one refresh at a time: an older drain must not land after a newer one
+    @Scheduled(fixedDelayString = "${portfolio.leaderboard.refresh-interval-ms:1000}")
+    public synchronized void refresh() {
+        PortfolioValuationServices.MovedTotals moved = portfolioValuationServices.drainMovedTotals();
+        if (moved.isEmpty()) {
+            return;
+        }
+        refreshTimer.record(() -> apply(moved));
+        if (moved.reloaded) {
+            log.info("LeaderboardServices: re-ranked {} portfolios after a reload", moved.size);
+        }
+    }
+
+    public int ranked() {
+        lock.readLock().lock();
+        try {
+            return byValue.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LeaderboardStandingDTO standing(int userId) {
+        lock.readLock().lock();
+        try {
+            int ranked = byValue.size();
+            int valueRank = byValue.rank(userId);
+            int dayReturnRank = byDayReturn.rank(userId);
+            return new LeaderboardStandingDTO(userId, ranked,
+                    valueRank, percentile(valueRank, ranked),
+                    dayReturnRank, percentile(dayReturnRank, ranked),
+                    valueRank == 0 ? 0 : byValue.score(userId),
+                    dayReturnRank == 0 ? 0 : byDayReturn.score(userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The first limit portfolios in the given order (at most portfolio.leaderboard.max-limit),
+     * with the user's own standing. Names come from one primary-key query for those rows.
+     */
+    public LeaderboardDTO leaderboard(int userId, LeaderboardOrder order, int limit) {
+        int n = Math.max(0, Math.min(limit, maxLimit));
+        List<LeaderboardEntryDTO> top = new ArrayList<>(n);
+        int ranked;
+        lock.readLock().lock();
+        try {
+            ranked = byValue.size();
+            int[] ids = (order == LeaderboardOrder.DAY_RETURN ? byDayReturn : byValue).top(n);
+            for (int k = 0; k < ids.length; k++) {
+                top.add(new LeaderboardEntryDTO(k + 1, ids[k], null,
+                        byValue.score(ids[k]), byDayReturn.score(ids[k])));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!top.isEmpty()) {
+            Map<Integer, String> names = userRepoI.findLeaderboardNames(
+                            top.stream().map(LeaderboardEntryDTO::getUserId).toList()).stream()
+                    .collect(Collectors.toMap(LeaderboardEntryDTO::getUserId, LeaderboardEntryDTO::getName));
+            top.forEach(entry -> entry.setName(names.get(entry.getUserId())));
+        }
+        return new LeaderboardDTO(order, ranked, top, standing(userId));
+    }
+
+    // share of the ranked portfolios at or below this rank, 0..100; 0 when not ranked
+    static double percentile(int rank, int ranked) {
+        return rank == 0 ? 0 : 100.0 * (ranked - rank + 1) / ranked;
+    }
+
+    // the day's move over the value at the previous close
+    static double dayReturn(double value, double dayPnl) {
+        double open = value - dayPnl;
+        return open > 0 ? dayPnl / open : 0;
+    }
+
+    private void apply(PortfolioValuationServices.MovedTotals moved) {
+        lock.writeLock().lock();
+        try {
+            if (moved.reloaded) {
+                byValue.clear();
+                byDayReturn.clear();
+            }
+            for (int userId : moved.removedUserIds) {
+                byValue.remove(userId);
+                byDayReturn.remove(userId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (int from = 0; from < moved.size; from += CHUNK) {
+            int to = Math.min(from + CHUNK, moved.size);
+            lock.writeLock().lock();
+            try {
+                for (int k = from; k < to; k++) {
+                    byValue.put(moved.userIds[k], moved.values[k]);
+                    byDayReturn.put(moved.userIds[k], dayReturn(moved.values[k], moved.dayPnls[k]));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
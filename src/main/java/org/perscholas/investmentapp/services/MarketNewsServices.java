@@ -0,0 +1,246 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.client.MarketDataClient;
+import org.perscholas.investmentapp.client.MarketDataSource;
+import org.perscholas.investmentapp.dto.MarketNewsDTO;
+import org.perscholas.investmentapp.dto.NewsItemDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stale-while-revalidate cache for the RapidAPI news/list endpoint, one entry per (category, region).
+ * Once an entry is loaded it is always answered from memory: stale entries are refreshed in the
+ * background and a failed refresh keeps the last good payload.
+ */
+@Service
+@Slf4j
+public class MarketNewsServices {
+
+    private final MarketDataSource marketDataSource;
+    private final ObjectMapper objectMapper;
+
+    private final Duration staleAfter;
+    private final int maxItems;
+    private final int maxKeys;
+
+    // key = CATEGORY:REGION
+    private final ConcurrentHashMap<String, NewsEntry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<NewsEntry>> loading = new ConcurrentHashMap<>();
+
+    private final Counter hitCounter;
+    private final Counter staleCounter;
+    private final Counter missCounter;
+    private final Counter refreshFailureCounter;
+
+    @Autowired
+    public MarketNewsServices(MarketDataSource marketDataSource,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${market.news.stale-after:5m}") Duration staleAfter,
+                              @Value("${market.news.max-items:20}") int maxItems,
+                              @Value("${market.news.max-keys:32}") int maxKeys,
+                              @Value("${market.news.warm-keys:generalnews:US}") List<String> warmKeys) {
+        this.marketDataSource = marketDataSource;
+        this.objectMapper = objectMapper;
+        this.staleAfter = staleAfter;
+        this.maxItems = maxItems;
+        this.maxKeys = maxKeys;
+
+        this.hitCounter = Counter.builder("market.news.cache").tag("result", "hit").register(meterRegistry);
+        this.staleCounter = Counter.builder("market.news.cache").tag("result", "stale").register(meterRegistry);
+        this.missCounter = Counter.builder("market.news.cache").tag("result", "miss").register(meterRegistry);
+        this.refreshFailureCounter = Counter.builder("market.news.refresh.failures").register(meterRegistry);
+
+        // warm keys are registered empty so the first scheduled refresh loads them before any page asks
+        for (String warmKey : warmKeys) {
+            String[] parts = warmKey.split(":");
+            if (parts.length == 2) {
+                cache.putIfAbsent(key(parts[0], parts[1]), new NewsEntry(parts[0], parts[1]));
+            }
+        }
+    }
+
+    /**
+     * Completes with the trimmed news payload as JSON. Only a cold (category, region)
+     * pair waits for the upstream; everything else is served from memory.
+     */
+    public CompletableFuture<String> getNews(String category, String region) {
+        String c = normalize(category);
+        String r = normalize(region);
+        String key = key(c, r);
+
+        NewsEntry entry = cache.get(key);
+        if (entry != null && entry.getPayload() != null) {
+            if (entry.isStale(staleAfter)) {
+                staleCounter.increment();
+                refreshAsync(entry);
+            } else {
+                hitCounter.increment();
+            }
+            return CompletableFuture.completedFuture(entry.getPayload());
+        }
+
+        missCounter.increment();
+        if (entry == null && cache.size() >= maxKeys) {
+            // unknown pair and the cache is full: answer it without remembering it
+            log.debug("MarketNewsServices: cache full, pass-through for {}", key);
+            return load(new NewsEntry(c, r)).thenApply(NewsEntry::getPayload);
+        }
+
+        NewsEntry target = entry != null ? entry : cache.computeIfAbsent(key, k -> new NewsEntry(c, r));
+        CompletableFuture<NewsEntry> mine = new CompletableFuture<>();
+        CompletableFuture<NewsEntry> existing = loading.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing.thenApply(NewsEntry::getPayload);
+        }
+
+        load(target).whenComplete((loaded, error) -> {
+            loading.remove(key, mine);
+            if (error != null) {
+                if (entry == null) {
+                    // don't keep retrying a pair that has never loaded and was only asked for once
+                    cache.remove(key, target);
+                }
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(loaded);
+            }
+        });
+        return mine.thenApply(NewsEntry::getPayload);
+    }
+
+    // keeps every known (category, region) pair warm, even when nobody is asking for it
+    @Scheduled(initialDelayString = "${market.news.initial-delay-ms:0}",
+            fixedDelayString = "${market.news.refresh-interval-ms:300000}")
+    public void refreshAll() {
+        for (NewsEntry entry : cache.values()) {
+            refreshAsync(entry);
+        }
+    }
+
+    private void refreshAsync(NewsEntry entry) {
+        if (!entry.getRefreshing().compareAndSet(false, true)) {
+            return;
+        }
+        load(entry).whenComplete((loaded, error) -> {
+            entry.getRefreshing().set(false);
+            if (error != null) {
+                refreshFailureCounter.increment();
+                log.warn("MarketNewsServices: refresh failed for {}/{}, keeping last good payload: {}",
+                        entry.getCategory(), entry.getRegion(), MarketDataClient.describe(error));
+            }
+        });
+    }
+
+    private CompletableFuture<NewsEntry> load(NewsEntry entry) {
+        CompletableFuture<String> body;
+        try {
+            body = marketDataSource.get("/news/list",
+                    Map.of("category", entry.getCategory(), "region", entry.getRegion()));
+        } catch (RuntimeException e) {
+            body = CompletableFuture.failedFuture(e);
+        }
+
+        return body.thenApply(json -> {
+            List<NewsItemDTO> items = parseItems(json, entry);
+            long fetchedAt = System.currentTimeMillis();
+            try {
+                String payload = objectMapper.writeValueAsString(
+                        new MarketNewsDTO(entry.getCategory(), entry.getRegion(), fetchedAt, items));
+                entry.update(payload, fetchedAt);
+            } catch (JsonProcessingException e) {
+                throw new CompletionException(e);
+            }
+            log.debug("MarketNewsServices: loaded {} items for {}/{}", items.size(), entry.getCategory(), entry.getRegion());
+            return entry;
+        });
+    }
+
+    private List<NewsItemDTO> parseItems(String json, NewsEntry entry) {
+        JsonNode result;
+        try {
+            result = objectMapper.readTree(json).path("items").path("result");
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
+        }
+        if (!result.isArray()) {
+            throw new IllegalStateException("MarketNewsServices: unexpected news payload for "
+                    + entry.getCategory() + "/" + entry.getRegion());
+        }
+
+        List<NewsItemDTO> items = new ArrayList<>();
+        for (JsonNode item : result) {
+            if (items.size() >= maxItems) break;
+            items.add(new NewsItemDTO(
+                    item.path("title").asText(null),
+                    item.path("link").asText(null),
+                    item.path("summary").asText(null),
+                    item.path("main_image").path("original_url").asText(null)));
+        }
+        return items;
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    private static String key(String category, String region) {
+        return category.toLowerCase(Locale.ROOT) + ":" + region.toUpperCase(Locale.ROOT);
+    }
+
+    private static class NewsEntry {
+        private final String category;
+        private final String region;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+        private volatile String payload;
+        private volatile long fetchedAt;
+
+        NewsEntry(String category, String region) {
+            this.category = category;
+            this.region = region;
+        }
+
+        String getCategory() {
+            return category;
+        }
+
+        String getRegion() {
+            return region;
+        }
+
+        AtomicBoolean getRefreshing() {
+            return refreshing;
+        }
+
+        String getPayload() {
+            return payload;
+        }
+
+        boolean isStale(Duration staleAfter) {
+            return System.currentTimeMillis() - fetchedAt > staleAfter.toMillis();
+        }
+
+        void update(String payload, long fetchedAt) {
+            this.payload = payload;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
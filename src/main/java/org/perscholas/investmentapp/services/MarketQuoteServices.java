@@ -0,0 +1,333 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.client.MarketDataClient;
+import org.perscholas.investmentapp.client.MarketDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-ticker quote cache in front of the RapidAPI get-quotes endpoint.
+ * A request for "AAPL,MSFT" is answered from cached entries and only the
+ * missing tickers go upstream; concurrent misses for the same ticker share
+ * a single in-flight upstream call. The cache is bounded: past max-entries, expired quotes go
+ * first, then the least recently fetched ones.
+ */
+@Service
+@Slf4j
+public class MarketQuoteServices {
+
+    // regions the upstream serves; anything else is rejected before it can become a cache key
+    private static final Set<String> REGIONS = Set.of("US", "AU", "CA", "FR", "DE", "HK", "IT", "ES", "GB", "IN", "BR", "SG");
+
+    private final MarketDataSource marketDataSource;
+    private final ObjectMapper objectMapper;
+    private final LatestQuoteTable latestQuoteTable;
+    private final PriceHistoryServices priceHistoryServices;
+    private final PortfolioValuationServices portfolioValuationServices;
+
+    private final Duration cacheTtl;
+    private final int maxEntries;
+    private final Duration coalesceTimeout;
+    private final Duration staleIfError;
+
+    // key = REGION:TICKER
+    private final ConcurrentHashMap<String, CachedQuote> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<JsonNode>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter coalescedCounter;
+    private final Counter staleCounter;
+
+    @Autowired
+    public MarketQuoteServices(MarketDataSource marketDataSource,
+                               ObjectMapper objectMapper,
+                               LatestQuoteTable latestQuoteTable,
+                               PriceHistoryServices priceHistoryServices,
+                               PortfolioValuationServices portfolioValuationServices,
+                               MeterRegistry meterRegistry,
+                               @Value("${market.quotes.cache-ttl:15s}") Duration cacheTtl,
+                               @Value("${market.quotes.cache-max-entries:5000}") int maxEntries,
+                               @Value("${market.quotes.coalesce-timeout:10s}") Duration coalesceTimeout,
+                               @Value("${market.quotes.stale-if-error:1h}") Duration staleIfError) {
+        this.marketDataSource = marketDataSource;
+        this.objectMapper = objectMapper;
+        this.latestQuoteTable = latestQuoteTable;
+        this.priceHistoryServices = priceHistoryServices;
+        this.portfolioValuationServices = portfolioValuationServices;
+        this.cacheTtl = cacheTtl;
+        this.maxEntries = maxEntries;
+        this.coalesceTimeout = coalesceTimeout;
+        this.staleIfError = staleIfError;
+
+        this.hitCounter = Counter.builder("market.quotes.cache")
+                .description("Quote lookups served from the per-ticker cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("market.quotes.cache")
+                .description("Quote lookups that triggered an upstream fetch")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("market.quotes.cache")
+                .description("Quote lookups that joined an already in-flight upstream fetch")
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        this.staleCounter = Counter.builder("market.quotes.cache")
+                .description("Quote lookups answered with a last-known quote because the upstream failed")
+                .tag("result", "stale")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("market.quotes.cache.size", List.of(), cache);
+    }
+
+    /**
+     * Completes with the quotes for a comma separated list of symbols, keeping the
+     * RapidAPI response shape (quoteResponse.result[]) so the front end is unchanged.
+     */
+    public CompletableFuture<String> getQuotes(String region, String symbols) {
+        List<String> tickers = parseTickers(symbols);
+        return lookup(region, tickers).thenApply(quotes -> render(tickers, quotes));
+    }
+
+    /**
+     * Resolves every ticker from the cache, an in-flight fetch, or one batched
+     * upstream call for whatever is left. Tickers the upstream does not know are absent.
+     */
+    public CompletableFuture<Map<String, JsonNode>> lookup(String region, List<String> tickers) {
+        return lookup(region, tickers, cacheTtl);
+    }
+
+    /**
+     * Same as {@link #lookup(String, List)} but only accepts cached quotes younger than
+     * {@code maxAge}; pollers use this to force fresh data while still refreshing the shared cache.
+     */
+    public CompletableFuture<Map<String, JsonNode>> lookup(String region, List<String> tickers, Duration maxAge) {
+        String normalizedRegion = normalizeRegion(region);
+        long now = System.currentTimeMillis();
+        long oldestAccepted = now - Math.min(maxAge.toMillis(), cacheTtl.toMillis());
+
+        Map<String, JsonNode> found = new LinkedHashMap<>();
+        Map<String, CompletableFuture<JsonNode>> waiting = new LinkedHashMap<>();
+        Map<String, CompletableFuture<JsonNode>> owned = new LinkedHashMap<>();
+
+        for (String ticker : tickers) {
+            String key = key(normalizedRegion, ticker);
+
+            CachedQuote cached = cache.get(key);
+            if (cached != null && cached.fetchedAt() > oldestAccepted) {
+                hitCounter.increment();
+                found.put(ticker, cached.quote());
+                continue;
+            }
+
+            CompletableFuture<JsonNode> mine = new CompletableFuture<>();
+            CompletableFuture<JsonNode> existing = inFlight.putIfAbsent(key, mine);
+            if (existing != null) {
+                coalescedCounter.increment();
+                waiting.put(ticker, existing);
+            } else {
+                missCounter.increment();
+                waiting.put(ticker, mine);
+                owned.put(ticker, mine);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            fetchOwned(normalizedRegion, owned);
+        }
+        if (waiting.isEmpty()) {
+            return CompletableFuture.completedFuture(found);
+        }
+
+        return CompletableFuture.allOf(waiting.values().toArray(new CompletableFuture[0]))
+                .orTimeout(coalesceTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(done -> {
+                    waiting.forEach((ticker, future) -> {
+                        JsonNode quote = future.join();
+                        if (quote != null) {
+                            found.put(ticker, quote);
+                        }
+                    });
+                    return found;
+                });
+    }
+
+    private void fetchOwned(String region, Map<String, CompletableFuture<JsonNode>> owned) {
+        log.debug("MarketQuoteServices: upstream fetch region={}, tickers={}", region, owned.keySet());
+
+        CompletableFuture<String> body;
+        try {
+            body = marketDataSource.get("/market/v2/get-quotes",
+                    Map.of("region", region, "symbols", String.join(",", owned.keySet())));
+        } catch (RuntimeException e) {
+            body = CompletableFuture.failedFuture(e);
+        }
+
+        body.thenApply(this::parseQuotes)
+                .whenComplete((fetched, error) -> {
+                    try {
+                        if (error != null) {
+                            log.warn("MarketQuoteServices.fetchOwned failed: region={}, tickers={}: {}",
+                                    region, owned.keySet(), MarketDataClient.describe(error));
+                            serveLastKnown(region, owned, error);
+                            return;
+                        }
+
+                        long fetchedAt = System.currentTimeMillis();
+                        if (cache.size() + fetched.size() > maxEntries) {
+                            evict(fetched.size());
+                        }
+                        owned.forEach((ticker, future) -> {
+                            JsonNode quote = fetched.get(ticker);
+                            if (quote != null) {
+                                cache.put(key(region, ticker), new CachedQuote(quote, fetchedAt));
+                            }
+                            future.complete(quote);
+                        });
+                        // after every waiter has its answer, so a failing consumer cannot hold them up
+                        owned.keySet().forEach(ticker -> {
+                            JsonNode quote = fetched.get(ticker);
+                            if (quote != null) {
+                                publish(ticker, quote);
+                            }
+                        });
+                    } finally {
+                        owned.forEach((ticker, future) -> inFlight.remove(key(region, ticker), future));
+                    }
+                });
+    }
+
+    // hands a fresh quote to each consumer of live prices; one failing does not skip the others
+    private void publish(String ticker, JsonNode quote) {
+        try {
+            latestQuoteTable.update(ticker, quote);
+        } catch (RuntimeException e) {
+            log.warn("MarketQuoteServices: latest quote update failed: ticker={}: {}", ticker, e.getMessage());
+        }
+        try {
+            priceHistoryServices.record(ticker, quote);
+        } catch (RuntimeException e) {
+            log.warn("MarketQuoteServices: price history record failed: ticker={}: {}", ticker, e.getMessage());
+        }
+        try {
+            portfolioValuationServices.onQuote(ticker, quote);
+        } catch (RuntimeException e) {
+            log.warn("MarketQuoteServices: portfolio valuation update failed: ticker={}: {}", ticker, e.getMessage());
+        }
+    }
+
+    // upstream failed or the breaker is open: answer with the last known quote while it is not too old
+    private void serveLastKnown(String region, Map<String, CompletableFuture<JsonNode>> owned, Throwable error) {
+        long oldestAccepted = System.currentTimeMillis() - staleIfError.toMillis();
+        owned.forEach((ticker, future) -> {
+            CachedQuote lastKnown = cache.get(key(region, ticker));
+            if (lastKnown != null && lastKnown.fetchedAt() > oldestAccepted) {
+                staleCounter.increment();
+                future.complete(lastKnown.quote());
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+    }
+
+    private Map<String, JsonNode> parseQuotes(String body) {
+        Map<String, JsonNode> bySymbol = new HashMap<>();
+        try {
+            JsonNode result = objectMapper.readTree(body).path("quoteResponse").path("result");
+            for (JsonNode quote : result) {
+                String symbol = quote.path("symbol").asText(null);
+                if (symbol != null) {
+                    bySymbol.put(symbol.toUpperCase(Locale.ROOT), quote);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
+        }
+        return bySymbol;
+    }
+
+    private String render(List<String> tickers, Map<String, JsonNode> quotes) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode quoteResponse = root.putObject("quoteResponse");
+        ArrayNode result = quoteResponse.putArray("result");
+        for (String ticker : tickers) {
+            JsonNode quote = quotes.get(ticker);
+            if (quote != null) {
+                result.add(quote);
+            }
+        }
+        quoteResponse.putNull("error");
+
+        try {
+            return objectMapper.writeValueAsString(root);
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // makes room for {@code incoming} quotes: expired ones first, then the least recently fetched
+    private void evict(int incoming) {
+        // entries are kept past their TTL so they can be served if the upstream fails
+        long oldestAccepted = System.currentTimeMillis() - Math.max(cacheTtl.toMillis(), staleIfError.toMillis());
+        cache.entrySet().removeIf(e -> e.getValue().fetchedAt() <= oldestAccepted);
+
+        // still full of live quotes: drop down to 90% so the next fetches do not sort again
+        int excess = cache.size() + incoming - (maxEntries - maxEntries / 10);
+        if (excess > 0) {
+            List<Map.Entry<String, CachedQuote>> entries = new ArrayList<>(cache.entrySet());
+            entries.sort(Comparator.comparingLong(e -> e.getValue().fetchedAt()));
+            for (int i = 0; i < Math.min(excess, entries.size()); i++) {
+                Map.Entry<String, CachedQuote> oldest = entries.get(i);
+                cache.remove(oldest.getKey(), oldest.getValue());
+            }
+        }
+        log.debug("MarketQuoteServices: evicted quotes, size now {}", cache.size());
+    }
+
+    /**
+     * Upper-cased region code, "US" when none is given. Throws IllegalArgumentException for
+     * a region the upstream does not serve.
+     */
+    public static String normalizeRegion(String region) {
+        String normalized = region == null ? "US" : region.trim().toUpperCase(Locale.ROOT);
+        if (!REGIONS.contains(normalized)) {
+            throw new IllegalArgumentException("MarketQuoteServices: unsupported region " + region);
+        }
+        return normalized;
+    }
+
+    static List<String> parseTickers(String symbols) {
+        Set<String> tickers = new LinkedHashSet<>();
+        if (symbols != null) {
+            for (String s : symbols.split(",")) {
+                String ticker = s.trim().toUpperCase(Locale.ROOT);
+                if (!ticker.isEmpty()) {
+                    tickers.add(ticker);
+                }
+            }
+        }
+        return new ArrayList<>(tickers);
+    }
+
+    private static String key(String region, String ticker) {
+        return region + ":" + ticker;
+    }
+
+    private record CachedQuote(JsonNode quote, long fetchedAt) {
+    }
+}
@@ -0,0 +1,329 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes quote updates to Server-Sent Events subscribers.
+ * One scheduled poller fetches the union of all subscribed tickers in batches
+ * (through MarketQuoteServices, so the shared cache is refreshed too) and fans
+ * the changed quotes out, so upstream cost follows distinct tickers rather than
+ * open dashboards. Emitters are servlet-async, so idle clients hold no thread.
+ * Writes to subscribers run on a small pool of sender threads, never on the market client's
+ * callback threads, and each subscriber may have only a few sends queued: past that, events
+ * for it are dropped, so one slow client neither stalls upstream handling nor grows a backlog.
+ * Each subscriber remembers the quotes last handed to its sender, so a quote dropped for a
+ * busy subscriber is offered again on the next poll while unchanged quotes are never re-sent.
+ */
+@Service
+@Slf4j
+public class MarketStreamServices {
+
+    private final MarketQuoteServices marketQuoteServices;
+    private final ObjectMapper objectMapper;
+
+    private final Duration pollInterval;
+    private final long emitterTimeoutMs;
+    private final int maxSubscribers;
+    private final int maxTickersPerSubscriber;
+    private final int batchSize;
+    private final int maxPendingSends;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // subscribers watching each (region, ticker)
+    private final ConcurrentHashMap<Watch, Set<Subscriber>> watchers = new ConcurrentHashMap<>();
+    private final AtomicBoolean polling = new AtomicBoolean(false);
+    private final ExecutorService senders;
+
+    private final Counter pushedCounter;
+    private final Counter droppedCounter;
+
+    @Autowired
+    public MarketStreamServices(MarketQuoteServices marketQuoteServices,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${market.stream.poll-interval-ms:5000}") long pollIntervalMs,
+                                @Value("${market.stream.emitter-timeout:30m}") Duration emitterTimeout,
+                                @Value("${market.stream.max-subscribers:10000}") int maxSubscribers,
+                                @Value("${market.stream.max-tickers-per-subscriber:50}") int maxTickersPerSubscriber,
+                                @Value("${market.stream.batch-size:50}") int batchSize,
+                                @Value("${market.stream.send-threads:4}") int sendThreads,
+                                @Value("${market.stream.max-pending-sends:4}") int maxPendingSends) {
+        this.marketQuoteServices = marketQuoteServices;
+        this.objectMapper = objectMapper;
+        this.pollInterval = Duration.ofMillis(pollIntervalMs);
+        this.emitterTimeoutMs = emitterTimeout.toMillis();
+        this.maxSubscribers = maxSubscribers;
+        this.maxTickersPerSubscriber = maxTickersPerSubscriber;
+        this.batchSize = batchSize;
+        this.maxPendingSends = maxPendingSends;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread t = new Thread(r, "market-stream-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.pushedCounter = Counter.builder("market.stream.events").tag("result", "pushed").register(meterRegistry);
+        this.droppedCounter = Counter.builder("market.stream.events").tag("result", "dropped").register(meterRegistry);
+        meterRegistry.gaugeCollectionSize("market.stream.subscribers", List.of(), subscribers);
+        meterRegistry.gaugeMapSize("market.stream.tickers", List.of(), watchers);
+    }
+
+    /**
+     * Registers a subscriber for the given symbols and sends it a snapshot from the cache.
+     * Throws IllegalArgumentException for an empty/oversized symbol list and
+     * IllegalStateException when the stream is at capacity.
+     */
+    public SseEmitter subscribe(String region, String symbols) {
+        List<String> tickers = MarketQuoteServices.parseTickers(symbols);
+        if (tickers.isEmpty() || tickers.size() > maxTickersPerSubscriber) {
+            throw new IllegalArgumentException("MarketStreamServices: between 1 and "
+                    + maxTickersPerSubscriber + " symbols are required");
+        }
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("MarketStreamServices: subscriber limit reached");
+        }
+
+        return subscribe(MarketQuoteServices.normalizeRegion(region), tickers, new SseEmitter(emitterTimeoutMs));
+    }
+
+    // the emitter is passed in so tests can watch sends without a servlet container
+    SseEmitter subscribe(String region, List<String> tickers, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, region, tickers);
+
+        subscribers.add(subscriber);
+        for (String ticker : tickers) {
+            watchers.compute(new Watch(region, ticker), (k, set) -> {
+                Set<Subscriber> watching = set != null ? set : ConcurrentHashMap.newKeySet();
+                watching.add(subscriber);
+                return watching;
+            });
+        }
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        marketQuoteServices.lookup(region, tickers).whenComplete((quotes, error) -> {
+            if (error != null) {
+                log.debug("MarketStreamServices: initial snapshot failed for {}, waiting for next poll", tickers);
+                return;
+            }
+            List<Quote> snapshot = new ArrayList<>();
+            quotes.forEach((ticker, quote) -> snapshot.add(new Quote(ticker, quote, toJson(quote))));
+            enqueue(subscriber, snapshot);
+        });
+
+        log.debug("MarketStreamServices: subscribed {} to {} (subscribers={})", region, tickers, subscribers.size());
+        return emitter;
+    }
+
+    // one upstream round per interval for the union of all subscribed tickers
+    @Scheduled(fixedDelayString = "${market.stream.poll-interval-ms:5000}")
+    public void poll() {
+        if (watchers.isEmpty() || !polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        Map<String, List<String>> byRegion = new HashMap<>();
+        for (Watch watch : watchers.keySet()) {
+            byRegion.computeIfAbsent(watch.region(), k -> new ArrayList<>()).add(watch.ticker());
+        }
+
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        byRegion.forEach((region, tickers) -> {
+            for (int i = 0; i < tickers.size(); i += batchSize) {
+                List<String> batch = tickers.subList(i, Math.min(i + batchSize, tickers.size()));
+                batches.add(marketQuoteServices.lookup(region, batch, pollInterval)
+                        .thenAccept(quotes -> fanOut(region, quotes)));
+            }
+        });
+
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]))
+                .whenComplete((done, error) -> {
+                    polling.set(false);
+                    if (error != null) {
+                        log.warn("MarketStreamServices: poll failed: {}", error.getMessage());
+                    }
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        senders.shutdownNow();
+    }
+
+    // keeps proxies from closing idle streams and flushes out clients that went away
+    @Scheduled(fixedDelayString = "${market.stream.heartbeat-interval-ms:20000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            submit(subscriber, () -> {
+                try {
+                    subscriber.getEmitter().send(SseEmitter.event().comment("keep-alive"));
+                } catch (IOException | IllegalStateException e) {
+                    subscriber.getEmitter().completeWithError(e);
+                    unsubscribe(subscriber);
+                }
+            });
+        }
+    }
+
+    private void fanOut(String region, Map<String, JsonNode> quotes) {
+        Map<Subscriber, List<Quote>> outgoing = new HashMap<>();
+
+        quotes.forEach((ticker, quote) -> {
+            Set<Subscriber> watching = watchers.get(new Watch(region, ticker));
+            if (watching == null) {
+                return;
+            }
+            Quote changed = null;
+            for (Subscriber subscriber : watching) {
+                if (quote.equals(subscriber.getSent().get(ticker))) {
+                    continue;
+                }
+                if (changed == null) {
+                    // serialize once per ticker, not once per subscriber
+                    changed = new Quote(ticker, quote, toJson(quote));
+                }
+                outgoing.computeIfAbsent(subscriber, s -> new ArrayList<>()).add(changed);
+            }
+        });
+
+        outgoing.forEach(this::enqueue);
+    }
+
+    // quotes count as sent once a sender has them; dropped ones are offered again next poll
+    private void enqueue(Subscriber subscriber, List<Quote> quotes) {
+        if (quotes.isEmpty()) {
+            return;
+        }
+        List<String> json = new ArrayList<>(quotes.size());
+        quotes.forEach(quote -> json.add(quote.json()));
+        if (submit(subscriber, () -> send(subscriber, json))) {
+            quotes.forEach(quote -> subscriber.getSent().put(quote.ticker(), quote.quote()));
+        }
+    }
+
+    // hands a write to a sender thread, unless the subscriber is already that far behind
+    private boolean submit(Subscriber subscriber, Runnable write) {
+        if (subscriber.getPending().incrementAndGet() > maxPendingSends) {
+            subscriber.getPending().decrementAndGet();
+            droppedCounter.increment();
+            return false;
+        }
+        try {
+            senders.execute(() -> {
+                try {
+                    write.run();
+                } finally {
+                    subscriber.getPending().decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            subscriber.getPending().decrementAndGet();
+            droppedCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void send(Subscriber subscriber, List<String> quotes) {
+        String data = "{\"quoteResponse\":{\"result\":[" + String.join(",", quotes) + "]}}";
+        try {
+            subscriber.getEmitter().send(SseEmitter.event().name("quotes").data(data, MediaType.APPLICATION_JSON));
+            pushedCounter.increment();
+        } catch (IOException | IllegalStateException e) {
+            droppedCounter.increment();
+            subscriber.getEmitter().completeWithError(e);
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (String ticker : subscriber.getTickers()) {
+            watchers.computeIfPresent(new Watch(subscriber.getRegion(), ticker), (k, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        log.debug("MarketStreamServices: unsubscribed (subscribers={})", subscribers.size());
+    }
+
+    private String toJson(JsonNode quote) {
+        try {
+            return objectMapper.writeValueAsString(quote);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Watch(String region, String ticker) {
+    }
+
+    private record Quote(String ticker, JsonNode quote, String json) {
+    }
+
+    // identity equality on purpose: two tabs with the same tickers are two subscribers
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final String region;
+        private final List<String> tickers;
+        // sends queued or running for this subscriber
+        private final AtomicInteger pending = new AtomicInteger();
+        // last quote handed to a sender per ticker
+        private final ConcurrentHashMap<String, JsonNode> sent = new ConcurrentHashMap<>();
+
+        Subscriber(SseEmitter emitter, String region, List<String> tickers) {
+            this.emitter = emitter;
+            this.region = region;
+            this.tickers = tickers;
+        }
+
+        SseEmitter getEmitter() {
+            return emitter;
+        }
+
+        String getRegion() {
+            return region;
+        }
+
+        List<String> getTickers() {
+            return tickers;
+        }
+
+        AtomicInteger getPending() {
+            return pending;
+        }
+
+        ConcurrentHashMap<String, JsonNode> getSent() {
+            return sent;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dto.HoldingValuationDTO;
+import org.perscholas.investmentapp.dto.PortfolioFrameDTO;
+import org.perscholas.investmentapp.dto.PortfolioValuationDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes each connected user's portfolio value over /user/portfolio/live (PortfolioSocketHandler).
+ * Price ticks and position changes only mark the sessions they concern as dirty: a session is
+ * indexed by the tickers its user holds, so a tick on one ticker finds its watchers directly.
+ * Every push interval the dirty sessions are valued and sent one frame each, so a session gets
+ * at most one frame per interval however many ticks arrived. A session's first frame is a
+ * snapshot; after that a frame carries the totals plus only the holdings whose shares, price
+ * or day P&L moved, and is skipped when nothing did.
+ * Sends go through a ConcurrentWebSocketSessionDecorator with a time and buffer limit, so a
+ * slow client is dropped rather than holding up the others. Sessions are container-async and
+ * hold no thread while idle.
+ */
+@Service
+@Slf4j
+public class PortfolioPushServices implements PortfolioValuationServices.Listener {
+
+    private final PortfolioValuationServices portfolioValuationServices;
+    private final ObjectMapper objectMapper;
+
+    private final int maxSessions;
+    private final int sendTimeLimitMs;
+    private final int bufferSizeLimit;
+    private final int senderThreads;
+    private final ExecutorService senders;
+
+    // WebSocket session id -> live session
+    private final ConcurrentHashMap<String, LiveSession> sessions = new ConcurrentHashMap<>();
+    // user id -> that user's sessions (tabs)
+    private final ConcurrentHashMap<Integer, Set<LiveSession>> byUser = new ConcurrentHashMap<>();
+    // upper-case ticker -> sessions whose user holds it
+    private final ConcurrentHashMap<String, Set<LiveSession>> byTicker = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<LiveSession> dirty = new ConcurrentLinkedQueue<>();
+
+    private final Counter snapshotCounter;
+    private final Counter deltaCounter;
+    private final Counter droppedCounter;
+
+    @Autowired
+    public PortfolioPushServices(PortfolioValuationServices portfolioValuationServices,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${portfolio.push.max-sessions:50000}") int maxSessions,
+                                 @Value("${portfolio.push.send-time-limit-ms:5000}") int sendTimeLimitMs,
+                                 @Value("${portfolio.push.buffer-size-limit:65536}") int bufferSizeLimit,
+                                 @Value("${portfolio.push.send-threads:4}") int senderThreads) {
+        this.portfolioValuationServices = portfolioValuationServices;
+        this.objectMapper = objectMapper;
+        this.maxSessions = maxSessions;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.senderThreads = senderThreads;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "portfolio-push-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.snapshotCounter = Counter.builder("portfolio.push.frames").tag("type", "snapshot").register(meterRegistry);
+        this.deltaCounter = Counter.builder("portfolio.push.frames").tag("type", "delta").register(meterRegistry);
+        this.droppedCounter = Counter.builder("portfolio.push.frames").tag("type", "dropped").register(meterRegistry);
+        meterRegistry.gaugeMapSize("portfolio.push.sessions", List.of(), sessions);
+        meterRegistry.gaugeMapSize("portfolio.push.tickers", List.of(), byTicker);
+
+        portfolioValuationServices.addListener(this);
+    }
+
+    // false when the node is at its session limit
+    public boolean open(WebSocketSession session, int userId) {
+        if (sessions.size() >= maxSessions) {
+            return false;
+        }
+        LiveSession live = new LiveSession(
+                new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit), userId);
+        sessions.put(session.getId(), live);
+        byUser.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(live);
+        // the snapshot goes out with the next push
+        markDirty(live);
+        log.debug("PortfolioPushServices: user {} connected (sessions={})", userId, sessions.size());
+        return true;
+    }
+
+    public void close(WebSocketSession session) {
+        LiveSession live = sessions.remove(session.getId());
+        if (live != null) {
+            unregister(live);
+        }
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    @Override
+    public void tickerMoved(String ticker) {
+        Set<LiveSession> watching = byTicker.get(ticker);
+        if (watching != null) {
+            watching.forEach(this::markDirty);
+        }
+    }
+
+    @Override
+    public void portfolioChanged(int userId) {
+        Set<LiveSession> own = byUser.get(userId);
+        if (own != null) {
+            own.forEach(this::markDirty);
+        }
+    }
+
+    @Override
+    public void rebuilt() {
+        sessions.values().forEach(this::markDirty);
+    }
+
+    /**
+     * Sends every dirty session its frame, split across the sender threads, and waits for them,
+     * so the next push cannot start before this one is out.
+     */
+    @Scheduled(fixedDelayString = "${portfolio.push.interval-ms:250}")
+    public void push() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<LiveSession> batch = new ArrayList<>();
+        LiveSession next;
+        while ((next = dirty.poll()) != null) {
+            batch.add(next);
+        }
+        int chunk = (batch.size() + senderThreads - 1) / senderThreads;
+        List<Future<?>> sends = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += chunk) {
+            List<LiveSession> part = batch.subList(from, Math.min(from + chunk, batch.size()));
+            sends.add(senders.submit(() -> part.forEach(this::send)));
+        }
+        for (Future<?> send : sends) {
+            try {
+                send.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.warn("PortfolioPushServices: push failed: {}", e.getCause().getMessage());
+            }
+        }
+    }
+
+    // keeps proxies from closing idle sockets and finds clients that went away
+    @Scheduled(fixedDelayString = "${portfolio.push.ping-interval-ms:25000}")
+    public void ping() {
+        for (LiveSession live : sessions.values()) {
+            try {
+                live.session.sendMessage(new PingMessage());
+            } catch (IOException | RuntimeException e) {
+                drop(live, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private void markDirty(LiveSession live) {
+        if (live.dirty.compareAndSet(false, true)) {
+            dirty.add(live);
+        }
+    }
+
+    // sender thread; a session is only ever in one push's batch once
+    private void send(LiveSession live) {
+        live.dirty.set(false);
+        if (!live.session.isOpen()) {
+            drop(live, null);
+            return;
+        }
+        PortfolioValuationDTO now = portfolioValuationServices.valuation(live.userId);
+        watch(live, now.getHoldings().keySet());
+        PortfolioFrameDTO frame = live.frame(now);
+        if (frame == null) {
+            return;
+        }
+        try {
+            live.session.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+            (PortfolioFrameDTO.SNAPSHOT.equals(frame.getType()) ? snapshotCounter : deltaCounter).increment();
+        } catch (IOException | RuntimeException e) {
+            // includes SessionLimitExceededException: the client is not keeping up
+            drop(live, e);
+        }
+    }
+
+    private void drop(LiveSession live, Exception e) {
+        droppedCounter.increment();
+        if (e != null) {
+            log.debug("PortfolioPushServices: dropping session of user {}: {}", live.userId, e.getMessage());
+        }
+        try {
+            live.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException | RuntimeException ignored) {
+            // closing anyway
+        }
+        if (sessions.remove(live.session.getId(), live)) {
+            unregister(live);
+        }
+    }
+
+    private void unregister(LiveSession live) {
+        byUser.computeIfPresent(live.userId, (k, own) -> {
+            own.remove(live);
+            return own.isEmpty() ? null : own;
+        });
+        synchronized (live) {
+            live.closed = true;
+            rewatch(live, Set.of());
+        }
+    }
+
+    // keeps byTicker in line with the tickers the user holds now
+    private void watch(LiveSession live, Set<String> tickers) {
+        synchronized (live) {
+            if (!live.closed && !live.tickers.equals(tickers)) {
+                rewatch(live, tickers);
+            }
+        }
+    }
+
+    // under the session's monitor
+    private void rewatch(LiveSession live, Set<String> tickers) {
+        for (String ticker : live.tickers) {
+            if (!tickers.contains(ticker)) {
+                byTicker.computeIfPresent(ticker, (k, watching) -> {
+                    watching.remove(live);
+                    return watching.isEmpty() ? null : watching;
+                });
+            }
+        }
+        for (String ticker : tickers) {
+            if (!live.tickers.contains(ticker)) {
+                byTicker.computeIfAbsent(ticker, k -> ConcurrentHashMap.newKeySet()).add(live);
+            }
+        }
+        live.tickers = Set.copyOf(tickers);
+    }
+
+    // identity equality on purpose: two tabs of one user are two sessions
+    private static final class LiveSession {
+        final WebSocketSession session;
+        final int userId;
+        final AtomicBoolean dirty = new AtomicBoolean();
+
+        // guarded by this
+        Set<String> tickers = Set.of();
+        boolean closed;
+
+        // what the client has, as of the last frame; only the sender working on the session touches it
+        Map<String, HoldingValuationDTO> sent;
+        double sentValue;
+        double sentDayPnl;
+
+        LiveSession(WebSocketSession session, int userId) {
+            this.session = session;
+            this.userId = userId;
+        }
+
+        // the next frame for the client, or null when nothing it shows has moved
+        PortfolioFrameDTO frame(PortfolioValuationDTO now) {
+            Map<String, HoldingValuationDTO> holdings = now.getHoldings();
+            PortfolioFrameDTO frame;
+            if (sent == null) {
+                frame = new PortfolioFrameDTO(PortfolioFrameDTO.SNAPSHOT, now.getValue(), now.getDayPnl(), holdings, List.of());
+            } else {
+                Map<String, HoldingValuationDTO> moved = new LinkedHashMap<>();
+                holdings.forEach((ticker, holding) -> {
+                    HoldingValuationDTO before = sent.get(ticker);
+                    if (before == null || before.getShares() != holding.getShares()
+                            || before.getPrice() != holding.getPrice() || before.getDayPnl() != holding.getDayPnl()) {
+                        moved.put(ticker, holding);
+                    }
+                });
+                Set<String> removed = new HashSet<>(sent.keySet());
+                removed.removeAll(holdings.keySet());
+                if (moved.isEmpty() && removed.isEmpty()
+                        && now.getValue() == sentValue && now.getDayPnl() == sentDayPnl) {
+                    return null;
+                }
+                frame = new PortfolioFrameDTO(PortfolioFrameDTO.DELTA, now.getValue(), now.getDayPnl(),
+                        moved, List.copyOf(removed));
+            }
+            sent = holdings;
+            sentValue = now.getValue();
+            sentDayPnl = now.getDayPnl();
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.dto.HoldingRiskDTO;
+import org.perscholas.investmentapp.dto.HoldingValuationDTO;
+import org.perscholas.investmentapp.dto.PortfolioRiskDTO;
+import org.perscholas.investmentapp.dto.PortfolioValuationDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Volatility, correlation and Monte Carlo Value-at-Risk of a user's portfolio, from the
+ * positions in the valuation engine and the closed daily bars in price_bars.
+ * Holdings are valued at their last daily close, so a result depends only on the positions
+ * and the closed bars: it is cached per user under (portfolio version, price data version)
+ * and recomputed only when one of them moves. Portfolio versions follow the engine's
+ * listener callbacks; the price data version is PriceHistoryServices.closedBarsVersion().
+ * The simulation runs on its own fork/join pool (see {@link RiskAnalytics}), sized by
+ * portfolio.risk.parallelism (0 = one thread per core), and is seeded from the cache key,
+ * so the same inputs always give the same figures.
+ */
+@Service
+@Slf4j
+public class PortfolioRiskServices implements PortfolioValuationServices.Listener {
+
+    private static final long DAY = 86_400_000L;
+
+    private final PortfolioValuationServices portfolioValuationServices;
+    private final PriceHistoryServices priceHistoryServices;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int lookbackDays;
+    private final int paths;
+    private final int horizonDays;
+    private final ForkJoinPool pool;
+
+    // bumped on every reload of the engine, which may have changed any portfolio
+    private final AtomicLong epoch = new AtomicLong();
+    private final ConcurrentHashMap<Integer, Long> portfolioVersions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Cached> cache = new ConcurrentHashMap<>();
+
+    private final Timer computeTimer;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    @Autowired
+    public PortfolioRiskServices(PortfolioValuationServices portfolioValuationServices,
+                                 PriceHistoryServices priceHistoryServices,
+                                 JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${portfolio.risk.lookback-days:250}") int lookbackDays,
+                                 @Value("${portfolio.risk.paths:100000}") int paths,
+                                 @Value("${portfolio.risk.horizon-days:1}") int horizonDays,
+                                 @Value("${portfolio.risk.parallelism:0}") int parallelism) {
+        if (paths <= 0) {
+            throw new IllegalArgumentException("portfolio.risk.paths must be positive, was " + paths);
+        }
+        this.portfolioValuationServices = portfolioValuationServices;
+        this.priceHistoryServices = priceHistoryServices;
+        this.jdbcTemplate = jdbcTemplate;
+        this.lookbackDays = lookbackDays;
+        this.paths = paths;
+        this.horizonDays = horizonDays;
+
+        AtomicLong threadCount = new AtomicLong();
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                p -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    t.setName("portfolio-risk-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, null, false);
+
+        this.computeTimer = Timer.builder("portfolio.risk.compute")
+                .description("Time to load closes and simulate one portfolio's risk")
+                .register(meterRegistry);
+        this.hitCounter = Counter.builder("portfolio.risk.cache").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("portfolio.risk.cache").tag("result", "miss").register(meterRegistry);
+
+        portfolioValuationServices.addListener(this);
+    }
+
+    @Override
+    public void tickerMoved(String ticker) {
+        // intraday prices are not part of the risk model
+    }
+
+    @Override
+    public void portfolioChanged(int userId) {
+        portfolioVersions.merge(userId, 1L, Long::sum);
+        cache.remove(userId);
+    }
+
+    @Override
+    public void rebuilt() {
+        epoch.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * The user's risk figures, from the cache when neither the positions nor the closed bars
+     * moved since they were computed.
+     */
+    public PortfolioRiskDTO risk(int userId) {
+        // read before computing: a change meanwhile leaves a stale key, and the next call recomputes
+        RiskKey key = new RiskKey(epoch.get(), portfolioVersions.getOrDefault(userId, 0L),
+                priceHistoryServices.closedBarsVersion());
+        Cached cached = cache.get(userId);
+        if (cached != null && cached.key().equals(key)) {
+            hitCounter.increment();
+            return cached.risk();
+        }
+        missCounter.increment();
+        PortfolioRiskDTO risk = computeTimer.record(() -> compute(userId, 31L * userId + key.hashCode()));
+        cache.put(userId, new Cached(key, risk));
+        return risk;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private PortfolioRiskDTO compute(int userId, long seed) {
+        PortfolioValuationDTO valuation = portfolioValuationServices.valuation(userId);
+        Map<String, DailyCloses> closes = loadCloses(valuation.getHoldings().keySet());
+
+        List<String> priced = new ArrayList<>();
+        List<String> unpriced = new ArrayList<>();
+        for (String ticker : valuation.getHoldings().keySet()) {
+            (closes.containsKey(ticker) ? priced : unpriced).add(ticker);
+        }
+        int n = priced.size();
+        if (n == 0) {
+            return new PortfolioRiskDTO(userId, 0, 0, 0, 0, horizonDays, 0, 0, 0, 0,
+                    List.of(), new double[0][0], unpriced);
+        }
+
+        long[] days = commonDays(priced, closes);
+        double[][] aligned = new double[n][];
+        double[] values = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            aligned[i] = closes.get(priced.get(i)).alignTo(days);
+            double shares = valuation.getHoldings().get(priced.get(i)).getShares();
+            values[i] = shares * aligned[i][days.length - 1];
+            total += values[i];
+        }
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = total == 0 ? 0 : values[i] / total;
+        }
+
+        // one close is a value but no return; two give a return but no variance
+        int observations = days.length - 1;
+        double[] vol = new double[n];
+        double[][] correlation = identity(n);
+        double portfolioVol = 0;
+        double var95 = 0;
+        double var99 = 0;
+        double es99 = 0;
+        int simulated = 0;
+        if (observations >= 2) {
+            double[][] returns = RiskAnalytics.logReturns(aligned);
+            double[] means = RiskAnalytics.means(returns);
+            double[][] cov = RiskAnalytics.covariance(returns, means);
+            vol = RiskAnalytics.volatilities(cov);
+            correlation = RiskAnalytics.correlation(cov);
+            portfolioVol = RiskAnalytics.portfolioVolatility(cov, weights) * Math.sqrt(RiskAnalytics.TRADING_DAYS);
+
+            double[] losses = RiskAnalytics.simulateLosses(pool, values, means, RiskAnalytics.cholesky(cov),
+                    horizonDays, paths, seed);
+            Arrays.sort(losses);
+            var95 = RiskAnalytics.valueAtRisk(losses, 0.95);
+            var99 = RiskAnalytics.valueAtRisk(losses, 0.99);
+            es99 = RiskAnalytics.expectedShortfall(losses, 0.99);
+            simulated = paths;
+        } else {
+            observations = 0;
+        }
+
+        List<HoldingRiskDTO> holdings = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            HoldingValuationDTO held = valuation.getHoldings().get(priced.get(i));
+            holdings.add(new HoldingRiskDTO(priced.get(i), held.getShares(), aligned[i][days.length - 1],
+                    values[i], weights[i], vol[i] * Math.sqrt(RiskAnalytics.TRADING_DAYS)));
+        }
+        return new PortfolioRiskDTO(userId, days[days.length - 1], observations, total, portfolioVol,
+                horizonDays, simulated, var95, var99, es99, holdings, correlation, unpriced);
+    }
+
+    // closed 1d bars of the tickers over the lookback (calendar days, with room for weekends)
+    private Map<String, DailyCloses> loadCloses(Collection<String> tickers) {
+        Map<String, DailyCloses> closes = new HashMap<>();
+        if (tickers.isEmpty()) {
+            return closes;
+        }
+        long today = Math.floorDiv(System.currentTimeMillis(), DAY) * DAY;
+        long from = today - (lookbackDays * 7L / 5 + 10) * DAY;
+        List<Object> args = new ArrayList<>(tickers);
+        args.add(from);
+        args.add(today);
+        jdbcTemplate.query("SELECT s.ticker, b.bucket_start, b.close FROM price_bars b "
+                        + "JOIN stocks s ON s.id = b.stock_id "
+                        + "WHERE s.ticker IN (" + String.join(",", Collections.nCopies(tickers.size(), "?")) + ") "
+                        + "AND b.resolution = '1d' AND b.bucket_start >= ? AND b.bucket_start < ? "
+                        + "ORDER BY b.bucket_start",
+                rs -> {
+                    closes.computeIfAbsent(rs.getString("ticker").toUpperCase(Locale.ROOT), t -> new DailyCloses())
+                            .add(rs.getLong("bucket_start"), rs.getDouble("close"));
+                },
+                args.toArray());
+        return closes;
+    }
+
+    // the last lookback + 1 days on which any ticker closed, from the day all of them have a close
+    private long[] commonDays(List<String> tickers, Map<String, DailyCloses> closes) {
+        long start = Long.MIN_VALUE;
+        TreeSet<Long> days = new TreeSet<>();
+        for (String ticker : tickers) {
+            DailyCloses c = closes.get(ticker);
+            start = Math.max(start, c.days[0]);
+            for (int k = 0; k < c.size; k++) {
+                days.add(c.days[k]);
+            }
+        }
+        long[] common = days.tailSet(start, true).stream().mapToLong(Long::longValue).toArray();
+        return Arrays.copyOfRange(common, Math.max(0, common.length - lookbackDays - 1), common.length);
+    }
+
+    private static double[][] identity(int n) {
+        double[][] m = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            m[i][i] = 1;
+        }
+        return m;
+    }
+
+    private record RiskKey(long epoch, long portfolioVersion, long priceDataVersion) {
+    }
+
+    private record Cached(RiskKey key, PortfolioRiskDTO risk) {
+    }
+
+    // one ticker's closes in day order
+    private static final class DailyCloses {
+        long[] days = new long[64];
+        double[] closes = new double[64];
+        int size;
+
+        void add(long day, double close) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                closes = Arrays.copyOf(closes, size * 2);
+            }
+            days[size] = day;
+            closes[size] = close;
+            size++;
+        }
+
+        // the close on each of the given days, carrying the last one forward over days without a bar
+        double[] alignTo(long[] on) {
+            double[] out = new double[on.length];
+            int k = 0;
+            for (int d = 0; d < on.length; d++) {
+                while (k + 1 < size && days[k + 1] <= on[d]) {
+                    k++;
+                }
+                out[d] = closes[k];
+            }
+            return out;
+        }
+    }
+}
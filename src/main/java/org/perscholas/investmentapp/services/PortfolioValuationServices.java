@@ -0,0 +1,715 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.config.Workload;
+import org.perscholas.investmentapp.config.WorkloadPool;
+import org.perscholas.investmentapp.dao.PossessionRepoI;
+import org.perscholas.investmentapp.dto.HoldingValuationDTO;
+import org.perscholas.investmentapp.dto.PortfolioValuationDTO;
+import org.perscholas.investmentapp.dto.PositionRowDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Market value, daily P&L and holding weights of every portfolio, kept in memory and updated
+ * as prices move.
+ * Positions are held twice: per stock as a list of (holder, shares), the inverted index a
+ * price tick walks, and per user as (stock, index into that list), so a position change or a
+ * delete finds its entry without scanning a stock's holders. A tick on one ticker touches only
+ * that ticker's holders and moves each holder's totals by shares * price delta; nothing is
+ * recomputed from scratch. Totals drift by rounding over millions of deltas, so they are summed
+ * exactly again on a schedule.
+ * Built from PossessionRepoI once the application is ready, then kept in line with position
+ * writes: callers report them and they apply after the transaction commits. Prices come from
+ * the LatestQuoteTable, seeded with stocks.price at load, so a change never reads the database.
+ * All state is one {@link Index} guarded by one read-write lock: ticks and position changes
+ * write, valuations read. A rebuild loads a new Index without the lock and swaps it in.
+ * {@link Listener}s hear which tickers and portfolios moved, after the lock is released.
+ * Users whose totals moved are also collected, once each, for {@link #drainMovedTotals()}
+ * (LeaderboardServices), so a consumer re-reads only those and not every portfolio.
+ */
+@Service
+@Slf4j
+public class PortfolioValuationServices {
+
+    private static final int NO_USER = -1;
+
+    private final PossessionRepoI possessionRepoI;
+    private final JdbcTemplate jdbcTemplate;
+    private final LatestQuoteTable latestQuoteTable;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // replaced whole by a rebuild, under the write lock; volatile for the lock-free ticker check in onPrice
+    private volatile Index index = new Index();
+
+    // position changes committed while a rebuild loads, applied on top of the loaded Index; null otherwise
+    private final Object deferLock = new Object();
+    private List<Runnable> deferred;
+
+    private final Counter tickCounter;
+    private final Counter holderUpdateCounter;
+    private final Timer rebuildTimer;
+
+    @Autowired
+    public PortfolioValuationServices(PossessionRepoI possessionRepoI,
+                                      JdbcTemplate jdbcTemplate,
+                                      LatestQuoteTable latestQuoteTable,
+                                      MeterRegistry meterRegistry) {
+        this.possessionRepoI = possessionRepoI;
+        this.jdbcTemplate = jdbcTemplate;
+        this.latestQuoteTable = latestQuoteTable;
+
+        this.tickCounter = Counter.builder("portfolio.valuation.ticks")
+                .description("Price ticks applied to held stocks")
+                .register(meterRegistry);
+        this.holderUpdateCounter = Counter.builder("portfolio.valuation.holder-updates")
+                .description("Portfolio totals moved by price ticks")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("portfolio.valuation.rebuild")
+                .description("Time to load every position into the valuation engine")
+                .register(meterRegistry);
+        Gauge.builder("portfolio.valuation.positions", this, PortfolioValuationServices::positionCount)
+                .description("Positions held by the valuation engine")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads every position into a new Index without holding the lock, so ticks and valuations
+     * carry on against the old one meanwhile. Position changes that commit during the load are
+     * held back and applied on top of the new Index once it is in place; prices that moved
+     * during the load are caught up from the LatestQuoteTable at the swap.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    @WorkloadPool(Workload.BATCH)
+    public synchronized void rebuild() {
+        synchronized (deferLock) {
+            deferred = new ArrayList<>();
+        }
+        Index loaded = new Index();
+        loaded.reloaded = true;
+        rebuildTimer.record(() -> {
+            // stored prices stand in for stocks without a quote yet; seeding never overwrites one
+            jdbcTemplate.query("SELECT ticker, price FROM stocks", rs -> {
+                BigDecimal stored = rs.getBigDecimal("price");
+                if (stored != null) {
+                    latestQuoteTable.seed(rs.getString("ticker").toUpperCase(Locale.ROOT), stored.doubleValue());
+                }
+            });
+            try (Stream<PositionRowDTO> rows = possessionRepoI.streamAllPositionRows()) {
+                rows.forEach(row -> {
+                    String ticker = row.getTicker().toUpperCase(Locale.ROOT);
+                    Integer stock = loaded.stockSlots.get(ticker);
+                    if (stock == null) {
+                        stock = loaded.addStock(ticker, storedPrice(row.getPrice()), latestQuoteTable);
+                    }
+                    loaded.set(loaded.userSlot(row.getUserId()), stock, row.getShares());
+                });
+            }
+        });
+        lock.writeLock().lock();
+        try {
+            loaded.catchUp(latestQuoteTable);
+            index = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("PortfolioValuationServices: loaded {} positions of {} users in {} stocks",
+                loaded.positionCount, loaded.userSlots.size(), loaded.stockSlots.size());
+        applyDeferred();
+        listeners.forEach(Listener::rebuilt);
+    }
+
+    // MarketQuoteServices feed: a quote response element
+    public void onQuote(String ticker, JsonNode quote) {
+        JsonNode p = quote.path("regularMarketPrice");
+        if (p.isNumber()) {
+            onPrice(ticker, p.asDouble(), quote.path("regularMarketChange").asDouble(Double.NaN));
+        }
+    }
+
+    /**
+     * Moves every holder of the ticker to the new price. change is the move since the previous
+     * close; NaN keeps the previous close already known.
+     */
+    public void onPrice(String ticker, double newPrice, double change) {
+        if (!index.stockSlots.containsKey(ticker) || Double.isNaN(newPrice) || Double.isInfinite(newPrice)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // again under the lock: a rebuild may have swapped the index
+            Index ix = index;
+            Integer stock = ix.stockSlots.get(ticker);
+            if (stock == null) {
+                return;
+            }
+            int moved = ix.move(stock, newPrice, change);
+            if (moved < 0) {
+                return;
+            }
+            tickCounter.increment();
+            holderUpdateCounter.increment(moved);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Listener listener : listeners) {
+            listener.tickerMoved(ticker);
+        }
+    }
+
+    /**
+     * Reports that the user's position now holds exactly this many shares, as written by a trade
+     * (for SELL: one that was accepted). Applies once the surrounding transaction commits, or now
+     * when there is none. An absolute count, not a delta, so a change that a rebuild both loaded
+     * and replayed is not counted twice.
+     */
+    public void positionChanged(int userId, String ticker, double shares) {
+        String key = ticker.trim().toUpperCase(Locale.ROOT);
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Index ix = index;
+                Integer stock = ix.stockSlots.get(key);
+                if (stock == null) {
+                    // a stock nobody held until now: priced from the quote table, never the database
+                    stock = ix.addStock(key, Double.NaN, latestQuoteTable);
+                }
+                ix.set(ix.userSlot(userId), stock, shares);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            portfolioChanged(userId);
+        });
+    }
+
+    public void positionRemoved(int userId, String ticker) {
+        String key = ticker.trim().toUpperCase(Locale.ROOT);
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Index ix = index;
+                Integer user = ix.userSlots.get(userId);
+                Integer stock = ix.stockSlots.get(key);
+                if (user != null && stock != null) {
+                    ix.remove(user, stock);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            portfolioChanged(userId);
+        });
+    }
+
+    public void userRemoved(int userId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Index ix = index;
+                Integer user = ix.userSlots.remove(userId);
+                if (user == null) {
+                    return;
+                }
+                Holdings h = ix.holdings[user];
+                while (h.size > 0) {
+                    ix.remove(user, h.stocks[h.size - 1]);
+                }
+                ix.value[user] = 0;
+                ix.dayPnl[user] = 0;
+                // the slot may still be listed as moved; it reports nobody until it is reused
+                ix.userIds[user] = NO_USER;
+                ix.removedUserIds.add(userId);
+                ix.freeUserSlots.push(user);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            portfolioChanged(userId);
+        });
+    }
+
+    // the stock keeps its slot, with no holders, in case the ticker is added again
+    public void stockRemoved(String ticker) {
+        String key = ticker.trim().toUpperCase(Locale.ROOT);
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Index ix = index;
+                Integer stock = ix.stockSlots.get(key);
+                if (stock == null) {
+                    return;
+                }
+                Holders h = ix.holders[stock];
+                while (h.size > 0) {
+                    ix.remove(h.users[h.size - 1], stock);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Listener listener : listeners) {
+                listener.tickerMoved(key);
+            }
+        });
+    }
+
+    // the user's holdings priced now; an empty valuation for a user without positions
+    public PortfolioValuationDTO valuation(int userId) {
+        lock.readLock().lock();
+        try {
+            Index ix = index;
+            Integer user = ix.userSlots.get(userId);
+            if (user == null) {
+                return new PortfolioValuationDTO(userId, 0, 0, Map.of());
+            }
+            Holdings h = ix.holdings[user];
+            TreeMap<String, HoldingValuationDTO> byTicker = new TreeMap<>();
+            // summed here rather than read from the running totals, so the rows add up exactly
+            double total = 0;
+            double pnl = 0;
+            for (int k = 0; k < h.size; k++) {
+                int stock = h.stocks[k];
+                double shares = ix.holders[stock].shares[h.index[k]];
+                double holdingValue = shares * ix.price[stock];
+                double holdingPnl = shares * (ix.price[stock] - ix.previousClose[stock]);
+                total += holdingValue;
+                pnl += holdingPnl;
+                byTicker.put(ix.tickers[stock], new HoldingValuationDTO(ix.tickers[stock], shares, ix.price[stock],
+                        holdingValue, holdingPnl, 0));
+            }
+            for (HoldingValuationDTO holding : byTicker.values()) {
+                holding.setWeight(total == 0 ? 0 : holding.getValue() / total);
+            }
+            return new PortfolioValuationDTO(userId, total, pnl, new LinkedHashMap<>(byTicker));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // running total, no per-holding work
+    public double value(int userId) {
+        lock.readLock().lock();
+        try {
+            Index ix = index;
+            Integer user = ix.userSlots.get(userId);
+            return user == null ? 0 : ix.value[user];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double dayPnl(int userId) {
+        lock.readLock().lock();
+        try {
+            Index ix = index;
+            Integer user = ix.userSlots.get(userId);
+            return user == null ? 0 : ix.dayPnl[user];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int positionCount() {
+        return index.positionCount;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Takes the users whose totals moved since the last call, with their current totals, and
+     * the users removed meanwhile. Only copies under the lock; the caller does the rest outside.
+     */
+    MovedTotals drainMovedTotals() {
+        lock.writeLock().lock();
+        try {
+            Index ix = index;
+            MovedTotals drained = new MovedTotals(ix.reloaded,
+                    ix.removedUserIds.stream().mapToInt(Integer::intValue).toArray(), ix.movedCount);
+            for (int k = 0; k < ix.movedCount; k++) {
+                int u = ix.movedSlots[k];
+                ix.moved[u] = false;
+                if (ix.userIds[u] != NO_USER) {
+                    drained.add(ix.userIds[u], ix.value[u], ix.dayPnl[u]);
+                }
+            }
+            ix.movedCount = 0;
+            ix.removedUserIds.clear();
+            ix.reloaded = false;
+            return drained;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // sums every total again from its holdings, dropping rounding drift
+    @Scheduled(initialDelayString = "${portfolio.valuation.resum-interval-ms:60000}",
+            fixedDelayString = "${portfolio.valuation.resum-interval-ms:60000}")
+    public void resumTotals() {
+        lock.writeLock().lock();
+        try {
+            Index ix = index;
+            for (int u = 0; u < ix.userCount; u++) {
+                Holdings h = ix.holdings[u];
+                double total = 0;
+                double pnl = 0;
+                for (int k = 0; k < h.size; k++) {
+                    int stock = h.stocks[k];
+                    double shares = ix.holders[stock].shares[h.index[k]];
+                    total += shares * ix.price[stock];
+                    pnl += shares * (ix.price[stock] - ix.previousClose[stock]);
+                }
+                if (ix.value[u] != total || ix.dayPnl[u] != pnl) {
+                    ix.value[u] = total;
+                    ix.dayPnl[u] = pnl;
+                    ix.markMoved(u);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void portfolioChanged(int userId) {
+        for (Listener listener : listeners) {
+            listener.portfolioChanged(userId);
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyOrDefer(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                applyOrDefer(change);
+            }
+        });
+    }
+
+    private void applyOrDefer(Runnable change) {
+        synchronized (deferLock) {
+            if (deferred != null) {
+                deferred.add(change);
+                return;
+            }
+        }
+        change.run();
+    }
+
+    // in arrival order; changes arriving meanwhile join the queue until it is empty
+    private void applyDeferred() {
+        while (true) {
+            List<Runnable> changes;
+            synchronized (deferLock) {
+                if (deferred.isEmpty()) {
+                    deferred = null;
+                    return;
+                }
+                changes = deferred;
+                deferred = new ArrayList<>();
+            }
+            changes.forEach(Runnable::run);
+        }
+    }
+
+    private static double storedPrice(BigDecimal price) {
+        return price == null ? Double.NaN : price.doubleValue();
+    }
+
+    /**
+     * Every position, price and total. Methods run under the write lock, or, for an Index a
+     * rebuild is still loading, on the one thread that owns it.
+     */
+    private static final class Index {
+        // upper-case ticker -> stock slot; read without the lock so ticks for unheld tickers stay cheap
+        final ConcurrentHashMap<String, Integer> stockSlots = new ConcurrentHashMap<>();
+        // per stock slot
+        String[] tickers = new String[0];
+        double[] price = new double[0];
+        double[] previousClose = new double[0];
+        Holders[] holders = new Holders[0];
+
+        // user id -> user slot; slots of removed users are reused
+        final Map<Integer, Integer> userSlots = new HashMap<>();
+        final ArrayDeque<Integer> freeUserSlots = new ArrayDeque<>();
+        // per user slot
+        int[] userIds = new int[0];
+        double[] value = new double[0];
+        double[] dayPnl = new double[0];
+        Holdings[] holdings = new Holdings[0];
+        int userCount;
+        int positionCount;
+
+        // user slots whose totals moved since the last drain, each listed once
+        boolean[] moved = new boolean[0];
+        int[] movedSlots = new int[0];
+        int movedCount;
+        // users removed since the last drain, and whether everything was reloaded
+        final List<Integer> removedUserIds = new ArrayList<>();
+        boolean reloaded;
+
+        // priced from the quote table; stored (stocks.price) only when it has nothing, else 0
+        int addStock(String ticker, double stored, LatestQuoteTable latestQuoteTable) {
+            int stock = stockSlots.size();
+            if (stock == tickers.length) {
+                int capacity = Math.max(64, stock * 2);
+                tickers = Arrays.copyOf(tickers, capacity);
+                price = Arrays.copyOf(price, capacity);
+                previousClose = Arrays.copyOf(previousClose, capacity);
+                holders = Arrays.copyOf(holders, capacity);
+            }
+            LatestQuoteTable.QuoteView quote = new LatestQuoteTable.QuoteView();
+            boolean quoted = latestQuoteTable.read(latestQuoteTable.idOf(ticker), quote);
+            double p = quoted ? quote.getPrice() : Double.isNaN(stored) ? 0 : stored;
+            tickers[stock] = ticker;
+            price[stock] = p;
+            // without a quote's change the day starts flat
+            previousClose[stock] = quoted && !Double.isNaN(quote.getChange()) ? p - quote.getChange() : p;
+            holders[stock] = new Holders();
+            stockSlots.put(ticker, stock);
+            return stock;
+        }
+
+        // the holders moved, or -1 when the price and previous close did not change
+        int move(int stock, double newPrice, double change) {
+            double oldPrice = price[stock];
+            double oldClose = previousClose[stock];
+            double newClose = Double.isNaN(change) ? oldClose : newPrice - change;
+            double valueDelta = newPrice - oldPrice;
+            double pnlDelta = (newPrice - newClose) - (oldPrice - oldClose);
+            price[stock] = newPrice;
+            previousClose[stock] = newClose;
+            if (valueDelta == 0 && pnlDelta == 0) {
+                return -1;
+            }
+            Holders h = holders[stock];
+            int[] users = h.users;
+            double[] shares = h.shares;
+            for (int i = 0; i < h.size; i++) {
+                int u = users[i];
+                value[u] += shares[i] * valueDelta;
+                dayPnl[u] += shares[i] * pnlDelta;
+                markMoved(u);
+            }
+            return h.size;
+        }
+
+        // applies quotes that arrived after a stock was loaded
+        void catchUp(LatestQuoteTable latestQuoteTable) {
+            LatestQuoteTable.QuoteView quote = new LatestQuoteTable.QuoteView();
+            for (int stock = 0; stock < stockSlots.size(); stock++) {
+                if (latestQuoteTable.read(latestQuoteTable.idOf(tickers[stock]), quote) && quote.getPrice() != price[stock]) {
+                    move(stock, quote.getPrice(), quote.getChange());
+                }
+            }
+        }
+
+        int userSlot(int userId) {
+            Integer user = userSlots.get(userId);
+            if (user != null) {
+                return user;
+            }
+            if (!freeUserSlots.isEmpty()) {
+                user = freeUserSlots.pop();
+            } else {
+                user = userCount++;
+                if (user == userIds.length) {
+                    int capacity = Math.max(1024, user * 2);
+                    userIds = Arrays.copyOf(userIds, capacity);
+                    value = Arrays.copyOf(value, capacity);
+                    dayPnl = Arrays.copyOf(dayPnl, capacity);
+                    holdings = Arrays.copyOf(holdings, capacity);
+                    moved = Arrays.copyOf(moved, capacity);
+                    movedSlots = Arrays.copyOf(movedSlots, capacity);
+                }
+                holdings[user] = new Holdings();
+            }
+            userIds[user] = userId;
+            userSlots.put(userId, user);
+            return user;
+        }
+
+        double sharesHeld(int user, int stock) {
+            int k = holdings[user].find(stock);
+            return k < 0 ? 0 : holders[stock].shares[holdings[user].index[k]];
+        }
+
+        // a position at zero shares stays, like its possessions row
+        void set(int user, int stock, double shares) {
+            Holdings mine = holdings[user];
+            Holders theirs = holders[stock];
+            int k = mine.find(stock);
+            double delta;
+            if (k < 0) {
+                mine.add(stock, theirs.add(user, shares));
+                positionCount++;
+                delta = shares;
+            } else {
+                int i = mine.index[k];
+                delta = shares - theirs.shares[i];
+                theirs.shares[i] = shares;
+            }
+            value[user] += delta * price[stock];
+            dayPnl[user] += delta * (price[stock] - previousClose[stock]);
+            markMoved(user);
+        }
+
+        void remove(int user, int stock) {
+            Holdings mine = holdings[user];
+            int k = mine.find(stock);
+            if (k < 0) {
+                return;
+            }
+            Holders theirs = holders[stock];
+            int i = mine.index[k];
+            double shares = theirs.shares[i];
+            value[user] -= shares * price[stock];
+            dayPnl[user] -= shares * (price[stock] - previousClose[stock]);
+            markMoved(user);
+
+            // swap-remove from the stock's holders; the holder moved into slot i learns its new index
+            int last = theirs.size - 1;
+            if (i != last) {
+                int moved = theirs.users[last];
+                theirs.users[i] = moved;
+                theirs.shares[i] = theirs.shares[last];
+                Holdings movedHoldings = holdings[moved];
+                movedHoldings.index[movedHoldings.find(stock)] = i;
+            }
+            theirs.size = last;
+            mine.removeAt(k);
+            positionCount--;
+        }
+
+        void markMoved(int user) {
+            if (!moved[user]) {
+                moved[user] = true;
+                movedSlots[movedCount++] = user;
+            }
+        }
+    }
+
+    /**
+     * Told what moved, on the thread that moved it and outside the lock; must return quickly.
+     */
+    public interface Listener {
+        // a price tick changed the value of every holder of the ticker (or the stock was removed)
+        void tickerMoved(String ticker);
+
+        // the user's positions changed
+        void portfolioChanged(int userId);
+
+        // everything was reloaded
+        void rebuilt();
+    }
+
+    // what drainMovedTotals() hands over: parallel arrays of user id and totals
+    static final class MovedTotals {
+        // everything was reloaded; whatever the consumer held is stale
+        final boolean reloaded;
+        final int[] removedUserIds;
+        final int[] userIds;
+        final double[] values;
+        final double[] dayPnls;
+        int size;
+
+        MovedTotals(boolean reloaded, int[] removedUserIds, int capacity) {
+            this.reloaded = reloaded;
+            this.removedUserIds = removedUserIds;
+            this.userIds = new int[capacity];
+            this.values = new double[capacity];
+            this.dayPnls = new double[capacity];
+        }
+
+        void add(int userId, double value, double dayPnl) {
+            userIds[size] = userId;
+            values[size] = value;
+            dayPnls[size] = dayPnl;
+            size++;
+        }
+
+        boolean isEmpty() {
+            return !reloaded && removedUserIds.length == 0 && size == 0;
+        }
+    }
+
+    // one stock's holders: user slots and their shares, in no particular order
+    private static final class Holders {
+        int[] users = new int[4];
+        double[] shares = new double[4];
+        int size;
+
+        int add(int user, double s) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+                shares = Arrays.copyOf(shares, size * 2);
+            }
+            users[size] = user;
+            shares[size] = s;
+            return size++;
+        }
+    }
+
+    // one user's positions: stock slots and where the user sits in each stock's Holders
+    private static final class Holdings {
+        int[] stocks = new int[4];
+        int[] index = new int[4];
+        int size;
+
+        int find(int stock) {
+            for (int k = 0; k < size; k++) {
+                if (stocks[k] == stock) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        void add(int stock, int i) {
+            if (size == stocks.length) {
+                stocks = Arrays.copyOf(stocks, size * 2);
+                index = Arrays.copyOf(index, size * 2);
+            }
+            stocks[size] = stock;
+            index[size] = i;
+            size++;
+        }
+
+        void removeAt(int k) {
+            size--;
+            stocks[k] = stocks[size];
+            index[k] = index[size];
+        }
+    }
+}
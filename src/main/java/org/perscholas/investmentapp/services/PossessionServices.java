@@ -4,37 +4,76 @@ import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.config.Workload;
+import org.perscholas.investmentapp.config.WorkloadPool;
 import org.perscholas.investmentapp.dao.PossessionRepoI;
 import org.perscholas.investmentapp.dao.StockRepoI;
 import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.TradeMode;
+import org.perscholas.investmentapp.dto.TradeRequestDTO;
+import org.perscholas.investmentapp.dto.TradeResultDTO;
 import org.perscholas.investmentapp.models.Possession;
 import org.perscholas.investmentapp.models.Stock;
 import org.perscholas.investmentapp.models.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Transactional(rollbackOn = Exception.class)
+@WorkloadPool(Workload.TRADES)
 public class PossessionServices {
 
+    // keyed on uk_possessions_user_stock, so concurrent trades on one position serialize on its row
+    private static final String UPSERT = "INSERT INTO possessions (myuser_id, investment_id, shares) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE ";
+    private static final String SET_SQL = UPSERT + "shares = VALUES(shares)";
+    private static final String BUY_SQL = UPSERT + "shares = shares + VALUES(shares)";
+    private static final String SELL_SQL = "UPDATE possessions SET shares = shares - ? "
+            + "WHERE myuser_id = ? AND investment_id = ? AND shares >= ?";
+
+    public static final int MAX_BATCH = 1_000;
+
     UserRepoI userRepoI;
     PossessionRepoI possessionRepoI;
     StockRepoI stockRepoI;
+    JdbcTemplate jdbcTemplate;
+    ReadRoutingServices readRoutingServices;
+    PortfolioValuationServices portfolioValuationServices;
+
+    // ticker -> stocks.id; a stock keeps its id for life, a deleted and re-added ticker is re-resolved
+    ConcurrentHashMap<String, Integer> stockIds = new ConcurrentHashMap<>();
 
     @Autowired
     public PossessionServices(UserRepoI userRepoI,
                              PossessionRepoI possessionRepoI,
                              StockRepoI stockRepoI,
-                             UserServices userServices,   // kept for constructor compatibility (unused here)
-                             StockServices stockServices  // kept for constructor compatibility (unused here)
-    ) {
+                             JdbcTemplate jdbcTemplate,
+                             ReadRoutingServices readRoutingServices,
+                             PortfolioValuationServices portfolioValuationServices) {
         this.userRepoI = userRepoI;
         this.possessionRepoI = possessionRepoI;
         this.stockRepoI = stockRepoI;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readRoutingServices = readRoutingServices;
+        this.portfolioValuationServices = portfolioValuationServices;
     }
 
     /**
@@ -60,21 +99,16 @@ public class PossessionServices {
             Possession existing = existingOpt.get();
             existing.setShares(possession.getShares());
             log.debug("createOrUpdate(): updated shares for {} / {}", confirmedUser.getEmail(), confirmedStock.getTicker());
+            portfolioValuationServices.positionChanged(confirmedUser.getId(), confirmedStock.getTicker(), possession.getShares());
             return possessionRepoI.save(existing);
         }
 
         // Create new position using confirmed entities
         Possession newPossession = new Possession(possession.getShares(), confirmedUser, confirmedStock);
 
-        // Persist possession
+        // Persist possession; its foreign keys are the only record of ownership
         newPossession = possessionRepoI.saveAndFlush(newPossession);
-
-        // Maintain your current "portfolio" modeling (UserServices.retrievePortfolio reads from user's collection)
-        confirmedUser.addPossession(newPossession);
-        confirmedStock.addPossession(newPossession);
-
-        userRepoI.save(confirmedUser);
-        stockRepoI.save(confirmedStock);
+        portfolioValuationServices.positionChanged(confirmedUser.getId(), confirmedStock.getTicker(), possession.getShares());
 
         log.debug("createOrUpdate(): created new possession for {} / {}", confirmedUser.getEmail(), confirmedStock.getTicker());
         return newPossession;
@@ -94,24 +128,193 @@ public class PossessionServices {
         return createOrUpdate(possession);
     }
 
-    public Possession addOrUpdatePosition(String userEmail, String ticker, double shares) throws Exception {
-        User confirmedUser = userRepoI.findByEmail(userEmail)
-                .orElseThrow(() -> new Exception("User not found: " + userEmail));
-    
-        Stock confirmedStock = stockRepoI.findByTicker(ticker)
-                .orElseThrow(() -> new Exception("Stock not found: " + ticker));
-    
-        Optional<Possession> existing = possessionRepoI.findByUserAndStock(confirmedUser, confirmedStock);
-    
-        if (existing.isPresent()) {
-            Possession p = existing.get();
-            p.setShares(shares);
-            return possessionRepoI.saveAndFlush(p);
-        }
-    
-        Possession p = new Possession(shares, confirmedUser, confirmedStock);
-        return possessionRepoI.saveAndFlush(p);
+    // sets the position to exactly this many shares; for callers that only know the email
+    public void addOrUpdatePosition(String userEmail, String ticker, double shares) throws Exception {
+        List<Integer> userIds = jdbcTemplate.queryForList("SELECT id FROM myusers WHERE email = ?", Integer.class, userEmail);
+        if (userIds.isEmpty()) {
+            throw new Exception("User not found: " + userEmail);
+        }
+        trade(userIds.get(0), ticker, TradeMode.SET, shares);
+    }
+
+    /**
+     * Applies a trade to the user's position in one statement, without a transaction of its own:
+     * SET and BUY upsert on the (user, stock) unique key, SELL subtracts only if enough shares are held.
+     * An applied BUY or SELL then reads the resulting count back for the valuation engine.
+     * Returns false when a SELL was rejected for that reason.
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public boolean trade(int userId, String ticker, TradeMode mode, double shares) throws Exception {
+        if (!validShares(mode, shares)) {
+            throw new IllegalArgumentException("trade(): invalid share count " + shares + " for " + mode);
+        }
+        String key = ticker.trim().toUpperCase(Locale.ROOT);
+        // the portfolio page that follows must not be read from a replica that has not seen this yet
+        readRoutingServices.recordWrite(userId);
+        int stockId = stockId(key);
+        boolean applied;
+        try {
+            applied = apply(userId, stockId, mode, shares);
+        } catch (DataIntegrityViolationException e) {
+            // the cached id may belong to a stock that has since been deleted; resolve once more
+            if (stockIds.remove(key) == null) {
+                throw e;
+            }
+            log.warn("trade(): stale stock id for {}, re-resolving", key);
+            stockId = stockId(key);
+            applied = apply(userId, stockId, mode, shares);
+        }
+        if (applied) {
+            // the valuation engine takes the resulting count; only SET knows it without reading it back
+            portfolioValuationServices.positionChanged(userId, key,
+                    mode == TradeMode.SET ? shares : held(userId, List.of(stockId)).getOrDefault(stockId, 0.0));
+        }
+        return applied;
+    }
+
+    /**
+     * Applies a list of trades for one user in one transaction: tickers are checked against the catalog
+     * in one select, then each mode's statements go out as one JDBC batch, in stock id order so
+     * concurrent batches lock rows in the same order, and one more select reads back what BUY and
+     * SELL left. Results are in request order; invalid items are reported and skipped, the rest still apply.
+     */
+    public List<TradeResultDTO> tradeBatch(int userId, List<TradeRequestDTO> trades) {
+        if (trades.size() > MAX_BATCH) {
+            throw new IllegalArgumentException("tradeBatch(): at most " + MAX_BATCH + " trades per batch");
+        }
+        readRoutingServices.recordWrite(userId);
+        List<TradeResultDTO> results = new ArrayList<>(trades.size());
+        Map<String, Integer> ids = catalogIds(trades);
+        Set<String> seen = new HashSet<>();
+        // per mode: {result index, stock id}
+        Map<TradeMode, List<int[]>> byMode = new EnumMap<>(TradeMode.class);
+
+        for (TradeRequestDTO trade : trades) {
+            String ticker = trade.getTicker() == null ? null : trade.getTicker().trim().toUpperCase(Locale.ROOT);
+            TradeResultDTO result = new TradeResultDTO(ticker, trade.getMode(), trade.getShares(), TradeResultDTO.APPLIED);
+            results.add(result);
+            if (ticker == null || trade.getMode() == null || !validShares(trade.getMode(), trade.getShares())) {
+                result.setResult(TradeResultDTO.INVALID);
+            } else if (!ids.containsKey(ticker)) {
+                result.setResult(TradeResultDTO.UNKNOWN_TICKER);
+            } else if (!seen.add(ticker)) {
+                // one item per position keeps the outcome independent of statement order
+                result.setResult(TradeResultDTO.DUPLICATE_TICKER);
+            } else {
+                byMode.computeIfAbsent(trade.getMode(), m -> new ArrayList<>())
+                        .add(new int[]{results.size() - 1, ids.get(ticker)});
+            }
+        }
+
+        byMode.forEach((mode, items) -> {
+            items.sort(Comparator.comparingInt(item -> item[1]));
+            List<Object[]> args = new ArrayList<>(items.size());
+            for (int[] item : items) {
+                double shares = results.get(item[0]).getShares();
+                args.add(mode == TradeMode.SELL
+                        ? new Object[]{shares, userId, item[1], shares}
+                        : new Object[]{userId, item[1], shares});
+            }
+            int[] counts = jdbcTemplate.batchUpdate(sql(mode), args);
+            if (mode == TradeMode.SELL) {
+                for (int i = 0; i < items.size(); i++) {
+                    if (counts[i] == 0) {
+                        results.get(items.get(i)[0]).setResult(TradeResultDTO.REJECTED);
+                    }
+                }
+            }
+        });
+        // BUY and SELL results read back in one select, so the valuation engine gets absolute counts
+        List<Integer> relative = new ArrayList<>();
+        for (TradeMode mode : List.of(TradeMode.BUY, TradeMode.SELL)) {
+            for (int[] item : byMode.getOrDefault(mode, List.of())) {
+                if (TradeResultDTO.APPLIED.equals(results.get(item[0]).getResult())) {
+                    relative.add(item[1]);
+                }
+            }
+        }
+        Map<Integer, Double> held = relative.isEmpty() ? Map.of() : held(userId, relative);
+        for (TradeResultDTO result : results) {
+            if (TradeResultDTO.APPLIED.equals(result.getResult())) {
+                portfolioValuationServices.positionChanged(userId, result.getTicker(),
+                        result.getMode() == TradeMode.SET ? result.getShares() : held.getOrDefault(ids.get(result.getTicker()), 0.0));
+            }
+        }
+        log.debug("tradeBatch(): {} trades for user {}", trades.size(), userId);
+        return results;
+    }
+
+    // all requested tickers that exist, in one select; refreshes the id cache on the way
+    private Map<String, Integer> catalogIds(List<TradeRequestDTO> trades) {
+        List<String> tickers = trades.stream()
+                .map(TradeRequestDTO::getTicker)
+                .filter(Objects::nonNull)
+                .map(t -> t.trim().toUpperCase(Locale.ROOT))
+                .distinct()
+                .toList();
+        Map<String, Integer> ids = new HashMap<>();
+        if (tickers.isEmpty()) {
+            return ids;
+        }
+        String sql = "SELECT id, ticker FROM stocks WHERE ticker IN (" + String.join(",", Collections.nCopies(tickers.size(), "?")) + ")";
+        jdbcTemplate.query(sql, rs -> {
+            ids.put(rs.getString("ticker").toUpperCase(Locale.ROOT), rs.getInt("id"));
+        }, tickers.toArray());
+        stockIds.putAll(ids);
+        return ids;
+    }
+
+    private static boolean validShares(TradeMode mode, double shares) {
+        return !Double.isNaN(shares) && !Double.isInfinite(shares) && shares >= 0 && (mode == TradeMode.SET || shares > 0);
+    }
+
+    private static String sql(TradeMode mode) {
+        switch (mode) {
+            case SET:
+                return SET_SQL;
+            case BUY:
+                return BUY_SQL;
+            case SELL:
+                return SELL_SQL;
+            default:
+                throw new IllegalArgumentException("unsupported mode " + mode);
+        }
+    }
+
+    private boolean apply(int userId, int stockId, TradeMode mode, double shares) {
+        if (mode == TradeMode.SELL) {
+            return jdbcTemplate.update(SELL_SQL, shares, userId, stockId, shares) == 1;
+        }
+        jdbcTemplate.update(sql(mode), userId, stockId, shares);
+        return true;
+    }
+
+    // stock id -> shares the user holds now, for the given stocks
+    private Map<Integer, Double> held(int userId, List<Integer> stockIds) {
+        String sql = "SELECT investment_id, shares FROM possessions WHERE myuser_id = ? AND investment_id IN ("
+                + String.join(",", Collections.nCopies(stockIds.size(), "?")) + ")";
+        Object[] args = new Object[stockIds.size() + 1];
+        args[0] = userId;
+        for (int i = 0; i < stockIds.size(); i++) {
+            args[i + 1] = stockIds.get(i);
+        }
+        Map<Integer, Double> shares = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            shares.put(rs.getInt("investment_id"), rs.getDouble("shares"));
+        }, args);
+        return shares;
+    }
+
+    private int stockId(String ticker) throws Exception {
+        Integer id = stockIds.get(ticker);
+        if (id != null) {
+            return id;
+        }
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM stocks WHERE ticker = ?", Integer.class, ticker);
+        if (ids.isEmpty()) {
+            throw new Exception("Stock not found: " + ticker);
+        }
+        stockIds.put(ticker, ids.get(0));
+        return ids.get(0);
     }
-    
-    
 }
@@ -0,0 +1,221 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.config.Workload;
+import org.perscholas.investmentapp.config.WorkloadPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.regex.Pattern;
+
+/**
+ * Closed daily bars exported from price_bars into one {@link PriceColumnFile} per ticker
+ * under backtest.data-dir, for backtests that read decades of closes without touching MySQL.
+ * A scheduled export rewrites every file from one ordered scan of the 1d bars, but only when
+ * PriceHistoryServices.closedBarsVersion() moved since the last export, so the files follow
+ * each day's close and cost nothing in between.
+ * Opened files stay mapped and are shared by all readers until the next export replaces them;
+ * files of tickers that no longer have closed bars are deleted by the export.
+ */
+@Component
+@Slf4j
+public class PriceColumnStore {
+
+    private static final long DAY = 86_400_000L;
+    private static final String SUFFIX = ".pxc";
+    // tickers become file names
+    private static final Pattern SAFE_TICKER = Pattern.compile("[A-Z0-9.^=-]{1,16}");
+
+    private final PriceHistoryServices priceHistoryServices;
+    private final JdbcTemplate jdbcTemplate;
+    private final Path directory;
+
+    private final ConcurrentHashMap<String, PriceColumnFile> open = new ConcurrentHashMap<>();
+    // bumped by every replace or delete, so a mapping made before one is never cached after it
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long exportedVersion = -1;
+
+    private final Timer exportTimer;
+    private final Counter failedCounter;
+
+    @Autowired
+    public PriceColumnStore(PriceHistoryServices priceHistoryServices,
+                            JdbcTemplate jdbcTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${backtest.data-dir:${java.io.tmpdir}/investmentapp/price-columns}") Path directory) {
+        this.priceHistoryServices = priceHistoryServices;
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = directory;
+
+        this.exportTimer = Timer.builder("backtest.export")
+                .description("Time to export the daily closes of every ticker to column files")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("backtest.export.failed").register(meterRegistry);
+        Gauge.builder("backtest.files.open", open, ConcurrentHashMap::size)
+                .description("Price column files currently mapped")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rewrites the column files when closed bars changed since the last export.
+     */
+    @Scheduled(initialDelayString = "${backtest.export-initial-delay-ms:10000}",
+            fixedDelayString = "${backtest.export-interval-ms:600000}")
+    @WorkloadPool(Workload.BATCH)
+    public synchronized void export() {
+        long version = priceHistoryServices.closedBarsVersion();
+        if (version == exportedVersion) {
+            return;
+        }
+        try {
+            int files = exportTimer.recordCallable(this::exportAll);
+            exportedVersion = version;
+            log.info("PriceColumnStore: exported {} tickers to {}", files, directory);
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.warn("PriceColumnStore: export failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The ticker's exported closes, or null when it has none.
+     */
+    PriceColumnFile columns(String ticker) {
+        String key = ticker.toUpperCase(Locale.ROOT);
+        PriceColumnFile file = open.get(key);
+        if (file != null || !SAFE_TICKER.matcher(key).matches()) {
+            return file;
+        }
+        long seen = generation.get();
+        Path path = directory.resolve(key + SUFFIX);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        PriceColumnFile mapped;
+        try {
+            mapped = PriceColumnFile.open(path);
+        } catch (IOException e) {
+            log.warn("PriceColumnStore: could not map {}: {}", path, e.getMessage());
+            return null;
+        }
+        // runs under the same lock as the writer's remove; a file replaced since seen is used once, not kept
+        PriceColumnFile cached = open.compute(key, (k, current) ->
+                current != null ? current : generation.get() == seen ? mapped : null);
+        return cached != null ? cached : mapped;
+    }
+
+    /**
+     * Replaces the ticker's file with the first count points, which must be in time order.
+     */
+    public void write(String ticker, long[] times, double[] prices, int count) throws IOException {
+        String key = ticker.toUpperCase(Locale.ROOT);
+        if (!SAFE_TICKER.matcher(key).matches()) {
+            throw new IllegalArgumentException("unsupported ticker: " + ticker);
+        }
+        Files.createDirectories(directory);
+        PriceColumnFile.write(directory.resolve(key + SUFFIX), times, prices, count);
+        // the old mapping stays valid for whoever holds it; new readers map the new file
+        generation.incrementAndGet();
+        open.remove(key);
+    }
+
+    // one pass over the 1d bars before today, ordered by stock, one file per ticker
+    int exportAll() throws IOException {
+        long today = Math.floorDiv(System.currentTimeMillis(), DAY) * DAY;
+        Series series = new Series();
+        Set<String> written = new HashSet<>();
+        jdbcTemplate.query("SELECT s.ticker, b.bucket_start, b.close FROM price_bars b "
+                        + "JOIN stocks s ON s.id = b.stock_id "
+                        + "WHERE b.resolution = '1d' AND b.bucket_start < ? "
+                        + "ORDER BY b.stock_id, b.bucket_start",
+                rs -> {
+                    String ticker = rs.getString("ticker");
+                    if (!ticker.equals(series.ticker)) {
+                        series.writeTo(this, written);
+                        series.reset(ticker);
+                    }
+                    series.add(rs.getLong("bucket_start"), rs.getDouble("close"));
+                },
+                today);
+        series.writeTo(this, written);
+        sweep(written);
+        return written.size();
+    }
+
+    // deletes the files of tickers this export did not write, e.g. delisted or renamed stocks
+    private void sweep(Set<String> written) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> stale;
+        try (Stream<Path> paths = Files.list(directory)) {
+            stale = paths.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.endsWith(SUFFIX) && !written.contains(name.substring(0, name.length() - SUFFIX.length()));
+            }).toList();
+        }
+        for (Path path : stale) {
+            Files.deleteIfExists(path);
+            String name = path.getFileName().toString();
+            generation.incrementAndGet();
+            open.remove(name.substring(0, name.length() - SUFFIX.length()));
+            log.debug("PriceColumnStore: removed {}", path);
+        }
+    }
+
+    // the closes of the ticker being exported; the arrays are reused from ticker to ticker
+    private static final class Series {
+        String ticker;
+        long[] times = new long[1024];
+        double[] prices = new double[1024];
+        int size;
+
+        void reset(String ticker) {
+            this.ticker = ticker;
+            size = 0;
+        }
+
+        void add(long time, double price) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                prices = Arrays.copyOf(prices, size * 2);
+            }
+            times[size] = time;
+            prices[size] = price;
+            size++;
+        }
+
+        void writeTo(PriceColumnStore store, Set<String> written) {
+            if (ticker == null || size == 0) {
+                return;
+            }
+            try {
+                store.write(ticker, times, prices, size);
+                written.add(ticker.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                log.debug("PriceColumnStore: skipped {}: {}", ticker, e.getMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
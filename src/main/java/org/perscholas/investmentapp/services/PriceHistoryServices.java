@@ -0,0 +1,673 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.config.Workload;
+import org.perscholas.investmentapp.config.WorkloadPool;
+import org.perscholas.investmentapp.dto.PriceBarDTO;
+import org.perscholas.investmentapp.dto.PriceHistoryDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Price history backed by the price_ticks / price_bars tables (Flyway V3).
+ * Quotes fetched upstream are buffered in memory and a scheduled flush writes them with
+ * multi-row INSERTs, then folds the same ticks into the 1m, 1h and 1d OHLCV bars with
+ * multi-row upserts, so rollups stay current without rescanning ticks. Per-series state and
+ * the in-memory history advance only once a flush commits; a failed flush is written again
+ * ahead of newer ticks on the next one. A batch that keeps failing is written row by row,
+ * and rows the database refuses are dropped and counted instead of blocking the ingest.
+ * Range queries read from the coarsest stored resolution that divides the requested
+ * interval, so long charts read a few hundred bars instead of raw ticks. Ingested ticks are
+ * also appended to the in-memory TimeSeriesStore, and ranges it fully covers never reach MySQL.
+ */
+@Service
+@Slf4j
+public class PriceHistoryServices {
+
+    public enum Resolution {
+        MINUTE("1m", 60_000L),
+        HOUR("1h", 3_600_000L),
+        DAY("1d", 86_400_000L);
+
+        final String code;
+        final long millis;
+
+        Resolution(String code, long millis) {
+            this.code = code;
+            this.millis = millis;
+        }
+
+        long bucket(long ts) {
+            return Math.floorDiv(ts, millis) * millis;
+        }
+    }
+
+    // auto-selected bar widths when the caller gives no interval, finest first
+    private static final long[] AUTO_INTERVALS = {
+            60_000L, 300_000L, 900_000L, 3_600_000L, 14_400_000L, 86_400_000L, 604_800_000L
+    };
+
+    private static final String TICK_COLUMNS = "INSERT IGNORE INTO price_ticks (stock_id, ts, price, volume) VALUES ";
+    private static final String TICK_ROW = "(?,?,?,?)";
+    private static final String BAR_COLUMNS = "INSERT INTO price_bars "
+            + "(stock_id, resolution, bucket_start, open, high, low, close, volume, tick_count, first_ts, last_ts) VALUES ";
+    private static final String BAR_ROW = "(?,?,?,?,?,?,?,?,?,?,?)";
+    // assignments run left to right, so open/close are decided before first_ts/last_ts move
+    private static final String BAR_UPSERT = " ON DUPLICATE KEY UPDATE "
+            + "open = IF(VALUES(first_ts) < first_ts, VALUES(open), open), "
+            + "first_ts = LEAST(first_ts, VALUES(first_ts)), "
+            + "close = IF(VALUES(last_ts) >= last_ts, VALUES(close), close), "
+            + "last_ts = GREATEST(last_ts, VALUES(last_ts)), "
+            + "high = GREATEST(high, VALUES(high)), "
+            + "low = LEAST(low, VALUES(low)), "
+            + "volume = volume + VALUES(volume), "
+            + "tick_count = tick_count + VALUES(tick_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimeSeriesStore timeSeriesStore;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int insertBatchSize;
+    private final int maxPerFlush;
+    private final int maxAttempts;
+    private final int maxPoints;
+    private final long maxTickSpanMs;
+    private final long catalogRefreshMs;
+
+    private final BlockingQueue<Tick> buffer;
+
+    // flush thread only
+    private Map<String, Integer> stockIds = Map.of();
+    private long catalogLoadedAt;
+    private boolean catalogStale = true;
+    private final Map<Integer, SeriesState> series = new HashMap<>();
+    // ticks of the last flush whose transaction failed, written ahead of the buffer next time
+    private List<Tick> retry = List.of();
+    private int failedAttempts;
+    private long currentDay = Long.MIN_VALUE;
+
+    // moves when a daily bar closes or a late tick lands in a closed one
+    private final AtomicLong closedBarsVersion = new AtomicLong();
+
+    private final Timer flushTimer;
+    private final Counter bufferedCounter;
+    private final Counter droppedCounter;
+    private final Counter writtenCounter;
+    private final Counter duplicateCounter;
+    private final Counter unknownCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public PriceHistoryServices(JdbcTemplate jdbcTemplate,
+                                TimeSeriesStore timeSeriesStore,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${market.history.buffer-size:100000}") int bufferSize,
+                                @Value("${market.history.insert-batch-size:500}") int insertBatchSize,
+                                @Value("${market.history.max-per-flush:20000}") int maxPerFlush,
+                                @Value("${market.history.max-attempts:3}") int maxAttempts,
+                                @Value("${market.history.max-points:2000}") int maxPoints,
+                                @Value("${market.history.max-tick-span:1d}") Duration maxTickSpan,
+                                @Value("${market.history.catalog-refresh:1m}") Duration catalogRefresh) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeSeriesStore = timeSeriesStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.insertBatchSize = insertBatchSize;
+        this.maxPerFlush = maxPerFlush;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.maxPoints = maxPoints;
+        this.maxTickSpanMs = maxTickSpan.toMillis();
+        this.catalogRefreshMs = catalogRefresh.toMillis();
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        this.flushTimer = Timer.builder("market.history.flush")
+                .description("Time taken to write buffered ticks and their rollups")
+                .register(meterRegistry);
+        this.bufferedCounter = ticks(meterRegistry, "buffered");
+        this.droppedCounter = ticks(meterRegistry, "dropped");
+        this.writtenCounter = ticks(meterRegistry, "written");
+        this.duplicateCounter = ticks(meterRegistry, "duplicate");
+        this.unknownCounter = ticks(meterRegistry, "unknown-ticker");
+        this.failedCounter = ticks(meterRegistry, "failed");
+        this.rejectedCounter = ticks(meterRegistry, "rejected");
+        meterRegistry.gaugeCollectionSize("market.history.buffer", List.of(), buffer);
+    }
+
+    private static Counter ticks(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("market.history.ticks")
+                .description("Quote ticks seen by the price history ingest")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Buffers an upstream quote (RapidAPI quoteResponse.result[] element) for the next flush.
+     * Never blocks: when the buffer is full the tick is dropped and counted.
+     */
+    public void record(String ticker, JsonNode quote) {
+        JsonNode price = quote.path("regularMarketPrice");
+        if (!price.isNumber()) {
+            return;
+        }
+        long seconds = quote.path("regularMarketTime").asLong(0);
+        record(ticker, price.decimalValue(), quote.path("regularMarketVolume").asLong(-1),
+                seconds > 0 ? seconds * 1000 : System.currentTimeMillis());
+    }
+
+    /**
+     * @param cumulativeVolume session volume as reported by the upstream, or -1 if unknown
+     */
+    public void record(String ticker, BigDecimal price, long cumulativeVolume, long ts) {
+        if (buffer.offer(new Tick(ticker, ts, price, cumulativeVolume))) {
+            bufferedCounter.increment();
+        } else {
+            droppedCounter.increment();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${market.history.flush-interval-ms:2000}",
+            fixedDelayString = "${market.history.flush-interval-ms:2000}")
+    @WorkloadPool(Workload.BATCH)
+    public void flush() {
+        if (buffer.isEmpty() && retry.isEmpty()) {
+            return;
+        }
+        try {
+            refreshCatalogIfNeeded();
+        } catch (Exception e) {
+            log.warn("PriceHistoryServices: could not load stock catalog: {}", e.getMessage());
+            return;
+        }
+
+        // a failed batch goes first, so its ticks are not taken for repeats of newer ones
+        List<Tick> drained = new ArrayList<>(retry);
+        retry = List.of();
+        buffer.drainTo(drained, Math.max(0, maxPerFlush - drained.size()));
+        Batch batch = resolve(drained);
+        List<StoredTick> ticks = batch.ticks();
+        if (ticks.isEmpty()) {
+            return;
+        }
+
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> write(ticks)));
+        } catch (Exception e) {
+            if (++failedAttempts < maxAttempts) {
+                // nothing in memory moved; the same ticks resolve the same way on the next flush
+                retry = batch.accepted();
+                failedCounter.increment(ticks.size());
+                log.warn("PriceHistoryServices: flush of {} ticks failed, retrying next flush: {}", ticks.size(), e.getMessage());
+                return;
+            }
+            failedAttempts = 0;
+            log.warn("PriceHistoryServices: flush of {} ticks failed {} times, writing row by row: {}",
+                    ticks.size(), maxAttempts, e.getMessage());
+            batch = writeRowByRow(batch);
+        }
+        failedAttempts = 0;
+        committed(batch);
+    }
+
+    private void write(List<StoredTick> ticks) {
+        insertTicks(ticks);
+        for (Resolution resolution : Resolution.values()) {
+            upsertBars(resolution, rollup(resolution, ticks));
+        }
+    }
+
+    /**
+     * Writes each tick of a batch that failed as a whole in its own transaction. Ticks the
+     * database refuses are dropped and counted; when the database itself fails, the ticks from
+     * there on are kept for the next flush. Returns the part of the batch that is done with.
+     */
+    private Batch writeRowByRow(Batch batch) {
+        List<StoredTick> ticks = batch.ticks();
+        List<StoredTick> written = new ArrayList<>(ticks.size());
+        for (int i = 0; i < ticks.size(); i++) {
+            StoredTick tick = ticks.get(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(List.of(tick)));
+                written.add(tick);
+            } catch (Exception e) {
+                if (!refused(e)) {
+                    retry = new ArrayList<>(batch.accepted().subList(i, ticks.size()));
+                    failedCounter.increment(ticks.size() - i);
+                    log.warn("PriceHistoryServices: flush failed after {} of {} ticks, retrying the rest next flush: {}",
+                            i, ticks.size(), e.getMessage());
+                    // series state as of the ticks dealt with, so the rest are not taken for repeats
+                    List<Tick> done = new ArrayList<>(batch.accepted().subList(0, i));
+                    return new Batch(written, done, resolve(done).states());
+                }
+                rejectedCounter.increment();
+                log.warn("PriceHistoryServices: dropping tick {} {} at {}: {}",
+                        tick.ticker(), tick.price(), tick.ts(), e.getMessage());
+            }
+        }
+        return new Batch(written, batch.accepted(), batch.states());
+    }
+
+    // the database refused the data, as opposed to being unreachable, contended or timing out
+    private static boolean refused(Exception e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof DataAccessResourceFailureException);
+    }
+
+    // only now advance the series and the in-memory history
+    private void committed(Batch batch) {
+        series.putAll(batch.states());
+        List<StoredTick> ticks = batch.ticks();
+        if (ticks.isEmpty()) {
+            return;
+        }
+        for (StoredTick tick : ticks) {
+            timeSeriesStore.append(tick.ticker(), tick.ts(), tick.price().doubleValue(), tick.volume());
+        }
+        writtenCounter.increment(ticks.size());
+        // ticks are in time order
+        long today = Resolution.DAY.bucket(System.currentTimeMillis());
+        if (today != currentDay || ticks.get(0).ts() < today) {
+            currentDay = today;
+            closedBarsVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Maps tickers to stock ids, drops repeats of the last stored tick and turns session volume
+     * into per-tick volume. Series state is advanced on copies, applied by the caller once the
+     * batch has committed.
+     */
+    private Batch resolve(List<Tick> drained) {
+        drained.sort(Comparator.comparingLong(Tick::ts));
+        List<StoredTick> resolved = new ArrayList<>(drained.size());
+        List<Tick> accepted = new ArrayList<>(drained.size());
+        Map<Integer, SeriesState> states = new HashMap<>();
+        for (Tick tick : drained) {
+            String ticker = tick.ticker().toUpperCase(Locale.ROOT);
+            Integer stockId = stockIds.get(ticker);
+            if (stockId == null) {
+                unknownCounter.increment();
+                catalogStale = true;
+                continue;
+            }
+            SeriesState state = states.computeIfAbsent(stockId, id -> {
+                SeriesState stored = series.get(id);
+                return stored == null ? new SeriesState() : stored.copy();
+            });
+            if (tick.ts() <= state.lastTs) {
+                duplicateCounter.increment();
+                continue;
+            }
+            long volume = 0;
+            if (tick.cumulativeVolume() >= 0) {
+                if (state.lastCumulativeVolume >= 0) {
+                    // session volume resets at the open
+                    volume = tick.cumulativeVolume() >= state.lastCumulativeVolume
+                            ? tick.cumulativeVolume() - state.lastCumulativeVolume
+                            : tick.cumulativeVolume();
+                }
+                state.lastCumulativeVolume = tick.cumulativeVolume();
+            }
+            state.lastTs = tick.ts();
+            resolved.add(new StoredTick(stockId, ticker, tick.ts(), tick.price(), volume));
+            accepted.add(tick);
+        }
+        return new Batch(resolved, accepted, states);
+    }
+
+    private void refreshCatalogIfNeeded() {
+        long now = System.currentTimeMillis();
+        boolean firstLoad = catalogLoadedAt == 0;
+        if (!catalogStale || (!firstLoad && now - catalogLoadedAt < catalogRefreshMs)) {
+            return;
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, ticker FROM stocks", rs -> {
+            ids.put(rs.getString("ticker").toUpperCase(Locale.ROOT), rs.getInt("id"));
+        });
+        if (firstLoad) {
+            // resume after the last stored tick so a restart does not count ticks into the bars twice
+            jdbcTemplate.query("SELECT stock_id, MAX(ts) AS last_ts FROM price_ticks GROUP BY stock_id", rs -> {
+                SeriesState state = series.computeIfAbsent(rs.getInt("stock_id"), id -> new SeriesState());
+                state.lastTs = Math.max(state.lastTs, rs.getLong("last_ts"));
+            });
+        }
+        stockIds = ids;
+        catalogLoadedAt = now;
+        catalogStale = false;
+        log.debug("PriceHistoryServices: loaded {} stock ids", ids.size());
+    }
+
+    private void insertTicks(List<StoredTick> ticks) {
+        for (int from = 0; from < ticks.size(); from += insertBatchSize) {
+            List<StoredTick> chunk = ticks.subList(from, Math.min(from + insertBatchSize, ticks.size()));
+            Object[] args = new Object[chunk.size() * 4];
+            int i = 0;
+            for (StoredTick tick : chunk) {
+                args[i++] = tick.stockId();
+                args[i++] = tick.ts();
+                args[i++] = tick.price();
+                args[i++] = tick.volume();
+            }
+            jdbcTemplate.update(multiRow(TICK_COLUMNS, TICK_ROW, chunk.size(), ""), args);
+        }
+    }
+
+    private static Collection<Bar> rollup(Resolution resolution, List<StoredTick> ticks) {
+        // ticks are in time order, so the first tick seen for a bucket is its open and the last its close
+        Map<BarKey, Bar> bars = new LinkedHashMap<>();
+        for (StoredTick tick : ticks) {
+            BarKey key = new BarKey(tick.stockId(), resolution.bucket(tick.ts()));
+            Bar bar = bars.get(key);
+            if (bar == null) {
+                bars.put(key, new Bar(key, tick));
+            } else {
+                bar.add(tick);
+            }
+        }
+        return bars.values();
+    }
+
+    private void upsertBars(Resolution resolution, Collection<Bar> bars) {
+        List<Bar> all = new ArrayList<>(bars);
+        for (int from = 0; from < all.size(); from += insertBatchSize) {
+            List<Bar> chunk = all.subList(from, Math.min(from + insertBatchSize, all.size()));
+            Object[] args = new Object[chunk.size() * 11];
+            int i = 0;
+            for (Bar bar : chunk) {
+                args[i++] = bar.key.stockId();
+                args[i++] = resolution.code;
+                args[i++] = bar.key.bucketStart();
+                args[i++] = bar.open;
+                args[i++] = bar.high;
+                args[i++] = bar.low;
+                args[i++] = bar.close;
+                args[i++] = bar.volume;
+                args[i++] = bar.tickCount;
+                args[i++] = bar.firstTs;
+                args[i++] = bar.lastTs;
+            }
+            jdbcTemplate.update(multiRow(BAR_COLUMNS, BAR_ROW, chunk.size(), BAR_UPSERT), args);
+        }
+    }
+
+    private static String multiRow(String head, String row, int rows, String tail) {
+        StringBuilder sql = new StringBuilder(head.length() + rows * (row.length() + 1) + tail.length());
+        sql.append(head);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(',');
+            sql.append(row);
+        }
+        return sql.append(tail).toString();
+    }
+
+    /**
+     * Changes whenever the closed daily bars (every 1d bar before today's) may have changed,
+     * so anything derived only from them can be kept until it moves.
+     */
+    public long closedBarsVersion() {
+        return closedBarsVersion.get();
+    }
+
+    /**
+     * Bars for {@code ticker} covering [from, to). {@code interval} is "tick" for raw ticks,
+     * a width such as "1m", "5m", "4h", "1d" or "1w", or null to pick the finest width that
+     * keeps the answer within max-points. Buckets are aligned to multiples of the width
+     * since the epoch (UTC). Returns empty for an unknown ticker; throws
+     * IllegalArgumentException for a bad interval or range.
+     */
+    public Optional<PriceHistoryDTO> history(String ticker, long from, long to, String interval) {
+        if (from >= to) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        String normalized = ticker.trim().toUpperCase(Locale.ROOT);
+        // only catalog tickers are ingested, so anything held in memory is a known stock
+        long inMemorySince = timeSeriesStore.oldest(normalized);
+
+        if ("tick".equalsIgnoreCase(interval) || "raw".equalsIgnoreCase(interval)) {
+            if (to - from > maxTickSpanMs) {
+                throw new IllegalArgumentException("raw ticks are limited to a span of " + Duration.ofMillis(maxTickSpanMs));
+            }
+            if (inMemorySince <= from) {
+                return Optional.of(new PriceHistoryDTO(normalized, "tick", "memory", from, to,
+                        memoryTicks(normalized, from, to)));
+            }
+            return stockId(normalized).map(stockId ->
+                    new PriceHistoryDTO(normalized, "tick", "tick", from, to, ticks(stockId, from, to)));
+        }
+
+        long width = interval == null || interval.isBlank() ? autoInterval(to - from) : parseInterval(interval);
+        if ((to - from) / width > maxPoints) {
+            throw new IllegalArgumentException("interval " + interval + " gives more than " + maxPoints + " bars");
+        }
+        long alignedFrom = Math.floorDiv(from, width) * width;
+        if (inMemorySince <= alignedFrom) {
+            return Optional.of(new PriceHistoryDTO(normalized, formatInterval(width), "memory", from, to,
+                    memoryBars(normalized, alignedFrom, to, width)));
+        }
+
+        Resolution source = Resolution.MINUTE;
+        for (Resolution r : Resolution.values()) {
+            if (width % r.millis == 0) {
+                source = r;
+            }
+        }
+        Resolution resolution = source;
+        return stockId(normalized).map(stockId -> {
+            List<PriceBarDTO> stored = jdbcTemplate.query(
+                    "SELECT bucket_start, open, high, low, close, volume FROM price_bars "
+                            + "WHERE stock_id = ? AND resolution = ? AND bucket_start >= ? AND bucket_start < ? "
+                            + "ORDER BY bucket_start",
+                    (rs, rowNum) -> new PriceBarDTO(rs.getLong("bucket_start"), rs.getBigDecimal("open"),
+                            rs.getBigDecimal("high"), rs.getBigDecimal("low"), rs.getBigDecimal("close"),
+                            rs.getLong("volume")),
+                    stockId, resolution.code, alignedFrom, to);
+            return new PriceHistoryDTO(normalized, formatInterval(width), resolution.code, from, to,
+                    width == resolution.millis ? stored : merge(stored, width));
+        });
+    }
+
+    private Optional<Integer> stockId(String ticker) {
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM stocks WHERE ticker = ?", Integer.class, ticker);
+        return ids.isEmpty() ? Optional.empty() : Optional.of(ids.get(0));
+    }
+
+    private List<PriceBarDTO> memoryTicks(String ticker, long from, long to) {
+        List<PriceBarDTO> ticks = new ArrayList<>();
+        timeSeriesStore.scan(ticker, from, to, (ts, price, volume) -> {
+            if (ticks.size() < maxPoints) {
+                BigDecimal p = scaled(price);
+                ticks.add(new PriceBarDTO(ts, p, p, p, p, volume));
+            }
+        });
+        return ticks;
+    }
+
+    // aggregates raw in-memory points into bars of the given width, one allocation per bar
+    private List<PriceBarDTO> memoryBars(String ticker, long from, long to, long width) {
+        List<PriceBarDTO> bars = new ArrayList<>();
+        double[] ohlc = new double[4];
+        long[] bucket = {Long.MIN_VALUE, 0};
+        timeSeriesStore.scan(ticker, from, to, (ts, price, volume) -> {
+            long start = Math.floorDiv(ts, width) * width;
+            if (start != bucket[0]) {
+                if (bucket[0] != Long.MIN_VALUE) {
+                    bars.add(bar(bucket, ohlc));
+                }
+                bucket[0] = start;
+                bucket[1] = 0;
+                ohlc[0] = price;
+                ohlc[1] = price;
+                ohlc[2] = price;
+            }
+            ohlc[1] = Math.max(ohlc[1], price);
+            ohlc[2] = Math.min(ohlc[2], price);
+            ohlc[3] = price;
+            bucket[1] += volume;
+        });
+        if (bucket[0] != Long.MIN_VALUE) {
+            bars.add(bar(bucket, ohlc));
+        }
+        return bars;
+    }
+
+    private static PriceBarDTO bar(long[] bucket, double[] ohlc) {
+        return new PriceBarDTO(bucket[0], scaled(ohlc[0]), scaled(ohlc[1]), scaled(ohlc[2]), scaled(ohlc[3]), bucket[1]);
+    }
+
+    // same scale as the DECIMAL(16,4) columns
+    private static BigDecimal scaled(double price) {
+        return BigDecimal.valueOf(price).setScale(4, RoundingMode.HALF_UP);
+    }
+
+    private List<PriceBarDTO> ticks(int stockId, long from, long to) {
+        return jdbcTemplate.query(
+                "SELECT ts, price, volume FROM price_ticks WHERE stock_id = ? AND ts >= ? AND ts < ? ORDER BY ts LIMIT ?",
+                (rs, rowNum) -> {
+                    BigDecimal price = rs.getBigDecimal("price");
+                    return new PriceBarDTO(rs.getLong("ts"), price, price, price, price, rs.getLong("volume"));
+                },
+                stockId, from, to, maxPoints);
+    }
+
+    // folds stored bars (in time order) into wider buckets
+    private static List<PriceBarDTO> merge(List<PriceBarDTO> stored, long width) {
+        List<PriceBarDTO> merged = new ArrayList<>();
+        PriceBarDTO current = null;
+        for (PriceBarDTO bar : stored) {
+            long bucket = Math.floorDiv(bar.getTime(), width) * width;
+            if (current == null || current.getTime() != bucket) {
+                current = new PriceBarDTO(bucket, bar.getOpen(), bar.getHigh(), bar.getLow(), bar.getClose(), bar.getVolume());
+                merged.add(current);
+            } else {
+                current.setHigh(current.getHigh().max(bar.getHigh()));
+                current.setLow(current.getLow().min(bar.getLow()));
+                current.setClose(bar.getClose());
+                current.setVolume(current.getVolume() + bar.getVolume());
+            }
+        }
+        return merged;
+    }
+
+    private long autoInterval(long span) {
+        for (long width : AUTO_INTERVALS) {
+            if (span / width <= maxPoints) {
+                return width;
+            }
+        }
+        return AUTO_INTERVALS[AUTO_INTERVALS.length - 1];
+    }
+
+    static long parseInterval(String interval) {
+        String value = interval.trim().toLowerCase(Locale.ROOT);
+        if (value.length() < 2) {
+            throw new IllegalArgumentException("bad interval: " + interval);
+        }
+        long count;
+        try {
+            count = Long.parseLong(value.substring(0, value.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad interval: " + interval);
+        }
+        long unit = switch (value.charAt(value.length() - 1)) {
+            case 'm' -> 60_000L;
+            case 'h' -> 3_600_000L;
+            case 'd' -> 86_400_000L;
+            case 'w' -> 604_800_000L;
+            default -> throw new IllegalArgumentException("bad interval unit: " + interval);
+        };
+        if (count <= 0) {
+            throw new IllegalArgumentException("bad interval: " + interval);
+        }
+        return count * unit;
+    }
+
+    private static String formatInterval(long width) {
+        if (width % 604_800_000L == 0) return width / 604_800_000L + "w";
+        if (width % 86_400_000L == 0) return width / 86_400_000L + "d";
+        if (width % 3_600_000L == 0) return width / 3_600_000L + "h";
+        return width / 60_000L + "m";
+    }
+
+    private record Tick(String ticker, long ts, BigDecimal price, long cumulativeVolume) {
+    }
+
+    private record StoredTick(int stockId, String ticker, long ts, BigDecimal price, long volume) {
+    }
+
+    // one flush's ticks to write, the drained ticks behind them, and the series state after them
+    private record Batch(List<StoredTick> ticks, List<Tick> accepted, Map<Integer, SeriesState> states) {
+    }
+
+    private record BarKey(int stockId, long bucketStart) {
+    }
+
+    private static final class SeriesState {
+        long lastTs = Long.MIN_VALUE;
+        long lastCumulativeVolume = -1;
+
+        SeriesState copy() {
+            SeriesState copy = new SeriesState();
+            copy.lastTs = lastTs;
+            copy.lastCumulativeVolume = lastCumulativeVolume;
+            return copy;
+        }
+    }
+
+    private static final class Bar {
+        final BarKey key;
+        final BigDecimal open;
+        BigDecimal high;
+        BigDecimal low;
+        BigDecimal close;
+        long volume;
+        int tickCount;
+        final long firstTs;
+        long lastTs;
+
+        Bar(BarKey key, StoredTick first) {
+            this.key = key;
+            this.open = scaled(first.price());
+            this.high = open;
+            this.low = open;
+            this.close = open;
+            this.volume = first.volume();
+            this.tickCount = 1;
+            this.firstTs = first.ts();
+            this.lastTs = first.ts();
+        }
+
+        void add(StoredTick tick) {
+            BigDecimal price = scaled(tick.price());
+            high = high.max(price);
+            low = low.min(price);
+            close = price;
+            volume += tick.volume();
+            tickCount++;
+            lastTs = tick.ts();
+        }
+
+        // price columns are DECIMAL(16,4)
+        private static BigDecimal scaled(BigDecimal price) {
+            return price.setScale(4, RoundingMode.HALF_UP);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.perscholas.investmentapp.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ids ordered by score, highest first (ties by lower id), with the position of any id in
+ * O(log n): a treap whose nodes also count their subtree, so a rank is the sum of the left
+ * subtrees passed on the way down from the root. Moving an id to a new score is a delete and
+ * an insert, also O(log n), and the first n ids are an in-order walk.
+ * Nodes live in parallel primitive arrays and are reused after a delete.
+ * <p>
+ * Not thread-safe; LeaderboardServices guards it.
+ */
+final class RankIndex {
+
+    private static final int NIL = -1;
+
+    // id -> node
+    private final Map<Integer, Integer> nodes = new HashMap<>();
+
+    private int[] ids = new int[0];
+    private double[] scores = new double[0];
+    private int[] priorities = new int[0];
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] sizes = new int[0];
+    private int used;
+    private int[] free = new int[0];
+    private int freeCount;
+    private int root = NIL;
+    private int seed = 0x2545F491;
+
+    // split(): the two halves, set before it returns
+    private int splitLeft;
+    private int splitRight;
+
+    int size() {
+        return size(root);
+    }
+
+    boolean contains(int id) {
+        return nodes.containsKey(id);
+    }
+
+    // NaN when the id is not ranked
+    double score(int id) {
+        Integer node = nodes.get(id);
+        return node == null ? Double.NaN : scores[node];
+    }
+
+    void put(int id, double score) {
+        Integer node = nodes.get(id);
+        if (node != null) {
+            if (Double.compare(scores[node], score) == 0) {
+                return;
+            }
+            root = delete(root, node);
+        } else {
+            node = allocate(id);
+            nodes.put(id, node);
+        }
+        scores[node] = score;
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+        root = insert(root, node);
+    }
+
+    void remove(int id) {
+        Integer node = nodes.remove(id);
+        if (node == null) {
+            return;
+        }
+        root = delete(root, node);
+        free[freeCount++] = node;
+    }
+
+    void clear() {
+        nodes.clear();
+        root = NIL;
+        used = 0;
+        freeCount = 0;
+    }
+
+    // 1 for the highest score; 0 when the id is not ranked
+    int rank(int id) {
+        Integer node = nodes.get(id);
+        if (node == null) {
+            return 0;
+        }
+        int ahead = 0;
+        int t = root;
+        while (t != node) {
+            if (before(node, t)) {
+                t = left[t];
+            } else {
+                ahead += size(left[t]) + 1;
+                t = right[t];
+            }
+        }
+        return ahead + size(left[node]) + 1;
+    }
+
+    // the ids of the first n ranks, in order
+    int[] top(int n) {
+        int[] out = new int[Math.max(0, Math.min(n, size()))];
+        int[] stack = new int[64];
+        int depth = 0;
+        int t = root;
+        int k = 0;
+        while (k < out.length) {
+            while (t != NIL) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = t;
+                t = left[t];
+            }
+            t = stack[--depth];
+            out[k++] = ids[t];
+            t = right[t];
+        }
+        return out;
+    }
+
+    // a ranks ahead of b
+    private boolean before(int a, int b) {
+        int c = Double.compare(scores[a], scores[b]);
+        return c > 0 || (c == 0 && ids[a] < ids[b]);
+    }
+
+    private int size(int t) {
+        return t == NIL ? 0 : sizes[t];
+    }
+
+    private void update(int t) {
+        sizes[t] = size(left[t]) + size(right[t]) + 1;
+    }
+
+    private int insert(int t, int n) {
+        if (t == NIL) {
+            return n;
+        }
+        if (priorities[n] > priorities[t]) {
+            split(t, n);
+            left[n] = splitLeft;
+            right[n] = splitRight;
+            update(n);
+            return n;
+        }
+        if (before(n, t)) {
+            left[t] = insert(left[t], n);
+        } else {
+            right[t] = insert(right[t], n);
+        }
+        update(t);
+        return t;
+    }
+
+    // n is found by its current score, so delete before changing it
+    private int delete(int t, int n) {
+        if (t == n) {
+            return merge(left[t], right[t]);
+        }
+        if (before(n, t)) {
+            left[t] = delete(left[t], n);
+        } else {
+            right[t] = delete(right[t], n);
+        }
+        update(t);
+        return t;
+    }
+
+    // t into the nodes ranked ahead of n (splitLeft) and the rest (splitRight)
+    private void split(int t, int n) {
+        if (t == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        if (before(t, n)) {
+            split(right[t], n);
+            right[t] = splitLeft;
+            update(t);
+            splitLeft = t;
+        } else {
+            split(left[t], n);
+            left[t] = splitRight;
+            update(t);
+            splitRight = t;
+        }
+    }
+
+    // every node of a ranks ahead of every node of b
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    private int allocate(int id) {
+        int node;
+        if (freeCount > 0) {
+            node = free[--freeCount];
+        } else {
+            node = used++;
+            if (node == ids.length) {
+                int capacity = Math.max(1024, node * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+                priorities = Arrays.copyOf(priorities, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                free = Arrays.copyOf(free, capacity);
+            }
+        }
+        ids[node] = id;
+        // xorshift; any well-spread sequence keeps the expected depth logarithmic
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        priorities[node] = seed;
+        return node;
+    }
+}
@@ -0,0 +1,171 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.security.AppUserPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether a read-only transaction may use the read replica (see DataSourcePoolsConfig).
+ * It may not when no replica is configured, when the last heartbeat found it more than max-lag
+ * behind or unreachable, inside {@link #onPrimary}, or for a user who wrote within the
+ * read-your-writes window, so a user always sees their own trades and edits.
+ * Writes are tracked per JVM, like CurrentUserServices changes.
+ */
+@Service
+@Slf4j
+public class ReadRoutingServices {
+
+    private final long readYourWritesNanos;
+    private final long maxLagMillis;
+
+    // user id -> System.nanoTime() until which that user's reads stay on the primary
+    private final ConcurrentHashMap<Integer, Long> primaryUntil = new ConcurrentHashMap<>();
+    private final ThreadLocal<Integer> primaryDepth = ThreadLocal.withInitial(() -> 0);
+
+    private volatile boolean replicaConfigured;
+    private volatile boolean replicaUsable;
+    // NaN until the first heartbeat, or while the replica is unreachable
+    private volatile double replicaLagSeconds = Double.NaN;
+
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    @Autowired
+    public ReadRoutingServices(MeterRegistry meterRegistry,
+                               @Value("${app.datasource.read-your-writes:5s}") Duration readYourWrites,
+                               @Value("${app.datasource.replica.max-lag:2s}") Duration maxLag) {
+        this.readYourWritesNanos = readYourWrites.toNanos();
+        this.maxLagMillis = maxLag.toMillis();
+
+        this.replicaReads = Counter.builder("datasource.routing.reads")
+                .description("Read-only transactions by the pool that served them")
+                .tag("target", "replica")
+                .register(meterRegistry);
+        this.primaryReads = Counter.builder("datasource.routing.reads")
+                .description("Read-only transactions by the pool that served them")
+                .tag("target", "primary")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.lag", this, s -> s.replicaLagSeconds)
+                .description("Replica lag seen by the last heartbeat")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.usable", this, s -> s.replicaUsable ? 1 : 0)
+                .description("1 while read-only transactions may go to the replica")
+                .register(meterRegistry);
+    }
+
+    // called once the routing data source is built with a replica behind it
+    public void replicaConfigured() {
+        replicaConfigured = true;
+    }
+
+    /**
+     * The user's reads go to the primary until the window has passed. Inside a transaction the
+     * window opens once it commits, so it does not start before the write can replicate.
+     */
+    public void recordWrite(Integer userId) {
+        if (!replicaConfigured || userId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            primaryUntil.put(userId, System.nanoTime() + readYourWritesNanos);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                primaryUntil.put(userId, System.nanoTime() + readYourWritesNanos);
+            }
+        });
+    }
+
+    // runs work with every read on the primary, for reads that must not be stale (logins, reloads after a change)
+    public <T> T onPrimary(Supplier<T> work) {
+        int depth = primaryDepth.get();
+        primaryDepth.set(depth + 1);
+        try {
+            return work.get();
+        } finally {
+            if (depth == 0) {
+                primaryDepth.remove();
+            } else {
+                primaryDepth.set(depth);
+            }
+        }
+    }
+
+    // asked by the routing data source when a read-only transaction needs its connection
+    public boolean routeToReplica() {
+        boolean replica = replicaUsable && primaryDepth.get() == 0 && !recentlyWrote(currentUserId());
+        (replica ? replicaReads : primaryReads).increment();
+        return replica;
+    }
+
+    // heartbeat result: how far behind the primary the replica is
+    public void replicaLag(long lagMillis) {
+        replicaLagSeconds = lagMillis / 1000.0;
+        boolean usable = lagMillis <= maxLagMillis;
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("ReadRoutingServices: replica caught up ({} ms behind), read-only traffic goes to it", lagMillis);
+            } else {
+                log.warn("ReadRoutingServices: replica is {} ms behind, read-only traffic falls back to the primary", lagMillis);
+            }
+        }
+        replicaUsable = usable;
+        purgeExpiredWrites();
+    }
+
+    public void replicaUnreachable(Exception e) {
+        if (replicaUsable) {
+            log.warn("ReadRoutingServices: replica unreachable, read-only traffic falls back to the primary: {}", e.getMessage());
+        }
+        replicaUsable = false;
+        replicaLagSeconds = Double.NaN;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    private boolean recentlyWrote(Integer userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long until = primaryUntil.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        primaryUntil.remove(userId, until);
+        return false;
+    }
+
+    private void purgeExpiredWrites() {
+        long now = System.nanoTime();
+        primaryUntil.values().removeIf(until -> now - until >= 0);
+    }
+
+    private static Integer currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof AppUserPrincipal principal) {
+            return principal.getCurrentUser().getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,241 @@
+package org.perscholas.investmentapp.services;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The arithmetic behind PortfolioRiskServices, on primitive arrays: log returns, covariance,
+ * correlation and volatility of a set of daily close series, and a Monte Carlo loss
+ * distribution for positions of given values.
+ * Simulation draws correlated normal log returns (Cholesky factor of the covariance) and
+ * revalues each position. Paths are split in halves down to {@link #LEAF_PATHS} and run as
+ * fork/join tasks; each half gets its own SplittableRandom split from its parent, so the
+ * draws depend only on the seed and the path count, never on the pool size or scheduling.
+ */
+final class RiskAnalytics {
+
+    static final int TRADING_DAYS = 252;
+    // paths per fork/join leaf
+    static final int LEAF_PATHS = 4096;
+
+    private RiskAnalytics() {
+    }
+
+    // closes[asset][day] -> returns[asset][day - 1]
+    static double[][] logReturns(double[][] closes) {
+        double[][] returns = new double[closes.length][];
+        for (int i = 0; i < closes.length; i++) {
+            double[] c = closes[i];
+            double[] r = new double[c.length - 1];
+            for (int d = 1; d < c.length; d++) {
+                r[d - 1] = Math.log(c[d] / c[d - 1]);
+            }
+            returns[i] = r;
+        }
+        return returns;
+    }
+
+    static double[] means(double[][] returns) {
+        double[] means = new double[returns.length];
+        for (int i = 0; i < returns.length; i++) {
+            double sum = 0;
+            for (double r : returns[i]) {
+                sum += r;
+            }
+            means[i] = sum / returns[i].length;
+        }
+        return means;
+    }
+
+    // sample covariance of equally long series
+    static double[][] covariance(double[][] returns, double[] means) {
+        int n = returns.length;
+        int days = returns[0].length;
+        double[][] cov = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double[] a = returns[i];
+                double[] b = returns[j];
+                double sum = 0;
+                for (int d = 0; d < days; d++) {
+                    sum += (a[d] - means[i]) * (b[d] - means[j]);
+                }
+                cov[i][j] = sum / (days - 1);
+                cov[j][i] = cov[i][j];
+            }
+        }
+        return cov;
+    }
+
+    // standard deviation per asset, in the covariance's period
+    static double[] volatilities(double[][] cov) {
+        double[] vol = new double[cov.length];
+        for (int i = 0; i < cov.length; i++) {
+            vol[i] = Math.sqrt(cov[i][i]);
+        }
+        return vol;
+    }
+
+    // a flat series has no defined correlation; it is reported as 0 off the diagonal
+    static double[][] correlation(double[][] cov) {
+        int n = cov.length;
+        double[] vol = volatilities(cov);
+        double[][] corr = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                corr[i][j] = i == j ? 1 : vol[i] == 0 || vol[j] == 0 ? 0 : cov[i][j] / (vol[i] * vol[j]);
+            }
+        }
+        return corr;
+    }
+
+    // sqrt(w' cov w)
+    static double portfolioVolatility(double[][] cov, double[] weights) {
+        double variance = 0;
+        for (int i = 0; i < weights.length; i++) {
+            for (int j = 0; j < weights.length; j++) {
+                variance += weights[i] * weights[j] * cov[i][j];
+            }
+        }
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    /**
+     * Lower-triangular L with L L' = cov, row-major in a flat n * n array. Covariances from
+     * fewer days than assets, or of series that move together exactly, are only positive
+     * semi-definite; those get a ridge on the diagonal, grown until the factorization holds.
+     */
+    static double[] cholesky(double[][] cov) {
+        int n = cov.length;
+        double trace = 0;
+        for (int i = 0; i < n; i++) {
+            trace += cov[i][i];
+        }
+        double ridge = 0;
+        double step = Math.max(trace / n, 1e-12) * 1e-10;
+        while (true) {
+            double[] l = factor(cov, ridge);
+            if (l != null) {
+                return l;
+            }
+            ridge = ridge == 0 ? step : ridge * 10;
+        }
+    }
+
+    private static double[] factor(double[][] cov, double ridge) {
+        int n = cov.length;
+        double[] l = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = cov[i][j] + (i == j ? ridge : 0);
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i * n + k] * l[j * n + k];
+                }
+                if (i == j) {
+                    if (sum <= 0) {
+                        return null;
+                    }
+                    l[i * n + i] = Math.sqrt(sum);
+                } else {
+                    l[i * n + j] = sum / l[j * n + j];
+                }
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Loss of the positions over the horizon on each of paths simulated days: values are the
+     * positions' current values, means the daily mean log returns and chol the factor of their
+     * daily covariance. Positive is a loss.
+     */
+    static double[] simulateLosses(ForkJoinPool pool, double[] values, double[] means, double[] chol,
+                                   int horizonDays, int paths, long seed) {
+        double[] losses = new double[paths];
+        double[] drift = new double[means.length];
+        for (int i = 0; i < means.length; i++) {
+            drift[i] = means[i] * horizonDays;
+        }
+        pool.invoke(new Paths(new Model(values, drift, chol, Math.sqrt(horizonDays)), losses,
+                0, paths, new SplittableRandom(seed)));
+        return losses;
+    }
+
+    // losses sorted ascending; the loss not exceeded with the given confidence (0.99 -> 99% VaR); 0 without paths
+    static double valueAtRisk(double[] sortedLosses, double confidence) {
+        if (sortedLosses.length == 0) {
+            return 0;
+        }
+        int k = (int) Math.ceil(confidence * sortedLosses.length) - 1;
+        return sortedLosses[Math.max(0, Math.min(sortedLosses.length - 1, k))];
+    }
+
+    // losses sorted ascending; the mean loss at or beyond the VaR at that confidence; 0 without paths
+    static double expectedShortfall(double[] sortedLosses, double confidence) {
+        if (sortedLosses.length == 0) {
+            return 0;
+        }
+        int from = Math.max(0, Math.min(sortedLosses.length - 1, (int) Math.ceil(confidence * sortedLosses.length) - 1));
+        double sum = 0;
+        for (int k = from; k < sortedLosses.length; k++) {
+            sum += sortedLosses[k];
+        }
+        return sum / (sortedLosses.length - from);
+    }
+
+    private record Model(double[] values, double[] drift, double[] chol, double scale) {
+    }
+
+    private static final class Paths extends RecursiveAction {
+        private final Model model;
+        private final double[] losses;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+
+        Paths(Model model, double[] losses, int from, int to, SplittableRandom random) {
+            this.model = model;
+            this.losses = losses;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_PATHS) {
+                simulate();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            // split before forking, so which half gets which stream is fixed
+            SplittableRandom leftRandom = random.split();
+            invokeAll(new Paths(model, losses, from, mid, leftRandom),
+                    new Paths(model, losses, mid, to, random));
+        }
+
+        private void simulate() {
+            double[] values = model.values();
+            double[] drift = model.drift();
+            double[] chol = model.chol();
+            double scale = model.scale();
+            int n = values.length;
+            double[] z = new double[n];
+            for (int p = from; p < to; p++) {
+                for (int i = 0; i < n; i++) {
+                    z[i] = random.nextGaussian();
+                }
+                double pnl = 0;
+                for (int i = 0, row = 0; i < n; i++, row += n) {
+                    double x = 0;
+                    for (int j = 0; j <= i; j++) {
+                        x += chol[row + j] * z[j];
+                    }
+                    pnl += values[i] * (Math.exp(drift[i] + scale * x) - 1);
+                }
+                losses[p] = -pnl;
+            }
+        }
+    }
+}
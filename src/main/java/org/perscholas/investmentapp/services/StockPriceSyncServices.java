@@ -0,0 +1,201 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.perscholas.investmentapp.client.MarketDataClient;
+import org.perscholas.investmentapp.config.Workload;
+import org.perscholas.investmentapp.config.WorkloadPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps stocks.price in line with live quotes.
+ * Each cycle reads (id, ticker, price) straight from the stocks table, fetches quotes for
+ * every ticker in batched upstream calls (through MarketQuoteServices, so the shared cache
+ * is reused and refreshed), and writes only the changed prices back as one JDBC batch.
+ * Going around JPA avoids loading and dirty-checking a Stock entity per row.
+ */
+@Service
+@Slf4j
+@WorkloadPool(Workload.BATCH)
+public class StockPriceSyncServices {
+
+    private static final String SELECT_PRICES = "SELECT id, ticker, price FROM stocks";
+    private static final String UPDATE_PRICE = "UPDATE stocks SET price = ? WHERE id = ?";
+
+    private final MarketQuoteServices marketQuoteServices;
+    private final LatestQuoteTable latestQuoteTable;
+    private final EntityCacheServices entityCacheServices;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+    private final String region;
+    private final int batchSize;
+    private final long quoteTimeoutMs;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final Timer cycleTimer;
+    private final Counter rowsUpdatedCounter;
+    private final Counter unchangedCounter;
+    private final Counter missingCounter;
+    private final Counter failedCounter;
+
+    @Autowired
+    public StockPriceSyncServices(MarketQuoteServices marketQuoteServices,
+                                  LatestQuoteTable latestQuoteTable,
+                                  EntityCacheServices entityCacheServices,
+                                  JdbcTemplate jdbcTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${market.price-sync.enabled:true}") boolean enabled,
+                                  @Value("${market.price-sync.region:US}") String region,
+                                  @Value("${market.price-sync.batch-size:50}") int batchSize,
+                                  @Value("${market.price-sync.quote-timeout-ms:20000}") long quoteTimeoutMs) {
+        this.marketQuoteServices = marketQuoteServices;
+        this.latestQuoteTable = latestQuoteTable;
+        this.entityCacheServices = entityCacheServices;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.region = region;
+        this.batchSize = batchSize;
+        this.quoteTimeoutMs = quoteTimeoutMs;
+
+        this.cycleTimer = Timer.builder("market.price-sync.duration")
+                .description("Time taken by one stock price sync cycle")
+                .register(meterRegistry);
+        this.rowsUpdatedCounter = Counter.builder("market.price-sync.rows")
+                .description("Stock rows seen by the price sync")
+                .tag("result", "updated")
+                .register(meterRegistry);
+        this.unchangedCounter = Counter.builder("market.price-sync.rows")
+                .description("Stock rows seen by the price sync")
+                .tag("result", "unchanged")
+                .register(meterRegistry);
+        this.missingCounter = Counter.builder("market.price-sync.rows")
+                .description("Stock rows seen by the price sync")
+                .tag("result", "no-quote")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("market.price-sync.failures")
+                .description("Price sync cycles that did not complete")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${market.price-sync.initial-delay-ms:60000}",
+            fixedDelayString = "${market.price-sync.interval-ms:60000}")
+    public void scheduledSync() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            syncPrices();
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.warn("StockPriceSyncServices: sync cycle failed: {}", MarketDataClient.describe(e));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Runs one sync cycle and returns the number of stock rows whose price changed.
+     */
+    public int syncPrices() {
+        return cycleTimer.record(() -> {
+            List<StockPrice> stocks = jdbcTemplate.query(SELECT_PRICES, (rs, rowNum) ->
+                    new StockPrice(rs.getInt("id"), rs.getString("ticker"), rs.getBigDecimal("price")));
+            if (stocks.isEmpty()) {
+                return 0;
+            }
+            // stored prices stand in until the first quote for a ticker arrives
+            for (StockPrice stock : stocks) {
+                if (stock.price() != null) {
+                    latestQuoteTable.seed(stock.ticker().toUpperCase(Locale.ROOT), stock.price().doubleValue());
+                }
+            }
+
+            Map<String, BigDecimal> latest = fetchLatestPrices(stocks);
+
+            List<Object[]> updates = new ArrayList<>();
+            for (StockPrice stock : stocks) {
+                BigDecimal price = latest.get(stock.ticker().toUpperCase(Locale.ROOT));
+                if (price == null) {
+                    missingCounter.increment();
+                } else if (stock.price() != null && stock.price().compareTo(price) == 0) {
+                    unchangedCounter.increment();
+                } else {
+                    updates.add(new Object[]{price, stock.id()});
+                }
+            }
+
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_PRICE, updates);
+                rowsUpdatedCounter.increment(updates.size());
+                // the JDBC update bypasses the second-level cache
+                entityCacheServices.evictStocks(updates.stream().map(u -> (Integer) u[1]).toList());
+            }
+            log.debug("StockPriceSyncServices: {} stocks, {} quoted, {} updated",
+                    stocks.size(), latest.size(), updates.size());
+            return updates.size();
+        });
+    }
+
+    // one lookup per batch of tickers, all in flight together; later quotes for a ticker replace earlier ones
+    private Map<String, BigDecimal> fetchLatestPrices(List<StockPrice> stocks) {
+        List<String> tickers = MarketQuoteServices.parseTickers(
+                String.join(",", stocks.stream().map(StockPrice::ticker).toList()));
+
+        List<CompletableFuture<Map<String, JsonNode>>> batches = new ArrayList<>();
+        for (int from = 0; from < tickers.size(); from += batchSize) {
+            List<String> batch = tickers.subList(from, Math.min(from + batchSize, tickers.size()));
+            batches.add(marketQuoteServices.lookup(region, batch)
+                    .exceptionally(error -> {
+                        log.warn("StockPriceSyncServices: quotes unavailable for {}: {}",
+                                batch, MarketDataClient.describe(error));
+                        return Map.of();
+                    }));
+        }
+
+        Map<String, BigDecimal> latest = new HashMap<>();
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]))
+                .orTimeout(quoteTimeoutMs, TimeUnit.MILLISECONDS)
+                .join();
+        for (CompletableFuture<Map<String, JsonNode>> batch : batches) {
+            batch.join().forEach((ticker, quote) -> {
+                BigDecimal price = price(quote);
+                if (price != null) {
+                    latest.put(ticker, price);
+                }
+            });
+        }
+        return latest;
+    }
+
+    // stocks.price is DECIMAL(12,2) and must be positive
+    private static BigDecimal price(JsonNode quote) {
+        JsonNode node = quote.path("regularMarketPrice");
+        if (!node.isNumber()) {
+            return null;
+        }
+        BigDecimal price = node.decimalValue().setScale(2, RoundingMode.HALF_UP);
+        if (price.signum() <= 0 || price.precision() - price.scale() > 10) {
+            return null;
+        }
+        return price;
+    }
+
+    private record StockPrice(int id, String ticker, BigDecimal price) {
+    }
+}
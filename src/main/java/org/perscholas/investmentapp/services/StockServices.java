@@ -1,6 +1,5 @@
 package org.perscholas.investmentapp.services;
 
-import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.perscholas.investmentapp.dao.PossessionRepoI;
 import org.perscholas.investmentapp.dao.StockRepoI;
@@ -8,21 +7,26 @@ import org.perscholas.investmentapp.dto.StockDTO;
 import org.perscholas.investmentapp.models.Possession;
 import org.perscholas.investmentapp.models.Stock;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-@Transactional(rollbackOn = Exception.class)
+@Transactional(rollbackFor = Exception.class)
 public class StockServices {
     StockRepoI stockRepoI;
     PossessionRepoI possessionRepoI;
+    LatestQuoteTable latestQuoteTable;
 
-    public StockServices(StockRepoI stockRepoI, PossessionRepoI possessionRepoI) {
+    public StockServices(StockRepoI stockRepoI, PossessionRepoI possessionRepoI, LatestQuoteTable latestQuoteTable) {
         this.stockRepoI = stockRepoI;
         this.possessionRepoI = possessionRepoI;
+        this.latestQuoteTable = latestQuoteTable;
     }
 
     // updates or creates a stock
@@ -58,19 +62,29 @@ public class StockServices {
             log.warn("savePositionToStock(): stock with ticker " + stock.getTicker() +
                     " updating new possession");
     
+            // the possession owns the relationship, so that is the side to save
+            possession.setStock(stock);
+            possessionRepoI.saveAndFlush(possession);
             stock.addPossession(possession);
     
-            return stockRepoI.saveAndFlush(stock);
+            return stock;
         } else {
             throw new Exception("saving a possession to the stock with ID " + stockId + " did not go well!!!!!");
         }
     }  
 
+    // read replica when one is configured
+    @Transactional(readOnly = true)
     public List<StockDTO> allStocks() {
-        return stockRepoI.findAll()
-                .stream()
-                .map((stock) -> new StockDTO(stock.getStockName(), stock.getTicker(), stock.getPrice(), stock.getDescription()))
-                .collect(Collectors.toList());
+        List<StockDTO> stocks = stockRepoI.findAllStockDTOs();
+        stocks.forEach(stock -> stock.setPrice(latestPrice(stock.getTicker(), stock.getPrice())));
+        return stocks;
+    }
+
+    // latest quoted price when the quote table has one, else the stored price
+    private BigDecimal latestPrice(String ticker, BigDecimal storedPrice) {
+        double price = latestQuoteTable.price(latestQuoteTable.idOf(ticker));
+        return Double.isNaN(price) ? storedPrice : BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP);
     }
 
     public List<Stock> allRegularStocks() {
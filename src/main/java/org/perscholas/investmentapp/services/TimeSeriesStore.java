@@ -0,0 +1,210 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent price history per ticker, held in memory as chains of compressed {@link GorillaBlock}s
+ * so chart and analytics reads over the last days do not go to MySQL.
+ * Points are appended by a single writer (the price history ingest flush). Reads are lock-free:
+ * each series publishes an immutable array of blocks, range scans binary-search it by block
+ * start time and decode only the blocks that overlap the range.
+ * Blocks older than the retention are dropped, and when the heap budget is exceeded the
+ * oldest block across all series goes first.
+ */
+@Component
+@Slf4j
+public class TimeSeriesStore {
+
+    /**
+     * Receives points in time order; called once per point, so implementations should not allocate.
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(long ts, double price, long volume);
+    }
+
+    private static final GorillaBlock[] NO_BLOCKS = new GorillaBlock[0];
+
+    private final long retentionMs;
+    private final long maxBytes;
+
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong evictedBlocks = new AtomicLong();
+
+    @Autowired
+    public TimeSeriesStore(MeterRegistry meterRegistry,
+                           @Value("${market.timeseries.retention:7d}") Duration retention,
+                           @Value("${market.timeseries.max-bytes:256MB}") DataSize maxBytes) {
+        this.retentionMs = retention.toMillis();
+        this.maxBytes = maxBytes.toBytes();
+
+        Gauge.builder("market.timeseries.bytes", allocatedBytes, AtomicLong::get)
+                .description("Heap held by in-memory price history blocks")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("market.timeseries.points", this, TimeSeriesStore::pointCount)
+                .description("Points held in the in-memory price history")
+                .register(meterRegistry);
+        Gauge.builder("market.timeseries.evicted-blocks", evictedBlocks, AtomicLong::get)
+                .description("Blocks dropped for age or to stay within the heap budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Appends a point to an upper-case ticker's series. Points not later than the last one are ignored.
+     * Single writer only.
+     */
+    public void append(String ticker, long ts, double price, long volume) {
+        Series s = series.computeIfAbsent(ticker, t -> new Series());
+        GorillaBlock[] blocks = s.blocks;
+        GorillaBlock active = blocks.length == 0 ? null : blocks[blocks.length - 1];
+        if (active != null && ts <= active.endTs) {
+            return;
+        }
+        if (active == null || !active.append(ts, price, volume)) {
+            GorillaBlock[] grown = Arrays.copyOf(blocks, blocks.length + 1);
+            grown[blocks.length] = new GorillaBlock(ts, price, volume);
+            s.blocks = grown;
+            allocatedBytes.addAndGet(GorillaBlock.BYTES);
+            dropExpired(s, ts - retentionMs);
+            while (allocatedBytes.get() > maxBytes && evictOldest()) {
+                // keep evicting until back under budget
+            }
+        }
+    }
+
+    /**
+     * Feeds every point of the ticker with from <= ts < to to the consumer, in time order,
+     * and returns how many there were.
+     */
+    public int scan(String ticker, long from, long to, PointConsumer consumer) {
+        Series s = series.get(ticker);
+        if (s == null || from >= to) {
+            return 0;
+        }
+        GorillaBlock[] blocks = s.blocks;
+        int[] seen = new int[1];
+        PointConsumer counting = (ts, price, volume) -> {
+            seen[0]++;
+            consumer.accept(ts, price, volume);
+        };
+        for (int i = firstBlock(blocks, from); i < blocks.length; i++) {
+            GorillaBlock block = blocks[i];
+            if (block.startTs >= to) {
+                break;
+            }
+            if (block.endTs < from) {
+                continue;
+            }
+            if (block.scan(from, to, counting)) {
+                break;
+            }
+        }
+        return seen[0];
+    }
+
+    /**
+     * Earliest timestamp held for the ticker, or Long.MAX_VALUE when there is none.
+     * A range starting at or after this is fully answerable from memory.
+     */
+    public long oldest(String ticker) {
+        Series s = series.get(ticker);
+        GorillaBlock[] blocks = s == null ? NO_BLOCKS : s.blocks;
+        return blocks.length == 0 ? Long.MAX_VALUE : blocks[0].startTs;
+    }
+
+    public long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    // bytes actually holding encoded points, as opposed to allocated block capacity
+    public long usedBytes() {
+        long used = 0;
+        for (Series s : series.values()) {
+            for (GorillaBlock block : s.blocks) {
+                used += block.usedBytes();
+            }
+        }
+        return used;
+    }
+
+    public long pointCount() {
+        long points = 0;
+        for (Series s : series.values()) {
+            for (GorillaBlock block : s.blocks) {
+                points += block.count;
+            }
+        }
+        return points;
+    }
+
+    // last block whose start is <= from, so the block holding 'from' is scanned too
+    private static int firstBlock(GorillaBlock[] blocks, long from) {
+        int lo = 0;
+        int hi = blocks.length - 1;
+        int found = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks[mid].startTs <= from) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private void dropExpired(Series s, long cutoff) {
+        GorillaBlock[] blocks = s.blocks;
+        int expired = 0;
+        // never drop the active block
+        while (expired < blocks.length - 1 && blocks[expired].endTs < cutoff) {
+            expired++;
+        }
+        if (expired > 0) {
+            s.blocks = Arrays.copyOfRange(blocks, expired, blocks.length);
+            allocatedBytes.addAndGet(-(long) expired * GorillaBlock.BYTES);
+            evictedBlocks.addAndGet(expired);
+        }
+    }
+
+    private boolean evictOldest() {
+        Series victim = null;
+        long oldest = Long.MAX_VALUE;
+        for (Series s : series.values()) {
+            GorillaBlock[] blocks = s.blocks;
+            if (blocks.length > 1 && blocks[0].startTs < oldest) {
+                oldest = blocks[0].startTs;
+                victim = s;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        GorillaBlock[] blocks = victim.blocks;
+        victim.blocks = Arrays.copyOfRange(blocks, 1, blocks.length);
+        allocatedBytes.addAndGet(-GorillaBlock.BYTES);
+        if (evictedBlocks.incrementAndGet() % 1000 == 1) {
+            log.warn("TimeSeriesStore: over the {} byte budget, evicting oldest blocks", maxBytes);
+        }
+        return true;
+    }
+
+    private static final class Series {
+        // oldest first, the last one is being appended to; replaced, never mutated
+        volatile GorillaBlock[] blocks = NO_BLOCKS;
+    }
+}
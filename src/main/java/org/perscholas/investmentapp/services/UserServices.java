@@ -1,6 +1,5 @@
 package org.perscholas.investmentapp.services;
 
-import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.perscholas.investmentapp.dao.*;
 
@@ -11,16 +10,23 @@ import org.perscholas.investmentapp.security.AppUserDetailService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
 
 @Service
 @Slf4j
-@Transactional(rollbackOn = Exception.class)
+@Transactional(rollbackFor = Exception.class)
 public class UserServices {
     private final StockRepoI stockRepoI;
     private final AuthGroupRepoI authGroupRepoI;
+    private final LatestQuoteTable latestQuoteTable;
+    private final CurrentUserServices currentUserServices;
+    private final ReadRoutingServices readRoutingServices;
+    private final PortfolioValuationServices portfolioValuationServices;
     UserRepoI userRepoI;
     PossessionRepoI possessionRepoI;
     AddressRepoI addressRepoI;
@@ -31,7 +37,11 @@ public class UserServices {
     public UserServices(UserRepoI userRepoI, PossessionRepoI possessionRepoI,
                         AuthGroupRepoI authGroupRepoI, AddressRepoI addressRepoI,
                         AppUserDetailService appUserDetailService,
-                        StockRepoI stockRepoI) {
+                        StockRepoI stockRepoI,
+                        LatestQuoteTable latestQuoteTable,
+                        CurrentUserServices currentUserServices,
+                        ReadRoutingServices readRoutingServices,
+                        PortfolioValuationServices portfolioValuationServices) {
         this.userRepoI = userRepoI;
         this.possessionRepoI = possessionRepoI;
         this.authGroupRepoI = authGroupRepoI;
@@ -39,6 +49,10 @@ public class UserServices {
         this.appUserDetailService = appUserDetailService;
 
         this.stockRepoI = stockRepoI;
+        this.latestQuoteTable = latestQuoteTable;
+        this.currentUserServices = currentUserServices;
+        this.readRoutingServices = readRoutingServices;
+        this.portfolioValuationServices = portfolioValuationServices;
     }
 
     public User createOrUpdate(User user) throws Exception {
@@ -61,6 +75,9 @@ public class UserServices {
             log.warn("createOrUpdate(): user with email " + user.getEmail() +
                     " is updated");
 
+            Integer userId = originalUser.getId();
+            afterCommit(() -> currentUserServices.invalidate(userId));
+            readRoutingServices.recordWrite(userId);
             return userRepoI.save(originalUser);
         } 
 
@@ -85,6 +102,9 @@ public class UserServices {
 
             log.debug("createOrUpdate(): user with email " + user.getEmail() + " already exists");
 
+            Integer userId = originalUser.getId();
+            afterCommit(() -> currentUserServices.invalidate(userId));
+            readRoutingServices.recordWrite(userId);
             return userRepoI.save(originalUser);
         } else {
             log.debug("createOrUpdate(): user with email " + user.getEmail() + " has been created");
@@ -123,12 +143,16 @@ public class UserServices {
             originalAddress.setZipcode(address.getZipcode());
 
             addressRepoI.save(originalAddress);
+            afterCommit(() -> currentUserServices.invalidate(user.getId()));
+            readRoutingServices.recordWrite(user.getId());
             return user;
         } else {
             addressRepoI.save(address);
             user.setAddress(address);
 
             userRepoI.save(user);
+            afterCommit(() -> currentUserServices.invalidate(user.getId()));
+            readRoutingServices.recordWrite(user.getId());
 
             return user;
         }
@@ -155,16 +179,9 @@ public class UserServices {
                         + " does not belong to user=" + userEmail);
             }
     
-            var confirmedStock = confirmedPossession.getStock();
-    
-            confirmedUser.removePossession(confirmedPossession);
-            if (confirmedStock != null) {
-                confirmedStock.removePossession(confirmedPossession);
-                stockRepoI.saveAndFlush(confirmedStock);
-            }
-    
-            userRepoI.saveAndFlush(confirmedUser);
             possessionRepoI.delete(confirmedPossession);
+            readRoutingServices.recordWrite(confirmedUser.getId());
+            portfolioValuationServices.positionRemoved(confirmedUser.getId(), confirmedPossession.getStock().getTicker());
     
             return confirmedUser;
     
@@ -190,14 +207,9 @@ public class UserServices {
                 throw new Exception("deletePossessionByTicker failed: no possession for user=" + userEmail + ", ticker=" + ticker);
             }
     
-            Possession confirmedPossession = userPossession.get();
-    
-            confirmedUser.removePossession(confirmedPossession);
-            confirmedStock.removePossession(confirmedPossession);
-    
-            userRepoI.saveAndFlush(confirmedUser);
-            stockRepoI.saveAndFlush(confirmedStock);
-            possessionRepoI.delete(confirmedPossession);
+            possessionRepoI.delete(userPossession.get());
+            readRoutingServices.recordWrite(confirmedUser.getId());
+            portfolioValuationServices.positionRemoved(confirmedUser.getId(), confirmedStock.getTicker());
     
             return confirmedUser;
         }
@@ -205,6 +217,8 @@ public class UserServices {
         throw new Exception("deletePossessionByTicker failed: user=" + userEmail + ", ticker=" + ticker);
     }
     
+    // served by the read replica when one is configured, unless this user just traded (ReadRoutingServices)
+    @Transactional(readOnly = true)
     public List<Possession> retrievePortfolio(String email) throws Exception {
 
         if (email == null || email.isBlank()) {
@@ -215,6 +229,12 @@ public class UserServices {
             log.debug("retrievePortfolio: user exists, retrieving portfolio for " + email);
     
             List<Possession> portfolio = possessionRepoI.findByUserEmailWithStock(email);
+
+            // price holdings from the in-memory quote table, falling back to the stored price
+            for (Possession possession : portfolio) {
+                Stock stock = possession.getStock();
+                possession.setMarketPrice(latestQuoteTable.priceOr(stock.getTicker(), stock.getPrice().doubleValue()));
+            }
     
             log.debug("retrievePortfolio: retrievePortfolio was successful, positions found = " + portfolio.size());
             return portfolio;
@@ -223,6 +243,20 @@ public class UserServices {
             throw new Exception("retrievePortfolio: user " + email + " does not exist - portfolio retrieval did not go well!!!!!");
         }
     }
+
+    // a reader must not see the change before it is visible, or it caches the old row as current
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
     
 
 }
@@ -0,0 +1,34 @@
+-- V3__price_history.sql
+-- Price history: raw quote ticks plus OHLCV rollups (1m, 1h, 1d)
+-- Times are epoch milliseconds (UTC). Keys lead with stock_id and end with time so each
+-- series is one contiguous index range, and the tables can later be RANGE-partitioned on
+-- time; for that reason there are no foreign keys to stocks (MySQL partitioned tables
+-- cannot have them).
+
+-- 1) Raw ticks, one row per distinct upstream quote
+CREATE TABLE IF NOT EXISTS price_ticks (
+  stock_id INT NOT NULL,
+  ts BIGINT NOT NULL,
+  price DECIMAL(16,4) NOT NULL,
+  -- shares traded since the previous tick of the same stock
+  volume BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (stock_id, ts)
+) ENGINE=InnoDB;
+
+-- 2) OHLCV bars, maintained incrementally as ticks are ingested
+-- resolution: '1m', '1h' or '1d'; bucket_start is aligned to the resolution in UTC
+-- first_ts / last_ts decide which tick sets open / close when batches arrive out of order
+CREATE TABLE IF NOT EXISTS price_bars (
+  stock_id INT NOT NULL,
+  resolution CHAR(2) NOT NULL,
+  bucket_start BIGINT NOT NULL,
+  open DECIMAL(16,4) NOT NULL,
+  high DECIMAL(16,4) NOT NULL,
+  low DECIMAL(16,4) NOT NULL,
+  close DECIMAL(16,4) NOT NULL,
+  volume BIGINT NOT NULL DEFAULT 0,
+  tick_count INT NOT NULL DEFAULT 0,
+  first_ts BIGINT NOT NULL,
+  last_ts BIGINT NOT NULL,
+  PRIMARY KEY (stock_id, resolution, bucket_start)
+) ENGINE=InnoDB;
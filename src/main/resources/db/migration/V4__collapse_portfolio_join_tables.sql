@@ -0,0 +1,10 @@
+-- V4__collapse_portfolio_join_tables.sql
+-- Ownership of a position lives only on possessions.myuser_id / possessions.investment_id.
+-- myuser_portfolio (User.userPossessions) and stocks_and_possessions (Stock.userStocks)
+-- duplicated those foreign keys; both collections are now mapped by Possession.
+-- The foreign keys were written on every insert while the join tables were not kept up to
+-- date (addOrUpdatePosition never wrote them), so where the two disagree the foreign keys
+-- are right and nothing is carried over from the join rows.
+
+DROP TABLE IF EXISTS myuser_portfolio;
+DROP TABLE IF EXISTS stocks_and_possessions;
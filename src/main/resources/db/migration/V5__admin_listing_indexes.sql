@@ -0,0 +1,13 @@
+-- V5__admin_listing_indexes.sql
+-- Indexes behind the keyset-paginated admin listings (AdminListingServices).
+-- Every sort is (column, id), so each page is one index range read of page-size rows.
+-- email (uk_myusers_email) and ticker (uk_stocks_ticker) are already unique keys; the primary
+-- key covers the id sort. InnoDB appends the primary key to secondary indexes, the id is
+-- listed anyway so the intended order is visible here.
+
+-- 1) Users sorted or prefix-filtered by last name
+CREATE INDEX ix_myusers_last_name ON myusers (last_name, id);
+
+-- 2) Stocks sorted or prefix-filtered by name, sorted or range-filtered by price
+CREATE INDEX ix_stocks_stock_name ON stocks (stock_name, id);
+CREATE INDEX ix_stocks_price ON stocks (price, id);
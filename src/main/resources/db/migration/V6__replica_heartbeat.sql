@@ -0,0 +1,12 @@
+-- V6__replica_heartbeat.sql
+-- One row the app rewrites on the primary every second (ReplicaHeartbeat) and reads back from
+-- the read replica; now minus the replicated ts is the replica lag. Unused without a replica.
+
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+  id TINYINT NOT NULL,
+  -- epoch milliseconds of the last heartbeat written on the primary
+  ts BIGINT NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+INSERT IGNORE INTO replica_heartbeat (id, ts) VALUES (1, 0);
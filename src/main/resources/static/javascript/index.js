@@ -20,18 +20,15 @@ async function getData(container) {
       throw new Error(responseData?.message || "News request failed");
     }
 
+    // backend sends a trimmed list: items[] of { title, link, summary, imageUrl }
     console.log(responseData);
-    console.log(responseData.items);
-    console.log(responseData.items.result);
-    console.log(responseData.items.result[0]);
-    console.log(responseData.items.result[0].content);
+    const items = responseData.items || [];
 
-    
-    for (i = 0; i < 10; i++) {
+    for (let i = 0; i < Math.min(10, items.length); i++) {
       const newDiv = document.createElement('div');
 
       const newLink = document.createElement('a');
-      const linkString = responseData.items.result[i].link;
+      const linkString = items[i].link;
       newLink.setAttribute('href', linkString);
 
       newLink.appendChild(newDiv);
@@ -40,18 +37,20 @@ async function getData(container) {
       newDiv.classList.add("p-3", "mb-3","bg-light", "border", "rounded-3", "text-bg-light", "overflow-auto");
 
       const newTitle = document.createElement('h1');
-      newTitle.innerText = responseData.items.result[i].title;
+      newTitle.innerText = items[i].title;
       newTitle.classList.add("h5");
       newDiv.appendChild(newTitle);
 
-      const newImage = document.createElement('img');
-      newImage.classList.add("img-thumbnail");
-      newImage.src = responseData.items.result[i].main_image.original_url;
-      newDiv.appendChild(newImage);
+      if (items[i].imageUrl) {
+        const newImage = document.createElement('img');
+        newImage.classList.add("img-thumbnail");
+        newImage.src = items[i].imageUrl;
+        newDiv.appendChild(newImage);
+      }
 
 
       const newParagraph = document.createElement('p');
-      newParagraph.innerText = responseData.items.result[i].summary;
+      newParagraph.innerText = items[i].summary;
       newDiv.appendChild(newParagraph);
 
       // newDiv.innerHTML = responseData.items.result[i].content;
@@ -93,37 +92,215 @@ const dashListeners = (() => {
     )
 
     window.addEventListener('load', getData(newsContainer));
+
+    // market table prices follow the quote stream; the server takes at most 50 symbols per stream
+    const marketRows = document.querySelector('#market-rows');
+    if (marketRows !== null && 'EventSource' in window) {
+      const tickers = [...marketRows.querySelectorAll('tr[data-ticker]')].map(row => row.dataset.ticker);
+      if (tickers.length > 0) {
+        streamQuotes(tickers.slice(0, 50), quotes => updateMarketRows(marketRows, quotes));
+      }
+    }
   }
 })()
 
+// Pushed quote updates instead of polling; returns the EventSource so callers can close() it
+function streamQuotes(symbols, onQuotes) {
+  const params = new URLSearchParams({ region: 'US', symbols: symbols.join(',') });
+  const source = new EventSource(`/api/market/stream?${params}`);
+  source.addEventListener('quotes', (e) => {
+    const responseData = JSON.parse(e.data);
+    onQuotes(responseData.quoteResponse.result);
+  });
+  source.onerror = (err) => {
+    // EventSource reconnects on its own
+    console.log('streamQuotes():', err);
+  };
+  return source;
+}
+
+function updateMarketRows(rows, quotes) {
+  const money = new Intl.NumberFormat('en-US', { minimumFractionDigits: 2, maximumFractionDigits: 2 });
+  quotes.forEach(quote => {
+    const price = quote.regularMarketPrice;
+    const span = rows.querySelector(`tr[data-ticker="${CSS.escape(quote.symbol)}"] .live-quote`);
+    if (span !== null && price != null) {
+      span.innerText = money.format(price);
+    }
+  });
+}
+
 // Event Listeners for Admin
 const adminListeners = (() => {
   const admin = document.querySelector('#admin-dashboard');
   if (admin!== null) {
-    const editButtons = document.querySelectorAll('.user-email');
     const userEmail = document.querySelector('#user-email');
-
-    const stockButtons = document.querySelectorAll('.stock-edit-btn');
     const tradedStock = document.querySelector('#traded-stock');
 
-    editButtons.forEach(editButton => 
-      editButton.addEventListener('click', (e) => {
-        console.log('this clicked');
-        console.log(e.target.id);
+    // delegated, so rows appended by "MORE" get the same edit buttons
+    admin.addEventListener('click', (e) => {
+      if (e.target.classList.contains('user-email')) {
         userEmail.value = e.target.id;
-      })
-    )
-    
-    stockButtons.forEach(stockButton =>
-      stockButton.addEventListener('click', (e) => {
-        console.log('this clicked');
-        console.log(e.target.id);
+      } else if (e.target.classList.contains('stock-edit-btn')) {
         tradedStock.value = e.target.id;
-      })
-    )
+      }
+    });
+
+    const rows = document.querySelector('#listing-rows');
+    const filter = document.querySelector('#listing-filter');
+    const loadMore = document.querySelector('#load-more');
+    if (rows !== null && filter !== null && loadMore !== null) {
+      loadMore.addEventListener('click', (e) => {
+        e.preventDefault();
+        loadNextPage(rows, filter, loadMore);
+      });
+    }
   }
 })()
 
+// Next keyset page of an admin listing, fetched as JSON and appended to the table
+async function loadNextPage(rows, filter, loadMore) {
+  // the link carries the filter the page was rendered with, not whatever is typed in the form now
+  const params = new URL(loadMore.href).searchParams;
+  params.set('after', loadMore.dataset.next);
+  try {
+    const response = await fetch(`${filter.dataset.pageUrl}?${params}`);
+    if (!response.ok) {
+      throw new Error(`listing request failed: ${response.status}`);
+    }
+    const page = await response.json();
+    const render = rows.dataset.listing === 'users' ? userRow : stockRow;
+    page.items.forEach(item => rows.appendChild(render(item)));
+
+    if (page.next) {
+      loadMore.dataset.next = page.next;
+      const link = new URL(loadMore.href);
+      link.searchParams.set('after', page.next);
+      loadMore.href = link;
+    } else {
+      loadMore.parentElement.remove();
+    }
+  } catch (err) {
+    console.log(err);
+    // fall back to the plain next-page link
+    window.location.href = loadMore.href;
+  }
+}
+
+function cell(row, text) {
+  const td = document.createElement('td');
+  td.innerText = text;
+  row.appendChild(td);
+}
+
+function actionCells(row, id, editClass, deleteAction) {
+  const edit = document.createElement('button');
+  edit.className = `${editClass} stock-add-btn btn-outline-dark btn btn-primary`;
+  edit.dataset.bsToggle = 'modal';
+  edit.dataset.bsTarget = '#exampleModal';
+  edit.id = id;
+  edit.innerText = 'EDIT';
+  const editCell = document.createElement('td');
+  editCell.appendChild(edit);
+  row.appendChild(editCell);
+
+  const form = document.createElement('form');
+  form.className = 'row g-3 needs-validation';
+  form.method = 'post';
+  form.action = deleteAction;
+  const del = document.createElement('button');
+  del.className = 'stock-add-btn btn-outline-dark btn btn-danger';
+  del.type = 'submit';
+  del.innerText = 'DEL';
+  form.appendChild(del);
+  const deleteCell = document.createElement('td');
+  deleteCell.appendChild(form);
+  row.appendChild(deleteCell);
+}
+
+function userRow(user) {
+  const row = document.createElement('tr');
+  cell(row, user.firstName);
+  cell(row, user.lastName);
+  cell(row, user.email);
+  const address = user.address;
+  cell(row, address ? `${address.street}, ${address.state}, ${address.zipcode}` : '');
+  actionCells(row, user.email, 'user-email', `/admin/users/delete/${encodeURIComponent(user.email)}`);
+  return row;
+}
+
+function stockRow(stock) {
+  const row = document.createElement('tr');
+  cell(row, stock.ticker);
+  cell(row, stock.stockName);
+  cell(row, Number(stock.price).toLocaleString('en-US', { minimumFractionDigits: 2, maximumFractionDigits: 2 }));
+  cell(row, stock.description);
+  actionCells(row, stock.ticker, 'stock-edit-btn', `/admin/stocks/delete/${encodeURIComponent(stock.ticker)}`);
+  return row;
+}
+
+
+// Live portfolio values: a snapshot on connect, then only the holdings that moved
+const livePortfolio = (() => {
+  const rows = document.querySelector('#portfolio-rows');
+  if (rows === null || !('WebSocket' in window)) {
+    return;
+  }
+  const total = document.querySelector('#portfolio-total');
+  const dayPnl = document.querySelector('#portfolio-day-pnl');
+  const money = new Intl.NumberFormat('en-US', { minimumFractionDigits: 2, maximumFractionDigits: 2 });
+  const percent = new Intl.NumberFormat('en-US', { style: 'percent', minimumFractionDigits: 1, maximumFractionDigits: 1 });
+  const holdings = {};
+  let retryMs = 1000;
+
+  function setText(row, selector, text) {
+    const span = row.querySelector(selector);
+    if (span !== null) {
+      span.innerText = text;
+    }
+  }
+
+  function render(frame) {
+    total.innerText = money.format(frame.value);
+    dayPnl.innerText = money.format(frame.dayPnl);
+    dayPnl.classList.toggle('text-danger', frame.dayPnl < 0);
+    dayPnl.classList.toggle('text-success', frame.dayPnl >= 0);
+    // weights move with every tick on any holding, so they are worked out here rather than sent
+    rows.querySelectorAll('tr[data-ticker]').forEach(row => {
+      const holding = holdings[row.dataset.ticker];
+      if (holding === undefined) {
+        return;
+      }
+      setText(row, '.live-price', money.format(holding.price));
+      setText(row, '.live-shares', money.format(holding.shares));
+      setText(row, '.live-value', money.format(holding.value));
+      setText(row, '.live-weight', frame.value > 0 ? percent.format(holding.value / frame.value) : '');
+    });
+  }
+
+  function connect() {
+    const url = new URL(rows.dataset.liveUrl, window.location.href);
+    url.protocol = url.protocol === 'https:' ? 'wss:' : 'ws:';
+    const socket = new WebSocket(url);
+    socket.addEventListener('message', (e) => {
+      const frame = JSON.parse(e.data);
+      if (frame.type === 'snapshot') {
+        Object.keys(holdings).forEach(ticker => delete holdings[ticker]);
+      }
+      Object.assign(holdings, frame.holdings);
+      (frame.removed || []).forEach(ticker => delete holdings[ticker]);
+      retryMs = 1000;
+      render(frame);
+    });
+    socket.addEventListener('close', () => {
+      // the server may be restarting or shedding load; back off up to 30s
+      setTimeout(connect, retryMs);
+      retryMs = Math.min(retryMs * 2, 30000);
+    });
+  }
+
+  connect();
+})()
 
 // Event Listeners for Login Form
 const loginForm = (() => {
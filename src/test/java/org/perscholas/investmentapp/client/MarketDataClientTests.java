@@ -0,0 +1,219 @@
+package org.perscholas.investmentapp.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// runs against StubMarketServer only, no Spring context or network needed
+class MarketDataClientTests {
+
+	StubMarketServer stub;
+	SimpleMeterRegistry registry;
+	MarketDataCircuitBreaker breaker;
+	MarketDataClient client;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		stub = new StubMarketServer();
+		// no retries and no hedging here so each test sees exactly one upstream call per get()
+		connect(new MarketDataCircuitBreaker(new SimpleMeterRegistry(), 4, 4, 0.5, Duration.ofSeconds(30), 1),
+				new MarketDataRetryPolicy(0, Duration.ofMillis(10), Duration.ofMillis(50), 0.1), 2, Duration.ZERO);
+	}
+
+	@AfterEach
+	void tearDown() {
+		client.shutdown();
+		stub.close();
+	}
+
+	@Test
+	void returnsBodyFromUpstream() throws Exception {
+		String body = client.get("/market/v2/get-quotes", Map.of("symbols", "AAPL")).get(2, TimeUnit.SECONDS);
+
+		assertThat(body).contains("AAPL");
+	}
+
+	@Test
+	void nonSuccessStatusFailsWithMarketDataException() {
+		stub.status = 429;
+
+		assertThatThrownBy(() -> client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(MarketDataException.class);
+	}
+
+	@Test
+	void hungUpstreamTimesOutWithinReadTimeout() {
+		stub.hang = true;
+		long start = System.nanoTime();
+
+		assertThatThrownBy(() -> client.get("/news/list", Map.of()).get(5, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(HttpTimeoutException.class);
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+	}
+
+	@Test
+	void callsAboveMaxConcurrentAreRejectedWithoutWaiting() {
+		stub.hang = true;
+		CompletableFuture<String> first = client.get("/news/list", Map.of());
+		CompletableFuture<String> second = client.get("/news/list", Map.of());
+
+		CompletableFuture<String> third = client.get("/news/list", Map.of());
+
+		assertThat(third).isCompletedExceptionally();
+		assertThat(first).isNotDone();
+		assertThat(second).isNotDone();
+	}
+
+	@Test
+	void breakerOpensAfterRepeatedFailuresAndFailsFast() throws Exception {
+		stub.status = 503;
+		for (int i = 0; i < 4; i++) {
+			client.get("/news/list", Map.of()).handle((body, error) -> null).get(2, TimeUnit.SECONDS);
+		}
+		int sent = stub.requests.get();
+
+		assertThat(breaker.getState()).isEqualTo(MarketDataCircuitBreaker.State.OPEN);
+		assertThatThrownBy(() -> client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS))
+				.hasCauseInstanceOf(MarketDataException.class);
+		assertThat(stub.requests.get()).isEqualTo(sent);
+	}
+
+	@Test
+	void transientStatusesAreRetriedUntilSuccess() throws Exception {
+		connect(lenientBreaker(), new MarketDataRetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(50), 0.1),
+				2, Duration.ZERO);
+		stub.statuses.addAll(List.of(503, 429));
+
+		assertThat(client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS)).contains("AAPL");
+		assertThat(stub.requests.get()).isEqualTo(3);
+		assertThat(counter("market.client.retries")).isEqualTo(2);
+	}
+
+	@Test
+	void clientErrorsAreNotRetried() {
+		connect(lenientBreaker(), new MarketDataRetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(50), 0.1),
+				2, Duration.ZERO);
+		stub.status = 404;
+
+		assertThatThrownBy(() -> client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS))
+				.hasCauseInstanceOf(MarketDataException.class);
+		assertThat(stub.requests.get()).isEqualTo(1);
+		assertThat(breaker.getState()).isEqualTo(MarketDataCircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	void retriesStopWhenTheBudgetIsSpent() throws Exception {
+		// one retry per call and a budget of five, refilled by a tenth per call
+		connect(lenientBreaker(), new MarketDataRetryPolicy(1, Duration.ofMillis(1), Duration.ofMillis(5), 0.1),
+				2, Duration.ZERO);
+		stub.status = 503;
+		for (int i = 0; i < 10; i++) {
+			client.get("/news/list", Map.of()).handle((body, error) -> null).get(2, TimeUnit.SECONDS);
+		}
+
+		assertThat(counter("market.client.retries")).isEqualTo(5);
+		assertThat(stub.requests.get()).isEqualTo(15);
+	}
+
+	@Test
+	void slowFirstAttemptIsHedged() throws Exception {
+		connect(lenientBreaker(), new MarketDataRetryPolicy(0, Duration.ofMillis(10), Duration.ofMillis(50), 0.1),
+				4, Duration.ofMillis(100));
+		stub.delays.add(800L);
+		long start = System.nanoTime();
+
+		assertThat(client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS)).contains("AAPL");
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(600));
+		assertThat(stub.requests.get()).isEqualTo(2);
+		assertThat(counter("market.client.hedges")).isEqualTo(1);
+	}
+
+	@Test
+	void fastFirstAttemptIsNotHedged() throws Exception {
+		connect(lenientBreaker(), new MarketDataRetryPolicy(0, Duration.ofMillis(10), Duration.ofMillis(50), 0.1),
+				4, Duration.ofMillis(200));
+
+		client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS);
+		Thread.sleep(300);
+		assertThat(stub.requests.get()).isEqualTo(1);
+		assertThat(counter("market.client.hedges")).isZero();
+	}
+
+	@Test
+	void halfOpenBreakerLetsOneProbeThroughAndClosesOnSuccess() throws Exception {
+		tripBreaker();
+		Thread.sleep(250);
+		assertThat(breaker.getState()).isEqualTo(MarketDataCircuitBreaker.State.HALF_OPEN);
+
+		stub.status = 200;
+		stub.delays.add(150L);
+		int sent = stub.requests.get();
+		CompletableFuture<String> probe = client.get("/news/list", Map.of());
+		// while the probe is out every other call fails fast
+		assertThatThrownBy(() -> client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS))
+				.hasCauseInstanceOf(MarketDataException.class);
+
+		assertThat(probe.get(2, TimeUnit.SECONDS)).contains("AAPL");
+		assertThat(stub.requests.get()).isEqualTo(sent + 1);
+		assertThat(breaker.getState()).isEqualTo(MarketDataCircuitBreaker.State.CLOSED);
+		assertThat(client.get("/news/list", Map.of()).get(2, TimeUnit.SECONDS)).contains("AAPL");
+	}
+
+	@Test
+	void failedProbeReopensTheBreaker() throws Exception {
+		tripBreaker();
+		Thread.sleep(250);
+
+		client.get("/news/list", Map.of()).handle((body, error) -> null).get(2, TimeUnit.SECONDS);
+		assertThat(breaker.getState()).isEqualTo(MarketDataCircuitBreaker.State.OPEN);
+		int sent = stub.requests.get();
+		assertThat(client.get("/news/list", Map.of())).isCompletedExceptionally();
+		assertThat(stub.requests.get()).isEqualTo(sent);
+	}
+
+	// opens on four straight 503s and half-opens 200ms later
+	private void tripBreaker() throws Exception {
+		connect(new MarketDataCircuitBreaker(new SimpleMeterRegistry(), 4, 4, 0.5, Duration.ofMillis(200), 1),
+				new MarketDataRetryPolicy(0, Duration.ofMillis(10), Duration.ofMillis(50), 0.1), 2, Duration.ZERO);
+		stub.status = 503;
+		for (int i = 0; i < 4; i++) {
+			client.get("/news/list", Map.of()).handle((body, error) -> null).get(2, TimeUnit.SECONDS);
+		}
+		assertThat(breaker.getState()).isEqualTo(MarketDataCircuitBreaker.State.OPEN);
+	}
+
+	// never opens, so retry and hedge tests are not cut short
+	private static MarketDataCircuitBreaker lenientBreaker() {
+		return new MarketDataCircuitBreaker(new SimpleMeterRegistry(), 100, 100, 1.0, Duration.ofSeconds(30), 1);
+	}
+
+	private void connect(MarketDataCircuitBreaker breaker, MarketDataRetryPolicy retryPolicy,
+						 int maxConcurrent, Duration hedgeDelay) {
+		if (client != null) {
+			client.shutdown();
+		}
+		this.registry = new SimpleMeterRegistry();
+		this.breaker = breaker;
+		this.client = new MarketDataClient(registry, breaker, retryPolicy,
+				stub.baseUrl(), "test-key", "stub-host",
+				Duration.ofSeconds(1), Duration.ofSeconds(1), maxConcurrent, 2, hedgeDelay);
+	}
+
+	private double counter(String name) {
+		return registry.get(name).counter().count();
+	}
+}
@@ -0,0 +1,78 @@
+package org.perscholas.investmentapp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// simulated prices on a hand-driven clock, no Spring context or catalog needed
+class SimulatedMarketDataSourceTests {
+	static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+	static final String SYMBOLS = "AAPL,MSFT,ZZZZ";
+
+	final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void testSameSeedGivesSameQuotes() throws Exception {
+		assertThat(run(42, 200)).isEqualTo(run(42, 200));
+	}
+
+	@Test
+	void testOtherSeedGivesOtherPaths() throws Exception {
+		List<JsonNode> first = run(42, 50);
+		List<JsonNode> second = run(43, 50);
+		assertThat(first).hasSameSizeAs(second);
+		assertThat(first.get(first.size() - 1)).isNotEqualTo(second.get(second.size() - 1));
+	}
+
+	@Test
+	void testPriceOnlyMovesWithTime() {
+		AtomicLong clock = new AtomicLong(1_000 * SECOND);
+		SimulatedMarketDataSource sim = source(42, clock);
+		double start = sim.price("AAPL");
+		assertThat(sim.price("aapl")).isEqualTo(start);
+		assertThat(start).isBetween(10.0, 500.0);
+
+		clock.addAndGet(SECOND);
+		double moved = sim.price("AAPL");
+		assertThat(moved).isNotEqualTo(start).isPositive();
+		assertThat(sim.price("AAPL")).isEqualTo(moved);
+	}
+
+	@Test
+	void testUnknownPathFails() {
+		SimulatedMarketDataSource sim = source(42, new AtomicLong());
+		assertThat(sim.get("/stock/v2/get-summary", Map.of())).isCompletedExceptionally();
+	}
+
+	// quotes at one-second steps, without the wall-clock regularMarketTime
+	private List<JsonNode> run(long seed, int steps) throws Exception {
+		AtomicLong clock = new AtomicLong(1_000 * SECOND);
+		SimulatedMarketDataSource sim = source(seed, clock);
+		List<JsonNode> quotes = new ArrayList<>();
+		for (int i = 0; i < steps; i++) {
+			clock.addAndGet(SECOND);
+			JsonNode result = objectMapper.readTree(sim.get("/market/v2/get-quotes", Map.of("symbols", SYMBOLS)).get())
+					.path("quoteResponse").path("result");
+			assertThat(result).hasSize(3);
+			for (JsonNode quote : result) {
+				((ObjectNode) quote).remove("regularMarketTime");
+				quotes.add(quote);
+			}
+		}
+		return quotes;
+	}
+
+	private SimulatedMarketDataSource source(long seed, AtomicLong clock) {
+		return new SimulatedMarketDataSource(null, objectMapper, 0.05, 0.30, 60, seed, Duration.ZERO, 0, clock::get);
+	}
+}
@@ -0,0 +1,73 @@
+package org.perscholas.investmentapp.client;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the RapidAPI host so the client can be exercised offline.
+ * Every path answers {@code body} with {@code status} after {@code delayMillis};
+ * when {@code hang} is set the handler blocks until {@link #close()}. Entries queued in
+ * {@code statuses} and {@code delays} are used, one per request, before those defaults.
+ */
+class StubMarketServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final CountDownLatch released = new CountDownLatch(1);
+	final AtomicInteger requests = new AtomicInteger();
+
+	volatile int status = 200;
+	volatile String body = "{\"quoteResponse\":{\"result\":[{\"symbol\":\"AAPL\",\"regularMarketPrice\":150.0}]}}";
+	volatile long delayMillis = 0;
+	volatile boolean hang = false;
+	final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+	final Queue<Long> delays = new ConcurrentLinkedQueue<>();
+
+	StubMarketServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			Integer scriptedStatus = statuses.poll();
+			Long scriptedDelay = delays.poll();
+			int answer = scriptedStatus != null ? scriptedStatus : status;
+			long delay = scriptedDelay != null ? scriptedDelay : delayMillis;
+			try {
+				if (hang) {
+					released.await();
+				} else if (delay > 0) {
+					Thread.sleep(delay);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(answer, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			} catch (IOException ignored) {
+				// client gave up (timeout); nothing to do
+			}
+		});
+		server.start();
+	}
+
+	String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		released.countDown();
+		server.stop(0);
+	}
+}
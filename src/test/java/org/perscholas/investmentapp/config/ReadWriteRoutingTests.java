@@ -0,0 +1,184 @@
+package org.perscholas.investmentapp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.models.User;
+import org.perscholas.investmentapp.security.AppUserPrincipal;
+import org.perscholas.investmentapp.services.ReadRoutingServices;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// two embedded databases stand in for the RDS primary and its read replica; each knows which one it is
+class ReadWriteRoutingTests {
+	static final Duration WINDOW = Duration.ofMillis(300);
+	static final Duration MAX_LAG = Duration.ofMillis(200);
+
+	EmbeddedDatabase primary;
+	EmbeddedDatabase replica;
+	ReadRoutingServices readRoutingServices;
+	ReplicaHeartbeat heartbeat;
+	DataSource dataSource;
+	TransactionTemplate reads;
+	TransactionTemplate writes;
+
+	@BeforeEach
+	void setUp() {
+		primary = database("primary");
+		replica = database("replica");
+		readRoutingServices = new ReadRoutingServices(new SimpleMeterRegistry(), WINDOW, MAX_LAG);
+		heartbeat = new ReplicaHeartbeat(primary, replica, readRoutingServices);
+		// every workload pool is the same primary here; which pool serves what is WorkloadPoolsTests' business
+		dataSource = DataSourcePoolsConfig.routing(
+				Map.of(Workload.INTERACTIVE, primary, Workload.TRADES, primary, Workload.BATCH, primary),
+				replica, readRoutingServices);
+
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		reads = new TransactionTemplate(transactionManager);
+		reads.setReadOnly(true);
+		writes = new TransactionTemplate(transactionManager);
+	}
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+		primary.shutdown();
+		replica.shutdown();
+	}
+
+	@Test
+	void testNoReplicaTrafficBeforeFirstHeartbeat() {
+		assertThat(answeredBy(reads)).isEqualTo("primary");
+	}
+
+	@Test
+	void testReadOnlyGoesToReplicaEverythingElseToPrimary() {
+		replicateAndBeat();
+
+		assertThat(answeredBy(reads)).isEqualTo("replica");
+		assertThat(answeredBy(writes)).isEqualTo("primary");
+		// no transaction at all
+		assertThat(new JdbcTemplate(dataSource).queryForObject("SELECT name FROM whoami", String.class)).isEqualTo("primary");
+		assertThat(readRoutingServices.onPrimary(() -> answeredBy(reads))).isEqualTo("primary");
+		// only interactive reads use the replica
+		assertThat(Workload.BATCH.call(() -> answeredBy(reads))).isEqualTo("primary");
+	}
+
+	@Test
+	void testOwnWritesAreReadFromPrimaryForTheWindow() throws Exception {
+		replicateAndBeat();
+		logIn(7);
+		readRoutingServices.recordWrite(7);
+
+		assertThat(answeredBy(reads)).isEqualTo("primary");
+		logIn(8);
+		assertThat(answeredBy(reads)).isEqualTo("replica");
+
+		logIn(7);
+		Thread.sleep(WINDOW.toMillis() + 50);
+		replicateAndBeat();
+		assertThat(answeredBy(reads)).isEqualTo("replica");
+	}
+
+	// inside a transaction the window opens when it commits; a rolled back write opens none
+	@Test
+	void testWriteWindowOpensOnCommit() {
+		replicateAndBeat();
+		logIn(7);
+		writes.executeWithoutResult(status -> readRoutingServices.recordWrite(7));
+		assertThat(answeredBy(reads)).isEqualTo("primary");
+
+		logIn(8);
+		writes.executeWithoutResult(status -> {
+			readRoutingServices.recordWrite(8);
+			status.setRollbackOnly();
+		});
+		assertThat(answeredBy(reads)).isEqualTo("replica");
+	}
+
+	@Test
+	void testLaggingReplicaFallsBackToPrimary() throws Exception {
+		replicateAndBeat();
+		assertThat(answeredBy(reads)).isEqualTo("replica");
+
+		// replication stalls: the replica keeps the old heartbeat while the primary moves on
+		Thread.sleep(MAX_LAG.toMillis() + 50);
+		heartbeat.beat();
+		assertThat(readRoutingServices.isReplicaUsable()).isFalse();
+		assertThat(answeredBy(reads)).isEqualTo("primary");
+
+		replicateAndBeat();
+		assertThat(answeredBy(reads)).isEqualTo("replica");
+	}
+
+	// beats further apart than max-lag: a replica that has every beat is not behind
+	@Test
+	void testBeatIntervalIsNotLag() throws Exception {
+		replicateAndBeat();
+		Thread.sleep(MAX_LAG.toMillis() + 50);
+		replicate();
+		heartbeat.beat();
+		assertThat(readRoutingServices.isReplicaUsable()).isTrue();
+	}
+
+	@Test
+	void testUnreachableReplicaFallsBackToPrimary() {
+		replicateAndBeat();
+		replica.shutdown();
+		heartbeat.beat();
+
+		assertThat(readRoutingServices.isReplicaUsable()).isFalse();
+		assertThat(answeredBy(reads)).isEqualTo("primary");
+	}
+
+	String answeredBy(TransactionTemplate transaction) {
+		return transaction.execute(status ->
+				new JdbcTemplate(dataSource).queryForObject("SELECT name FROM whoami", String.class));
+	}
+
+	// what replication would do: copy the heartbeat row over, then measure
+	void replicateAndBeat() {
+		heartbeat.beat();
+		replicate();
+		heartbeat.beat();
+		assertThat(readRoutingServices.isReplicaUsable()).isTrue();
+	}
+
+	void replicate() {
+		Long ts = new JdbcTemplate(primary).queryForObject("SELECT ts FROM replica_heartbeat WHERE id = 1", Long.class);
+		new JdbcTemplate(replica).update("UPDATE replica_heartbeat SET ts = ? WHERE id = 1", ts);
+	}
+
+	static void logIn(int userId) {
+		User user = new User();
+		user.setId(userId);
+		user.setEmail("user" + userId + "@routing.test");
+		AppUserPrincipal principal = new AppUserPrincipal(user, List.of());
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+	}
+
+	static EmbeddedDatabase database(String name) {
+		EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+		JdbcTemplate jdbc = new JdbcTemplate(database);
+		jdbc.execute("CREATE TABLE whoami (name VARCHAR(10) NOT NULL)");
+		jdbc.update("INSERT INTO whoami (name) VALUES (?)", name);
+		jdbc.execute("CREATE TABLE replica_heartbeat (id TINYINT NOT NULL PRIMARY KEY, ts BIGINT NOT NULL)");
+		jdbc.update("INSERT INTO replica_heartbeat (id, ts) VALUES (1, 0)");
+		return database;
+	}
+}
@@ -0,0 +1,102 @@
+package org.perscholas.investmentapp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.TradeMode;
+import org.perscholas.investmentapp.services.PortfolioValuationServices;
+import org.perscholas.investmentapp.services.PossessionServices;
+import org.perscholas.investmentapp.services.TestPositions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class WorkloadPoolsTests {
+	static final String EMAIL = "email@email.com";
+	static final String TICKER = "GE";
+	static final int TRADES = 20;
+
+	@Autowired
+	PossessionServices possessionServices;
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	@Autowired
+	PortfolioValuationServices portfolioValuationServices;
+	@Autowired
+	@Qualifier("batchDataSource")
+	HikariDataSource batch;
+	@Autowired
+	@Qualifier("tradesDataSource")
+	HikariDataSource trades;
+
+	int userId;
+
+	@BeforeEach
+	@AfterEach
+	void removeExistingPosition() {
+		userId = userRepoI.findByEmail(EMAIL).orElseThrow().getId();
+		TestPositions.remove(jdbcTemplate, portfolioValuationServices, userId, TICKER);
+	}
+
+	@Test
+	void testPoolsAreSeparate() {
+		assertThat(batch.getPoolName()).isEqualTo("batch");
+		assertThat(trades.getPoolName()).isEqualTo("trades");
+		assertThat(batch.getHikariPoolMXBean()).isNotSameAs(trades.getHikariPoolMXBean());
+	}
+
+	// every batch connection held, with more batch work queued behind them: trades still get
+	// connections of their own and never wait
+	@Test
+	void testSaturatedBatchPoolLeavesTradesAlone() throws Exception {
+		HikariPoolMXBean batchPool = batch.getHikariPoolMXBean();
+		List<Connection> held = new ArrayList<>();
+		ExecutorService queued = Executors.newSingleThreadExecutor();
+		Future<?> waiter = null;
+		try {
+			for (int i = 0; i < batch.getMaximumPoolSize(); i++) {
+				held.add(batch.getConnection());
+			}
+			waiter = queued.submit(() -> Workload.BATCH.call(() ->
+					jdbcTemplate.queryForObject("SELECT 1", Integer.class)));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (batchPool.getThreadsAwaitingConnection() == 0 && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(batchPool.getThreadsAwaitingConnection()).isPositive();
+
+			for (int i = 0; i < TRADES; i++) {
+				assertThat(possessionServices.trade(userId, TICKER, i % 2 == 0 ? TradeMode.BUY : TradeMode.SELL, 1)).isTrue();
+			}
+			assertThat(trades.getHikariPoolMXBean().getThreadsAwaitingConnection()).isZero();
+			// still saturated: every trade ran while batch work was queued
+			assertThat(batchPool.getActiveConnections()).isEqualTo(batch.getMaximumPoolSize());
+			assertThat(batchPool.getThreadsAwaitingConnection()).isPositive();
+		} finally {
+			for (Connection connection : held) {
+				connection.close();
+			}
+			if (waiter != null) {
+				waiter.get();
+			}
+			queued.shutdown();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package org.perscholas.investmentapp.dao;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.models.User;
+import org.perscholas.investmentapp.services.EntityCacheServices;
+import org.perscholas.investmentapp.services.StockServices;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// every listing and lookup the pages use is a single select
+@SpringBootTest
+class FetchPlanTests {
+	static final String EMAIL = "email@email.com";
+
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	PossessionRepoI possessionRepoI;
+	@Autowired
+	StockRepoI stockRepoI;
+	@Autowired
+	AuthGroupRepoI authGroupRepoI;
+	@Autowired
+	StockServices stockServices;
+	@Autowired
+	EntityCacheServices entityCacheServices;
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	Statistics statistics;
+
+	@BeforeEach
+	void enableStatistics() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+	}
+
+	@Test
+	void testStockListingIsOneSelect() {
+		assertThat(stockServices.allStocks()).isNotEmpty();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	void testUserListingIsOneSelect() {
+		assertThat(userRepoI.findAllUserDTOs()).isNotEmpty();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statistics.getCollectionLoadCount()).isZero();
+	}
+
+	@Test
+	void testPrincipalLookupFetchesAddress() {
+		User user = userRepoI.findByEmail(EMAIL).orElseThrow();
+		assertThat(Hibernate.isInitialized(user.getAddress())).isTrue();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testPortfolioIsOneSelect() {
+		possessionRepoI.findByUserEmailWithStock(EMAIL)
+				.forEach(p -> assertThat(Hibernate.isInitialized(p.getStock())).isTrue());
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	// trade and delete paths look stocks up by ticker: after the first read no statement at all
+	@Test
+	void testStockLookupIsCached() {
+		stockRepoI.findByTicker("GE").orElseThrow();
+		statistics.clear();
+
+		assertThat(stockRepoI.findByTicker("GE")).isPresent();
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+		assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+
+		// an evicted lookup goes back to the database once
+		entityCacheServices.evictStockLookups();
+		statistics.clear();
+		assertThat(stockRepoI.findByTicker("GE")).isPresent();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	// every login reads the roles
+	@Test
+	void testRoleLookupIsCached() {
+		assertThat(authGroupRepoI.findByEmail(EMAIL)).isNotEmpty();
+		statistics.clear();
+
+		assertThat(authGroupRepoI.findByEmail(EMAIL)).isNotEmpty();
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+	}
+}
@@ -0,0 +1,180 @@
+package org.perscholas.investmentapp.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.perscholas.investmentapp.dto.AdminStockRowDTO;
+import org.perscholas.investmentapp.dto.AdminUserRowDTO;
+import org.perscholas.investmentapp.dto.KeysetPageDTO;
+import org.perscholas.investmentapp.dto.StockListingFilterDTO;
+import org.perscholas.investmentapp.dto.UserListingFilterDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class AdminListingServicesTests {
+	static final String DOMAIN = "@listing.test";
+	static final String TICKER_PREFIX = "ZL";
+
+	@Autowired
+	AdminListingServices adminListingServices;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM myusers WHERE email LIKE ?", "%" + DOMAIN);
+		jdbcTemplate.update("DELETE FROM stocks WHERE ticker LIKE ?", TICKER_PREFIX + "%");
+	}
+
+	// walking every page visits each matching row exactly once, in order, also when many rows share a sort value
+	@Test
+	void testUserPagesCoverEveryRowOnce() {
+		seedUsers(230);
+		UserListingFilterDTO filter = new UserListingFilterDTO();
+		filter.setEmail("page");
+		filter.setSort("lastName");
+		filter.setDir("desc");
+		filter.setSize(25);
+
+		List<AdminUserRowDTO> all = new ArrayList<>();
+		int pages = 0;
+		do {
+			KeysetPageDTO<AdminUserRowDTO> page = adminListingServices.users(filter);
+			all.addAll(page.getItems());
+			filter.setAfter(page.getNext());
+			pages++;
+		} while (filter.getAfter() != null);
+
+		assertThat(pages).isEqualTo(10);
+		assertThat(all).hasSize(230);
+		assertThat(all).extracting(AdminUserRowDTO::getId).doesNotHaveDuplicates();
+		assertThat(all).isSortedAccordingTo(Comparator.comparing(AdminUserRowDTO::getLastName)
+				.thenComparing(AdminUserRowDTO::getId).reversed());
+	}
+
+	@Test
+	void testStockPagesByPriceWithRangeFilter() {
+		List<Object[]> stocks = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			// three stocks per price
+			stocks.add(new Object[]{"Listing test " + i, String.format("%s%03d", TICKER_PREFIX, i), 10 + i / 3, "scratch"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO stocks (stock_name, ticker, price, description) VALUES (?, ?, ?, ?)", stocks);
+
+		StockListingFilterDTO filter = new StockListingFilterDTO();
+		filter.setTicker(TICKER_PREFIX);
+		filter.setSort("price");
+		filter.setMinPrice(BigDecimal.valueOf(12));
+		filter.setMaxPrice(BigDecimal.valueOf(21));
+		filter.setSize(7);
+
+		List<AdminStockRowDTO> all = new ArrayList<>();
+		do {
+			KeysetPageDTO<AdminStockRowDTO> page = adminListingServices.stocks(filter);
+			all.addAll(page.getItems());
+			filter.setAfter(page.getNext());
+		} while (filter.getAfter() != null);
+
+		assertThat(all).hasSize(30);
+		assertThat(all).extracting(AdminStockRowDTO::getId).doesNotHaveDuplicates();
+		assertThat(all).isSortedAccordingTo(Comparator.comparing(AdminStockRowDTO::getPrice)
+				.thenComparing(AdminStockRowDTO::getId));
+	}
+
+	@Test
+	void testWildcardsInFiltersAreLiteral() {
+		seedUsers(5);
+		UserListingFilterDTO filter = new UserListingFilterDTO();
+		filter.setEmail("%");
+
+		assertThat(adminListingServices.users(filter).getItems()).isEmpty();
+	}
+
+	@Test
+	void testCursorFromAnotherSortIsRejected() {
+		seedUsers(5);
+		UserListingFilterDTO filter = new UserListingFilterDTO();
+		filter.setEmail("page");
+		filter.setSize(2);
+		filter.setAfter(adminListingServices.users(filter).getNext());
+		filter.setSort("email");
+
+		assertThatThrownBy(() -> adminListingServices.users(filter)).isInstanceOf(IllegalArgumentException.class);
+		filter.setSort("password");
+		assertThatThrownBy(() -> adminListingServices.users(filter)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	// seeds a million users, then compares the first page with one 990k rows in; run with -Dadmin.listing.benchmark=true
+	@Test
+	@EnabledIfSystemProperty(named = "admin.listing.benchmark", matches = "true")
+	void benchmarkMillionUsers() {
+		int users = 1_000_000;
+		String digits = "(SELECT 0 n UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 "
+				+ "UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9)";
+		jdbcTemplate.update("INSERT INTO myusers (first_name, last_name, email, password) "
+				+ "SELECT 'Bench', CONCAT('Last', LPAD(seq.n MOD 10000, 4, '0')), CONCAT('bench', LPAD(seq.n, 7, '0'), ?), 'x' "
+				+ "FROM (SELECT d0.n + 10 * d1.n + 100 * d2.n + 1000 * d3.n + 10000 * d4.n + 100000 * d5.n AS n "
+				+ "FROM " + digits + " d0, " + digits + " d1, " + digits + " d2, "
+				+ digits + " d3, " + digits + " d4, " + digits + " d5) seq WHERE seq.n < ?", DOMAIN, users);
+		jdbcTemplate.execute("ANALYZE TABLE myusers");
+
+		for (String sort : List.of("id", "email", "lastName")) {
+			UserListingFilterDTO first = new UserListingFilterDTO();
+			first.setSort(sort);
+			first.setEmail(sort.equals("email") ? "bench" : null);
+
+			// cursors carry no filter, so one taken from a narrow filter seeks just as deep in the full listing
+			UserListingFilterDTO deep = new UserListingFilterDTO();
+			deep.setSort(sort);
+			deep.setEmail(first.getEmail());
+			deep.setAfter(deepCursor(sort));
+
+			double firstMs = medianMillis(first);
+			double deepMs = medianMillis(deep);
+			assertThat(adminListingServices.users(deep).getItems()).hasSize(50);
+			// flat: a deep page costs about what the first one does
+			assertThat(deepMs).as("sort=%s: first page %.2f ms, page 990k rows in %.2f ms", sort, firstMs, deepMs)
+					.isLessThan(Math.max(firstMs * 3, 5));
+		}
+	}
+
+	// a cursor deep into the table: the next cursor of a one-row page over bench0989990..bench0989999
+	String deepCursor(String sort) {
+		UserListingFilterDTO filter = new UserListingFilterDTO();
+		filter.setSort(sort);
+		filter.setEmail("bench098999");
+		filter.setSize(1);
+		return adminListingServices.users(filter).getNext();
+	}
+
+	double medianMillis(UserListingFilterDTO filter) {
+		double[] samples = new double[21];
+		for (int i = 0; i < samples.length; i++) {
+			long start = System.nanoTime();
+			adminListingServices.users(filter);
+			samples[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(samples);
+		return samples[samples.length / 2];
+	}
+
+	void seedUsers(int n) {
+		List<Object[]> users = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			// few distinct last names, so the id tiebreak decides most of the order
+			users.add(new Object[]{"Page", "Last" + (char) ('A' + i % 7), String.format("page%04d%s", i, DOMAIN), "x"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO myusers (first_name, last_name, email, password) VALUES (?, ?, ?, ?)", users);
+	}
+}
@@ -0,0 +1,82 @@
+package org.perscholas.investmentapp.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A 20-year daily backtest of 50 tickers read from memory-mapped column files, buy and hold
+ * against monthly rebalancing; the score is the time of one full replay.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.perscholas.investmentapp.services.BacktestBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BacktestBenchmark {
+
+	static final int TICKERS = 50;
+	static final int DAYS = 20 * Backtester.TRADING_DAYS;
+	static final long DAY = 86_400_000L;
+
+	@Param({"0", "21"})
+	int rebalanceDays;
+
+	Path dir;
+	PriceColumnFile[] series;
+	double[] weights;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("backtest-bench");
+		SplittableRandom random = new SplittableRandom(11);
+		series = new PriceColumnFile[TICKERS];
+		weights = new double[TICKERS];
+		long[] times = new long[DAYS];
+		double[] prices = new double[DAYS];
+		for (int i = 0; i < TICKERS; i++) {
+			prices[0] = 20 + random.nextDouble() * 200;
+			for (int d = 0; d < DAYS; d++) {
+				times[d] = d * DAY;
+				if (d > 0) {
+					prices[d] = prices[d - 1] * Math.exp(0.0003 + random.nextGaussian() * 0.015);
+				}
+			}
+			Path path = dir.resolve("T" + i + ".pxc");
+			PriceColumnFile.write(path, times, prices, DAYS);
+			series[i] = PriceColumnFile.open(path);
+			weights[i] = 1.0 / TICKERS;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try (var files = Files.list(dir)) {
+			for (Path path : (Iterable<Path>) files::iterator) {
+				Files.deleteIfExists(path);
+			}
+		}
+		Files.deleteIfExists(dir);
+	}
+
+	@Benchmark
+	public double replay() {
+		return Backtester.run(series, weights, 0, Long.MAX_VALUE, rebalanceDays, 10_000, 500).finalValue();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(BacktestBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
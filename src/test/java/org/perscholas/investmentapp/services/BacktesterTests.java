@@ -0,0 +1,137 @@
+package org.perscholas.investmentapp.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// column files and the replay loop only; no Spring context needed
+class BacktesterTests {
+	static final long DAY = 86_400_000L;
+	static final long T0 = 946_684_800_000L; // 2000-01-01
+
+	@TempDir
+	Path dir;
+
+	int files;
+
+	@Test
+	void testColumnFileRoundTrip() throws IOException {
+		PriceColumnFile file = series(10.5, 11, 12.25);
+		assertThat(file.size()).isEqualTo(3);
+		assertThat(file.time(2)).isEqualTo(T0 + 2 * DAY);
+		assertThat(file.price(1)).isEqualTo(11);
+		assertThat(file.after(T0 - 1)).isZero();
+		assertThat(file.after(T0 + DAY)).isEqualTo(2);
+		assertThat(file.after(T0 + 9 * DAY)).isEqualTo(3);
+	}
+
+	@Test
+	void testBuyAndHoldOfHalfCashHalfDoubler() throws IOException {
+		PriceColumnFile[] series = {series(1, 1, 1, 1), series(1, 1.2, 1.6, 2)};
+		Backtester.Result result = Backtester.run(series, new double[]{0.5, 0.5}, 0, Long.MAX_VALUE, 0, 1_000, 100);
+		assertThat(result.finalValue()).isCloseTo(1_500, within(1e-9));
+		assertThat(result.totalReturn()).isCloseTo(0.5, within(1e-12));
+		assertThat(result.bars()).isEqualTo(4);
+		assertThat(result.rebalances()).isZero();
+		assertThat(result.maxDrawdown()).isZero();
+		assertThat(result.points()).isEqualTo(4);
+	}
+
+	// rebalancing into the asset that just fell loses to holding when it does not come back
+	@Test
+	void testDailyRebalanceOfOscillatingAsset() throws IOException {
+		PriceColumnFile[] series = {series(1, 1, 1), series(1, 2, 1)};
+		double[] weights = {0.5, 0.5};
+		assertThat(Backtester.run(series, weights, 0, Long.MAX_VALUE, 0, 1, 100).finalValue())
+				.isCloseTo(1, within(1e-12));
+		Backtester.Result daily = Backtester.run(series, weights, 0, Long.MAX_VALUE, 1, 1, 100);
+		// 1.5 after the rise, rebalanced to 0.75 + 0.75, then 0.75 + 0.375
+		assertThat(daily.finalValue()).isCloseTo(1.125, within(1e-12));
+		assertThat(daily.rebalances()).isEqualTo(2);
+	}
+
+	@Test
+	void testMaxDrawdownFromRunningPeak() throws IOException {
+		PriceColumnFile[] series = {series(100, 120, 90, 110, 130, 117)};
+		Backtester.Result result = Backtester.run(series, new double[]{1}, 0, Long.MAX_VALUE, 0, 100, 100);
+		assertThat(result.maxDrawdown()).isCloseTo(0.25, within(1e-12));
+		assertThat(result.drawdownPeak()).isEqualTo(T0 + DAY);
+		assertThat(result.drawdownTrough()).isEqualTo(T0 + 2 * DAY);
+		assertThat(result.finalValue()).isCloseTo(117, within(1e-9));
+	}
+
+	// starts on the first day both trade; a series missing a day keeps its last close
+	@Test
+	void testAlignsCalendarsAndRange() throws IOException {
+		PriceColumnFile late = write(new long[]{T0 + 2 * DAY, T0 + 3 * DAY, T0 + 5 * DAY}, new double[]{10, 20, 40});
+		PriceColumnFile early = series(5, 5, 5, 5, 5, 5);
+		Backtester.Result result = Backtester.run(new PriceColumnFile[]{late, early}, new double[]{0.5, 0.5},
+				0, T0 + 4 * DAY, 0, 100, 100);
+		assertThat(result.from()).isEqualTo(T0 + 2 * DAY);
+		assertThat(result.to()).isEqualTo(T0 + 4 * DAY);
+		assertThat(result.bars()).isEqualTo(3);
+		// day 4: late still at 20
+		assertThat(result.finalValue()).isCloseTo(150, within(1e-9));
+		assertThat(Backtester.run(new PriceColumnFile[]{late}, new double[]{1}, 0, T0, 0, 100, 100)).isNull();
+	}
+
+	@Test
+	void testEquityCurveSampledEvenlyWithinBudget() throws IOException {
+		double[] prices = new double[1_001];
+		for (int d = 0; d < prices.length; d++) {
+			prices[d] = 100 + d;
+		}
+		Backtester.Result result = Backtester.run(new PriceColumnFile[]{series(prices)}, new double[]{1},
+				0, Long.MAX_VALUE, 0, 100, 64);
+		assertThat(result.points()).isLessThanOrEqualTo(64).isGreaterThan(32);
+		assertThat(result.equityTimes()[0]).isEqualTo(T0);
+		assertThat(result.equityTimes()[result.points() - 1]).isEqualTo(T0 + 1_000 * DAY);
+		long step = result.equityTimes()[1] - result.equityTimes()[0];
+		for (int k = 1; k < result.points() - 1; k++) {
+			assertThat(result.equityTimes()[k] - result.equityTimes()[k - 1]).isEqualTo(step);
+		}
+	}
+
+	// 20 years of trading days on 50 tickers, monthly rebalancing
+	@Test
+	void testTwentyYearsOfFiftyTickers() throws IOException {
+		int tickers = 50;
+		int days = 20 * Backtester.TRADING_DAYS;
+		SplittableRandom random = new SplittableRandom(3);
+		PriceColumnFile[] series = new PriceColumnFile[tickers];
+		double[] weights = new double[tickers];
+		for (int i = 0; i < tickers; i++) {
+			double[] prices = new double[days];
+			prices[0] = 20 + random.nextDouble() * 200;
+			for (int d = 1; d < days; d++) {
+				prices[d] = prices[d - 1] * Math.exp(0.0003 + random.nextGaussian() * 0.015);
+			}
+			series[i] = series(prices);
+			weights[i] = 1.0 / tickers;
+		}
+		Backtester.Result result = Backtester.run(series, weights, 0, Long.MAX_VALUE, 21, 10_000, 500);
+		assertThat(result.bars()).isEqualTo(days);
+		assertThat(result.rebalances()).isEqualTo((days - 1) / 21);
+		assertThat(result.volatility()).isPositive();
+	}
+
+	private PriceColumnFile series(double... prices) throws IOException {
+		long[] times = new long[prices.length];
+		for (int d = 0; d < prices.length; d++) {
+			times[d] = T0 + d * DAY;
+		}
+		return write(times, prices);
+	}
+
+	private PriceColumnFile write(long[] times, double[] prices) throws IOException {
+		Path path = dir.resolve("S" + files++ + ".pxc");
+		PriceColumnFile.write(path, times, prices, times.length);
+		return PriceColumnFile.open(path);
+	}
+}
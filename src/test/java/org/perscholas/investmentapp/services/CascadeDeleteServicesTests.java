@@ -0,0 +1,75 @@
+package org.perscholas.investmentapp.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dto.DeletionResultDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CascadeDeleteServicesTests {
+	static final String DOMAIN = "@cascade.test";
+	static final String TICKER = "ZCASC";
+	static final int HOLDERS = 20_000;
+
+	@Autowired
+	CascadeDeleteServices cascadeDeleteServices;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE p FROM possessions p JOIN myusers u ON u.id = p.myuser_id WHERE u.email LIKE ?", "%" + DOMAIN);
+		jdbcTemplate.update("DELETE FROM auth_group WHERE email LIKE ?", "%" + DOMAIN);
+		jdbcTemplate.update("DELETE FROM myusers WHERE email LIKE ?", "%" + DOMAIN);
+		jdbcTemplate.update("DELETE p FROM possessions p JOIN stocks s ON s.id = p.investment_id WHERE s.ticker = ?", TICKER);
+		jdbcTemplate.update("DELETE FROM stocks WHERE ticker = ?", TICKER);
+	}
+
+	@Test
+	void testDeleteStockHeldByTensOfThousands() throws Exception {
+		List<Object[]> users = new ArrayList<>(HOLDERS);
+		for (int i = 0; i < HOLDERS; i++) {
+			users.add(new Object[]{"Holder", "Cascade", "holder" + i + DOMAIN, "x"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO myusers (first_name, last_name, email, password) VALUES (?, ?, ?, ?)", users);
+		jdbcTemplate.update("INSERT INTO stocks (stock_name, ticker, price, description) VALUES ('Cascade test', ?, 1, 'scratch')", TICKER);
+		jdbcTemplate.update("INSERT INTO possessions (myuser_id, investment_id, shares) "
+				+ "SELECT u.id, s.id, 1 FROM myusers u, stocks s WHERE u.email LIKE ? AND s.ticker = ?", "%" + DOMAIN, TICKER);
+
+		DeletionResultDTO result = cascadeDeleteServices.deleteStock(TICKER);
+
+		assertThat(result.getPossessions()).isEqualTo(HOLDERS);
+		assertThat(result.getStocks()).isEqualTo(1);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stocks WHERE ticker = ?", Integer.class, TICKER)).isZero();
+	}
+
+	@Test
+	void testDeleteUserRemovesEverythingItOwns() throws Exception {
+		String email = "owner" + DOMAIN;
+		GeneratedKeyHolder address = new GeneratedKeyHolder();
+		jdbcTemplate.update(connection -> connection.prepareStatement(
+				"INSERT INTO address (street, state, zipcode) VALUES ('1 Cascade St', 'CA', 12345)",
+				Statement.RETURN_GENERATED_KEYS), address);
+		jdbcTemplate.update("INSERT INTO myusers (first_name, last_name, email, password, address) VALUES ('Owner', 'Cascade', ?, 'x', ?)",
+				email, address.getKey().intValue());
+		jdbcTemplate.update("INSERT INTO auth_group (email, role) VALUES (?, 'ROLE_USER')", email);
+		jdbcTemplate.update("INSERT INTO possessions (myuser_id, investment_id, shares) "
+				+ "SELECT u.id, s.id, 1 FROM myusers u, stocks s WHERE u.email = ? AND s.ticker IN ('GE', 'VZ')", email);
+
+		DeletionResultDTO result = cascadeDeleteServices.deleteUser(email);
+
+		assertThat(result.getPossessions()).isEqualTo(2);
+		assertThat(result.getAuthGroups()).isEqualTo(1);
+		assertThat(result.getUsers()).isEqualTo(1);
+		assertThat(result.getAddresses()).isEqualTo(1);
+	}
+}
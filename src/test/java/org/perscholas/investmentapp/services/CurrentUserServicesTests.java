@@ -0,0 +1,111 @@
+package org.perscholas.investmentapp.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.CurrentUserDTO;
+import org.perscholas.investmentapp.models.User;
+import org.perscholas.investmentapp.security.AppUserDetailService;
+import org.perscholas.investmentapp.security.AppUserPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CurrentUserServicesTests {
+	static final String EMAIL = "email@email.com";
+	static final String RENAMED = "renamed@email.com";
+
+	@Autowired
+	CurrentUserServices currentUserServices;
+	@Autowired
+	AppUserDetailService appUserDetailService;
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+	@Autowired
+	UserServices userServices;
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	Statistics statistics;
+	MockHttpSession session;
+	UsernamePasswordAuthenticationToken login;
+
+	@BeforeEach
+	void logIn() {
+		AppUserPrincipal principal = (AppUserPrincipal) appUserDetailService.loadUserByUsername(EMAIL);
+		login = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+		session = new MockHttpSession();
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+	}
+
+	// once resolved, the view is reused on every page without touching the database
+	@Test
+	void testResolvesFromSession() {
+		CurrentUserDTO first = currentUserServices.resolve(request()).orElseThrow();
+		statistics.clear();
+		CurrentUserDTO second = currentUserServices.resolve(request()).orElseThrow();
+
+		assertThat(second).isSameAs(first);
+		assertThat(first.getEmail()).isEqualTo(EMAIL);
+		assertThat(first.getRoles()).contains("ROLE_ADMIN");
+		assertThat(first.getAddress()).isNotNull();
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+	}
+
+	// a change reloads the view once, then it is cached again
+	@Test
+	void testInvalidateReloadsOnce() {
+		CurrentUserDTO first = currentUserServices.resolve(request()).orElseThrow();
+		currentUserServices.invalidate(first.getId());
+
+		CurrentUserDTO reloaded = currentUserServices.resolve(request()).orElseThrow();
+		currentUserServices.resolve(request()).orElseThrow();
+
+		assertThat(reloaded.getEmail()).isEqualTo(EMAIL);
+		assertThat(reloaded.getRoles()).contains("ROLE_ADMIN");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	// the principal keeps the email from login; the pages must still find the user after it changes
+	@Test
+	void testResolvesAfterEmailChange() throws Exception {
+		CurrentUserDTO before = currentUserServices.resolve(request()).orElseThrow();
+		User user = userRepoI.findByEmail(EMAIL).orElseThrow();
+		User edit = new User();
+		edit.setFirstName(user.getFirstName());
+		edit.setLastName(user.getLastName());
+		edit.setEmail(RENAMED);
+		try {
+			userServices.createOrUpdate(user, edit);
+
+			CurrentUserDTO after = currentUserServices.resolve(request()).orElseThrow();
+			assertThat(after.getId()).isEqualTo(before.getId());
+			assertThat(after.getEmail()).isEqualTo(RENAMED);
+			assertThat(after.getRoles()).contains("ROLE_ADMIN");
+		} finally {
+			jdbcTemplate.update("UPDATE myusers SET email = ? WHERE id = ?", EMAIL, before.getId());
+			currentUserServices.invalidate(before.getId());
+		}
+	}
+
+	MockHttpServletRequest request() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setSession(session);
+		request.setUserPrincipal(login);
+		return request;
+	}
+}
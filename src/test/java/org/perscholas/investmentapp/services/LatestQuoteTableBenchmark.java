@@ -0,0 +1,87 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read throughput of LatestQuoteTable with one thread writing quotes the whole time.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.perscholas.investmentapp.services.LatestQuoteTableBenchmark
+ * and add -prof gc to confirm reads allocate nothing.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatestQuoteTableBenchmark {
+
+	static final int TICKERS = 1024;
+
+	LatestQuoteTable table;
+	String[] tickers;
+	int[] ids;
+
+	@Setup
+	public void setUp() {
+		table = new LatestQuoteTable(new SimpleMeterRegistry(), TICKERS);
+		tickers = new String[TICKERS];
+		ids = new int[TICKERS];
+		for (int i = 0; i < TICKERS; i++) {
+			tickers[i] = "T" + i;
+			table.update(tickers[i], 100 + i, 99.9 + i, 100.1 + i, 0, 1);
+			ids[i] = table.idOf(tickers[i]);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+		long time = 2;
+		final LatestQuoteTable.QuoteView view = new LatestQuoteTable.QuoteView();
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public double readPriceById(Cursor cursor) {
+		return table.price(ids[cursor.next++ & (TICKERS - 1)]);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public double readPriceByTicker(Cursor cursor) {
+		return table.priceOr(tickers[cursor.next++ & (TICKERS - 1)], 0);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public void readSnapshot(Cursor cursor, Blackhole blackhole) {
+		blackhole.consume(table.read(ids[cursor.next++ & (TICKERS - 1)], cursor.view));
+		blackhole.consume(cursor.view.getAsk() - cursor.view.getBid());
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public void write(Cursor cursor) {
+		int i = cursor.next++ & (TICKERS - 1);
+		double price = 100 + i + (cursor.time & 15) * 0.01;
+		table.update(tickers[i], price, price - 0.05, price + 0.05, 0.01, cursor.time++);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(LatestQuoteTableBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
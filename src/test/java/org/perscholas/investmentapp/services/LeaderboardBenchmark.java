@@ -0,0 +1,105 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rank queries against a million portfolios while a tick stream moves values and the re-rank
+ * runs every second underneath; the score is the time of one standing lookup.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.perscholas.investmentapp.services.LeaderboardBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+	static final int TICKERS = 1_000;
+	static final int USERS = 1_000_000;
+	static final int PER_USER = 2;
+
+	PortfolioValuationServices engine;
+	LeaderboardServices leaderboard;
+	String[] tickers;
+	volatile boolean running;
+	Thread ticks;
+	Thread refreshes;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		LatestQuoteTable quotes = new LatestQuoteTable(new SimpleMeterRegistry(), TICKERS);
+		tickers = new String[TICKERS];
+		for (int t = 0; t < TICKERS; t++) {
+			tickers[t] = String.format("ZL%04d", t);
+			quotes.update(tickers[t], 100, Double.NaN, Double.NaN, 0, 1);
+		}
+		// standings need neither the database nor the user names
+		engine = new PortfolioValuationServices(null, null, quotes, new SimpleMeterRegistry());
+		leaderboard = new LeaderboardServices(engine, null, new SimpleMeterRegistry(), 100);
+		SplittableRandom random = new SplittableRandom(3);
+		for (int u = 0; u < USERS; u++) {
+			int first = random.nextInt(TICKERS);
+			for (int k = 0; k < PER_USER; k++) {
+				engine.positionChanged(u, tickers[(first + k * 97) % TICKERS], 1 + random.nextInt(100));
+			}
+		}
+		leaderboard.refresh();
+
+		running = true;
+		ticks = new Thread(() -> {
+			SplittableRandom r = new SplittableRandom(5);
+			while (running) {
+				engine.onPrice(tickers[r.nextInt(TICKERS)], 90 + r.nextDouble() * 20, Double.NaN);
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+		refreshes = new Thread(() -> {
+			while (running) {
+				leaderboard.refresh();
+				try {
+					Thread.sleep(1_000);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+		ticks.start();
+		refreshes.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		running = false;
+		ticks.join();
+		refreshes.join();
+	}
+
+	@State(Scope.Thread)
+	public static class Users {
+		final SplittableRandom random = new SplittableRandom(11);
+	}
+
+	@Benchmark
+	public int standing(Users users) {
+		return leaderboard.standing(users.random.nextInt(USERS)).getValueRank();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(LeaderboardBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
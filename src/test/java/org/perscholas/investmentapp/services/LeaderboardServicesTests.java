@@ -0,0 +1,191 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dao.PossessionRepoI;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.LeaderboardDTO;
+import org.perscholas.investmentapp.dto.LeaderboardEntryDTO;
+import org.perscholas.investmentapp.dto.LeaderboardOrder;
+import org.perscholas.investmentapp.dto.LeaderboardStandingDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest
+class LeaderboardServicesTests {
+
+	@Autowired
+	PossessionRepoI possessionRepoI;
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	// a private engine over its own quote table, and a leaderboard over that engine
+	PortfolioValuationServices engine(LatestQuoteTable quotes) {
+		return new PortfolioValuationServices(possessionRepoI, jdbcTemplate, quotes, new SimpleMeterRegistry());
+	}
+
+	LeaderboardServices leaderboard(PortfolioValuationServices engine) {
+		return new LeaderboardServices(engine, userRepoI, new SimpleMeterRegistry(), 100);
+	}
+
+	@Test
+	void testRanksFollowTicksAndTrades() {
+		LatestQuoteTable quotes = new LatestQuoteTable(new SimpleMeterRegistry(), 16);
+		quotes.update("ZLA", 100, Double.NaN, Double.NaN, 0, 1);
+		quotes.update("ZLB", 10, Double.NaN, Double.NaN, 0, 1);
+		PortfolioValuationServices engine = engine(quotes);
+		LeaderboardServices leaderboard = leaderboard(engine);
+
+		engine.positionChanged(1, "ZLA", 3);
+		engine.positionChanged(2, "ZLB", 20);
+		engine.positionChanged(3, "ZLA", 1);
+		engine.positionChanged(3, "ZLB", 5);
+		leaderboard.refresh();
+
+		// values 300, 200, 150
+		LeaderboardStandingDTO first = leaderboard.standing(1);
+		assertThat(first.getRanked()).isEqualTo(3);
+		assertThat(first.getValueRank()).isEqualTo(1);
+		assertThat(first.getValuePercentile()).isCloseTo(100, within(1e-9));
+		assertThat(leaderboard.standing(3).getValueRank()).isEqualTo(3);
+		assertThat(leaderboard.standing(3).getValuePercentile()).isCloseTo(100.0 / 3, within(1e-9));
+		assertThat(leaderboard.standing(99).getValueRank()).isZero();
+
+		// ZLB doubles: 300, 400, 200; day returns 0, +100%, +33%
+		engine.onPrice("ZLB", 20, 10);
+		assertThat(leaderboard.standing(2).getValueRank()).isEqualTo(2);
+		leaderboard.refresh();
+		assertThat(leaderboard.standing(2).getValueRank()).isEqualTo(1);
+		assertThat(leaderboard.standing(1).getValueRank()).isEqualTo(2);
+		LeaderboardStandingDTO second = leaderboard.standing(2);
+		assertThat(second.getDayReturnRank()).isEqualTo(1);
+		assertThat(second.getDayReturn()).isCloseTo(1, within(1e-9));
+		assertThat(leaderboard.standing(3).getDayReturn()).isCloseTo(50.0 / 150, within(1e-9));
+		assertThat(leaderboard.standing(1).getDayReturnRank()).isEqualTo(3);
+
+		engine.positionRemoved(2, "ZLB");
+		engine.userRemoved(3);
+		leaderboard.refresh();
+		assertThat(leaderboard.ranked()).isEqualTo(2);
+		assertThat(leaderboard.standing(3).getValueRank()).isZero();
+		assertThat(leaderboard.standing(2).getValueRank()).isEqualTo(2);
+	}
+
+	@Test
+	void testTopNamesTheSeededUsers() {
+		int admin = userRepoI.findByEmail("email@email.com").orElseThrow().getId();
+		LatestQuoteTable quotes = new LatestQuoteTable(new SimpleMeterRegistry(), 16);
+		quotes.update("ZLA", 100, Double.NaN, Double.NaN, 0, 1);
+		PortfolioValuationServices engine = engine(quotes);
+		LeaderboardServices leaderboard = leaderboard(engine);
+		engine.positionChanged(admin, "ZLA", 5);
+		engine.positionChanged(-7, "ZLA", 1);
+		leaderboard.refresh();
+
+		LeaderboardDTO board = leaderboard.leaderboard(admin, LeaderboardOrder.VALUE, 500);
+		assertThat(board.getRanked()).isEqualTo(2);
+		assertThat(board.getTop()).extracting(LeaderboardEntryDTO::getUserId).containsExactly(admin, -7);
+		assertThat(board.getTop().get(0).getName()).isEqualTo("Edward B.");
+		assertThat(board.getTop().get(0).getValue()).isCloseTo(500, within(1e-9));
+		// no such user row: ranked, but nameless
+		assertThat(board.getTop().get(1).getName()).isNull();
+		assertThat(board.getStanding().getValueRank()).isEqualTo(1);
+	}
+
+	// against a full sort after every batch of random moves
+	@Test
+	void testRankIndexAgreesWithSorting() {
+		RankIndex index = new RankIndex();
+		Map<Integer, Double> scores = new HashMap<>();
+		Random random = new Random(11);
+		for (int round = 0; round < 50; round++) {
+			for (int i = 0; i < 200; i++) {
+				int id = random.nextInt(500);
+				if (random.nextInt(10) == 0) {
+					index.remove(id);
+					scores.remove(id);
+				} else {
+					// few distinct scores, so ties by id get exercised
+					double score = random.nextInt(50);
+					index.put(id, score);
+					scores.put(id, score);
+				}
+			}
+			Integer[] sorted = scores.keySet().toArray(new Integer[0]);
+			Arrays.sort(sorted, Comparator.comparing((Integer id) -> scores.get(id)).reversed()
+					.thenComparing(id -> id));
+			assertThat(index.size()).isEqualTo(sorted.length);
+			for (int k = 0; k < sorted.length; k++) {
+				assertThat(index.rank(sorted[k])).isEqualTo(k + 1);
+			}
+			assertThat(index.top(10)).containsExactly(Arrays.stream(sorted).limit(10).mapToInt(Integer::intValue).toArray());
+		}
+	}
+
+	// rank queries stay answerable while ticks move values and the scheduled re-rank runs underneath
+	// (query latency at a million portfolios: LeaderboardBenchmark)
+	@Test
+	void testRankQueriesUnderTicksAndRefreshes() throws Exception {
+		int tickers = 1_000;
+		int users = 100_000;
+		int perUser = 2;
+		LatestQuoteTable quotes = new LatestQuoteTable(new SimpleMeterRegistry(), tickers);
+		for (int t = 0; t < tickers; t++) {
+			quotes.update(ticker(t), 100, Double.NaN, Double.NaN, 0, 1);
+		}
+		PortfolioValuationServices engine = engine(quotes);
+		LeaderboardServices leaderboard = leaderboard(engine);
+		Random random = new Random(3);
+		for (int u = 0; u < users; u++) {
+			int first = random.nextInt(tickers);
+			for (int k = 0; k < perUser; k++) {
+				engine.positionChanged(u, ticker((first + k * 97) % tickers), 1 + random.nextInt(100));
+			}
+		}
+		leaderboard.refresh();
+		assertThat(leaderboard.ranked()).isEqualTo(users);
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread ticks = new Thread(() -> {
+			Random r = new Random(5);
+			while (running.get()) {
+				engine.onPrice(ticker(r.nextInt(tickers)), 90 + r.nextDouble() * 20, Double.NaN);
+			}
+		});
+		Thread refreshes = new Thread(() -> {
+			while (running.get()) {
+				leaderboard.refresh();
+			}
+		});
+		ticks.start();
+		refreshes.start();
+		try {
+			for (int i = 0; i < 200_000; i++) {
+				LeaderboardStandingDTO standing = leaderboard.standing(random.nextInt(users));
+				assertThat(standing.getValueRank()).isBetween(1, users);
+			}
+		} finally {
+			running.set(false);
+			ticks.join();
+			refreshes.join();
+		}
+		assertThat(leaderboard.ranked()).isEqualTo(users);
+	}
+
+	static String ticker(int t) {
+		return String.format("ZL%04d", t);
+	}
+}
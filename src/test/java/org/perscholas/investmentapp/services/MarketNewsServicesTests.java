@@ -0,0 +1,117 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.client.MarketDataSource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// stale-while-revalidate against an upstream the test completes by hand; no Spring context needed
+class MarketNewsServicesTests {
+	static final Duration STALE_AFTER = Duration.ofMillis(300);
+
+	final List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+	final MarketDataSource upstream = (path, params) -> {
+		CompletableFuture<String> body = new CompletableFuture<>();
+		calls.add(body);
+		return body;
+	};
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	final MarketNewsServices news = new MarketNewsServices(upstream, new ObjectMapper(), registry,
+			STALE_AFTER, 20, 32, List.of());
+
+	@Test
+	void testColdPairLoadsOnceThenHits() throws Exception {
+		CompletableFuture<String> first = news.getNews("generalnews", "US");
+		CompletableFuture<String> second = news.getNews("GeneralNews", "us");
+		assertThat(calls).hasSize(1);
+		assertThat(first).isNotDone();
+
+		calls.get(0).complete(items("first"));
+		assertThat(first.get()).contains("first");
+		assertThat(second.get()).isEqualTo(first.get());
+
+		assertThat(news.getNews("generalnews", "US").get()).isEqualTo(first.get());
+		assertThat(calls).hasSize(1);
+		assertThat(counter("hit")).isEqualTo(1);
+		assertThat(counter("miss")).isEqualTo(2);
+	}
+
+	@Test
+	void testStaleEntryIsServedWhileOneRefreshRuns() throws Exception {
+		String loaded = warm("first");
+		Thread.sleep(STALE_AFTER.toMillis() + 20);
+
+		// expired: answered from memory at once, one refresh in the background
+		CompletableFuture<String> stale = news.getNews("generalnews", "US");
+		assertThat(stale).isCompletedWithValue(loaded);
+		assertThat(news.getNews("generalnews", "US")).isCompletedWithValue(loaded);
+		assertThat(calls).hasSize(2);
+		assertThat(counter("stale")).isEqualTo(2);
+
+		calls.get(1).complete(items("second"));
+		String refreshed = news.getNews("generalnews", "US").get();
+		assertThat(refreshed).contains("second").doesNotContain("first");
+		assertThat(counter("hit")).isEqualTo(1);
+	}
+
+	@Test
+	void testFailedRefreshKeepsLastGoodPayload() throws Exception {
+		String loaded = warm("first");
+		Thread.sleep(STALE_AFTER.toMillis() + 20);
+
+		assertThat(news.getNews("generalnews", "US")).isCompletedWithValue(loaded);
+		calls.get(1).completeExceptionally(new IllegalStateException("upstream 503"));
+		assertThat(registry.get("market.news.refresh.failures").counter().count()).isEqualTo(1);
+
+		// still served stale, and the next request tries again
+		assertThat(news.getNews("generalnews", "US")).isCompletedWithValue(loaded);
+		assertThat(calls).hasSize(3);
+		calls.get(2).complete("{\"unexpected\":true}");
+		assertThat(news.getNews("generalnews", "US")).isCompletedWithValue(loaded);
+		assertThat(registry.get("market.news.refresh.failures").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void testColdFailureIsNotCached() {
+		CompletableFuture<String> first = news.getNews("generalnews", "US");
+		calls.get(0).completeExceptionally(new IllegalStateException("upstream 503"));
+		assertThatThrownBy(first::get).hasRootCauseMessage("upstream 503");
+
+		news.getNews("generalnews", "US");
+		assertThat(calls).hasSize(2);
+	}
+
+	@Test
+	void testScheduledRefreshReloadsEveryKnownPair() throws Exception {
+		warm("first");
+		news.refreshAll();
+		assertThat(calls).hasSize(2);
+		// a refresh already running is not started twice
+		news.refreshAll();
+		assertThat(calls).hasSize(2);
+		calls.get(1).complete(items("second"));
+		assertThat(news.getNews("generalnews", "US").get()).contains("second");
+	}
+
+	private String warm(String title) throws Exception {
+		CompletableFuture<String> cold = news.getNews("generalnews", "US");
+		calls.get(calls.size() - 1).complete(items(title));
+		return cold.get();
+	}
+
+	private double counter(String result) {
+		return registry.get("market.news.cache").tag("result", result).counter().count();
+	}
+
+	private static String items(String title) {
+		return "{\"items\":{\"result\":[{\"title\":\"" + title + "\",\"link\":\"https://example.com/" + title + "\"}]}}";
+	}
+}
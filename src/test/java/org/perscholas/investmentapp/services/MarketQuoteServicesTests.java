@@ -0,0 +1,74 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.client.MarketDataSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// cache bounds and region checks against a counting upstream; no Spring context needed
+class MarketQuoteServicesTests {
+	static final int MAX_ENTRIES = 10;
+
+	final AtomicInteger upstreamCalls = new AtomicInteger();
+	final MarketDataSource upstream = (path, params) -> {
+		upstreamCalls.incrementAndGet();
+		List<String> quotes = new ArrayList<>();
+		for (String symbol : params.get("symbols").split(",")) {
+			quotes.add("{\"symbol\":\"" + symbol + "\",\"regularMarketPrice\":10}");
+		}
+		return CompletableFuture.completedFuture("{\"quoteResponse\":{\"result\":[" + String.join(",", quotes) + "]}}");
+	};
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	final MarketQuoteServices quotes = quoteServices();
+
+	@Test
+	void testCacheFullOfLiveQuotesDropsLeastRecentlyFetched() throws Exception {
+		for (int i = 0; i < 25; i++) {
+			quotes.lookup("US", List.of("T" + i)).get();
+			assertThat(cacheSize()).isLessThanOrEqualTo(MAX_ENTRIES);
+			// fetch times are in milliseconds; keep them apart so the order is known
+			Thread.sleep(2);
+		}
+		assertThat(upstreamCalls.get()).isEqualTo(25);
+
+		// the latest fetches are still cached, the first ones went
+		quotes.lookup("US", List.of("T24", "T23", "T22")).get();
+		assertThat(upstreamCalls.get()).isEqualTo(25);
+		quotes.lookup("US", List.of("T0")).get();
+		assertThat(upstreamCalls.get()).isEqualTo(26);
+	}
+
+	@Test
+	void testRegionsAreNormalizedAndChecked() throws Exception {
+		assertThat(MarketQuoteServices.normalizeRegion(null)).isEqualTo("US");
+		assertThat(MarketQuoteServices.normalizeRegion(" gb ")).isEqualTo("GB");
+		assertThat(quotes.getQuotes("de", "SAP").get()).contains("SAP");
+
+		assertThatThrownBy(() -> quotes.getQuotes("XX", "AAPL")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> quotes.lookup("US:AAPL", List.of("MSFT"))).isInstanceOf(IllegalArgumentException.class);
+		assertThat(upstreamCalls.get()).isEqualTo(1);
+	}
+
+	private MarketQuoteServices quoteServices() {
+		SimpleMeterRegistry meters = new SimpleMeterRegistry();
+		LatestQuoteTable table = new LatestQuoteTable(meters, 64);
+		PriceHistoryServices history = new PriceHistoryServices(null, null, null, meters,
+				1_000, 500, 1_000, 3, 2_000, Duration.ofDays(1), Duration.ofMinutes(1));
+		return new MarketQuoteServices(upstream, new ObjectMapper(), table, history,
+				new PortfolioValuationServices(null, null, table, meters), registry,
+				Duration.ofMinutes(1), MAX_ENTRIES, Duration.ofSeconds(5), Duration.ofHours(1));
+	}
+
+	private double cacheSize() {
+		return registry.get("market.quotes.cache.size").gauge().value();
+	}
+}
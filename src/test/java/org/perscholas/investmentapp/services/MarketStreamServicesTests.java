@@ -0,0 +1,166 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.client.MarketDataSource;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// fan-out and per-subscriber send bounds with emitters that record or block; no Spring context needed
+class MarketStreamServicesTests {
+	static final int MAX_PENDING_SENDS = 2;
+
+	final Map<String, Double> prices = new ConcurrentHashMap<>(Map.of("AAPL", 100.0, "MSFT", 200.0));
+	final MarketDataSource upstream = (path, params) -> {
+		StringBuilder result = new StringBuilder();
+		for (String symbol : params.get("symbols").split(",")) {
+			if (result.length() > 0) result.append(',');
+			result.append("{\"symbol\":\"").append(symbol).append("\",\"regularMarketPrice\":").append(prices.get(symbol)).append('}');
+		}
+		return CompletableFuture.completedFuture("{\"quoteResponse\":{\"result\":[" + result + "]}}");
+	};
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	final MarketStreamServices stream = new MarketStreamServices(quoteServices(), new ObjectMapper(), registry,
+			1_000, Duration.ofMinutes(1), 100, 50, 50, 4, MAX_PENDING_SENDS);
+
+	@AfterEach
+	void shutDown() {
+		stream.shutdown();
+	}
+
+	@Test
+	void testOnlyChangedQuotesAreSent() {
+		RecordingEmitter subscriber = subscribe("AAPL,MSFT");
+		await(() -> subscriber.events.size() == 1);
+		assertThat(subscriber.events.get(0)).contains("AAPL", "MSFT");
+
+		stream.poll();
+		prices.put("MSFT", 201.0);
+		stream.poll();
+		await(() -> subscriber.events.size() == 2);
+		assertThat(subscriber.events.get(1)).contains("201.0").doesNotContain("AAPL");
+
+		stream.poll();
+		assertThat(pushed()).isEqualTo(2);
+		assertThat(subscriber.events).hasSize(2);
+	}
+
+	@Test
+	void testSlowSubscriberIsBoundedAndCatchesUpLater() {
+		RecordingEmitter slow = new RecordingEmitter();
+		slow.gate = new CountDownLatch(1);
+		subscribe("AAPL", slow);
+		RecordingEmitter fast = subscribe("AAPL");
+		await(() -> fast.events.size() == 1);
+
+		// the slow subscriber's first send is stuck; one more may queue behind it
+		prices.put("AAPL", 101.0);
+		stream.poll();
+		await(() -> fast.events.size() == 2);
+		prices.put("AAPL", 102.0);
+		stream.poll();
+		await(() -> fast.events.size() == 3);
+		assertThat(dropped()).isEqualTo(1);
+
+		slow.gate.countDown();
+		await(() -> slow.events.size() == 2);
+		assertThat(String.join("", slow.events)).contains("100.0", "101.0").doesNotContain("102.0");
+
+		// the quote dropped for the slow subscriber is offered again; the fast one already has it
+		stream.poll();
+		await(() -> slow.events.size() == 3);
+		assertThat(slow.events.get(2)).contains("102.0");
+		assertThat(fast.events).hasSize(3);
+	}
+
+	@Test
+	void testFailedSendUnsubscribes() {
+		RecordingEmitter broken = subscribe("AAPL");
+		await(() -> broken.events.size() == 1);
+		assertThat(subscribers()).isEqualTo(1);
+
+		broken.failing = true;
+		prices.put("AAPL", 99.0);
+		stream.poll();
+		await(() -> subscribers() == 0);
+		assertThat(registry.get("market.stream.tickers").gauge().value()).isZero();
+	}
+
+	private MarketQuoteServices quoteServices() {
+		SimpleMeterRegistry meters = new SimpleMeterRegistry();
+		LatestQuoteTable quotes = new LatestQuoteTable(meters, 64);
+		PriceHistoryServices history = new PriceHistoryServices(null, null, null, meters,
+				1_000, 500, 1_000, 3, 2_000, Duration.ofDays(1), Duration.ofMinutes(1));
+		// no TTL: every lookup goes upstream, so each poll sees the current prices
+		return new MarketQuoteServices(upstream, new ObjectMapper(), quotes, history,
+				new PortfolioValuationServices(null, null, quotes, meters), meters,
+				Duration.ZERO, 100, Duration.ofSeconds(5), Duration.ofHours(1));
+	}
+
+	private RecordingEmitter subscribe(String symbols) {
+		return subscribe(symbols, new RecordingEmitter());
+	}
+
+	private RecordingEmitter subscribe(String symbols, RecordingEmitter emitter) {
+		stream.subscribe("US", MarketQuoteServices.parseTickers(symbols), emitter);
+		return emitter;
+	}
+
+	private double pushed() {
+		return registry.get("market.stream.events").tag("result", "pushed").counter().count();
+	}
+
+	private double dropped() {
+		return registry.get("market.stream.events").tag("result", "dropped").counter().count();
+	}
+
+	private double subscribers() {
+		return registry.get("market.stream.subscribers").gauge().value();
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not reached in 5s").isLessThan(deadline);
+			Thread.onSpinWait();
+		}
+	}
+
+	static class RecordingEmitter extends SseEmitter {
+		final List<String> events = new CopyOnWriteArrayList<>();
+		volatile CountDownLatch gate;
+		volatile boolean failing;
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			CountDownLatch g = gate;
+			if (g != null) {
+				try {
+					g.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (failing) {
+				throw new IOException("client went away");
+			}
+			StringBuilder event = new StringBuilder();
+			builder.build().forEach(part -> event.append(part.getData()));
+			events.add(event.toString());
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.PortfolioFrameDTO;
+import org.perscholas.investmentapp.dto.TradeMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PortfolioPushServicesTests {
+	static final String EMAIL = "email@email.com";
+	static final String PASSWORD = "Hello1234!";
+	static final String TICKER = "GE";
+
+	@LocalServerPort
+	int port;
+	@Autowired
+	PortfolioValuationServices portfolioValuationServices;
+	@Autowired
+	PortfolioPushServices portfolioPushServices;
+	@Autowired
+	PossessionServices possessionServices;
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	@Autowired
+	ObjectMapper objectMapper;
+
+	int userId;
+
+	@BeforeEach
+	@AfterEach
+	void removeExistingPosition() {
+		userId = userRepoI.findByEmail(EMAIL).orElseThrow().getId();
+		TestPositions.remove(jdbcTemplate, portfolioValuationServices, userId, TICKER);
+	}
+
+	// a snapshot on connect, then a tick on one holding sends that holding alone
+	@Test
+	void testSnapshotThenDelta() throws Exception {
+		possessionServices.trade(userId, TICKER, TradeMode.SET, 10);
+
+		BlockingQueue<PortfolioFrameDTO> frames = new LinkedBlockingQueue<>();
+		WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+		headers.add("Cookie", login());
+		WebSocketSession session = new StandardWebSocketClient().execute(new TextWebSocketHandler() {
+			@Override
+			protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+				frames.add(objectMapper.readValue(message.getPayload(), PortfolioFrameDTO.class));
+			}
+		}, headers, URI.create("ws://localhost:" + port + "/user/portfolio/live")).get(5, TimeUnit.SECONDS);
+		try {
+			PortfolioFrameDTO snapshot = frames.poll(5, TimeUnit.SECONDS);
+			assertThat(snapshot).isNotNull();
+			assertThat(snapshot.getType()).isEqualTo(PortfolioFrameDTO.SNAPSHOT);
+			assertThat(snapshot.getHoldings().get(TICKER).getShares()).isEqualTo(10);
+
+			double price = snapshot.getHoldings().get(TICKER).getPrice() + 1;
+			portfolioValuationServices.onPrice(TICKER, price, Double.NaN);
+
+			PortfolioFrameDTO delta = frames.poll(5, TimeUnit.SECONDS);
+			assertThat(delta).isNotNull();
+			assertThat(delta.getType()).isEqualTo(PortfolioFrameDTO.DELTA);
+			assertThat(delta.getHoldings()).containsOnlyKeys(TICKER);
+			assertThat(delta.getHoldings().get(TICKER).getPrice()).isEqualTo(price);
+			assertThat(delta.getValue()).isEqualTo(portfolioValuationServices.valuation(userId).getValue());
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	void testHandshakeNeedsLogin() {
+		int before = portfolioPushServices.sessionCount();
+		assertThatThrownBy(() -> new StandardWebSocketClient().execute(new TextWebSocketHandler(),
+				new WebSocketHttpHeaders(), URI.create("ws://localhost:" + port + "/user/portfolio/live"))
+				.get(5, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class);
+		assertThat(portfolioPushServices.sessionCount()).isEqualTo(before);
+	}
+
+	// the form login MySecurityConfig sets up; returns the session cookie
+	String login() throws Exception {
+		String form = "email=" + URLEncoder.encode(EMAIL, StandardCharsets.UTF_8)
+				+ "&password=" + URLEncoder.encode(PASSWORD, StandardCharsets.UTF_8);
+		HttpResponse<Void> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+				.uri(URI.create("http://localhost:" + port + "/login/processing"))
+				.header("Content-Type", "application/x-www-form-urlencoded")
+				.POST(HttpRequest.BodyPublishers.ofString(form))
+				.build(), HttpResponse.BodyHandlers.discarding());
+		return response.headers().allValues("Set-Cookie").stream()
+				.filter(cookie -> cookie.startsWith("JSESSIONID="))
+				.map(cookie -> cookie.substring(0, cookie.indexOf(';')))
+				.findFirst()
+				.orElseThrow();
+	}
+}
@@ -0,0 +1,80 @@
+package org.perscholas.investmentapp.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monte Carlo VaR of a 50-holding portfolio at 1M paths, on fork/join pools of 1 to 8 threads;
+ * the scores across the parallelism parameter show how the simulation scales with cores.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.perscholas.investmentapp.services.PortfolioRiskBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PortfolioRiskBenchmark {
+
+	static final int HOLDINGS = 50;
+	static final int DAYS = 251;
+	static final int PATHS = 1_000_000;
+
+	@Param({"1", "2", "4", "8"})
+	int parallelism;
+
+	ForkJoinPool pool;
+	double[] values;
+	double[] means;
+	double[] chol;
+	long seed;
+
+	// a year of closes driven by one market factor plus noise, so the holdings are correlated
+	@Setup(Level.Trial)
+	public void setUp() {
+		pool = new ForkJoinPool(parallelism);
+		SplittableRandom random = new SplittableRandom(17);
+		double[][] closes = new double[HOLDINGS][DAYS];
+		values = new double[HOLDINGS];
+		for (int i = 0; i < HOLDINGS; i++) {
+			closes[i][0] = 20 + random.nextDouble() * 200;
+			values[i] = 1_000 + random.nextDouble() * 9_000;
+		}
+		for (int d = 1; d < DAYS; d++) {
+			double market = random.nextGaussian() * 0.01;
+			for (int i = 0; i < HOLDINGS; i++) {
+				double beta = 0.5 + i / (double) HOLDINGS;
+				closes[i][d] = closes[i][d - 1] * Math.exp(beta * market + random.nextGaussian() * 0.012);
+			}
+		}
+		double[][] returns = RiskAnalytics.logReturns(closes);
+		means = RiskAnalytics.means(returns);
+		chol = RiskAnalytics.cholesky(RiskAnalytics.covariance(returns, means));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public double valueAtRisk() {
+		double[] losses = RiskAnalytics.simulateLosses(pool, values, means, chol, 1, PATHS, seed++);
+		Arrays.sort(losses);
+		return RiskAnalytics.valueAtRisk(losses, 0.99);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(PortfolioRiskBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
@@ -0,0 +1,140 @@
+package org.perscholas.investmentapp.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.PortfolioRiskDTO;
+import org.perscholas.investmentapp.dto.TradeMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest
+class PortfolioRiskServicesTests {
+	static final String EMAIL = "email@email.com";
+	static final String TICKER = "GE";
+	static final long DAY = 86_400_000L;
+	static final int BARS = 30;
+
+	@Autowired
+	PortfolioRiskServices portfolioRiskServices;
+	@Autowired
+	PortfolioValuationServices portfolioValuationServices;
+	@Autowired
+	PossessionServices possessionServices;
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	int userId;
+	int stockId;
+	long today;
+
+	@BeforeEach
+	@AfterEach
+	void removeExistingPositionAndBars() {
+		userId = userRepoI.findByEmail(EMAIL).orElseThrow().getId();
+		stockId = jdbcTemplate.queryForObject("SELECT id FROM stocks WHERE ticker = ?", Integer.class, TICKER);
+		today = Math.floorDiv(System.currentTimeMillis(), DAY) * DAY;
+		TestPositions.remove(jdbcTemplate, portfolioValuationServices, userId, TICKER);
+		jdbcTemplate.update("DELETE FROM price_bars WHERE stock_id = ? AND resolution = '1d' "
+				+ "AND bucket_start >= ? AND bucket_start < ?", stockId, today - BARS * DAY, today);
+	}
+
+	// one asset with normal daily log returns: the simulated 99% VaR is the normal quantile's loss
+	@Test
+	void testSingleAssetVarMatchesNormalQuantile() {
+		double sigma = 0.02;
+		double[] losses = RiskAnalytics.simulateLosses(ForkJoinPool.commonPool(), new double[]{1_000},
+				new double[]{0}, RiskAnalytics.cholesky(new double[][]{{sigma * sigma}}), 1, 400_000, 1);
+		Arrays.sort(losses);
+		double expected = 1_000 * (1 - Math.exp(-2.3263 * sigma));
+		assertThat(RiskAnalytics.valueAtRisk(losses, 0.99)).isCloseTo(expected, within(expected * 0.02));
+		assertThat(RiskAnalytics.expectedShortfall(losses, 0.99)).isGreaterThan(RiskAnalytics.valueAtRisk(losses, 0.99));
+	}
+
+	@Test
+	void testPathsDoNotDependOnPoolSize() {
+		double[][] cov = {{4e-4, 1e-4}, {1e-4, 9e-4}};
+		double[] chol = RiskAnalytics.cholesky(cov);
+		double[] values = {500, 250};
+		double[] means = {1e-4, -2e-4};
+		ForkJoinPool one = new ForkJoinPool(1);
+		ForkJoinPool four = new ForkJoinPool(4);
+		try {
+			assertThat(RiskAnalytics.simulateLosses(one, values, means, chol, 5, 100_000, 42))
+					.containsExactly(RiskAnalytics.simulateLosses(four, values, means, chol, 5, 100_000, 42));
+		} finally {
+			one.shutdown();
+			four.shutdown();
+		}
+	}
+
+	@Test
+	void testNoPathsHaveNoLoss() {
+		assertThat(RiskAnalytics.valueAtRisk(new double[0], 0.99)).isZero();
+		assertThat(RiskAnalytics.expectedShortfall(new double[0], 0.99)).isZero();
+	}
+
+	@Test
+	void testCorrelationOfLinkedSeries() {
+		Random random = new Random(9);
+		double[][] closes = new double[3][60];
+		closes[0][0] = 100;
+		for (int d = 1; d < 60; d++) {
+			closes[0][d] = closes[0][d - 1] * Math.exp(random.nextGaussian() * 0.01);
+		}
+		for (int d = 0; d < 60; d++) {
+			// same log returns, twice the price; and the mirror image
+			closes[1][d] = closes[0][d] * 2;
+			closes[2][d] = 100 * 100 / closes[0][d];
+		}
+		double[][] returns = RiskAnalytics.logReturns(closes);
+		double[][] cov = RiskAnalytics.covariance(returns, RiskAnalytics.means(returns));
+		double[][] corr = RiskAnalytics.correlation(cov);
+		assertThat(corr[0][1]).isCloseTo(1, within(1e-9));
+		assertThat(corr[0][2]).isCloseTo(-1, within(1e-9));
+		assertThat(RiskAnalytics.volatilities(cov)[0]).isCloseTo(0.01, within(0.003));
+		// singular: the ridge lets it factor anyway
+		assertThat(Arrays.stream(RiskAnalytics.cholesky(cov)).allMatch(Double::isFinite)).isTrue();
+	}
+
+	// computed once per (positions, closed bars); a trade makes the next call recompute
+	@Test
+	void testCachedUntilPositionsChange() throws Exception {
+		Random random = new Random(5);
+		double close = 100;
+		for (int d = BARS; d >= 1; d--) {
+			close *= Math.exp(random.nextGaussian() * 0.015);
+			long bucket = today - d * DAY;
+			jdbcTemplate.update("INSERT INTO price_bars (stock_id, resolution, bucket_start, open, high, low, close, "
+					+ "volume, tick_count, first_ts, last_ts) VALUES (?, '1d', ?, ?, ?, ?, ?, 0, 1, ?, ?)",
+					stockId, bucket, close, close, close, close, bucket, bucket);
+		}
+		possessionServices.trade(userId, TICKER, TradeMode.SET, 10);
+
+		PortfolioRiskDTO first = portfolioRiskServices.risk(userId);
+		assertThat(first.getObservations()).isEqualTo(BARS - 1);
+		assertThat(first.getAsOf()).isEqualTo(today - DAY);
+		assertThat(first.getHoldings()).anySatisfy(holding -> {
+			assertThat(holding.getTicker()).isEqualTo(TICKER);
+			assertThat(holding.getVolatility()).isPositive();
+		});
+		assertThat(first.getValueAtRisk99()).isGreaterThan(first.getValueAtRisk95()).isPositive();
+		assertThat(portfolioRiskServices.risk(userId)).isSameAs(first);
+
+		possessionServices.trade(userId, TICKER, TradeMode.BUY, 10);
+		PortfolioRiskDTO second = portfolioRiskServices.risk(userId);
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getHoldings()).anySatisfy(holding -> assertThat(holding.getShares()).isEqualTo(20));
+	}
+}
@@ -0,0 +1,64 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price ticks against a million positions over a thousand tickers, so each tick walks about a
+ * thousand holders; the score is the time of one tick.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.perscholas.investmentapp.services.PortfolioValuationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PortfolioValuationBenchmark {
+
+	static final int TICKERS = 1_000;
+	static final int USERS = 100_000;
+	static final int PER_USER = 10;
+
+	PortfolioValuationServices engine;
+	String[] tickers;
+	SplittableRandom random;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		LatestQuoteTable quotes = new LatestQuoteTable(new SimpleMeterRegistry(), TICKERS);
+		tickers = new String[TICKERS];
+		for (int t = 0; t < TICKERS; t++) {
+			tickers[t] = String.format("ZV%04d", t);
+			quotes.update(tickers[t], 100, Double.NaN, Double.NaN, 0, 1);
+		}
+		// no rebuild here, so neither the repository nor the JdbcTemplate is used
+		engine = new PortfolioValuationServices(null, null, quotes, new SimpleMeterRegistry());
+		random = new SplittableRandom(7);
+		for (int u = 0; u < USERS; u++) {
+			int first = random.nextInt(TICKERS);
+			for (int k = 0; k < PER_USER; k++) {
+				engine.positionChanged(u, tickers[(first + k * 97) % TICKERS], 1 + random.nextInt(100));
+			}
+		}
+	}
+
+	@Benchmark
+	public int tick() {
+		engine.onPrice(tickers[random.nextInt(TICKERS)], 90 + random.nextDouble() * 20, Double.NaN);
+		return engine.positionCount();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(PortfolioValuationBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
@@ -0,0 +1,143 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dao.PossessionRepoI;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.HoldingValuationDTO;
+import org.perscholas.investmentapp.dto.PortfolioValuationDTO;
+import org.perscholas.investmentapp.dto.TradeMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest
+class PortfolioValuationServicesTests {
+	static final String EMAIL = "email@email.com";
+	static final String TICKER = "GE";
+
+	@Autowired
+	PortfolioValuationServices portfolioValuationServices;
+	@Autowired
+	PossessionServices possessionServices;
+	@Autowired
+	PossessionRepoI possessionRepoI;
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	int userId;
+
+	@BeforeEach
+	@AfterEach
+	void removeExistingPosition() {
+		userId = userRepoI.findByEmail(EMAIL).orElseThrow().getId();
+		TestPositions.remove(jdbcTemplate, portfolioValuationServices, userId, TICKER);
+	}
+
+	// a private engine over its own quote table, fed directly; no stock rows needed
+	PortfolioValuationServices engine(LatestQuoteTable quotes) {
+		return new PortfolioValuationServices(possessionRepoI, jdbcTemplate, quotes, new SimpleMeterRegistry());
+	}
+
+	@Test
+	void testTickMovesOnlyHoldersOfThatTicker() {
+		LatestQuoteTable quotes = new LatestQuoteTable(new SimpleMeterRegistry(), 16);
+		quotes.update("ZVA", 100, Double.NaN, Double.NaN, 1, 1);
+		quotes.update("ZVB", 50, Double.NaN, Double.NaN, -2, 1);
+		PortfolioValuationServices engine = engine(quotes);
+
+		engine.positionChanged(1, "zva", 10);
+		engine.positionChanged(2, "ZVA", 5);
+		engine.positionChanged(2, "ZVB", 4);
+		engine.positionChanged(2, "ZVB", 2);
+		// absolute counts: a change applied twice (loaded by a rebuild and replayed) counts once
+		engine.positionChanged(2, "ZVB", 2);
+		assertThat(engine.value(1)).isCloseTo(1_000, within(1e-9));
+		assertThat(engine.dayPnl(1)).isCloseTo(10, within(1e-9));
+		assertThat(engine.value(2)).isCloseTo(600, within(1e-9));
+
+		engine.onPrice("ZVB", 55, 3);
+		assertThat(engine.value(1)).isCloseTo(1_000, within(1e-9));
+		assertThat(engine.value(2)).isCloseTo(610, within(1e-9));
+		assertThat(engine.dayPnl(2)).isCloseTo(5 + 2 * 3, within(1e-9));
+
+		// no change field: the previous close stays 99
+		engine.onPrice("ZVA", 110, Double.NaN);
+		assertThat(engine.value(1)).isCloseTo(1_100, within(1e-9));
+		assertThat(engine.dayPnl(1)).isCloseTo(110, within(1e-9));
+
+		PortfolioValuationDTO valuation = engine.valuation(2);
+		assertThat(valuation.getValue()).isCloseTo(660, within(1e-9));
+		assertThat(valuation.getHoldings()).containsOnlyKeys("ZVA", "ZVB");
+		assertThat(valuation.getHoldings().values().stream().mapToDouble(HoldingValuationDTO::getWeight).sum())
+				.isCloseTo(1, within(1e-9));
+		assertThat(valuation.getHoldings().get("ZVB").getWeight()).isCloseTo(110.0 / 660, within(1e-9));
+
+		engine.positionRemoved(2, "ZVA");
+		assertThat(engine.value(2)).isCloseTo(110, within(1e-9));
+		engine.stockRemoved("ZVB");
+		assertThat(engine.value(2)).isZero();
+		engine.userRemoved(1);
+		assertThat(engine.value(1)).isZero();
+		assertThat(engine.positionCount()).isZero();
+	}
+
+	// the application's engine follows trades as they commit, and a rebuild lands on the same state
+	@Test
+	void testFollowsTradesAndRebuildAgrees() throws Exception {
+		possessionServices.trade(userId, TICKER, TradeMode.SET, 10);
+		possessionServices.trade(userId, TICKER, TradeMode.BUY, 5);
+		assertThat(possessionServices.trade(userId, TICKER, TradeMode.SELL, 100)).isFalse();
+		possessionServices.trade(userId, TICKER, TradeMode.SELL, 3);
+
+		PortfolioValuationDTO live = portfolioValuationServices.valuation(userId);
+		assertThat(live.getHoldings().get(TICKER).getShares()).isEqualTo(12);
+
+		portfolioValuationServices.rebuild();
+		PortfolioValuationDTO rebuilt = portfolioValuationServices.valuation(userId);
+		assertThat(rebuilt.getHoldings().get(TICKER).getShares()).isEqualTo(12);
+		assertThat(rebuilt.getValue()).isCloseTo(live.getValue(), within(1e-6));
+	}
+
+	// a million positions over a thousand tickers, each tick walking its ~1000 holders; the running
+	// totals still match a fresh sum afterwards (throughput: PortfolioValuationBenchmark)
+	@Test
+	void testMillionPositionsAbsorbTicks() {
+		int tickers = 1_000;
+		int users = 100_000;
+		int perUser = 10;
+		LatestQuoteTable quotes = new LatestQuoteTable(new SimpleMeterRegistry(), tickers);
+		for (int t = 0; t < tickers; t++) {
+			quotes.update(ticker(t), 100, Double.NaN, Double.NaN, 0, 1);
+		}
+		PortfolioValuationServices engine = engine(quotes);
+		Random random = new Random(7);
+		for (int u = 0; u < users; u++) {
+			int first = random.nextInt(tickers);
+			for (int k = 0; k < perUser; k++) {
+				engine.positionChanged(u, ticker((first + k * 97) % tickers), 1 + random.nextInt(100));
+			}
+		}
+		assertThat(engine.positionCount()).isEqualTo(users * perUser);
+
+		for (int i = 0; i < 20_000; i++) {
+			engine.onPrice(ticker(random.nextInt(tickers)), 90 + random.nextDouble() * 20, Double.NaN);
+		}
+		for (int u = 0; u < users; u += 9_973) {
+			assertThat(engine.value(u)).isCloseTo(engine.valuation(u).getValue(), within(1e-6));
+		}
+	}
+
+	static String ticker(int t) {
+		return String.format("ZV%04d", t);
+	}
+}
@@ -0,0 +1,187 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dao.PossessionRepoI;
+import org.perscholas.investmentapp.dao.StockRepoI;
+import org.perscholas.investmentapp.dao.UserRepoI;
+import org.perscholas.investmentapp.dto.TradeMode;
+import org.perscholas.investmentapp.dto.TradeRequestDTO;
+import org.perscholas.investmentapp.dto.TradeResultDTO;
+import org.perscholas.investmentapp.models.Possession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PossessionServicesTests {
+	static final String EMAIL = "email@email.com";
+	static final String TICKER = "GE";
+
+	@Autowired
+	PossessionServices possessionServices;
+	@Autowired
+	PossessionRepoI possessionRepoI;
+	@Autowired
+	UserRepoI userRepoI;
+	@Autowired
+	StockRepoI stockRepoI;
+	@Autowired
+	DataSource dataSource;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	@Autowired
+	ReadRoutingServices readRoutingServices;
+	@Autowired
+	PortfolioValuationServices portfolioValuationServices;
+	@Autowired
+	LatestQuoteTable latestQuoteTable;
+
+	int userId;
+
+	@BeforeEach
+	@AfterEach
+	void removeExistingPosition() {
+		userId = userRepoI.findByEmail(EMAIL).orElseThrow().getId();
+		TestPositions.remove(jdbcTemplate, portfolioValuationServices, userId, TICKER);
+	}
+
+	@Test
+	void testSetIsIdempotentUpsert() throws Exception {
+		possessionServices.addOrUpdatePosition(EMAIL, TICKER, 3);
+		possessionServices.addOrUpdatePosition(EMAIL, TICKER, 5);
+
+		assertThat(position()).map(Possession::getShares).contains(5.0);
+	}
+
+	@Test
+	void testSellBeyondPositionIsRejected() throws Exception {
+		possessionServices.trade(userId, TICKER, TradeMode.BUY, 2);
+
+		assertThat(possessionServices.trade(userId, TICKER, TradeMode.SELL, 3)).isFalse();
+		assertThat(possessionServices.trade(userId, TICKER, TradeMode.SELL, 2)).isTrue();
+		assertThat(position()).map(Possession::getShares).contains(0.0);
+	}
+
+	// thousands of parallel buys and sells on one position: no lost updates, no key violations,
+	// and one write plus one read-back (for the valuation engine) per trade
+	@Test
+	void testConcurrentTradesOnOnePosition() throws Exception {
+		AtomicInteger statements = new AtomicInteger();
+		PossessionServices counted = new PossessionServices(userRepoI, possessionRepoI, stockRepoI,
+				new JdbcTemplate(counting(dataSource, statements)), readRoutingServices, portfolioValuationServices);
+		counted.trade(userId, TICKER, TradeMode.SET, 1_000);
+		statements.set(0);
+
+		int buys = 3_000;
+		int sells = 1_000;
+		ExecutorService pool = Executors.newFixedThreadPool(32);
+		List<Future<Boolean>> results = new ArrayList<>();
+		try {
+			for (int i = 0; i < buys + sells; i++) {
+				TradeMode mode = i % 4 == 3 ? TradeMode.SELL : TradeMode.BUY;
+				double shares = mode == TradeMode.BUY ? 2 : 1;
+				results.add(pool.submit(() -> counted.trade(userId, TICKER, mode, shares)));
+			}
+			for (Future<Boolean> result : results) {
+				assertThat(result.get()).isTrue();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertThat(position()).map(Possession::getShares).contains(1_000.0 + buys * 2 - sells);
+		assertThat(statements.get()).isEqualTo(2 * (buys + sells));
+	}
+
+	// 500 position edits as single trades, then as one batch, on 500 scratch stocks
+	@Test
+	void testBatchOfFiveHundred() throws Exception {
+		int n = 500;
+		List<Object[]> stocks = new ArrayList<>();
+		List<TradeRequestDTO> trades = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			String ticker = String.format("ZB%03d", i);
+			stocks.add(new Object[]{"Batch test " + i, ticker, 10, "scratch stock for the batch trade test"});
+			trades.add(new TradeRequestDTO(ticker, 1, TradeMode.BUY));
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO stocks (stock_name, ticker, price, description) VALUES (?, ?, ?, ?)", stocks);
+		try {
+			for (TradeRequestDTO trade : trades) {
+				possessionServices.trade(userId, trade.getTicker(), trade.getMode(), trade.getShares());
+			}
+			List<TradeResultDTO> results = possessionServices.tradeBatch(userId, trades);
+
+			assertThat(results).extracting(TradeResultDTO::getResult).containsOnly(TradeResultDTO.APPLIED);
+			assertThat(jdbcTemplate.queryForObject("SELECT SUM(p.shares) FROM possessions p JOIN stocks s ON s.id = p.investment_id "
+					+ "WHERE p.myuser_id = ? AND s.ticker LIKE 'ZB%'", Double.class, userId)).isEqualTo(2.0 * n);
+
+			// the catalog check, one batch per mode and one read-back of BUY and SELL; the engine's own
+			// queries count too, and to a fresh engine every ZB ticker is a first holding
+			AtomicInteger statements = new AtomicInteger();
+			JdbcTemplate countedJdbc = new JdbcTemplate(counting(dataSource, statements));
+			PortfolioValuationServices countedEngine = new PortfolioValuationServices(possessionRepoI, countedJdbc,
+					latestQuoteTable, new SimpleMeterRegistry());
+			PossessionServices counted = new PossessionServices(userRepoI, possessionRepoI, stockRepoI,
+					countedJdbc, readRoutingServices, countedEngine);
+			List<TradeRequestDTO> mixed = new ArrayList<>(trades);
+			mixed.set(0, new TradeRequestDTO("ZB000", 5, TradeMode.SELL));
+			mixed.set(1, new TradeRequestDTO("ZB001", 7, TradeMode.SET));
+			mixed.add(new TradeRequestDTO("NOPE", 1, TradeMode.BUY));
+			mixed.add(new TradeRequestDTO("ZB002", 1, TradeMode.BUY));
+			results = counted.tradeBatch(userId, mixed);
+			assertThat(statements.get()).isEqualTo(5);
+			assertThat(results.get(0).getResult()).isEqualTo(TradeResultDTO.REJECTED);
+			assertThat(results.get(n).getResult()).isEqualTo(TradeResultDTO.UNKNOWN_TICKER);
+			assertThat(results.get(n + 1).getResult()).isEqualTo(TradeResultDTO.DUPLICATE_TICKER);
+		} finally {
+			jdbcTemplate.update("DELETE p FROM possessions p JOIN stocks s ON s.id = p.investment_id WHERE s.ticker LIKE 'ZB%'");
+			jdbcTemplate.update("DELETE FROM stocks WHERE ticker LIKE 'ZB%'");
+		}
+	}
+
+	Optional<Possession> position() {
+		return possessionRepoI.findByUserEmailWithStock(EMAIL).stream()
+				.filter(p -> TICKER.equals(p.getStock().getTicker()))
+				.findFirst();
+	}
+
+	// counts statements prepared on connections handed out by the data source
+	static DataSource counting(DataSource target, AtomicInteger statements) {
+		return new DelegatingDataSource(target) {
+			@Override
+			public Connection getConnection() throws SQLException {
+				Connection connection = super.getConnection();
+				return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+						new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+							if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+								statements.incrementAndGet();
+							}
+							try {
+								return method.invoke(connection, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						});
+			}
+		};
+	}
+}
@@ -0,0 +1,128 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// mapping cache and export sweep over a temp directory and canned bar rows; no Spring context needed
+class PriceColumnStoreTests {
+	static final long DAY = 86_400_000L;
+	static final long T0 = 946_684_800_000L; // 2000-01-01
+
+	@TempDir
+	Path dir;
+
+	// rows the export reads: ticker, bucket_start, close, ordered by ticker
+	final List<Object[]> bars = new ArrayList<>();
+	final JdbcTemplate jdbc = new JdbcTemplate() {
+		@Override
+		public void query(String sql, RowCallbackHandler handler, Object... args) {
+			Object[][] row = new Object[1][];
+			ResultSet rs = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+					new Class<?>[]{ResultSet.class}, (proxy, method, params) -> switch ((String) params[0]) {
+						case "ticker" -> row[0][0];
+						case "bucket_start" -> row[0][1];
+						default -> row[0][2];
+					});
+			try {
+				for (Object[] bar : bars) {
+					row[0] = bar;
+					handler.processRow(rs);
+				}
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	@Test
+	void testWriteReplacesTheCachedMapping() throws IOException {
+		PriceColumnStore store = store();
+		assertThat(store.columns("AAPL")).isNull();
+
+		store.write("AAPL", times(2), new double[]{1, 2}, 2);
+		PriceColumnFile first = store.columns("aapl");
+		assertThat(first.size()).isEqualTo(2);
+		assertThat(store.columns("AAPL")).isSameAs(first);
+
+		store.write("AAPL", times(3), new double[]{1, 2, 3}, 3);
+		assertThat(store.columns("AAPL").size()).isEqualTo(3);
+		// the old mapping is still readable by whoever holds it
+		assertThat(first.price(1)).isEqualTo(2);
+	}
+
+	@Test
+	void testReaderRacingWritesNeverKeepsAReplacedFile() throws Exception {
+		PriceColumnStore store = store();
+		int versions = 300;
+		double[] prices = new double[versions];
+		store.write("AAPL", times(1), prices, 1);
+
+		AtomicBoolean writing = new AtomicBoolean(true);
+		Thread reader = new Thread(() -> {
+			while (writing.get()) {
+				store.columns("AAPL");
+			}
+		});
+		reader.start();
+		for (int v = 2; v <= versions; v++) {
+			store.write("AAPL", times(v), prices, v);
+		}
+		writing.set(false);
+		reader.join();
+
+		assertThat(store.columns("AAPL").size()).isEqualTo(versions);
+	}
+
+	@Test
+	void testExportDeletesFilesOfTickersItDidNotWrite() throws IOException {
+		PriceColumnStore store = store();
+		bar("AAPL", 0, 10);
+		bar("AAPL", 1, 11);
+		bar("MSFT", 0, 20);
+		assertThat(store.exportAll()).isEqualTo(2);
+		assertThat(store.columns("MSFT").price(0)).isEqualTo(20);
+		Files.writeString(dir.resolve("README.txt"), "not a column file");
+
+		// MSFT lost its bars; a ticker that cannot be a file name is skipped, not written
+		bars.clear();
+		bar("AAPL", 0, 10);
+		bar("BAD/TICKER", 0, 1);
+		assertThat(store.exportAll()).isEqualTo(1);
+
+		assertThat(dir.resolve("MSFT.pxc")).doesNotExist();
+		assertThat(store.columns("MSFT")).isNull();
+		assertThat(store.columns("AAPL").size()).isEqualTo(1);
+		assertThat(dir.resolve("README.txt")).exists();
+	}
+
+	private PriceColumnStore store() {
+		return new PriceColumnStore(null, jdbc, new SimpleMeterRegistry(), dir);
+	}
+
+	private void bar(String ticker, int day, double close) {
+		bars.add(new Object[]{ticker, T0 + day * DAY, close});
+	}
+
+	private static long[] times(int count) {
+		long[] times = new long[count];
+		for (int d = 0; d < count; d++) {
+			times[d] = T0 + d * DAY;
+		}
+		return times;
+	}
+}
@@ -0,0 +1,211 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.dto.PriceBarDTO;
+import org.perscholas.investmentapp.dto.PriceHistoryDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PriceHistoryServicesTests {
+	static final String TICKER = "PHTEST";
+	static final long MINUTE = 60_000L;
+	static final long HOUR = 3_600_000L;
+	static final long DAY = 86_400_000L;
+	static final long T0 = 978_307_200_000L; // 2001-01-01
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	SimpleMeterRegistry registry;
+	int stockId;
+
+	@BeforeEach
+	void addStock() {
+		cleanUp();
+		jdbcTemplate.update("INSERT INTO stocks (stock_name, ticker, price, description) VALUES ('History test', ?, 1, 'scratch')", TICKER);
+		stockId = jdbcTemplate.queryForObject("SELECT id FROM stocks WHERE ticker = ?", Integer.class, TICKER);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE t FROM price_ticks t JOIN stocks s ON s.id = t.stock_id WHERE s.ticker = ?", TICKER);
+		jdbcTemplate.update("DELETE b FROM price_bars b JOIN stocks s ON s.id = b.stock_id WHERE s.ticker = ?", TICKER);
+		jdbcTemplate.update("DELETE FROM stocks WHERE ticker = ?", TICKER);
+	}
+
+	@Test
+	void testRepeatedAndOlderTicksAreStoredOnce() {
+		PriceHistoryServices history = services();
+		history.record(TICKER, price(10), -1, T0);
+		history.record(TICKER, price(10), -1, T0);
+		history.record("phtest", price(11), -1, T0 + 1_000);
+		history.flush();
+		history.record(TICKER, price(12), -1, T0 + 1_000);
+		history.record(TICKER, price(9), -1, T0 + 500);
+		history.record(TICKER, price(13), -1, T0 + 2_000);
+		history.flush();
+
+		assertThat(storedTimes()).containsExactly(T0, T0 + 1_000, T0 + 2_000);
+		assertThat(ticks("duplicate")).isEqualTo(3);
+		assertThat(ticks("written")).isEqualTo(3);
+	}
+
+	@Test
+	void testSessionVolumeBecomesVolumePerTick() {
+		PriceHistoryServices history = services();
+		long[] cumulative = {100, 150, 150, 40, -1, 70};
+		for (int i = 0; i < cumulative.length; i++) {
+			history.record(TICKER, price(10), cumulative[i], T0 + i * 1_000L);
+		}
+		history.flush();
+
+		// the first tick has nothing to diff against, 40 is a session reset, -1 is unknown
+		assertThat(jdbcTemplate.queryForList("SELECT volume FROM price_ticks WHERE stock_id = ? ORDER BY ts", Long.class, stockId))
+				.containsExactly(0L, 50L, 0L, 40L, 0L, 30L);
+	}
+
+	@Test
+	void testRollupsFoldTicksAcrossFlushes() {
+		PriceHistoryServices history = services();
+		history.record(TICKER, price(10), 0, T0 + 5_000);
+		history.record(TICKER, price(14), 10, T0 + 20_000);
+		history.flush();
+		history.record(TICKER, price(8), 25, T0 + 40_000);
+		history.record(TICKER, price(11), 30, T0 + 50_000);
+		history.record(TICKER, price(12), 45, T0 + MINUTE + 1_000);
+		history.flush();
+
+		Map<String, Object> minute = bar("1m", T0);
+		assertThat(minute).containsEntry("tick_count", 4).containsEntry("volume", 30L)
+				.containsEntry("first_ts", T0 + 5_000).containsEntry("last_ts", T0 + 50_000);
+		assertThat(minute.get("open")).isEqualTo(price(10).setScale(4));
+		assertThat(minute.get("high")).isEqualTo(price(14).setScale(4));
+		assertThat(minute.get("low")).isEqualTo(price(8).setScale(4));
+		assertThat(minute.get("close")).isEqualTo(price(11).setScale(4));
+		assertThat(bar("1m", T0 + MINUTE)).containsEntry("tick_count", 1).containsEntry("volume", 15L);
+
+		for (String resolution : List.of("1h", "1d")) {
+			Map<String, Object> wide = bar(resolution, T0);
+			assertThat(wide).containsEntry("tick_count", 5).containsEntry("volume", 45L);
+			assertThat(wide.get("close")).isEqualTo(price(12).setScale(4));
+		}
+	}
+
+	@Test
+	void testRestartResumesAfterLastStoredTick() {
+		PriceHistoryServices before = services();
+		before.record(TICKER, price(10), 100, T0);
+		before.record(TICKER, price(11), 120, T0 + 1_000);
+		before.flush();
+
+		// a new instance has no series state; the upstream replays its last quote
+		PriceHistoryServices after = services();
+		after.record(TICKER, price(11), 120, T0 + 1_000);
+		after.record(TICKER, price(12), 150, T0 + 2_000);
+		after.flush();
+
+		assertThat(storedTimes()).containsExactly(T0, T0 + 1_000, T0 + 2_000);
+		assertThat(ticks("duplicate")).isEqualTo(1);
+		assertThat(bar("1m", T0)).containsEntry("tick_count", 3);
+	}
+
+	@Test
+	void testRangeReadsFromCoarsestResolutionDividingTheInterval() {
+		PriceHistoryServices ingest = services();
+		for (long ts = T0; ts < T0 + 3 * DAY; ts += 10 * MINUTE) {
+			ingest.record(TICKER, price(10 + ts % 7), -1, ts);
+		}
+		ingest.flush();
+		long to = T0 + 3 * DAY;
+
+		// the instance that ingested the range answers it from memory
+		assertThat(ingest.history(TICKER, T0, to, "1h").orElseThrow().getSource()).isEqualTo("memory");
+
+		PriceHistoryServices restarted = services();
+		assertThat(source(restarted, "tick", T0, T0 + HOUR)).isEqualTo("tick");
+		assertThat(source(restarted, "1m", T0, T0 + DAY)).isEqualTo("1m");
+		assertThat(source(restarted, "5m", T0, to)).isEqualTo("1m");
+		assertThat(source(restarted, "90m", T0, to)).isEqualTo("1m");
+		assertThat(source(restarted, "1h", T0, to)).isEqualTo("1h");
+		assertThat(source(restarted, "4h", T0, to)).isEqualTo("1h");
+		assertThat(source(restarted, "1d", T0, to)).isEqualTo("1d");
+		assertThat(source(restarted, "1w", T0, to)).isEqualTo("1d");
+
+		PriceHistoryDTO fourHours = restarted.history(TICKER, T0, to, "4h").orElseThrow();
+		assertThat(fourHours.getInterval()).isEqualTo("4h");
+		assertThat(fourHours.getBars()).hasSize(18).extracting(PriceBarDTO::getTime)
+				.allMatch(time -> time % (4 * HOUR) == 0);
+		// no interval: the finest auto width within max-points (2000) is 5m for 3 days
+		assertThat(restarted.history(TICKER, T0, to, null).orElseThrow().getInterval()).isEqualTo("5m");
+		assertThat(restarted.history("NOSUCH", T0, to, "1h")).isEmpty();
+	}
+
+	@Test
+	void testRefusedRowsAreDroppedAfterMaxAttempts() {
+		PriceHistoryServices history = services();
+		history.record(TICKER, price(10), -1, T0);
+		// out of range for DECIMAL(16,4), so the whole multi-row insert fails
+		history.record(TICKER, new BigDecimal("1e13"), -1, T0 + 1_000);
+		history.record(TICKER, price(11), -1, T0 + 2_000);
+
+		history.flush();
+		history.flush();
+		assertThat(storedTimes()).isEmpty();
+		assertThat(ticks("failed")).isEqualTo(6);
+
+		// the third attempt goes row by row
+		history.flush();
+		assertThat(storedTimes()).containsExactly(T0, T0 + 2_000);
+		assertThat(ticks("rejected")).isEqualTo(1);
+		assertThat(ticks("written")).isEqualTo(2);
+		assertThat(bar("1m", T0)).containsEntry("tick_count", 2);
+
+		// the batch is done with: nothing left to retry
+		history.flush();
+		assertThat(ticks("failed")).isEqualTo(6);
+	}
+
+	private PriceHistoryServices services() {
+		registry = new SimpleMeterRegistry();
+		TimeSeriesStore store = new TimeSeriesStore(registry, Duration.ofDays(30), DataSize.ofMegabytes(16));
+		return new PriceHistoryServices(jdbcTemplate, store, transactionManager, registry,
+				10_000, 500, 20_000, 3, 2_000, Duration.ofDays(1), Duration.ofMinutes(1));
+	}
+
+	private static BigDecimal price(long dollars) {
+		return BigDecimal.valueOf(dollars);
+	}
+
+	private double ticks(String result) {
+		return registry.get("market.history.ticks").tag("result", result).counter().count();
+	}
+
+	private List<Long> storedTimes() {
+		return jdbcTemplate.queryForList("SELECT ts FROM price_ticks WHERE stock_id = ? ORDER BY ts", Long.class, stockId);
+	}
+
+	private Map<String, Object> bar(String resolution, long bucketStart) {
+		return jdbcTemplate.queryForMap("SELECT open, high, low, close, volume, tick_count, first_ts, last_ts FROM price_bars "
+				+ "WHERE stock_id = ? AND resolution = ? AND bucket_start = ?", stockId, resolution, bucketStart);
+	}
+
+	private static String source(PriceHistoryServices history, String interval, long from, long to) {
+		return history.history(TICKER, from, to, interval).orElseThrow().getSource();
+	}
+}
@@ -0,0 +1,108 @@
+package org.perscholas.investmentapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.perscholas.investmentapp.client.MarketDataSource;
+import org.perscholas.investmentapp.dao.StockRepoI;
+import org.perscholas.investmentapp.models.Stock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class StockPriceSyncServicesTests {
+	static final int STOCKS = 5;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	@Autowired
+	DataSource dataSource;
+	@Autowired
+	StockRepoI stockRepoI;
+	@Autowired
+	EntityCacheServices entityCacheServices;
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	// upstream knows only the scratch tickers; every other stock is left alone
+	final Map<String, String> prices = new ConcurrentHashMap<>();
+	final MarketDataSource upstream = (path, params) -> {
+		List<String> quotes = new ArrayList<>();
+		for (String symbol : params.get("symbols").split(",")) {
+			if (prices.containsKey(symbol)) {
+				quotes.add("{\"symbol\":\"" + symbol + "\",\"regularMarketPrice\":" + prices.get(symbol) + "}");
+			}
+		}
+		return CompletableFuture.completedFuture("{\"quoteResponse\":{\"result\":[" + String.join(",", quotes) + "]}}");
+	};
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM stocks WHERE ticker LIKE 'ZS%'");
+		entityCacheServices.evictStockLookups();
+	}
+
+	@Test
+	void testChangedPricesAreOneBatchAndLeaveTheSecondLevelCache() {
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < STOCKS; i++) {
+			rows.add(new Object[]{"Sync test " + i, String.format("ZS%03d", i), "10.00", "scratch stock for the price sync test"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO stocks (stock_name, ticker, price, description) VALUES (?, ?, ?, ?)", rows);
+		List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM stocks WHERE ticker LIKE 'ZS%' ORDER BY ticker", Integer.class);
+		for (int i = 0; i < STOCKS - 1; i++) {
+			prices.put(String.format("ZS%03d", i), "12.505");
+		}
+		// the last one is quoted at its stored price
+		prices.put(String.format("ZS%03d", STOCKS - 1), "10");
+
+		Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+		ids.forEach(id -> stockRepoI.findById(id).orElseThrow());
+		assertThat(ids).allMatch(id -> cache.containsEntity(Stock.class, id));
+
+		AtomicInteger statements = new AtomicInteger();
+		StockPriceSyncServices sync = sync(new JdbcTemplate(PossessionServicesTests.counting(dataSource, statements)));
+		assertThat(sync.syncPrices()).isEqualTo(STOCKS - 1);
+
+		// one SELECT of the catalog and one prepared batch for every changed row
+		assertThat(statements.get()).isEqualTo(2);
+		assertThat(ids.subList(0, STOCKS - 1)).noneMatch(id -> cache.containsEntity(Stock.class, id));
+		assertThat(cache.containsEntity(Stock.class, ids.get(STOCKS - 1))).isTrue();
+		assertThat(stockRepoI.findById(ids.get(0)).orElseThrow().getPrice()).isEqualByComparingTo("12.51");
+
+		// nothing moved: nothing written
+		statements.set(0);
+		assertThat(sync.syncPrices()).isZero();
+		assertThat(statements.get()).isEqualTo(1);
+	}
+
+	private StockPriceSyncServices sync(JdbcTemplate jdbc) {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		LatestQuoteTable quotes = new LatestQuoteTable(registry, 64);
+		// the history and valuation consumers only buffer here; nothing reaches the database
+		PriceHistoryServices history = new PriceHistoryServices(null, null, null, registry,
+				1_000, 500, 1_000, 3, 2_000, Duration.ofDays(1), Duration.ofMinutes(1));
+		MarketQuoteServices quoteServices = new MarketQuoteServices(upstream, new ObjectMapper(), quotes, history,
+				new PortfolioValuationServices(null, null, quotes, registry), registry,
+				Duration.ZERO, 5_000, Duration.ofSeconds(5), Duration.ofHours(1));
+		return new StockPriceSyncServices(quoteServices, quotes, entityCacheServices, jdbc, registry,
+				true, "US", 50, 5_000);
+	}
+}
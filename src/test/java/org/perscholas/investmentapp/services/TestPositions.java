@@ -0,0 +1,18 @@
+package org.perscholas.investmentapp.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// shared cleanup for tests that trade on the seeded user's position
+public final class TestPositions {
+
+	private TestPositions() {
+	}
+
+	// deletes the user's position in the ticker, if any, and drops it from the valuation engine
+	public static void remove(JdbcTemplate jdbcTemplate, PortfolioValuationServices portfolioValuationServices,
+							  int userId, String ticker) {
+		jdbcTemplate.update("DELETE p FROM possessions p JOIN stocks s ON s.id = p.investment_id "
+				+ "WHERE p.myuser_id = ? AND s.ticker = ?", userId, ticker);
+		portfolioValuationServices.positionRemoved(userId, ticker);
+	}
+}
@@ -0,0 +1,106 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory per point and scan throughput of TimeSeriesStore holding a week of per-second
+ * ticks for the 25 seeded stocks. Scan scores are points per microsecond; bytes per point
+ * are reported as the secondary encodedBytesPerPoint / allocatedBytesPerPoint results. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.perscholas.investmentapp.services.TimeSeriesStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TimeSeriesStoreBenchmark {
+
+	static final int TICKERS = 25;
+	static final long SECOND = 1_000L;
+	static final long DAY = 86_400_000L;
+	static final int POINTS_PER_TICKER = (int) (7 * DAY / SECOND);
+	static final long START = 1_700_000_000_000L;
+	static final int DAY_POINTS = (int) (DAY / SECOND);
+
+	TimeSeriesStore store;
+	String[] tickers;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		store = new TimeSeriesStore(new SimpleMeterRegistry(), Duration.ofDays(8), DataSize.ofMegabytes(1024));
+		tickers = new String[TICKERS];
+		SplittableRandom random = new SplittableRandom(42);
+		for (int t = 0; t < TICKERS; t++) {
+			tickers[t] = "T" + t;
+		}
+		double[] prices = new double[TICKERS];
+		for (int t = 0; t < TICKERS; t++) {
+			prices[t] = 50 + random.nextInt(400);
+		}
+		// interleaved like the ingest: every ticker gets a tick each second, cent-rounded random walk
+		for (int i = 0; i < POINTS_PER_TICKER; i++) {
+			long ts = START + i * SECOND;
+			for (int t = 0; t < TICKERS; t++) {
+				if (random.nextInt(4) == 0) {
+					prices[t] = Math.max(0.01, Math.round(prices[t] * 100 + (random.nextInt(5) - 2)) / 100.0);
+				}
+				long volume = random.nextInt(3) == 0 ? 0 : random.nextInt(500);
+				store.append(tickers[t], ts, prices[t], volume);
+			}
+		}
+	}
+
+	// secondary results next to the scan scores; JMH zeroes aux counters when an iteration starts, so they are filled in at its end
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+		public double encodedBytesPerPoint;
+		public double allocatedBytesPerPoint;
+
+		@TearDown(Level.Iteration)
+		public void measure(TimeSeriesStoreBenchmark benchmark) {
+			long points = benchmark.store.pointCount();
+			encodedBytesPerPoint = (double) benchmark.store.usedBytes() / points;
+			allocatedBytesPerPoint = (double) benchmark.store.allocatedBytes() / points;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+		final SplittableRandom random = new SplittableRandom();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DAY_POINTS)
+	public void scanOneDay(Cursor cursor, Footprint footprint, Blackhole blackhole) {
+		String ticker = tickers[cursor.next++ % TICKERS];
+		long from = START + cursor.random.nextInt(6) * DAY;
+		store.scan(ticker, from, from + DAY, (ts, price, volume) -> blackhole.consume(price));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(3_600)
+	public void scanOneHour(Cursor cursor, Footprint footprint, Blackhole blackhole) {
+		String ticker = tickers[cursor.next++ % TICKERS];
+		long from = START + cursor.random.nextInt(POINTS_PER_TICKER - 3_600) * SECOND;
+		store.scan(ticker, from, from + 3_600 * SECOND, (ts, price, volume) -> blackhole.consume(price));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(TimeSeriesStoreBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
@@ -0,0 +1,168 @@
+package org.perscholas.investmentapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// block encoding and the in-memory store only; no Spring context needed
+class TimeSeriesStoreTests {
+	static final long SECOND = 1_000L;
+	static final long T0 = 1_700_000_000_000L;
+
+	record Point(long ts, double price, long volume) {
+	}
+
+	@Test
+	void testEqualValuesRoundTrip() {
+		GorillaBlock block = new GorillaBlock(T0, 42.5, 100);
+		List<Point> written = new ArrayList<>(List.of(new Point(T0, 42.5, 100)));
+		for (int i = 1; i < 200; i++) {
+			assertThat(block.append(T0 + i * SECOND, 42.5, 100)).isTrue();
+			written.add(new Point(T0 + i * SECOND, 42.5, 100));
+		}
+		assertThat(decode(block)).containsExactlyElementsOf(written);
+		// regular timestamps and repeated values cost a few bits per point
+		assertThat(block.usedBytes()).isLessThan(200 * 2);
+	}
+
+	@Test
+	void testSignFlipsAndSpecialValuesRoundTrip() {
+		double[] values = {1.25, -1.25, 0.0, -0.0, Double.MIN_VALUE, -Double.MAX_VALUE,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 3.0, -7.5e-300, Double.NaN};
+		long[] volumes = {0, 1, 255, 256, 65_535, 65_536, 1L << 32, Long.MAX_VALUE, -1, 0, 7, 0};
+		GorillaBlock block = new GorillaBlock(T0, values[0], volumes[0]);
+		for (int i = 1; i < values.length; i++) {
+			assertThat(block.append(T0 + i * SECOND, values[i], volumes[i])).isTrue();
+		}
+		List<Point> read = decode(block);
+		assertThat(read).hasSize(values.length);
+		for (int i = 0; i < values.length; i++) {
+			// compare bit patterns so -0.0 and NaN are checked exactly
+			assertThat(Double.doubleToRawLongBits(read.get(i).price()))
+					.isEqualTo(Double.doubleToRawLongBits(values[i]));
+			assertThat(read.get(i).volume()).isEqualTo(volumes[i]);
+			assertThat(read.get(i).ts()).isEqualTo(T0 + i * SECOND);
+		}
+	}
+
+	@Test
+	void testIrregularAndLargeTimestampGaps() {
+		long[] gaps = {1, 1, 64, 65, 300, 2_048, 2_049, 1_000_000, 1, Integer.MAX_VALUE, 5};
+		GorillaBlock block = new GorillaBlock(T0, 10, 1);
+		List<Point> written = new ArrayList<>(List.of(new Point(T0, 10, 1)));
+		long ts = T0;
+		for (long gap : gaps) {
+			ts += gap;
+			assertThat(block.append(ts, 10, 1)).isTrue();
+			written.add(new Point(ts, 10, 1));
+		}
+		assertThat(decode(block)).containsExactlyElementsOf(written);
+		// a delta-of-delta beyond 32 bits does not fit and needs a new block
+		assertThat(block.append(ts + 10L * Integer.MAX_VALUE, 10, 1)).isFalse();
+		assertThat(block.append(ts, 10, 1)).isFalse();
+	}
+
+	@Test
+	void testRolloverAcrossBlocksRoundTrip() {
+		TimeSeriesStore store = store(Duration.ofDays(30), DataSize.ofMegabytes(64));
+		SplittableRandom random = new SplittableRandom(7);
+		List<Point> written = new ArrayList<>();
+		long ts = T0;
+		for (int i = 0; i < 20_000; i++) {
+			ts += 1 + random.nextInt(3 * (int) SECOND);
+			Point p = new Point(ts, random.nextDouble() * 1_000 - 500, random.nextLong(1L << 40));
+			store.append("AAPL", p.ts(), p.price(), p.volume());
+			written.add(p);
+		}
+		assertThat(store.allocatedBytes()).isGreaterThan(4L * GorillaBlock.BYTES);
+		assertThat(store.pointCount()).isEqualTo(written.size());
+		assertThat(scan(store, "AAPL", Long.MIN_VALUE, Long.MAX_VALUE)).containsExactlyElementsOf(written);
+
+		// a range cutting through block boundaries returns exactly the points inside it
+		long from = written.get(4_321).ts();
+		long to = written.get(15_000).ts();
+		assertThat(scan(store, "AAPL", from, to)).containsExactlyElementsOf(written.subList(4_321, 15_000));
+		assertThat(store.scan("AAPL", to, from, (t, p, v) -> { })).isZero();
+		assertThat(store.oldest("AAPL")).isEqualTo(written.get(0).ts());
+	}
+
+	@Test
+	void testOutOfOrderPointsIgnored() {
+		TimeSeriesStore store = store(Duration.ofDays(1), DataSize.ofMegabytes(1));
+		store.append("MSFT", T0, 1, 1);
+		store.append("MSFT", T0 + SECOND, 2, 2);
+		store.append("MSFT", T0 + SECOND, 3, 3);
+		store.append("MSFT", T0, 4, 4);
+		assertThat(scan(store, "MSFT", T0, T0 + 10 * SECOND))
+				.containsExactly(new Point(T0, 1, 1), new Point(T0 + SECOND, 2, 2));
+	}
+
+	@Test
+	void testEvictionByAge() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TimeSeriesStore store = new TimeSeriesStore(registry, Duration.ofHours(1), DataSize.ofMegabytes(64));
+		SplittableRandom random = new SplittableRandom(11);
+		// a day of per-second random prices fills many blocks
+		long end = T0 + 86_400 * SECOND;
+		for (long ts = T0; ts < end; ts += SECOND) {
+			store.append("IBM", ts, random.nextDouble(), random.nextInt(1_000));
+		}
+		long oldest = store.oldest("IBM");
+		assertThat(oldest).isGreaterThan(T0);
+		// whole blocks are dropped, so at most one block older than the retention survives
+		List<Point> held = scan(store, "IBM", Long.MIN_VALUE, Long.MAX_VALUE);
+		assertThat(held.get(0).ts()).isEqualTo(oldest);
+		assertThat(held.get(held.size() - 1).ts()).isEqualTo(end - SECOND);
+		assertThat(end - oldest).isLessThan(2 * 3_600 * SECOND);
+		assertThat(store.allocatedBytes()).isLessThan(86_400L / 4 * GorillaBlock.BYTES);
+		assertThat(registry.get("market.timeseries.evicted-blocks").gauge().value()).isPositive();
+	}
+
+	@Test
+	void testEvictionBySizeTakesOldestAcrossSeries() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		long budget = 6L * GorillaBlock.BYTES;
+		TimeSeriesStore store = new TimeSeriesStore(registry, Duration.ofDays(30), DataSize.ofBytes(budget));
+		SplittableRandom random = new SplittableRandom(13);
+		long ts = T0;
+		for (int i = 0; i < 30_000; i++, ts += SECOND) {
+			// the older series stops early; its blocks are the oldest and go first
+			if (i < 5_000) {
+				store.append("OLD", ts, random.nextDouble(), random.nextInt(1 << 20));
+			}
+			store.append("NEW", ts, random.nextDouble(), random.nextInt(1 << 20));
+		}
+		assertThat(store.allocatedBytes()).isLessThanOrEqualTo(budget);
+		assertThat(registry.get("market.timeseries.bytes").gauge().value()).isEqualTo(store.allocatedBytes());
+		assertThat(registry.get("market.timeseries.evicted-blocks").gauge().value()).isPositive();
+		// each series keeps its active block
+		assertThat(store.oldest("OLD")).isNotEqualTo(Long.MAX_VALUE);
+		assertThat(store.oldest("NEW")).isGreaterThan(T0);
+		assertThat(scan(store, "NEW", Long.MIN_VALUE, Long.MAX_VALUE)).last()
+				.extracting(Point::ts).isEqualTo(ts - SECOND);
+	}
+
+	private static TimeSeriesStore store(Duration retention, DataSize maxBytes) {
+		return new TimeSeriesStore(new SimpleMeterRegistry(), retention, maxBytes);
+	}
+
+	private static List<Point> decode(GorillaBlock block) {
+		List<Point> points = new ArrayList<>();
+		block.scan(Long.MIN_VALUE, Long.MAX_VALUE, (ts, price, volume) -> points.add(new Point(ts, price, volume)));
+		return points;
+	}
+
+	private static List<Point> scan(TimeSeriesStore store, String ticker, long from, long to) {
+		List<Point> points = new ArrayList<>();
+		int n = store.scan(ticker, from, to, (ts, price, volume) -> points.add(new Point(ts, price, volume)));
+		assertThat(n).isEqualTo(points.size());
+		return points;
+	}
+}